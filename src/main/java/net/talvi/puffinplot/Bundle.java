@@ -16,28 +16,35 @@
  */
 package net.talvi.puffinplot;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.URISyntaxException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.security.CodeSource;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 import net.talvi.puffinplot.data.Correction;
 import net.talvi.puffinplot.data.Sample;
 import net.talvi.puffinplot.data.Site;
 import net.talvi.puffinplot.data.Suite;
+import org.apache.commons.compress.archivers.zip.ParallelScatterZipCreator;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.parallel.InputStreamSupplier;
+import org.apache.commons.compress.parallel.ScatterGatherBackingStore;
 
 import static net.talvi.puffinplot.PuffinApp.getGreatCirclesValidityCondition;
 
@@ -45,6 +52,10 @@ import static net.talvi.puffinplot.PuffinApp.getGreatCirclesValidityCondition;
  * Provides a static method for saving a PuffinPlot suite as a self-contained
  * bundle comprising data, calculation results, scripts for automated
  * processing, and optionally the PuffinPlot jar itself.
+ * <p>
+ * Each entry in the bundle is generated and compressed directly into the
+ * zip file, without being written to a temporary directory first.
+ * Independent entries are generated and compressed in parallel.
  *
  * @author pont
  */
@@ -52,6 +63,44 @@ public class Bundle {
     
     private static final Logger LOGGER =
             Logger.getLogger("net.talvi.puffinplot");
+    
+    private static final int EXECUTABLE_MODE = 0755;
+    private static final int REGULAR_MODE = 0644;
+
+    @FunctionalInterface
+    private interface ContentWriter {
+        void write(Writer writer) throws IOException;
+    }
+
+    /**
+     * Create and save a PuffinPlot data bundle. If the PuffinPlot jar file
+     * is included, it is stored without further compression.
+     * 
+     * @param suite the suite from which to create the bundle
+     * @param bundlePath the path to which to save the bundle
+     * @param correction the correction to apply to the data when performing
+     *        calculations
+     * @param samples the samples to include in suite mean calculations
+     * @param sites the sites to include in suite mean calculations
+     * @param copyJarFile if {@code true}, attempt to copy the PuffinPlot jar
+     *        file into the bundle
+     * 
+     * @return an optional exception; see
+     *         {@link #createBundle(Suite, Path, Correction, List, List,
+     *         boolean, boolean)}
+     * 
+     * @throws IOException if an I/O exception occurred while saving the bundle
+     *         (other than while copying the jar file)
+     * @throws PuffinUserException if an exception occurred which saving the
+     *         suite or any of the results files
+     */          
+    public static Optional<Exception> createBundle(Suite suite, Path bundlePath,
+            Correction correction, List<Sample> samples, List<Site> sites,
+            boolean copyJarFile)
+            throws IOException, PuffinUserException {
+        return createBundle(suite, bundlePath, correction, samples, sites,
+                copyJarFile, true);
+    }
 
     /**
      * Create and save a PuffinPlot data bundle.
@@ -61,6 +110,9 @@ public class Bundle {
      * be copied: in this case the exception is caught internally, the archive
      * is created without the jar file, and the exception is wrapped in an
      * {@code Optional} and returned as the <i>return value</i> of the method.
+     * <p>
+     * Creating the bundle does not change the suite's PuffinPlot file or
+     * its saved state.
      * 
      * @param suite the suite from which to create the bundle
      * @param bundlePath the path to which to save the bundle
@@ -70,6 +122,10 @@ public class Bundle {
      * @param sites the sites to include in suite mean calculations
      * @param copyJarFile if {@code true}, attempt to copy the PuffinPlot jar
      *        file into the bundle
+     * @param storeJarUncompressed if {@code true}, store the jar file in the
+     *        bundle without compressing it. Since a jar file is already
+     *        compressed, this is much faster and makes the bundle only
+     *        slightly larger.
      * 
      * @return an optional exception; if an exception is thrown while copying
      *         the jar file, it is returned, wrapped in an {@code Optional},
@@ -84,92 +140,146 @@ public class Bundle {
      */          
     public static Optional<Exception> createBundle(Suite suite, Path bundlePath,
             Correction correction, List<Sample> samples, List<Site> sites,
-            boolean copyJarFile)
+            boolean copyJarFile, boolean storeJarUncompressed)
             throws IOException, PuffinUserException {
         LOGGER.info("Starting bundle creation.");
+        if (suite.getSamples().isEmpty()) {
+            throw new PuffinUserException("No samples in suite.");
+        }
         
-        final Path tempDir = Files.createTempDirectory("puffinplot");
-        LOGGER.log(Level.INFO, "Temporary directory: {0}",
-                tempDir.toString());
-        
-        suite.saveAs(tempDir.resolve(Paths.get("data.ppl")).toFile());
         suite.doAllCalculations(correction,
                 getGreatCirclesValidityCondition());
         suite.calculateSuiteMeans(samples, sites);
         
-        suite.saveCalcsSample(
-                tempDir.resolve(Paths.get("data-sample.csv")).toFile());
-        if (!suite.getSites().isEmpty()) {
-            suite.saveCalcsSite(
-                    tempDir.resolve(Paths.get("data-site.csv")).toFile());
-        }
-        suite.saveCalcsSuite(
-                tempDir.resolve(Paths.get("data-suite.csv")).toFile());
-        
-        writeFile(tempDir, "process-data.sh", true,
-                "#!/bin/sh\n\n" +
-                        "java -jar PuffinPlot.jar -process data.ppl\n");
-        writeFile(tempDir, "process-data.bat", true,
-                "java -jar PuffinPlot.jar -process data.ppl\n");
-
-        final InputStream readMeStream =
-                Bundle.class.getResourceAsStream("bundle-readme.md");
-        /*
-         * NB: this file reading technique will convert all line endings to \n.
-         * It's not a problem here since they're all \n anyway.
-         */
-        final String readMeContents =
-                new BufferedReader(new InputStreamReader(readMeStream)).
-                        lines().collect(Collectors.joining("\n", "", "\n"));        
-        writeFile(tempDir, "README.md", false, readMeContents);
         Optional<Exception> jarCopyException = Optional.empty();
+        File jarFile = null;
         if (copyJarFile) {
-            try {
-                copyPuffinPlotJarFile(tempDir);
-            } catch (IOException | URISyntaxException exception) {
+            jarFile = findJarFile();
+            if (jarFile == null || !jarFile.canRead()) {
+                final IOException exception =
+                        new IOException("jar file not found");
                 LOGGER.log(Level.WARNING, "Exception thrown while "
                         + "copying jar file", exception);
                 jarCopyException = Optional.of(exception);
+                jarFile = null;
+            } else {
+                LOGGER.log(Level.INFO, "PuffinPlot jar file location: {0}",
+                        jarFile.getAbsolutePath());
             }
         }
+
         /*
-         * The zipDirectory method will preserve permissions on a Posix
-         * filesystem (so executable scripts will remain executable), but
-         * it can't do anything on a file system which doesn't support
-         * an executable bit.
-         * 
-         * TODO: consider modifying zipDirectory to take a collection of
-         * Paths on which to set the executable bit: this can be done in
-         * the zip file regardless of whether the source FS supports it.
+         * From here on, the suite is only read, so the entries can safely be
+         * generated concurrently. The jar file is by far the largest entry,
+         * so it is submitted first.
          */
-        Util.zipDirectory(tempDir, bundlePath);
+        final ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(4, Runtime.getRuntime().availableProcessors()));
+        final ParallelScatterZipCreator creator =
+                new ParallelScatterZipCreator(executor,
+                        MemoryBackingStore::new);
+        if (jarFile != null) {
+            final Path jarPath = jarFile.toPath();
+            addEntry(creator, "PuffinPlot.jar", true,
+                    storeJarUncompressed, () -> {
+                        try {
+                            return Files.newInputStream(jarPath);
+                        } catch (IOException ex) {
+                            throw new UncheckedIOException(ex);
+                        }
+                    });
+        }
+        addEntry(creator, "data.ppl", false, suite::writePuffinData);
+        addEntry(creator, "data-sample.csv", false, suite::writeCalcsSample);
+        if (!suite.getSites().isEmpty()) {
+            addEntry(creator, "data-site.csv", false, suite::writeCalcsSite);
+        }
+        addEntry(creator, "data-suite.csv", false, suite::writeCalcsSuite);
+        addEntry(creator, "process-data.sh", true, writer -> writer.write(
+                "#!/bin/sh\n\n" +
+                        "java -jar PuffinPlot.jar -process data.ppl\n"));
+        addEntry(creator, "process-data.bat", true, writer -> writer.write(
+                "java -jar PuffinPlot.jar -process data.ppl\n"));
+        addEntry(creator, "README.md", false, false,
+                () -> Bundle.class.getResourceAsStream("bundle-readme.md"));
+
+        try (ZipArchiveOutputStream zipStream =
+                new ZipArchiveOutputStream(bundlePath.toFile())) {
+            creator.writeTo(zipStream);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Bundle creation interrupted", ex);
+        } catch (ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            throw new IOException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+        LOGGER.info(creator.getStatisticsMessage().toString());
         return jarCopyException;
     }
+
+    private static void addEntry(ParallelScatterZipCreator creator,
+            String name, boolean executable, ContentWriter contents) {
+        addEntry(creator, name, executable, false, () -> {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (Writer writer = new OutputStreamWriter(bytes,
+                    StandardCharsets.UTF_8)) {
+                contents.write(writer);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            return new ByteArrayInputStream(bytes.toByteArray());
+        });
+    }
+
+    private static void addEntry(ParallelScatterZipCreator creator,
+            String name, boolean executable, boolean stored,
+            InputStreamSupplier supplier) {
+        final ZipArchiveEntry entry = new ZipArchiveEntry(name);
+        entry.setMethod(stored ? ZipArchiveEntry.STORED
+                : ZipArchiveEntry.DEFLATED);
+        /*
+         * The executable bit is set in the zip file itself, so scripts
+         * remain executable when the bundle is unpacked, regardless of
+         * whether the file system we are running on supports it.
+         */
+        entry.setUnixMode(executable ? EXECUTABLE_MODE : REGULAR_MODE);
+        entry.setTime(System.currentTimeMillis());
+        creator.addArchiveEntry(entry, supplier);
+    }
     
-    private static void writeFile(Path parent, String filename,
-            boolean executable, String contents) throws IOException {
-        final Path path = parent.resolve(Paths.get(filename));
-        try (FileWriter fw = new FileWriter(path.toFile())) {
-            fw.write(contents);
+    /**
+     * A scatter-gather backing store which holds the compressed data in
+     * memory. The default store uses temporary files, which would defeat
+     * the purpose of writing the bundle directly.
+     */
+    private static class MemoryBackingStore
+            implements ScatterGatherBackingStore {
+        
+        private final ByteArrayOutputStream bytes =
+                new ByteArrayOutputStream();
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(bytes.toByteArray());
         }
-        if (executable) {
-            // On Windows, this will do nothing.
-            path.toFile().setExecutable(true, false);
+
+        @Override
+        public void writeOut(byte[] data, int offset, int length) {
+            bytes.write(data, offset, length);
         }
-    }
-    
-    private static void copyPuffinPlotJarFile(Path destinationDir)
-            throws IOException, URISyntaxException {
-        final File jarFile = findJarFile();
-        if (jarFile == null) {
-            throw new IOException("jar file not found");
+
+        @Override
+        public void closeForWriting() {
+        }
+
+        @Override
+        public void close() {
         }
-        LOGGER.log(Level.INFO, "PuffinPlot jar file location: {0}",
-                jarFile.getAbsolutePath());
-        final Path jarPath = jarFile.toPath();
-        final Path destPath = destinationDir.resolve("PuffinPlot.jar");
-        Files.copy(jarPath, destPath, StandardCopyOption.COPY_ATTRIBUTES);
-        destPath.toFile().setExecutable(true, false);
     }
     
     private static File findJarFile() {
@@ -0,0 +1,148 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.talvi.puffinplot;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import javax.swing.Timer;
+
+/**
+ * Collects requests to update PuffinPlot's displays and carries them out
+ * at most once per frame.
+ * <p>
+ * Requests specify which views need updating, and only those views are
+ * updated. Requests made before a scheduled update runs are merged into
+ * it, so a burst of changes (for example, from holding down a key to
+ * scroll through a suite) produces a single update showing the latest
+ * state, rather than one update for every intermediate sample. Requests
+ * made while an update is running are deferred to the next frame.
+ *
+ * @author pont
+ */
+public class DisplayUpdateScheduler {
+
+    /**
+     * The views which can be updated, in the order in which they are
+     * updated.
+     */
+    public enum View {
+        /** plots of the current sample in the main window */
+        SAMPLE,
+        /** the data table for the current sample */
+        TABLE,
+        /** the plots for the current site */
+        SITE,
+        /** the plots for the current suite */
+        SUITE;
+    }
+
+    /**
+     * The default interval in milliseconds between updates.
+     */
+    public static final int DEFAULT_FRAME_INTERVAL = 16;
+
+    private final Consumer<Set<View>> updater;
+    private final Timer timer;
+    private final Set<View> pending = EnumSet.noneOf(View.class);
+    private boolean updating = false;
+
+    /**
+     * Creates a new scheduler.
+     *
+     * @param updater a consumer which updates the supplied views; it is
+     * always called on the event dispatch thread
+     * @param frameInterval the minimum time in milliseconds between
+     * a request and the update which carries it out
+     */
+    public DisplayUpdateScheduler(Consumer<Set<View>> updater,
+            int frameInterval) {
+        this.updater = Objects.requireNonNull(updater);
+        timer = new Timer(frameInterval, event -> flush());
+        timer.setRepeats(false);
+    }
+
+    /**
+     * Requests an update of the specified views.
+     *
+     * @param first a view to update
+     * @param rest any further views to update
+     */
+    public void requestUpdate(View first, View... rest) {
+        requestUpdate(EnumSet.of(first, rest));
+    }
+
+    /**
+     * Requests an update of the specified views.
+     *
+     * @param views the views to update
+     */
+    public synchronized void requestUpdate(Set<View> views) {
+        if (views.isEmpty()) {
+            return;
+        }
+        pending.addAll(views);
+        if (!timer.isRunning()) {
+            timer.start();
+        }
+    }
+
+    /**
+     * Requests an update of all the views.
+     */
+    public void requestFullUpdate() {
+        requestUpdate(EnumSet.allOf(View.class));
+    }
+
+    /**
+     * Carries out any pending update immediately. This method must be called
+     * on the event dispatch thread.
+     */
+    public void flush() {
+        final Set<View> views;
+        synchronized (this) {
+            if (updating || pending.isEmpty()) {
+                return;
+            }
+            timer.stop();
+            views = EnumSet.copyOf(pending);
+            pending.clear();
+            updating = true;
+        }
+        try {
+            updater.accept(Collections.unmodifiableSet(views));
+        } finally {
+            synchronized (this) {
+                updating = false;
+                if (!pending.isEmpty()) {
+                    timer.restart();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reports whether any updates are waiting to be carried out.
+     *
+     * @return {@code true} if there are pending updates
+     */
+    public synchronized boolean isUpdatePending() {
+        return !pending.isEmpty();
+    }
+}
@@ -32,6 +32,7 @@ import javax.swing.UnsupportedLookAndFeelException;
 
 import net.talvi.puffinplot.data.Correction;
 import net.talvi.puffinplot.data.Suite;
+import net.talvi.puffinplot.jfr.FlightEvents;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
@@ -120,6 +121,23 @@ public class Main {
                 .hasArg().argName("file")
                 .desc("process given ppl file and save results")
                 .build());
+        options.addOption(
+                new Option("calccache",
+                "write a calculation cache next to the input file "
+                        + "(process mode only)"));
+        options.addOption(
+                Option.builder("metrics")
+                .hasArg().optionalArg(true).argName("file")
+                .desc("collect performance metrics; in process or script "
+                        + "mode, write a JSON report to the given file "
+                        + "(default for process mode: <input>-metrics.json)")
+                .build());
+        options.addOption(
+                Option.builder("jfr")
+                .hasArg().argName("file")
+                .desc("make a Java Flight Recorder recording and write it "
+                        + "to the given file on exit")
+                .build());
         return options;
     }
     
@@ -138,6 +156,21 @@ public class Main {
     
     private static void processCliArguments(CommandLine commandLine,
             Options options) {
+        if (commandLine.hasOption("metrics")) {
+            Metrics.setEnabled(true);
+            Metrics.registerMBean();
+        }
+        if (commandLine.hasOption("jfr")) {
+            final String recordingPath = commandLine.getOptionValue("jfr");
+            try {
+                FlightEvents.startRecording(new File(recordingPath));
+            } catch (IOException ex) {
+                System.err.println("Could not start flight recording: "
+                        + ex.getMessage());
+                System.exit(1);
+            }
+        }
+        
         if (commandLine.hasOption("help")) {
             final HelpFormatter formatter = new HelpFormatter();
             formatter.printHelp("java -jar PuffinPlot.jar <options>", options);
@@ -190,6 +223,7 @@ public class Main {
                 } else {
                     final Reader reader = new FileReader(scriptPath);
                     engine.eval(reader);
+                    writeMetricsReport(commandLine, null);
                 }
             } catch (IOException | ScriptException | RuntimeException
                     exception) {
@@ -209,8 +243,11 @@ public class Main {
             final Suite suite = new Suite("PuffinPlot (process mode)");
             try {
                 suite.readFiles(Arrays.asList(new File(inputFileString)));
-                suite.doAllCalculations(Correction.NONE,
+                suite.doAllCalculationsUsingCache(Correction.NONE,
                         PuffinApp.getGreatCirclesValidityCondition());
+                if (commandLine.hasOption("calccache")) {
+                    suite.writeCalculationCache();
+                }
                 suite.calculateSuiteMeans(suite.getSamples(), suite.getSites());
                 
                 final String bareFilename =
@@ -220,6 +257,8 @@ public class Main {
                     suite.saveCalcsSite(new File(bareFilename + "-site.csv"));
                 }
                 suite.saveCalcsSuite(new File(bareFilename + "-suite.csv"));
+                writeMetricsReport(commandLine,
+                        new File(bareFilename + "-metrics.json"));
                 
                 System.out.println();
                 System.out.println("Processing completed successfully.");
@@ -256,4 +295,31 @@ public class Main {
             });
         }
     }
+    
+    /**
+     * Writes a performance metrics report at the end of a batch run, if
+     * metrics were requested on the command line. Errors are reported but
+     * do not cause the run to fail.
+     *
+     * @param commandLine the parsed command line
+     * @param defaultFile the file to write if none was given on the
+     * command line; if {@code null}, no report is written in that case
+     */
+    private static void writeMetricsReport(CommandLine commandLine,
+            File defaultFile) {
+        if (!commandLine.hasOption("metrics")) {
+            return;
+        }
+        final String filename = commandLine.getOptionValue("metrics");
+        final File file = filename == null ? defaultFile : new File(filename);
+        if (file == null) {
+            return;
+        }
+        try {
+            Metrics.writeReport(file);
+        } catch (IOException ex) {
+            System.err.println("Error writing metrics report to "
+                    + file + ": " + ex.getMessage());
+        }
+    }
 }
@@ -0,0 +1,666 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.talvi.puffinplot;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Lightweight performance instrumentation for PuffinPlot.
+ * <p>
+ * Named timers record the number of calls, a latency histogram, and
+ * (where the JVM supports it) an estimate of the memory allocated by the
+ * calling thread. Named counters record event counts. Instrumentation is
+ * disabled by default; when disabled, {@link #start(String)} returns a
+ * shared no-op timer and counters are not updated, so the overhead is a
+ * single volatile read.
+ * <p>
+ * The results can be retrieved programmatically, as a human-readable
+ * report ({@link #getReport()}), as a JSON file
+ * ({@link #writeReport(File)}), through JMX (see
+ * {@link #registerMBean()}), or periodically in the log (see
+ * {@link #startPeriodicLogging(long, TimeUnit)}).
+ * <p>
+ * Typical usage:
+ * <pre>
+ * final Metrics.Timer timer = Metrics.start("suite.saveAs");
+ * try {
+ *     ...
+ * } finally {
+ *     timer.stop();
+ * }
+ * </pre>
+ *
+ * @author pont
+ */
+public final class Metrics {
+
+    private static final Logger LOGGER =
+            Logger.getLogger("net.talvi.puffinplot");
+
+    /**
+     * The name under which the metrics MBean is registered.
+     */
+    public static final String OBJECT_NAME =
+            "net.talvi.puffinplot:type=Metrics";
+
+    private static volatile boolean enabled = false;
+    private static final ConcurrentMap<String, Histogram> histograms =
+            new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, LongAdder> counters =
+            new ConcurrentHashMap<>();
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN =
+            findThreadBean();
+    private static ScheduledExecutorService loggingExecutor = null;
+    private static boolean mbeanRegistered = false;
+
+    private Metrics() {
+    }
+
+    private static com.sun.management.ThreadMXBean findThreadBean() {
+        try {
+            final java.lang.management.ThreadMXBean bean =
+                    ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                final com.sun.management.ThreadMXBean sunBean =
+                        (com.sun.management.ThreadMXBean) bean;
+                if (sunBean.isThreadAllocatedMemorySupported()
+                        && sunBean.isThreadAllocatedMemoryEnabled()) {
+                    return sunBean;
+                }
+            }
+        } catch (LinkageError | SecurityException ex) {
+            LOGGER.log(Level.FINE, "Allocation tracking unavailable", ex);
+        }
+        return null;
+    }
+
+    /**
+     * Reports whether instrumentation is enabled.
+     *
+     * @return {@code true} if instrumentation is enabled
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables instrumentation. Previously recorded results
+     * are retained when instrumentation is disabled.
+     *
+     * @param newEnabled {@code true} to enable instrumentation
+     */
+    public static void setEnabled(boolean newEnabled) {
+        enabled = newEnabled;
+    }
+
+    /**
+     * Starts a timer with the specified name. The elapsed time is recorded
+     * when the timer is stopped or closed. If instrumentation is disabled,
+     * a no-op timer is returned.
+     *
+     * @param name the name of the timer
+     * @return a running timer
+     */
+    public static Timer start(String name) {
+        return enabled ? new Timer(name) : Timer.DISABLED;
+    }
+
+    /**
+     * Increments the named counter by one.
+     *
+     * @param name the name of the counter
+     */
+    public static void increment(String name) {
+        add(name, 1);
+    }
+
+    /**
+     * Adds the specified amount to the named counter.
+     *
+     * @param name the name of the counter
+     * @param amount the amount to add
+     */
+    public static void add(String name, long amount) {
+        if (enabled) {
+            counters.computeIfAbsent(name, key -> new LongAdder()).
+                    add(amount);
+        }
+    }
+
+    /**
+     * Records a timing measurement directly.
+     *
+     * @param name the name of the timer
+     * @param nanos the elapsed time in nanoseconds
+     * @param allocatedBytes the number of bytes allocated, or a negative
+     * number if unknown
+     */
+    public static void record(String name, long nanos, long allocatedBytes) {
+        if (enabled) {
+            histograms.computeIfAbsent(name, key -> new Histogram()).
+                    record(nanos, allocatedBytes);
+        }
+    }
+
+    /**
+     * Discards all recorded results.
+     */
+    public static void reset() {
+        histograms.clear();
+        counters.clear();
+    }
+
+    /**
+     * Returns the current values of all the counters.
+     *
+     * @return a map of counter names to values, sorted by name
+     */
+    public static Map<String, Long> getCounters() {
+        final Map<String, Long> result = new TreeMap<>();
+        counters.forEach((name, adder) -> result.put(name, adder.sum()));
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Returns the statistics for all the timers.
+     *
+     * @return a map of timer names to statistics, sorted by name
+     */
+    public static Map<String, TimerStatistics> getTimers() {
+        final Map<String, TimerStatistics> result = new TreeMap<>();
+        histograms.forEach((name, histogram) ->
+                result.put(name, histogram.getStatistics()));
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Returns a human-readable report of the recorded results.
+     *
+     * @return a report of the recorded results
+     */
+    public static String getReport() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ENGLISH,
+                "%-36s %8s %10s %10s %10s %10s %12s%n", "Timer", "Count",
+                "Mean (ms)", "p50 (ms)", "p99 (ms)", "Max (ms)",
+                "Alloc (kB)"));
+        getTimers().forEach((name, stats) ->
+                sb.append(String.format(Locale.ENGLISH,
+                        "%-36s %8d %10.3f %10.3f %10.3f %10.3f %12s%n",
+                        name, stats.getCount(), stats.getMeanMillis(),
+                        stats.getPercentileMillis(0.5),
+                        stats.getPercentileMillis(0.99),
+                        stats.getMaxMillis(),
+                        stats.getAllocatedBytes() < 0 ? "-" :
+                                Long.toString(stats.getAllocatedBytes()
+                                        / 1024))));
+        final Map<String, Long> counterValues = getCounters();
+        if (!counterValues.isEmpty()) {
+            sb.append(String.format(Locale.ENGLISH, "%n%-36s %8s%n",
+                    "Counter", "Value"));
+            counterValues.forEach((name, value) ->
+                    sb.append(String.format(Locale.ENGLISH, "%-36s %8d%n",
+                            name, value)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes the recorded results to a file in JSON format. The file
+     * contains an object with two members: {@code timers}, mapping timer
+     * names to their statistics, and {@code counters}, mapping counter
+     * names to their values. Times are in nanoseconds.
+     *
+     * @param file the file to write
+     * @throws IOException if an error occurs while writing the file
+     */
+    public static void writeReport(File file) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file.toPath(),
+                StandardCharsets.UTF_8)) {
+            writer.write(toJson());
+        }
+    }
+
+    static String toJson() {
+        final StringBuilder sb = new StringBuilder("{\n  \"timers\": {");
+        String separator = "\n";
+        for (Map.Entry<String, TimerStatistics> entry:
+                getTimers().entrySet()) {
+            final TimerStatistics stats = entry.getValue();
+            sb.append(separator).append("    ").
+                    append(jsonString(entry.getKey())).
+                    append(String.format(Locale.ENGLISH,
+                            ": {\"count\": %d, \"totalNanos\": %d, "
+                            + "\"maxNanos\": %d, \"p50Nanos\": %d, "
+                            + "\"p99Nanos\": %d, \"allocatedBytes\": %d}",
+                            stats.getCount(), stats.getTotalNanos(),
+                            stats.getMaxNanos(),
+                            stats.getPercentileNanos(0.5),
+                            stats.getPercentileNanos(0.99),
+                            stats.getAllocatedBytes()));
+            separator = ",\n";
+        }
+        sb.append("\n  },\n  \"counters\": {");
+        separator = "\n";
+        for (Map.Entry<String, Long> entry: getCounters().entrySet()) {
+            sb.append(separator).append("    ").
+                    append(jsonString(entry.getKey())).append(": ").
+                    append(entry.getValue());
+            separator = ",\n";
+        }
+        sb.append("\n  }\n}\n");
+        return sb.toString();
+    }
+
+    private static String jsonString(String s) {
+        final StringBuilder sb = new StringBuilder("\"");
+        for (char c: s.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format(Locale.ENGLISH, "\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Registers an MBean which exposes the recorded results through JMX,
+     * under the name {@link #OBJECT_NAME}. Calling this method more than
+     * once has no further effect. Errors are logged rather than thrown,
+     * since the MBean is not essential to PuffinPlot's operation.
+     */
+    public static synchronized void registerMBean() {
+        if (mbeanRegistered) {
+            return;
+        }
+        try {
+            final MBeanServer server =
+                    ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new MetricsMBeanImpl(), name);
+            }
+            mbeanRegistered = true;
+        } catch (JMException | SecurityException ex) {
+            LOGGER.log(Level.WARNING, "Error registering metrics MBean", ex);
+        }
+    }
+
+    /**
+     * Starts writing the report to the log at regular intervals. Any
+     * previously started periodic logging is stopped first. Reports are
+     * only logged while instrumentation is enabled.
+     *
+     * @param period the interval between reports
+     * @param unit the time unit of the interval
+     */
+    public static synchronized void startPeriodicLogging(long period,
+            TimeUnit unit) {
+        stopPeriodicLogging();
+        loggingExecutor = Executors.newSingleThreadScheduledExecutor(
+                runnable -> {
+                    final Thread thread =
+                            new Thread(runnable, "PuffinPlot metrics");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        loggingExecutor.scheduleAtFixedRate(() -> {
+            if (enabled) {
+                LOGGER.info("Performance metrics:\n" + getReport());
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Stops periodic logging of the report, if it is running.
+     */
+    public static synchronized void stopPeriodicLogging() {
+        if (loggingExecutor != null) {
+            loggingExecutor.shutdownNow();
+            loggingExecutor = null;
+        }
+    }
+
+    private static long currentThreadAllocatedBytes() {
+        return THREAD_BEAN == null ? -1 :
+                THREAD_BEAN.getThreadAllocatedBytes(
+                        Thread.currentThread().getId());
+    }
+
+    /**
+     * A running timer. A timer records its measurement once, when it is
+     * first stopped or closed. Timers are not thread-safe, and should be
+     * stopped on the thread which started them for the allocation estimate
+     * to be meaningful.
+     */
+    public static final class Timer implements AutoCloseable {
+
+        private static final Timer DISABLED = new Timer();
+
+        private final String name;
+        private final long startNanos;
+        private final long startAllocatedBytes;
+        private final Thread thread;
+        private boolean stopped;
+
+        private Timer() {
+            name = null;
+            startNanos = 0;
+            startAllocatedBytes = -1;
+            thread = null;
+            stopped = true;
+        }
+
+        private Timer(String name) {
+            this.name = name;
+            thread = Thread.currentThread();
+            startAllocatedBytes = currentThreadAllocatedBytes();
+            startNanos = System.nanoTime();
+        }
+
+        /**
+         * Stops this timer and records the elapsed time. Calls after the
+         * first have no effect.
+         */
+        public void stop() {
+            if (stopped) {
+                return;
+            }
+            stopped = true;
+            final long nanos = System.nanoTime() - startNanos;
+            long allocated = -1;
+            if (startAllocatedBytes >= 0 && thread == Thread.currentThread()) {
+                allocated = currentThreadAllocatedBytes() - startAllocatedBytes;
+            }
+            histograms.computeIfAbsent(name, key -> new Histogram()).
+                    record(nanos, allocated);
+        }
+
+        @Override
+        public void close() {
+            stop();
+        }
+    }
+
+    /**
+     * A snapshot of the statistics for a timer.
+     */
+    public static final class TimerStatistics {
+
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long allocatedBytes;
+        private final long[] buckets;
+
+        private TimerStatistics(long count, long totalNanos, long maxNanos,
+                long allocatedBytes, long[] buckets) {
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.buckets = buckets;
+        }
+
+        /**
+         * @return the number of recorded measurements
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the total of the recorded times in nanoseconds
+         */
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        /**
+         * @return the longest recorded time in nanoseconds
+         */
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        /**
+         * @return the longest recorded time in milliseconds
+         */
+        public double getMaxMillis() {
+            return maxNanos / 1e6;
+        }
+
+        /**
+         * @return the mean recorded time in milliseconds, or 0 if there are
+         * no measurements
+         */
+        public double getMeanMillis() {
+            return count == 0 ? 0 : totalNanos / 1e6 / count;
+        }
+
+        /**
+         * Returns the total number of bytes allocated during the timed
+         * operations, or -1 if allocations could not be measured. This is
+         * an estimate: it only includes allocations made by the thread
+         * which started each timer.
+         *
+         * @return the total number of bytes allocated, or -1 if unknown
+         */
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        /**
+         * Returns an estimate of the specified percentile of the recorded
+         * times. Times are grouped into buckets whose bounds are powers of
+         * two, so the estimate may be up to twice the true value.
+         *
+         * @param fraction the percentile as a fraction between 0 and 1
+         * @return an estimate of the percentile in nanoseconds
+         */
+        public long getPercentileNanos(double fraction) {
+            if (count == 0) {
+                return 0;
+            }
+            final long target = Math.max(1, (long) Math.ceil(fraction * count));
+            long cumulative = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                cumulative += buckets[i];
+                if (cumulative >= target) {
+                    final long upperBound =
+                            i >= 62 ? Long.MAX_VALUE : (2L << i) - 1;
+                    return Math.min(upperBound, maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+
+        /**
+         * Returns an estimate of the specified percentile of the recorded
+         * times in milliseconds.
+         *
+         * @param fraction the percentile as a fraction between 0 and 1
+         * @return an estimate of the percentile in milliseconds
+         * @see #getPercentileNanos(double)
+         */
+        public double getPercentileMillis(double fraction) {
+            return getPercentileNanos(fraction) / 1e6;
+        }
+    }
+
+    /**
+     * A thread-safe latency histogram with power-of-two buckets. Bucket
+     * {@code i} holds times in the range [2<sup>i</sup>,
+     * 2<sup>i+1</sup>) nanoseconds.
+     */
+    private static final class Histogram {
+
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final LongAdder allocatedBytes = new LongAdder();
+        private volatile boolean allocationUnknown = false;
+
+        void record(long nanos, long allocated) {
+            final long clamped = Math.max(nanos, 1);
+            buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(clamped));
+            count.increment();
+            totalNanos.add(clamped);
+            maxNanos.accumulateAndGet(clamped, Math::max);
+            if (allocated < 0) {
+                allocationUnknown = true;
+            } else {
+                allocatedBytes.add(allocated);
+            }
+        }
+
+        TimerStatistics getStatistics() {
+            final long[] bucketCounts = new long[buckets.length()];
+            for (int i = 0; i < bucketCounts.length; i++) {
+                bucketCounts[i] = buckets.get(i);
+            }
+            return new TimerStatistics(count.sum(), totalNanos.sum(),
+                    maxNanos.get(),
+                    allocationUnknown ? -1 : allocatedBytes.sum(),
+                    bucketCounts);
+        }
+    }
+
+    /**
+     * The management interface for PuffinPlot's performance metrics.
+     */
+    public interface MetricsMXBean {
+
+        /**
+         * @return {@code true} if instrumentation is enabled
+         */
+        boolean isEnabled();
+
+        /**
+         * @param enabled {@code true} to enable instrumentation
+         */
+        void setEnabled(boolean enabled);
+
+        /**
+         * @return a map of counter names to values
+         */
+        Map<String, Long> getCounters();
+
+        /**
+         * @return a map of timer names to numbers of measurements
+         */
+        Map<String, Long> getTimerCounts();
+
+        /**
+         * @return a map of timer names to mean times in milliseconds
+         */
+        Map<String, Double> getTimerMeanMillis();
+
+        /**
+         * @return a map of timer names to maximum times in milliseconds
+         */
+        Map<String, Double> getTimerMaxMillis();
+
+        /**
+         * @return a human-readable report of the recorded results
+         */
+        String getReport();
+
+        /**
+         * Discards all recorded results.
+         */
+        void reset();
+    }
+
+    private static final class MetricsMBeanImpl implements MetricsMXBean {
+
+        @Override
+        public boolean isEnabled() {
+            return Metrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) {
+            Metrics.setEnabled(enabled);
+        }
+
+        @Override
+        public Map<String, Long> getCounters() {
+            return Metrics.getCounters();
+        }
+
+        @Override
+        public Map<String, Long> getTimerCounts() {
+            final Map<String, Long> result = new TreeMap<>();
+            Metrics.getTimers().forEach((name, stats) ->
+                    result.put(name, stats.getCount()));
+            return result;
+        }
+
+        @Override
+        public Map<String, Double> getTimerMeanMillis() {
+            final Map<String, Double> result = new TreeMap<>();
+            Metrics.getTimers().forEach((name, stats) ->
+                    result.put(name, stats.getMeanMillis()));
+            return result;
+        }
+
+        @Override
+        public Map<String, Double> getTimerMaxMillis() {
+            final Map<String, Double> result = new TreeMap<>();
+            Metrics.getTimers().forEach((name, stats) ->
+                    result.put(name, stats.getMaxMillis()));
+            return result;
+        }
+
+        @Override
+        public String getReport() {
+            return Metrics.getReport();
+        }
+
+        @Override
+        public void reset() {
+            Metrics.reset();
+        }
+    }
+}
@@ -16,6 +16,7 @@
  */
 package net.talvi.puffinplot;
 
+import java.awt.Font;
 import java.awt.event.ActionEvent;
 import java.awt.event.KeyEvent;
 import java.io.File;
@@ -31,6 +32,8 @@ import javax.swing.JComboBox;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
 
 import com.itextpdf.text.DocumentException;
 import net.talvi.puffinplot.data.AmsCalculationType;
@@ -278,7 +281,8 @@ public class PuffinActions {
             KeyEvent.VK_X) {
         private static final long serialVersionUID = 1L;
         @Override public void actionPerformed(ActionEvent arg0) {
-            app.flipSelectedSamples(MeasurementAxis.X);
+            app.performEdit("Flip samples",
+                    () -> app.flipSelectedSamples(MeasurementAxis.X));
         }
     };
     
@@ -291,7 +295,8 @@ public class PuffinActions {
             KeyEvent.VK_Y) {
         private static final long serialVersionUID = 1L;
         @Override public void actionPerformed(ActionEvent arg0) {
-            app.flipSelectedSamples(MeasurementAxis.Y);
+            app.performEdit("Flip samples",
+                    () -> app.flipSelectedSamples(MeasurementAxis.Y));
         }
     };
     
@@ -304,7 +309,8 @@ public class PuffinActions {
             KeyEvent.VK_Z) {
         private static final long serialVersionUID = 1L;
         @Override public void actionPerformed(ActionEvent arg0) {
-            app.flipSelectedSamples(MeasurementAxis.Z);
+            app.performEdit("Flip samples",
+                    () -> app.flipSelectedSamples(MeasurementAxis.Z));
         }
     };
     
@@ -317,7 +323,8 @@ public class PuffinActions {
             null, false, KeyEvent.VK_I) {
         private static final long serialVersionUID = 1L;
         @Override public void actionPerformed(ActionEvent arg0) {
-            app.invertSelectedSamples();
+            app.performEdit("Invert samples",
+                    () -> app.invertSelectedSamples());
         }
     };
     
@@ -330,7 +337,7 @@ public class PuffinActions {
             + "on selected points", 'R', false, KeyEvent.VK_P) {
         private static final long serialVersionUID = 1L;
         @Override public void actionPerformed(ActionEvent e) {
-            app.doPcaOnSelection();
+            app.performEdit("Calculate PCA", () -> app.doPcaOnSelection());
         }
     };
 
@@ -349,11 +356,13 @@ public class PuffinActions {
             if (suite == null) {
                 app.errorDialog("Fisher on sample", "No suite loaded.");
             } else {
-                for (Sample s: app.getSelectedSamples()) {
-                    s.clearPca();
-                    s.calculateFisher(app.getCorrection());
-                }
-                suite.calculateSiteFishers(app.getCorrection());
+                app.performEdit("Fisher on sample", () -> {
+                    for (Sample s: app.getSelectedSamples()) {
+                        s.clearPca();
+                        s.calculateFisher(app.getCorrection());
+                    }
+                    suite.calculateSiteFishers(app.getCorrection());
+                });
                 app.getSuiteEqAreaWindow().getPlot().setGroupedBySite(true);
                 app.updateDisplay();
             }
@@ -375,7 +384,8 @@ public class PuffinActions {
                 app.errorDialog("Fisher by site", "No sites have been defined "
                         + "for this suite.");
             } else {
-                suite.calculateSiteFishers(app.getCorrection());
+                app.performEdit("Fisher by site",
+                        () -> suite.calculateSiteFishers(app.getCorrection()));
                 app.getSuiteEqAreaWindow().getPlot().setGroupedBySite(true);
                 app.updateDisplay();
             }
@@ -395,8 +405,10 @@ public class PuffinActions {
             if (suite == null) {
                 app.errorDialog("Calculate suite means", "No suite loaded.");
             } else {
-                suite.calculateSuiteMeans(app.getSelectedSamples(),
-                        app.getSelectedSites());
+                app.performEdit("Suite means",
+                        () -> suite.calculateSuiteMeans(
+                                app.getSelectedSamples(),
+                                app.getSelectedSites()));
                 app.getSuiteEqAreaWindow().getPlot().setGroupedBySite(false);
                 app.updateDisplay();
             }
@@ -410,7 +422,8 @@ public class PuffinActions {
             "Fit great circle to selected points.", 'L', false, KeyEvent.VK_G) {
         private static final long serialVersionUID = 1L;
         @Override public void actionPerformed(ActionEvent e) {
-            app.fitGreatCirclesToSelection();
+            app.performEdit("Fit great circle",
+                    () -> app.fitGreatCirclesToSelection());
         }
     };
 
@@ -422,7 +435,8 @@ public class PuffinActions {
             "Great circle analysis for site.", 'I', false, KeyEvent.VK_L) {
         private static final long serialVersionUID = 1L;
         @Override public void actionPerformed(ActionEvent e) {
-            app.calculateGreatCirclesDirections();
+            app.performEdit("Great circles",
+                    () -> app.calculateGreatCirclesDirections());
         }
     };
 
@@ -436,7 +450,8 @@ public class PuffinActions {
             KeyEvent.VK_E) {
         private static final long serialVersionUID = 1L;
         @Override public void actionPerformed(ActionEvent e) {
-            app.clearSiteCalculations();
+            app.performEdit("Clear site calculations",
+                    () -> app.clearSiteCalculations());
         }
     };
 
@@ -449,7 +464,9 @@ public class PuffinActions {
             'M', false, KeyEvent.VK_M) {
         private static final long serialVersionUID = 1L;
         @Override public void actionPerformed(ActionEvent e) {
-            for (Sample s: app.getSelectedSamples()) s.calculateMdf();
+            app.performEdit("MDF", () -> {
+                for (Sample s: app.getSelectedSamples()) s.calculateMdf();
+            });
             app.updateDisplay();
         }
     };
@@ -499,7 +516,8 @@ public class PuffinActions {
             null, false, null) {
         private static final long serialVersionUID = 1L;
         @Override public void actionPerformed(ActionEvent e) {
-            app.modifySelectedSamples(Sample::clearPca);
+            app.performEdit("Clear sample PCAs",
+                    () -> app.modifySelectedSamples(Sample::clearPca));
         }
     };
     
@@ -512,10 +530,35 @@ public class PuffinActions {
             null, false, null) {
         private static final long serialVersionUID = 1L;
         @Override public void actionPerformed(ActionEvent e) {
-            app.modifySelectedSamples(Sample::clearGreatCircle);
+            app.performEdit("Clear great circles",
+                    () -> app.modifySelectedSamples(Sample::clearGreatCircle));
         }
     };
     
+    /**
+     * Undoes the most recent edit to the current suite.
+     */
+    public final Action undo = new PuffinAction("Undo",
+            "Undo the most recent change to the current suite.",
+            'U', false, KeyEvent.VK_U) {
+        private static final long serialVersionUID = 1L;
+        @Override public void actionPerformed(ActionEvent e) {
+            app.undo();
+        }
+    };
+
+    /**
+     * Redoes the most recently undone edit to the current suite.
+     */
+    public final Action redo = new PuffinAction("Redo",
+            "Redo the most recently undone change to the current suite.",
+            'U', true, KeyEvent.VK_R) {
+        private static final long serialVersionUID = 1L;
+        @Override public void actionPerformed(ActionEvent e) {
+            app.redo();
+        }
+    };
+
     /**
      * For each selected sample, clears all calculations and deselects all
      * points.
@@ -526,7 +569,8 @@ public class PuffinActions {
             'Z', false, KeyEvent.VK_C) {
         private static final long serialVersionUID = 1L;
         @Override public void actionPerformed(ActionEvent e) {
-            app.modifySelectedSamples(Sample::clearCalculations);
+            app.performEdit("Clear sample calculations",
+                    () -> app.modifySelectedSamples(Sample::clearCalculations));
         }
     };
     
@@ -538,9 +582,11 @@ public class PuffinActions {
             false, KeyEvent.VK_A) {
         private static final long serialVersionUID = 1L;
         @Override public void actionPerformed(ActionEvent e) {
-            for (Sample s: app.getSelectedSamples()) {
-                s.selectVisible();
-            }
+            app.performEdit("Select all steps", () -> {
+                for (Sample s: app.getSelectedSamples()) {
+                    s.selectVisible();
+                }
+            });
             app.updateDisplay();
         }
     };
@@ -554,7 +600,9 @@ public class PuffinActions {
             KeyEvent.VK_E) {
         private static final long serialVersionUID = 1L;
         @Override public void actionPerformed(ActionEvent e) {
-            for (Sample s: app.getSelectedSamples()) s.selectNone();
+            app.performEdit("Clear step selection", () -> {
+                for (Sample s: app.getSelectedSamples()) s.selectNone();
+            });
                 app.updateDisplay();
         }
     };
@@ -581,7 +629,8 @@ public class PuffinActions {
             'K', false, KeyEvent.VK_P) {
         private static final long serialVersionUID = 1L;
                 @Override public void actionPerformed(ActionEvent e) {
-                    app.pasteStepSelection(); }};
+                    app.performEdit("Paste step selection",
+                            () -> app.pasteStepSelection()); }};
 
     /**
      * For each selected sample, makes the selected points invisible.
@@ -591,8 +640,10 @@ public class PuffinActions {
             "Hide the selected treatment steps", 'G', false, KeyEvent.VK_H) {
         private static final long serialVersionUID = 1L;
         @Override public void actionPerformed(ActionEvent e) {
-            app.getSelectedSamples().forEach((s) -> {
-                s.hideAndDeselectSelectedPoints();
+            app.performEdit("Hide steps", () -> {
+                app.getSelectedSamples().forEach((s) -> {
+                    s.hideAndDeselectSelectedPoints();
+                });
             });
            app.updateDisplay();
         }
@@ -606,7 +657,9 @@ public class PuffinActions {
             'G', true, KeyEvent.VK_S) {
         private static final long serialVersionUID = 1L;
         @Override public void actionPerformed(ActionEvent e) {
-            for (Sample s : app.getSelectedSamples()) s.unhideAllPoints();
+            app.performEdit("Show all steps", () -> {
+                for (Sample s : app.getSelectedSamples()) s.unhideAllPoints();
+            });
             app.updateDisplay();
         }
     };
@@ -697,6 +750,30 @@ public class PuffinActions {
         }
     };
 
+    /**
+     * Performs a bootstrap fold test on the selected samples.
+     */
+    public final Action foldTest = new PuffinAction("Fold test",
+            "Bootstrap fold test on the selected sample directions", null,
+            false, KeyEvent.VK_O) {
+        private static final long serialVersionUID = 1L;
+        @Override public void actionPerformed(ActionEvent e) {
+            app.performFoldTest();
+        }
+    };
+
+    /**
+     * Performs a reversal or common-mean test.
+     */
+    public final Action commonMeanTest = new PuffinAction("Common-mean test",
+            "Watson V_w and bootstrap reversal or common-mean test", null,
+            false, KeyEvent.VK_V) {
+        private static final long serialVersionUID = 1L;
+        @Override public void actionPerformed(ActionEvent e) {
+            app.performCommonMeanTest();
+        }
+    };
+
     /**
      * Calculate mean directions for data in all the currently open data suites.
      */
@@ -838,6 +915,42 @@ public class PuffinActions {
         }
     };
     
+    /**
+     * Opens a save dialog allowing the current main display to be saved
+     * as a PNG file at a user-specified resolution.
+     */
+    public final Action exportPng = new PuffinAction("Export PNG…",
+            "Save current display to a PNG image at a chosen resolution",
+            null, false, KeyEvent.VK_N) {
+        private static final long serialVersionUID = 1L;
+        @Override public void actionPerformed(ActionEvent e) {
+            final String dpiString = JOptionPane.showInputDialog(
+                    "Resolution (dots per inch)", "600");
+            if (dpiString == null || "".equals(dpiString)) return;
+            double dpi = Double.NaN;
+            try {
+                dpi = Double.parseDouble(dpiString);
+            } catch (NumberFormatException ex) {
+                // handled below
+            }
+            if (!(dpi > 0)) {
+                app.errorDialog("Invalid resolution",
+                        dpiString + " is not a valid resolution.");
+                return;
+            }
+            final String pathname = app.getSavePath("Export to PNG", ".png",
+                    "Portable Network Graphics");
+            if (pathname != null) {
+                try {
+                    app.exportPng(new File(pathname), dpi);
+                } catch (PuffinUserException ex) {
+                    app.errorDialog("Error exporting PNG",
+                            ex.getLocalizedMessage());
+                }
+            }
+        }
+    };
+
     /**
      * Calculates bootstrap AMS statistics on the selected samples.
      */
@@ -943,7 +1056,8 @@ public class PuffinActions {
             null, false, KeyEvent.VK_C) {
         private static final long serialVersionUID = 1L;
         @Override public void actionPerformed(ActionEvent arg0) {
-            app.clearAmsCalcs();
+            app.performEdit("Clear AMS calculations",
+                    () -> app.clearAmsCalcs());
         }
     };
     
@@ -955,7 +1069,8 @@ public class PuffinActions {
             KeyEvent.VK_C) {
         private static final long serialVersionUID = 1L;
         @Override public void actionPerformed(ActionEvent e) {
-            app.getCurrentSuite().clearSites(app.getSelectedSamples());
+            app.performEdit("Clear sites", () -> app.getCurrentSuite().
+                    clearSites(app.getSelectedSamples()));
             app.updateDisplay();
         }
     };
@@ -972,8 +1087,8 @@ public class PuffinActions {
         @Override public void actionPerformed(ActionEvent e) {
             final String name = JOptionPane.showInputDialog("Site name");
             if (name==null || "".equals(name)) return;
-            app.getCurrentSuite().setNamedSiteForSamples(app.getSelectedSamples(),
-                    name);
+            app.performEdit("Set site name", () -> app.getCurrentSuite().
+                    setNamedSiteForSamples(app.getSelectedSamples(), name));
             app.updateDisplay();
         }
     };
@@ -992,8 +1107,10 @@ public class PuffinActions {
             final String maskSpec =
                     JOptionPane.showInputDialog("Character positions to use");
             if (maskSpec==null || "".equals(maskSpec)) return;
-            app.getCurrentSuite().setSiteNamesBySubstring(app.getSelectedSamples(),
-                    Util.numberRangeStringToBitSet(maskSpec, 256));
+            app.performEdit("Set sites from sample names",
+                    () -> app.getCurrentSuite().setSiteNamesBySubstring(
+                            app.getSelectedSamples(),
+                            Util.numberRangeStringToBitSet(maskSpec, 256)));
             app.updateDisplay();
         }
     };
@@ -1020,8 +1137,10 @@ public class PuffinActions {
                         thicknessString + " is not a number.");
             }
             if (Float.isNaN(thickness)) return;
-            app.getCurrentSuite().setSiteNamesByDepth(app.getSelectedSamples(),
-                    thickness);
+            final float sliceThickness = thickness;
+            app.performEdit("Set sites by depth",
+                    () -> app.getCurrentSuite().setSiteNamesByDepth(
+                            app.getSelectedSamples(), sliceThickness));
             app.updateDisplay();
         }
     };
@@ -1063,6 +1182,45 @@ public class PuffinActions {
         }
     };
     
+    /**
+     * Shows a report of the performance metrics collected so far, and
+     * allows them to be reset or saved to a file.
+     */
+    public final Action showPerformanceReport = new PuffinAction(
+            "Performance report…",
+            "Show timings and counts for PuffinPlot's operations.", null,
+            false, KeyEvent.VK_P) {
+        private static final long serialVersionUID = 1L;
+        @Override public void actionPerformed(ActionEvent e) {
+            final String report = Metrics.isEnabled() ||
+                    !Metrics.getTimers().isEmpty() ? Metrics.getReport() :
+                    "Performance metrics are not being collected.\n"
+                    + "They can be enabled in the preferences window.";
+            final JTextArea textArea = new JTextArea(report, 20, 100);
+            textArea.setEditable(false);
+            textArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+            final Object[] options = {"Close", "Reset", "Save…"};
+            final int choice = JOptionPane.showOptionDialog(
+                    app.getMainWindow(), new JScrollPane(textArea),
+                    "Performance report", JOptionPane.DEFAULT_OPTION,
+                    JOptionPane.PLAIN_MESSAGE, null, options, options[0]);
+            if (choice == 1) {
+                Metrics.reset();
+            } else if (choice == 2) {
+                final String pathname = app.getSavePath(
+                        "Save performance report", ".json", "JSON");
+                if (pathname != null) {
+                    try {
+                        Metrics.writeReport(new File(pathname));
+                    } catch (IOException ex) {
+                        app.errorDialog("Error saving performance report",
+                                ex.getLocalizedMessage());
+                    }
+                }
+            }
+        }
+    };
+
     /**
      * Opens the Citation window.
      */
@@ -1214,10 +1372,12 @@ public class PuffinActions {
                     JOptionPane.OK_CANCEL_OPTION,
                     JOptionPane.PLAIN_MESSAGE);
             if (option == JOptionPane.OK_OPTION) {
-                app.getCurrentSuite().removeSamplesByTreatmentType(
-                        app.getSelectedSamples(),
-                        TreatmentType.values()[comboBox.getSelectedIndex()]
-                );
+                final Suite suite = app.getCurrentSuite();
+                suite.getHistory().run("Remove samples by treatment type",
+                        () -> suite.removeSamplesByTreatmentType(
+                                app.getSelectedSamples(),
+                                TreatmentType.values()[
+                                        comboBox.getSelectedIndex()]));
                 app.getMainWindow().suitesChanged();
             }
         }
@@ -1232,8 +1392,9 @@ public class PuffinActions {
             null, false, KeyEvent.VK_M) {
         private static final long serialVersionUID = 1L;
         @Override public void actionPerformed(ActionEvent e) {
-            app.getCurrentSuite().mergeDuplicateTreatmentSteps(
-                    app.getSelectedSamples());
+            app.performEdit("Merge duplicate steps",
+                    () -> app.getCurrentSuite().mergeDuplicateTreatmentSteps(
+                            app.getSelectedSamples()));
             app.updateDisplay();
         }
     };
@@ -1248,8 +1409,15 @@ public class PuffinActions {
             null, false, KeyEvent.VK_M) {
         private static final long serialVersionUID = 1L;
         @Override public void actionPerformed(ActionEvent e) {
-            app.getCurrentSuite().mergeDuplicateSamples(app.getSelectedSamples());
-            app.updateDisplay();
+            final Suite suite = app.getCurrentSuite();
+            final Suite.MergeReport[] report = new Suite.MergeReport[1];
+            suite.getHistory().run("Merge duplicate samples",
+                    () -> report[0] = suite.mergeDuplicateSamples(
+                            app.getSelectedSamples()));
+            app.getMainWindow().suitesChanged();
+            JOptionPane.showMessageDialog(app.getMainWindow(),
+                    report[0].toString(), "Merge duplicate samples",
+                    JOptionPane.INFORMATION_MESSAGE);
         }
     };
     
@@ -26,20 +26,25 @@ import java.awt.print.PageFormat;
 import java.awt.print.Printable;
 import java.awt.print.PrinterException;
 import java.awt.print.PrinterJob;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.NoSuchAlgorithmException;
@@ -47,10 +52,17 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -67,6 +79,9 @@ import javax.swing.JCheckBox;
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
 import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
 
 import com.itextpdf.awt.DefaultFontMapper;
 import com.itextpdf.text.DocumentException;
@@ -78,16 +93,20 @@ import java.util.Optional;
 import java.util.stream.Stream;
 import javax.swing.JComboBox;
 import net.talvi.puffinplot.data.AmsCalculationType;
+import net.talvi.puffinplot.data.CommonMeanTest;
 import net.talvi.puffinplot.data.Correction;
 import net.talvi.puffinplot.data.CsvWriter;
 import net.talvi.puffinplot.data.FileType;
+import net.talvi.puffinplot.data.FoldTest;
 import net.talvi.puffinplot.data.MeasurementAxis;
 import net.talvi.puffinplot.data.Sample;
 import net.talvi.puffinplot.data.Site;
 import net.talvi.puffinplot.data.Suite;
 import net.talvi.puffinplot.data.SuiteCalcs;
+import net.talvi.puffinplot.data.SuiteJournal;
 import net.talvi.puffinplot.data.SuiteRpiEstimate;
 import net.talvi.puffinplot.data.TreatmentType;
+import net.talvi.puffinplot.data.Vec3;
 import net.talvi.puffinplot.data.file.FileFormat;
 import net.talvi.puffinplot.plots.SampleClickListener;
 import net.talvi.puffinplot.plots.SampleParamsTable;
@@ -100,6 +119,7 @@ import net.talvi.puffinplot.window.ImportAmsDialog;
 import net.talvi.puffinplot.window.MainGraphDisplay;
 import net.talvi.puffinplot.window.MainWindow;
 import net.talvi.puffinplot.plots.PlotParams;
+import net.talvi.puffinplot.plots.PlotRenderer;
 import net.talvi.puffinplot.window.PrefsWindow;
 import net.talvi.puffinplot.window.ProgressDialog;
 import net.talvi.puffinplot.window.SiteMeanWindow;
@@ -129,9 +149,34 @@ public class PuffinApp {
     private static final ByteArrayOutputStream LOG_STREAM =
             new ByteArrayOutputStream();
     private static final MemoryHandler LOG_MEMORY_HANDLER;
+    
+    /**
+     * The name of the preference which enables performance metrics.
+     */
+    public static final String METRICS_PREFERENCE =
+            "performance.collectMetrics";
+    private static final long METRICS_LOG_INTERVAL_MINUTES = 10;
+
+    /**
+     * The name of the preference which enables journalling of unsaved
+     * changes.
+     */
+    public static final String JOURNAL_PREFERENCE = "data.journalEdits";
+
+    /**
+     * The name of the preference which enables adaptive rendering quality
+     * in the main graph display.
+     *
+     * @see net.talvi.puffinplot.window.GraphDisplay#setAdaptiveRendering(boolean)
+     */
+    public static final String ADAPTIVE_RENDERING_PREFERENCE =
+            "display.adaptiveRendering";
+    private static final int JOURNAL_COMPACTION_INTERVAL_MS = 5 * 60 * 1000;
 
     private final PuffinActions actions;
     private final List<Suite> suites = new ArrayList<>();
+    private final Map<Suite, SuiteJournal> journals = new HashMap<>();
+    private boolean journalingEnabled;
     private Suite currentSuite;
     private PageFormat currentPageFormat;
     private final MainGraphDisplay mainGraphDisplay;
@@ -152,6 +197,9 @@ public class PuffinApp {
     private ScriptEngine pythonEngine = null;
     private final Version version;
     private SuiteRpiEstimate rpis = null;
+    private final DisplayUpdateScheduler displayUpdateScheduler =
+            new DisplayUpdateScheduler(this::updateViews,
+                    DisplayUpdateScheduler.DEFAULT_FRAME_INTERVAL);
 
     
     /*
@@ -160,8 +208,8 @@ public class PuffinApp {
      * program. Inkscape has persistent save directories and I've found it to be
      * very counterintuitive.
      */
-    private final java.util.Map<String,String> lastUsedSaveDirectories =
-            new java.util.HashMap<>();
+    private final Map<String,String> lastUsedSaveDirectories =
+            new HashMap<>();
 
     static {
         final Handler logStringHandler =
@@ -181,7 +229,10 @@ public class PuffinApp {
             final Suite suite = getCurrentSuite();
             getCurrentSuite().setCurrentSampleIndex(suite.getIndexBySample(sample));
             getMainWindow().getSampleChooser().updateValueFromSuite();
-            updateDisplay();
+            updateDisplay(DisplayUpdateScheduler.View.SAMPLE,
+                    DisplayUpdateScheduler.View.TABLE,
+                    DisplayUpdateScheduler.View.SITE,
+                    DisplayUpdateScheduler.View.SUITE);
         }
     }
     
@@ -199,6 +250,11 @@ public class PuffinApp {
         version = Version.fromGitProperties(key -> getBuildProperty(key));
         
         prefs = new PuffinPrefs(this);
+        if (prefs.getSettings().getBoolean(METRICS_PREFERENCE, false)) {
+            setMetricsEnabled(true);
+        }
+        journalingEnabled =
+                prefs.getSettings().getBoolean(JOURNAL_PREFERENCE, false);
         lastUsedFileOpenDirs = new IdToFileMap(
                 key -> prefs.getPrefs().get(key, ""),
                 prefs.getPrefs()::put);
@@ -246,12 +302,12 @@ public class PuffinApp {
 
             @Override
             public String getSetting(String key, String def) {
-                return PuffinApp.this.getPrefs().getPrefs().get(key, def);
+                return PuffinApp.this.getPrefs().getSettings().get(key, def);
             }
 
             @Override
             public boolean getSettingBoolean(String key, boolean def) {
-                return PuffinApp.this.getPrefs().getPrefs().
+                return PuffinApp.this.getPrefs().getSettings().
                         getBoolean(key, def);
             }
 
@@ -271,6 +327,8 @@ public class PuffinApp {
          */
         mainWindow = MainWindow.getInstance(this);
         mainGraphDisplay = mainWindow.getGraphDisplay();
+        mainGraphDisplay.setAdaptiveRendering(prefs.getSettings().
+                getBoolean(ADAPTIVE_RENDERING_PREFERENCE, true));
         setApplicationIcon();
         Correction corr = Correction.fromString(
                 prefs.getPrefs().get("correction", "false false NONE false"));
@@ -308,6 +366,9 @@ public class PuffinApp {
         mainGraphDisplay.getPlotByClass(VgpTable.class).
                 addSampleClickListener(scListener);
         mainWindow.getMainMenuBar().updateRecentFiles();
+        final Timer compactionTimer = new Timer(
+                JOURNAL_COMPACTION_INTERVAL_MS, event -> compactJournals());
+        compactionTimer.start();
         LOGGER.info("PuffinApp instantiation complete.");
     }
     
@@ -531,14 +592,54 @@ public class PuffinApp {
     }
     
     /**
-     * Updates the main window and table window to reflect any changes in
-     * the currently displayed data.
+     * Updates all the windows to reflect any changes in the currently
+     * displayed data. On the event dispatch thread, the update is carried
+     * out before this method returns, together with any scheduled updates.
+     * On other threads, or if called during an update, it is scheduled
+     * on the event dispatch thread instead.
+     * 
+     * @see DisplayUpdateScheduler
      */
     public void updateDisplay() {
-        getMainWindow().sampleChanged();
-        getTableWindow().dataChanged();
-        getSiteEqAreaWindow().repaint(100);
-        getSuiteEqAreaWindow().repaint(100);
+        displayUpdateScheduler.requestFullUpdate();
+        if (SwingUtilities.isEventDispatchThread()) {
+            displayUpdateScheduler.flush();
+        }
+    }
+    
+    /**
+     * Updates the specified views to reflect changes in the currently
+     * displayed data. Unlike {@link #updateDisplay()}, this always
+     * schedules the update rather than performing it immediately, so that
+     * a burst of requests (for example, from scrolling through a suite)
+     * produces a single update. A change of current sample should include
+     * the site and suite views, since their plots highlight the current
+     * sample.
+     * 
+     * @param first a view to update
+     * @param rest any further views to update
+     */
+    public void updateDisplay(DisplayUpdateScheduler.View first,
+            DisplayUpdateScheduler.View... rest) {
+        displayUpdateScheduler.requestUpdate(first, rest);
+    }
+    
+    private void updateViews(Set<DisplayUpdateScheduler.View> views) {
+        if (getMainWindow() == null) {
+            return;
+        }
+        if (views.contains(DisplayUpdateScheduler.View.SAMPLE)) {
+            getMainWindow().sampleChanged();
+        }
+        if (views.contains(DisplayUpdateScheduler.View.TABLE)) {
+            getTableWindow().dataChanged();
+        }
+        if (views.contains(DisplayUpdateScheduler.View.SITE)) {
+            getSiteEqAreaWindow().repaint(100);
+        }
+        if (views.contains(DisplayUpdateScheduler.View.SUITE)) {
+            getSuiteEqAreaWindow().repaint(100);
+        }
     }
 
     private boolean canSuiteBeClosed(Suite suite) {
@@ -561,6 +662,8 @@ public class PuffinApp {
                     buttons[2]); // default option
             if (choice==0) { // "Save changes" chosen
                 save(suite);
+            } else if (choice==1 && journals.containsKey(suite)) {
+                journals.remove(suite).discard();
             }
             return choice != 2; // can close unless "Don't close" chosen
         }
@@ -578,6 +681,7 @@ public class PuffinApp {
             return;
         }
         suites.remove(currentSuite);
+        stopJournal(currentSuite);
         /*
          * Set new current suite to previous (if any), else next (if any), or
          * none.
@@ -604,6 +708,8 @@ public class PuffinApp {
             updateMainWindowTitle();
         });
         suites.add(suite);
+        startJournal(suite);
+        suite.getHistory(); // start recording undo history
         currentSuite = suites.get(suites.size()-1);
         mainWindow.getMainMenuBar().updateRecentFiles();
         mainWindow.updateSampleDataPanel();
@@ -652,8 +758,8 @@ public class PuffinApp {
             }
 
             FileFormat format = null;
-            final java.util.Map<String, Object> importOptions =
-                    new java.util.HashMap<>();
+            final Map<String, Object> importOptions =
+                    new HashMap<>();
             switch (fileType) {
                 case CUSTOM_TABULAR:
                     final TabularImportWindow tabularDialog =
@@ -702,16 +808,69 @@ public class PuffinApp {
             }
             
             final Suite suite;
+            final List<String> warnings;
+            boolean snapshotRead = false;
             if (reallyCreateNewSuite) {
                 suite = new Suite("PuffinPlot " + version.getVersionString());
                 suite.addSavedListener(newState -> updateMainWindowTitle());
+                /*
+                 * Unsaved changes to a PuffinPlot file may have been
+                 * compacted into a snapshot, which then stands in for the
+                 * file until the journal is replayed.
+                 */
+                final File recoveryFile = journalingEnabled
+                        && files.size() == 1
+                        && fileType == FileType.PUFFINPLOT_NEW
+                        ? SuiteJournal.getRecoveryFile(files.get(0))
+                        : null;
+                if (recoveryFile != null
+                        && !recoveryFile.equals(files.get(0))) {
+                    warnings = suite.readFiles(
+                            Collections.singletonList(recoveryFile),
+                            fileType, importOptions);
+                    suite.setPuffinFile(files.get(0));
+                    snapshotRead = true;
+                } else {
+                    warnings = suite.readFiles(files, fileType,
+                            importOptions);
+                }
             } else {
                 suite = getCurrentSuite();
+                warnings = new ArrayList<>();
+                try {
+                    suite.getHistory().run("Import data", () -> {
+                        try {
+                            warnings.addAll(suite.readFiles(files, fileType,
+                                    importOptions));
+                        } catch (IOException ex) {
+                            throw new UncheckedIOException(ex);
+                        }
+                    });
+                } catch (UncheckedIOException ex) {
+                    throw ex.getCause();
+                }
+            }
+            int journalRecords = 0;
+            /*
+             * A journal is only kept, and so only deleted on saving, while
+             * journalling is enabled. Replaying with journalling disabled
+             * would reapply the same stale edits at every opening.
+             */
+            if (reallyCreateNewSuite && journalingEnabled) {
+                try {
+                    journalRecords = SuiteJournal.replay(suite);
+                } catch (IOException ex) {
+                    warnings.add("The journal of unsaved changes could not "
+                            + "be read: " + ex.getLocalizedMessage());
+                }
+            }
+            if (reallyCreateNewSuite) {
+                suite.doAllCalculationsUsingCache(getCorrection(),
+                        getGreatCirclesValidityCondition());
+            } else {
+                suite.doAllCalculations(getCorrection(),
+                        getGreatCirclesValidityCondition());
             }
-            final List<String> warnings =
-                    suite.readFiles(files, fileType, importOptions);
-            suite.doAllCalculations(getCorrection(),
-                    getGreatCirclesValidityCondition());
             if (warnings.size() > 0) {
                 final StringBuilder sb =
                         new StringBuilder(warnings.size() == 1 ? "" :
@@ -749,6 +908,12 @@ public class PuffinApp {
             } else {
                 if (reallyCreateNewSuite) {
                     suites.add(suite);
+                    startJournal(suite);
+                    /*
+                     * Start recording only now, so that loading the file
+                     * is not itself an undoable edit.
+                     */
+                    suite.getHistory().clear();
                 }
             }
             if (suites.size() > 0 && reallyCreateNewSuite) {
@@ -758,9 +923,11 @@ public class PuffinApp {
             /*
              * A newly created suite is of course unmodified. If on the other
              * hand we have appended data to an existing suite, it *is* now
-             * modified.
+             * modified. Any changes read from a snapshot or replayed from
+             * the journal have also not yet been saved.
              */
-            suite.setSaved(reallyCreateNewSuite);
+            suite.setSaved(reallyCreateNewSuite && !snapshotRead
+                    && journalRecords == 0);
         } catch (FileNotFoundException e) {
             errorDialog("File not found", e.getMessage());
         } catch (IOException e) {
@@ -952,6 +1119,56 @@ public class PuffinApp {
         updateDisplay();
     }
 
+    /**
+     * Performs an action as a single undoable edit to the current suite.
+     * If no suite is loaded, the action is simply performed.
+     *
+     * @param description a short description of the edit, suitable for
+     * display in a menu
+     * @param action the action to perform
+     */
+    public void performEdit(String description, Runnable action) {
+        final Suite suite = getCurrentSuite();
+        if (suite == null) {
+            action.run();
+        } else {
+            suite.getHistory().run(description, action);
+        }
+    }
+
+    /**
+     * Undoes the most recent edit to the current suite, then recalculates
+     * the site means and updates the display.
+     */
+    public void undo() {
+        final Suite suite = getCurrentSuite();
+        if (suite == null || !suite.getHistory().canUndo()) {
+            return;
+        }
+        suite.getHistory().undo();
+        historyChanged(suite);
+    }
+
+    /**
+     * Redoes the most recently undone edit to the current suite, then
+     * recalculates the site means and updates the display.
+     */
+    public void redo() {
+        final Suite suite = getCurrentSuite();
+        if (suite == null || !suite.getHistory().canRedo()) {
+            return;
+        }
+        suite.getHistory().redo();
+        historyChanged(suite);
+    }
+
+    private void historyChanged(Suite suite) {
+        suite.doSiteCalculations(getCorrection(),
+                getGreatCirclesValidityCondition());
+        getMainWindow().suitesChanged();
+        updateDisplay();
+    }
+
     /**
      * Returns the site for which data is currently being displayed.
      *
@@ -1005,6 +1222,7 @@ public class PuffinApp {
         for (Suite suite: getSuites()) {
             if (!canSuiteBeClosed(suite)) return;
         }
+        journals.values().forEach(SuiteJournal::close);
         getPrefs().save();
         System.exit(0);
     }
@@ -1017,6 +1235,65 @@ public class PuffinApp {
         aboutBox.setLocationRelativeTo(getMainWindow());
         aboutBox.setVisible(true);
     }
+    
+    /**
+     * Enables or disables collection of performance metrics. When metrics
+     * are enabled, they are also made available through JMX and
+     * periodically written to the log.
+     *
+     * @param enabled {@code true} to collect performance metrics
+     * @see Metrics
+     */
+    public void setMetricsEnabled(boolean enabled) {
+        Metrics.setEnabled(enabled);
+        if (enabled) {
+            Metrics.registerMBean();
+            Metrics.startPeriodicLogging(METRICS_LOG_INTERVAL_MINUTES,
+                    TimeUnit.MINUTES);
+        } else {
+            Metrics.stopPeriodicLogging();
+        }
+    }
+
+    /**
+     * Enables or disables journalling of unsaved changes for all open
+     * suites and for suites opened subsequently.
+     *
+     * @param enabled {@code true} to journal unsaved changes
+     * @see SuiteJournal
+     */
+    public void setJournalingEnabled(boolean enabled) {
+        journalingEnabled = enabled;
+        if (enabled) {
+            suites.forEach(this::startJournal);
+        } else {
+            journals.values().forEach(SuiteJournal::close);
+            journals.clear();
+        }
+    }
+
+    private void startJournal(Suite suite) {
+        if (journalingEnabled && !journals.containsKey(suite)) {
+            journals.put(suite, new SuiteJournal(suite));
+        }
+    }
+
+    private void stopJournal(Suite suite) {
+        final SuiteJournal journal = journals.remove(suite);
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    private void compactJournals() {
+        for (SuiteJournal journal: journals.values()) {
+            try {
+                journal.compactIfNeeded();
+            } catch (PuffinUserException ex) {
+                LOGGER.log(Level.WARNING, "Could not compact journal", ex);
+            }
+        }
+    }
 
     /**
      * Opens the preferences window.
@@ -1404,7 +1681,8 @@ public class PuffinApp {
         }
         try {
             final double factor = Double.parseDouble(factorString);
-            getCurrentSuite().rescaleMagSus(factor);
+            performEdit("Rescale magnetic susceptibility",
+                    () -> getCurrentSuite().rescaleMagSus(factor));
         } catch (NumberFormatException exception) {
             errorDialog("Input error", "That didn't look like a number.");
         }
@@ -1436,6 +1714,88 @@ public class PuffinApp {
         updateDisplay();
     }
     
+    /**
+     * Creates a headless renderer for the main display's plots, with the
+     * current sample, selection, correction, plot layout, and settings.
+     * The renderer is independent of the user interface, so it can be
+     * used from any thread.
+     *
+     * @return a renderer for the main display's plots, or {@code null}
+     * if there is no current sample
+     */
+    public PlotRenderer createPlotRenderer() {
+        final Sample sample = getCurrentSample();
+        if (sample == null) {
+            return null;
+        }
+        final MainGraphDisplay display = getMainWindow().getGraphDisplay();
+        final Dimension size = display.getMaximumSize();
+        return PlotRenderer.builder(sample)
+                .selectedSamples(getSelectedSamples())
+                .selectedSites(getSelectedSites())
+                .correction(getCorrection())
+                .zplotAxes(plotParams.getVprojXaxis(),
+                        plotParams.getHprojXaxis(),
+                        plotParams.getHprojYaxis())
+                .layout(display.getPlotSizeString())
+                .settings(getPrefs().getSettings())
+                .rpiEstimate(rpis)
+                .unitSize(plotParams.getUnitSize())
+                .size(size.width, size.height)
+                .build();
+    }
+
+    /**
+     * Writes the plots in the main display, with the current layout, to a
+     * PNG file. The file is written in the background while a progress
+     * dialog is shown; this method returns when the export is complete or
+     * has been cancelled. A cancelled export leaves no file behind.
+     *
+     * @param pngFile the PNG file to which to write the plots
+     * @param dpi the resolution of the image in dots per inch
+     * @throws PuffinUserException if there is no current sample or an
+     * error occurred while writing the file
+     */
+    public void exportPng(File pngFile, double dpi)
+            throws PuffinUserException {
+        final PlotRenderer renderer = createPlotRenderer();
+        if (renderer == null) {
+            throw new PuffinUserException("There is no sample to export.");
+        }
+        final SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws IOException {
+                try (OutputStream stream = new BufferedOutputStream(
+                        new FileOutputStream(pngFile))) {
+                    renderer.writePng(stream, dpi,
+                            fraction -> setProgress((int) (100 * fraction)));
+                } catch (InterruptedIOException ex) {
+                    Files.deleteIfExists(pngFile.toPath());
+                    throw ex;
+                }
+                return null;
+            }
+        };
+        ProgressDialog.showDialog("Exporting PNG", getMainWindow(), worker);
+        /*
+         * The progress dialog is modal, so this will block until the
+         * export is complete or cancelled.
+         */
+        if (worker.isCancelled()) {
+            return;
+        }
+        try {
+            worker.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw new PuffinUserException((IOException) ex.getCause());
+            }
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
     /**
      * Writes a PDF file containing data plots with the current layout
      * for all selected samples. One page is produced per selected sample.
@@ -1541,6 +1901,169 @@ public class PuffinApp {
          */
     }
     
+    /**
+     * Performs a calculation on a background thread while showing a
+     * progress dialog. The dialog is modal, so this method only returns
+     * when the calculation is finished or cancelled, but the windows
+     * continue to respond while it runs. A cancelled calculation may
+     * run on to completion in the background, but its result is
+     * discarded.
+     *
+     * @param <T> the type of the result
+     * @param title the title for the progress dialog
+     * @param calculation the calculation to perform
+     * @return the result of the calculation, or {@code null} if it was
+     * cancelled
+     * @throws RuntimeException if the calculation threw one
+     */
+    private <T> T calculateInBackground(String title,
+            Supplier<T> calculation) {
+        final AtomicReference<T> result = new AtomicReference<>();
+        final SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() {
+                result.set(calculation.get());
+                return null;
+            }
+        };
+        ProgressDialog.showDialog(title, getMainWindow(), worker, true);
+        if (worker.isCancelled()) {
+            return null;
+        }
+        try {
+            worker.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            throw new RuntimeException(ex.getCause());
+        }
+        return result.get();
+    }
+
+    /**
+     * Performs a bootstrap fold test on the directions of the selected
+     * samples, using their formation orientations as the bedding, and
+     * shows the results in a dialog. The test is calculated on a background
+     * thread while a progress dialog is shown.
+     */
+    public void performFoldTest() {
+        final Correction correction = getCorrection();
+        if (!correction.includesSample()) {
+            errorDialog("Fold test", "The fold test requires geographic "
+                    + "or tectonic co-ordinates.");
+            return;
+        }
+        final FoldTest.Builder builder = FoldTest.builder();
+        for (Sample sample: getSelectedSamples()) {
+            builder.addSample(sample, correction);
+        }
+        if (builder.size() < 2) {
+            errorDialog("Fold test", "At least two selected samples need "
+                    + "a direction and a formation orientation.");
+            return;
+        }
+        final FoldTest foldTest =
+                calculateInBackground("Fold test", builder::calculate);
+        if (foldTest == null) {
+            return;
+        }
+        final StringBuilder text = new StringBuilder();
+        final List<String> headers = FoldTest.getHeaders();
+        final List<String> values = foldTest.toStrings();
+        for (int i = 0; i < headers.size(); i++) {
+            text.append(headers.get(i)).append("\t").append(values.get(i)).
+                    append("\n");
+        }
+        final JTextArea textArea = new JTextArea(text.toString());
+        textArea.setTabSize(30);
+        JOptionPane.showMessageDialog(getMainWindow(), textArea, "Fold test",
+                JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    /**
+     * Performs a reversal or common-mean test and shows the results in
+     * a dialog. The user chooses whether to test the normal against the
+     * reversed selected sample directions, the selected sample directions
+     * grouped by site, or the sample directions of all the open suites.
+     * The test is calculated on a background thread while a progress
+     * dialog is shown. The result is stored with the current suite and
+     * included when its suite means are exported.
+     */
+    public void performCommonMeanTest() {
+        if (getCurrentSuite() == null) {
+            errorDialog("Common-mean test", "No suite is loaded.");
+            return;
+        }
+        final String[] options =
+            {"Reversal", "Sites", "All suites", "Cancel"};
+        final int choice = JOptionPane.showOptionDialog(getMainWindow(),
+                "Which directions should be tested for a common mean?",
+                "Common-mean test", JOptionPane.DEFAULT_OPTION,
+                JOptionPane.QUESTION_MESSAGE, null, options, options[0]);
+        final CommonMeanTest.Builder builder;
+        switch (choice) {
+            case 0:
+                final List<Vec3> directions = new ArrayList<>();
+                for (Sample sample: getSelectedSamples()) {
+                    if (sample.getDirection() != null) {
+                        directions.add(sample.getDirection());
+                    }
+                }
+                builder = CommonMeanTest.reversalTest(directions);
+                break;
+            case 1:
+                builder = CommonMeanTest.builder().name("Sites");
+                final Set<Site> sites = new LinkedHashSet<>();
+                for (Sample sample: getSelectedSamples()) {
+                    if (sample.getSite() != null) {
+                        sites.add(sample.getSite());
+                    }
+                }
+                for (Site site: sites) {
+                    builder.addSite(site);
+                }
+                break;
+            case 2:
+                builder = CommonMeanTest.builder().name("Suites");
+                for (Suite suite: getSuites()) {
+                    builder.addSuite(suite);
+                }
+                break;
+            default:
+                return;
+        }
+        final CommonMeanTest test;
+        try {
+            test = calculateInBackground("Common-mean test",
+                    builder::calculate);
+        } catch (IllegalStateException ex) {
+            errorDialog("Common-mean test", ex.getMessage());
+            return;
+        }
+        if (test == null) {
+            return;
+        }
+        getCurrentSuite().setCommonMeanTest(test);
+        final StringBuilder text = new StringBuilder();
+        final List<String> headers = CommonMeanTest.getHeaders();
+        final List<String> values = test.toStrings();
+        for (int i = 0; i < headers.size(); i++) {
+            text.append(headers.get(i)).append("\t").append(values.get(i)).
+                    append("\n");
+        }
+        final JTextArea textArea = new JTextArea(text.toString());
+        textArea.setTabSize(30);
+        JOptionPane.showMessageDialog(getMainWindow(), textArea,
+                "Common-mean test", JOptionPane.INFORMATION_MESSAGE);
+    }
+
     /**
      * Calculate means across all currently loaded suites.
      */
@@ -1590,6 +2113,12 @@ public class PuffinApp {
                     for (List<String> line: multiSuiteCalcs.toStrings()) {
                         writer.writeCsv(line);
                     }
+                    writer.writeCsv("");
+                    writer.writeCsv(SuiteCalcs.getInclinationHeaders());
+                    for (List<String> line:
+                            multiSuiteCalcs.inclinationsToStrings()) {
+                        writer.writeCsv(line);
+                    }
                 } catch (IOException ex) {
                     throw new PuffinUserException(ex);
                 } finally {
@@ -48,6 +48,7 @@ public final class PuffinPrefs {
             Preferences.userNodeForPackage(PuffinPrefs.class);
     private SensorLengths sensorLengths;
     private TwoGeeLoader.Protocol twoGeeProtocol;
+    private volatile SettingsSnapshot settings = SettingsSnapshot.EMPTY;
 
     /**
      * Instantiates a set of PuffinPlot preferences for the specified
@@ -59,9 +60,59 @@ public final class PuffinPrefs {
      */
     public PuffinPrefs(PuffinApp app) {
         this.app = app;
+        /*
+         * Preference change events are delivered asynchronously, so this
+         * listener mainly serves to pick up changes made directly through
+         * the Preferences object. Changes made through this class are
+         * reflected in the snapshot immediately.
+         */
+        prefs.addPreferenceChangeListener(event -> refreshSettings());
         load();
     }
 
+    /**
+     * Returns an immutable snapshot of the current preference settings.
+     * Reading the snapshot is much cheaper than reading the
+     * {@link java.util.prefs.Preferences} object, and it may be done from
+     * any thread. A new snapshot is created whenever the preferences change.
+     *
+     * @return a snapshot of the current preference settings
+     */
+    public SettingsSnapshot getSettings() {
+        return settings;
+    }
+
+    /**
+     * Rebuilds the settings snapshot from the preferences backing store.
+     *
+     * @see #getSettings()
+     */
+    public void refreshSettings() {
+        settings = SettingsSnapshot.fromPreferences(prefs);
+    }
+
+    /**
+     * Sets a string-valued preference and updates the settings snapshot.
+     *
+     * @param key the name of the preference
+     * @param value the new value of the preference
+     */
+    public void put(String key, String value) {
+        prefs.put(key, value);
+        refreshSettings();
+    }
+
+    /**
+     * Sets a boolean-valued preference and updates the settings snapshot.
+     *
+     * @param key the name of the preference
+     * @param value the new value of the preference
+     */
+    public void putBoolean(String key, boolean value) {
+        prefs.putBoolean(key, value);
+        refreshSettings();
+    }
+
     /**
      * Returns the underlying {@link java.util.prefs.Preferences} object which
      * holds the preferences.
@@ -160,6 +211,7 @@ public final class PuffinPrefs {
         setSensorLengths(SensorLengths.fromPrefs(getPrefs()));
         twoGeeProtocol = TwoGeeLoader.Protocol.
                 valueOf(prefs.get("measurementProtocol", "NORMAL"));
+        refreshSettings();
     }
     
     /**
@@ -176,6 +228,7 @@ public final class PuffinPrefs {
         p.put("correction", app.getCorrection().toString());
         getSensorLengths().save(prefs);
         p.put("measurementProtocol", twoGeeProtocol.name());
+        refreshSettings();
     }
 
     /**
@@ -206,6 +259,7 @@ public final class PuffinPrefs {
             final FileInputStream inStream = new FileInputStream(file);
             Preferences.importPreferences(inStream);
             inStream.close();
+            refreshSettings();
         } catch (InvalidPreferencesFormatException | IOException exception) {
             Logger.getLogger(PuffinPrefs.class.getName()).
                     log(Level.SEVERE, null, exception);
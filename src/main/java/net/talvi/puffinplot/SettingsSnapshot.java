@@ -0,0 +1,137 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.talvi.puffinplot;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+/**
+ * An immutable copy of the settings in a preferences node.
+ * <p>
+ * Reading a value from a {@link Preferences} object involves locking and
+ * may involve access to the backing store, which is too slow to do every
+ * time a plot is drawn. A snapshot is instead built whenever the
+ * preferences change, and can then be read freely from any thread. Values
+ * are interpreted in the same way as by the corresponding
+ * {@link Preferences} methods.
+ *
+ * @author pont
+ */
+public final class SettingsSnapshot {
+
+    private static final Logger LOGGER =
+            Logger.getLogger("net.talvi.puffinplot");
+
+    /**
+     * A snapshot containing no settings.
+     */
+    public static final SettingsSnapshot EMPTY =
+            new SettingsSnapshot(Collections.emptyMap());
+
+    private final Map<String, String> settings;
+
+    private SettingsSnapshot(Map<String, String> settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Creates a snapshot containing the supplied settings. The map is
+     * copied, so later changes to it do not affect the snapshot.
+     *
+     * @param settings a map of setting names to values
+     * @return a snapshot of the supplied settings
+     */
+    public static SettingsSnapshot fromMap(Map<String, String> settings) {
+        return new SettingsSnapshot(
+                Collections.unmodifiableMap(new HashMap<>(settings)));
+    }
+
+    /**
+     * Creates a snapshot of the settings in a preferences node. Child nodes
+     * are not included. If the backing store cannot be read, a warning is
+     * logged and an empty snapshot is returned.
+     *
+     * @param preferences a preferences node
+     * @return a snapshot of the settings in the node
+     */
+    public static SettingsSnapshot fromPreferences(Preferences preferences) {
+        final Map<String, String> settings = new HashMap<>();
+        try {
+            for (String key: preferences.keys()) {
+                final String value = preferences.get(key, null);
+                /*
+                 * The key may have been removed by another thread since
+                 * keys() was called.
+                 */
+                if (value != null) {
+                    settings.put(key, value);
+                }
+            }
+        } catch (BackingStoreException | IllegalStateException ex) {
+            LOGGER.log(Level.WARNING, "Error reading preferences", ex);
+            return EMPTY;
+        }
+        return new SettingsSnapshot(Collections.unmodifiableMap(settings));
+    }
+
+    /**
+     * Gets the string value of a named setting.
+     *
+     * @param key the name of a string-valued setting
+     * @param def a default value
+     * @return the value of the setting, or {@code def} if it has no value
+     */
+    public String get(String key, String def) {
+        final String value = settings.get(key);
+        return value == null ? def : value;
+    }
+
+    /**
+     * Gets the boolean value of a named setting. As with
+     * {@link Preferences#getBoolean(String, boolean)}, only the strings
+     * {@code "true"} and {@code "false"} (ignoring case) are valid values.
+     *
+     * @param key the name of a boolean-valued setting
+     * @param def a default value
+     * @return the value of the setting, or {@code def} if it has no valid
+     * value
+     */
+    public boolean getBoolean(String key, boolean def) {
+        final String value = settings.get(key);
+        if ("true".equalsIgnoreCase(value)) {
+            return true;
+        } else if ("false".equalsIgnoreCase(value)) {
+            return false;
+        } else {
+            return def;
+        }
+    }
+
+    /**
+     * Returns the settings in this snapshot.
+     *
+     * @return an unmodifiable map of setting names to values
+     */
+    public Map<String, String> asMap() {
+        return settings;
+    }
+}
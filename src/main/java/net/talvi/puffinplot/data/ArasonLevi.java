@@ -16,8 +16,14 @@
  */
 package net.talvi.puffinplot.data;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.apache.commons.math3.distribution.TDistribution;
 
@@ -56,6 +62,10 @@ public final class ArasonLevi {
 
     private static final double DR = 0.0174532925199433;
     // Degrees to radians (pi/180)
+
+    private static final List<String> HEADERS =
+            Arrays.asList("AL inc. (deg)", "AL k", "AL t63 (deg)",
+                    "AL a95 (deg)", "AL nIncs", "AL error");
     
     private ArasonLevi(int ierr, int n,
             double ainc, double ak, double t63, double a95) {
@@ -120,6 +130,56 @@ public final class ArasonLevi {
         return errorCode;
     }
 
+    /**
+     * Returns the statistical parameters as a list of strings. The order of
+     * the parameters is the same as the order of the headers provided by
+     * {@link #getHeaders()}.
+     *
+     * @return the statistical parameters as a list of strings
+     */
+    public List<String> toStrings() {
+        return Arrays.asList(fmt(getMeanInc()), fmt(getKappa()),
+                fmt(getT63()), fmt(getA95()), Integer.toString(getN()),
+                Integer.toString(getErrorCode()));
+    }
+
+    /**
+     * Returns the statistical parameters as a list of strings, or a list of
+     * empty strings if the supplied parameters are {@code null}.
+     *
+     * @param arasonLevi the parameters to return as strings
+     * @return the statistical parameters as a list of strings, or a list of
+     * empty strings if {@code arasonLevi} was {@code null}
+     * @see #toStrings()
+     */
+    public static List<String> toStrings(ArasonLevi arasonLevi) {
+        return arasonLevi == null ? getEmptyFields() : arasonLevi.toStrings();
+    }
+
+    /**
+     * Returns the headers describing the parameters as a list of strings.
+     *
+     * @return the headers describing the parameters
+     */
+    public static List<String> getHeaders() {
+        return HEADERS;
+    }
+
+    /**
+     * Returns a list of empty strings equal in length to the number of
+     * parameters.
+     *
+     * @return a list of empty strings equal in length to the number of
+     * parameters
+     */
+    public static List<String> getEmptyFields() {
+        return Collections.nCopies(HEADERS.size(), "");
+    }
+
+    private static String fmt(double d) {
+        return String.format(Locale.ENGLISH, "%.4f", d);
+    }
+
     /**
      * Evaluation of the Hyperbolic Bessel functions I0(x), I1(x) and their
      * ratio I1(x)/I0(x). These functions are sometimes also called the modified
@@ -148,6 +208,42 @@ public final class ArasonLevi {
      */
     private static final class Bessel {
 
+        private static final double P1 = 1;
+        private static final double P2 = 3.5156229;
+        private static final double P3 = 3.0899424;
+        private static final double P4 = 1.2067492;
+        private static final double P5 = 0.2659732;
+        private static final double P6 = 0.360768e-1;
+        private static final double P7 = 0.45813e-2;
+
+        private static final double Q1 = 0.39894228;
+        private static final double Q2 = 0.1328592e-1;
+        private static final double Q3 = 0.225319e-2;
+        private static final double Q4 = -0.157565e-2;
+        private static final double Q5 = 0.916281e-2;
+        private static final double Q6 = -0.2057706e-1;
+        private static final double Q7 = 0.2635537e-1;
+        private static final double Q8 = -0.1647633e-1;
+        private static final double Q9 = 0.392377e-2;
+
+        private static final double U1 = 0.5;
+        private static final double U2 = 0.87890594;
+        private static final double U3 = 0.51498869;
+        private static final double U4 = 0.15084934;
+        private static final double U5 = 0.2658733e-1;
+        private static final double U6 = 0.301532e-2;
+        private static final double U7 = 0.32411e-3;
+
+        private static final double V1 = 0.39894228;
+        private static final double V2 = -0.3988024e-1;
+        private static final double V3 = -0.362018e-2;
+        private static final double V4 = 0.163801e-2;
+        private static final double V5 = -0.1031555e-1;
+        private static final double V6 = 0.2282967e-1;
+        private static final double V7 = -0.2895312e-1;
+        private static final double V8 = 0.1787654e-1;
+        private static final double V9 = -0.420059e-2;
+
         public final double bi0e, bi1e, bi1i0;
 
         private Bessel(double bi0e, double bi1e, double bi1i0) {
@@ -157,69 +253,124 @@ public final class ArasonLevi {
         }
 
         public static Bessel calculate(double x) {
+            final double b0 = b0(x);
+            final double b1 = b1(x);
+            final double scale = scale(x);
+            return new Bessel(b0 / scale, b1 / scale, b1 / b0);
+        }
 
-            final double p1 = 1;
-            final double p2 = 3.5156229;
-            final double p3 = 3.0899424;
-            final double p4 = 1.2067492;
-            final double p5 = 0.2659732;
-            final double p6 = 0.360768e-1;
-            final double p7 = 0.45813e-2;
-
-            final double q1 = 0.39894228;
-            final double q2 = 0.1328592e-1;
-            final double q3 = 0.225319e-2;
-            final double q4 = -0.157565e-2;
-            final double q5 = 0.916281e-2;
-            final double q6 = -0.2057706e-1;
-            final double q7 = 0.2635537e-1;
-            final double q8 = -0.1647633e-1;
-            final double q9 = 0.392377e-2;
-
-            final double u1 = 0.5;
-            final double u2 = 0.87890594;
-            final double u3 = 0.51498869;
-            final double u4 = 0.15084934;
-            final double u5 = 0.2658733e-1;
-            final double u6 = 0.301532e-2;
-            final double u7 = 0.32411e-3;
-
-            final double v1 = 0.39894228;
-            final double v2 = -0.3988024e-1;
-            final double v3 = -0.362018e-2;
-            final double v4 = 0.163801e-2;
-            final double v5 = -0.1031555e-1;
-            final double v6 = 0.2282967e-1;
-            final double v7 = -0.2895312e-1;
-            final double v8 = 0.1787654e-1;
-            final double v9 = -0.420059e-2;
-
-            final double bi0e, bi1e, bi1i0;
+        /*
+         * The static methods below evaluate single results without
+         * allocating a Bessel object, for use in the inner loops of the
+         * Arason-Levi iterations. They use exactly the same arithmetic
+         * as calculate, so give identical results.
+         */
+
+        /**
+         * @param x input value
+         * @return I1(x)/I0(x)
+         */
+        static double ratio(double x) {
+            return b1(x) / b0(x);
+        }
 
+        /**
+         * @param x input value
+         * @return I0(x)/exp(|x|)
+         */
+        static double scaledI0(double x) {
+            return b0(x) / scale(x);
+        }
+
+        /*
+         * The polynomial approximation to I0(x), scaled by sqrt(|x|) *
+         * exp(-|x|) for |x| >= 3.75.
+         */
+        private static double b0(double x) {
             if (abs(x) < 3.75) {
                 final double t = (x / 3.75) * (x / 3.75);
-                final double b0 = p1 + t * (p2 + t * (p3 + t *
-                        (p4 + t * (p5 + t * (p6 + t * p7)))));
-                final double b1 = x * (u1 + t * (u2 + t * (u3 + t *
-                        (u4 + t * (u5 + t * (u6 + t * u7))))));
-                bi0e = b0 / exp(abs(x));
-                bi1e = b1 / exp(abs(x));
-                bi1i0 = b1 / b0;
+                return P1 + t * (P2 + t * (P3 + t *
+                        (P4 + t * (P5 + t * (P6 + t * P7)))));
             } else {
                 final double t = 3.75 / abs(x);
-                final double b0 = q1 + t * (q2 + t * (q3 + t * (q4 + t * 
-                        (q5 + t * (q6 + t * (q7 + t * (q8 + t * q9)))))));
-                double b1 = v1 + t * (v2 + t * (v3 + t * (v4 + t *
-                        (v5 + t * (v6 + t * (v7 + t * (v8 + t * v9)))))));
-                if (x < 0) {
-                    b1 = -b1;
-                }
-                bi0e = b0 / sqrt(abs(x));
-                bi1e = b1 / sqrt(abs(x));
-                bi1i0 = b1 / b0;
+                return Q1 + t * (Q2 + t * (Q3 + t * (Q4 + t *
+                        (Q5 + t * (Q6 + t * (Q7 + t * (Q8 + t * Q9)))))));
             }
+        }
 
-            return new Bessel(bi0e, bi1e, bi1i0);
+        /*
+         * The polynomial approximation to I1(x), scaled by sqrt(|x|) *
+         * exp(-|x|) for |x| >= 3.75.
+         */
+        private static double b1(double x) {
+            if (abs(x) < 3.75) {
+                final double t = (x / 3.75) * (x / 3.75);
+                return x * (U1 + t * (U2 + t * (U3 + t *
+                        (U4 + t * (U5 + t * (U6 + t * U7))))));
+            } else {
+                final double t = 3.75 / abs(x);
+                final double b1 = V1 + t * (V2 + t * (V3 + t * (V4 + t *
+                        (V5 + t * (V6 + t * (V7 + t * (V8 + t * V9)))))));
+                return x < 0 ? -b1 : b1;
+            }
+        }
+
+        /*
+         * The divisor which converts b0 and b1 to I0(x)/exp(|x|) and
+         * I1(x)/exp(|x|).
+         */
+        private static double scale(double x) {
+            return abs(x) < 3.75 ? exp(abs(x)) : sqrt(abs(x));
+        }
+    }
+
+    /**
+     * A set of co-inclinations with precomputed trigonometric values.
+     * The Arason-Levi iterations evaluate sums over the same data
+     * thousands of times, so the sines of the data, and the sums which
+     * do not depend on the current estimates, are calculated once here.
+     */
+    private static final class CoInclinations {
+
+        final int n;
+        /** co-inclinations in degrees */
+        final double[] deg;
+        /** sines of the co-inclinations */
+        final double[] sin;
+        /** sum of the cosines of the co-inclinations */
+        final double cosSum;
+        /** sum of the logs of the sines of the (clamped) co-inclinations */
+        final double logSinSum;
+
+        CoInclinations(double[] inclinations) {
+            n = inclinations.length;
+            deg = new double[n];
+            sin = new double[n];
+            double cs = 0, ls = 0;
+            for (int i = 0; i < n; i++) {
+                deg[i] = 90 - inclinations[i];
+                sin[i] = Math.sin(deg[i] * DR);
+                cs += cos(deg[i] * DR);
+                final double clamped =
+                        Math.min(Math.max(deg[i], 0.000001), 179.999999);
+                ls += log(Math.sin(clamped * DR));
+            }
+            cosSum = cs;
+            logSinSum = ls;
+        }
+
+        /**
+         * @param aks kappa multiplied by the sine of the current estimate
+         * of Theta
+         * @return the sum over all data of sin(ti) I1(x)/I0(x), where
+         * x = aks sin(ti)
+         */
+        double besselSum(double aks) {
+            double s = 0;
+            for (int i = 0; i < n; i++) {
+                s += sin[i] * Bessel.ratio(aks * sin[i]);
+            }
+            return s;
         }
     }
 
@@ -269,18 +420,15 @@ public final class ArasonLevi {
     /**
      * The Arason-Levi MLE Iteration Formula 1.
      * 
-     * @param th vector of co-inclination data (in degrees)
+     * @param th co-inclination data
      * @param the current estimate of co-inclination (Theta) (in degrees)
      * @param ak current estimate of precision parameter (Kappa)
      * @return new (better) estimate of Theta
      */
-    private static double aralevIteration1(double[] th, double the, double ak) {
-        double s=0, c=0;
-        for (int i = 0; i < th.length; i++) {
-            final double x = ak * sin(the * DR) * sin(th[i] * DR);
-            s += sin(th[i] * DR) * Bessel.calculate(x).bi1i0;
-            c += cos(th[i] * DR);
-        }
+    private static double aralevIteration1(CoInclinations th, double the,
+            double ak) {
+        final double s = th.besselSum(ak * sin(the * DR));
+        final double c = th.cosSum;
 
         double al1 = Math.atan2(s, c) / DR;
 
@@ -297,19 +445,16 @@ public final class ArasonLevi {
     /**
      * The Arason-Levi MLE Iteration Formula 2.
      * 
-     * @param th Vector of co-inclination data (in degrees)
+     * @param th co-inclination data
      * @param the Current estimate of co-inclination (Theta) (in degrees)
      * @param ak Current estimate of precision parameter (Kappa)
      * @return New (better) estimate of Kappa
      */
-    private static double aralevIteration2(double[] th, double the, double ak) {
-        final int n = th.length;
-        double s = 0, c = 0;
-        for (int i = 0; i < n; i++) {
-            final double x = ak * sin(the * DR) * sin(th[i] * DR);
-            s += sin(th[i] * DR) * Bessel.calculate(x).bi1i0;
-            c += cos(th[i] * DR);
-        }
+    private static double aralevIteration2(CoInclinations th, double the,
+            double ak) {
+        final int n = th.n;
+        final double s = th.besselSum(ak * sin(the * DR));
+        final double c = th.cosSum;
 
         final double x = n * coth(ak) - cos(the * DR) * c - sin(the * DR) * s;
         double al2 = 1e10;
@@ -335,16 +480,15 @@ public final class ArasonLevi {
      * Sum[ ] is the sum over all data i from 1 to n, and
      * BessIo is the Hyperbolic Bessel function I0(x)
      *
-     * @param th Vector of co-inclination data (in degrees). Range: 0-180
-     * degrees
+     * @param th co-inclination data. Range: 0-180 degrees
      * @param the Theta-value where the function is to be evaluated. Range:
      * 0-180 degrees
      * @param ak Kappa-value where the function is to be evaluated.
      * Range: 0 <= kappa
      * @return Value of the log-likelihood function
      */
-  private static double Xlik(double[] th, double the, double ak) {
-        final int n = th.length;
+    private static double Xlik(CoInclinations th, double the, double ak) {
+        final int n = th.n;
 
         /* Check for illegal use */
         if (n < 1 || ak < 0) {
@@ -363,25 +507,15 @@ public final class ArasonLevi {
         }
 
         /* A2(k,t,ti) = Sum(k cos t cos ti) + Sum(ln(BessIo(k sin t sin ti))) */
+        final double aks = ak * sin(the * DR);
         double a2 = 0;
         for (int i = 0; i < n; i++) {
-            final double x = ak * sin(the * DR) * sin(th[i] * DR);
-            final Bessel bessel = Bessel.calculate(x);
-            a2 += ak * cos((th[i] - the) * DR) + log(bessel.bi0e);
+            final double x = aks * th.sin[i];
+            a2 += ak * cos((th.deg[i] - the) * DR) + log(Bessel.scaledI0(x));
         }
 
         /* A3(ti) = Sum( ln(sin(ti)) ) */
-        double a3 = 0;
-        for (int i = 0; i < n; i++) {
-            double x = th[i];
-            if (x < 0.000001) {
-                x = 0.000001;
-            }
-            if (x > 179.999999) {
-                x = 179.999999;
-            }
-            a3 += log(sin(x * DR));
-        }
+        final double a3 = th.logSinSum;
 
         /* The log-likelihood function */
         return a1 + a2 + a3;
@@ -397,8 +531,30 @@ public final class ArasonLevi {
      * @return Arason-Levi parameters
      */
     public static ArasonLevi calculate(Collection<Double> inclinations) {
-        final double[] xinc =
-                    inclinations.stream().mapToDouble(x->x).toArray();
+        return calculate(inclinations.stream().mapToDouble(x->x).toArray());
+    }
+
+    /**
+     * Calculate Arason-Levi parameters for many collections of inclinations,
+     * such as the sites of a suite. This is equivalent to calling
+     * {@link #calculate(Collection)} for each collection, but the
+     * collections are processed in parallel. Inclinations must be in the
+     * range [-90, 90]. An empty collection produces a {@code null} result
+     * rather than an exception.
+     *
+     * @param datasets collections of inclinations, in degrees
+     * @return Arason-Levi parameters for each collection, in the same
+     * order as the collections
+     */
+    public static List<ArasonLevi> calculateAll(
+            List<? extends Collection<Double>> datasets) {
+        return IntStream.range(0, datasets.size()).parallel()
+                .mapToObj(i -> datasets.get(i).isEmpty() ? null
+                        : calculate(datasets.get(i)))
+                .collect(Collectors.toList());
+    }
+
+    private static ArasonLevi calculate(double[] xinc) {
         /* Set constants */
         final double t63max = 105.070062145; /* 63 % of a sphere. */
         final double a95max = 154.158067237; /* 95 % of a sphere. */
@@ -444,19 +600,15 @@ public final class ArasonLevi {
         }
 
         /* Convert inclinations to co-inclinations */
-        double[] th = new double[n];
-        for (int i = 0; i < n; i++) {
-            th[i] = 90 - xinc[i];
-        }
+        final CoInclinations th = new CoInclinations(xinc);
 
         /* Calculate arithmetic mean to use as first guess */
-        double s=0, s2=0, c=0;
+        double s=0, s2=0;
         for (int i = 0; i < n; i++) {
-            s += th[i];
-            s2 += th[i] * th[i];
-            c += cos(th[i] * DR);
+            s += th.deg[i];
+            s2 += th.deg[i] * th.deg[i];
         }
-        c = c / n;
+        final double c = th.cosSum / n;
 
         double rt = s / n;
         double x = (s2 - s * s / n) * DR * DR;
@@ -0,0 +1,428 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.talvi.puffinplot.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A store of sample and site calculation results, keyed by a hash of the
+ * data from which they were calculated.
+ * <p>
+ * A cache is written to a sidecar file next to a PuffinPlot file (see
+ * {@link #getSidecarFile(File)}). When the PuffinPlot file is reopened, the
+ * stored results for any sample or site whose input data, flags, and
+ * correction are unchanged can be restored without repeating the
+ * calculations. Entries whose hash does not match are ignored and the
+ * results are recalculated as usual, so a stale or foreign cache can never
+ * produce incorrect results; an unreadable cache simply causes everything
+ * to be recalculated.
+ * <p>
+ * The file format is a gzipped binary stream headed by a magic number and
+ * a format version. Caches with any other version are rejected, so the
+ * version should be incremented whenever the format or the calculations
+ * themselves change.
+ *
+ * @author pont
+ * @see Suite#doAllCalculations(Correction, String, CalculationCache)
+ */
+public final class CalculationCache {
+
+    /**
+     * The version of the cache format. Caches with a different version
+     * are not read.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int MAGIC = 0x50504343; // "PPCC"
+    private static final String SIDECAR_SUFFIX = ".calc";
+    private static final int HASH_LENGTH = 16;
+
+    private static final int HAS_PCA = 1;
+    private static final int HAS_GREAT_CIRCLE = 2;
+    private static final int HAS_FISHER = 1;
+    private static final int HAS_GREAT_CIRCLES = 2;
+
+    private final Map<String, SampleEntry> samples = new LinkedHashMap<>();
+    private final Map<String, SiteEntry> sites = new LinkedHashMap<>();
+    private int hits = 0;
+    private int misses = 0;
+
+    private static final class SampleEntry {
+        final byte[] hash;
+        final PcaAnnotated pca;
+        final GreatCircle greatCircle;
+        final double magSusJump;
+
+        SampleEntry(byte[] hash, PcaAnnotated pca, GreatCircle greatCircle,
+                double magSusJump) {
+            this.hash = hash;
+            this.pca = pca;
+            this.greatCircle = greatCircle;
+            this.magSusJump = magSusJump;
+        }
+    }
+
+    private static final class SiteEntry {
+        final byte[] hash;
+        final FisherValues fisher;
+        final GreatCircles greatCircles;
+
+        SiteEntry(byte[] hash, FisherValues fisher,
+                GreatCircles greatCircles) {
+            this.hash = hash;
+            this.fisher = fisher;
+            this.greatCircles = greatCircles;
+        }
+    }
+
+    /**
+     * Creates a new, empty cache.
+     */
+    public CalculationCache() {
+    }
+
+    /**
+     * Returns the sidecar file which holds the calculation cache for
+     * a specified PuffinPlot file.
+     *
+     * @param puffinFile a PuffinPlot file
+     * @return the corresponding cache file
+     */
+    public static File getSidecarFile(File puffinFile) {
+        return new File(puffinFile.getParentFile(),
+                puffinFile.getName() + SIDECAR_SUFFIX);
+    }
+
+    /**
+     * Reads a cache from a file.
+     *
+     * @param file the file to read
+     * @return the cache read from the file
+     * @throws IOException if the file could not be read, or is not
+     * a calculation cache of the current format version
+     */
+    public static CalculationCache readFrom(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new GZIPInputStream(
+                        new FileInputStream(file))))) {
+            return readFrom(in);
+        }
+    }
+
+    static CalculationCache readFrom(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a PuffinPlot calculation cache");
+        }
+        final int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported calculation cache version "
+                    + version);
+        }
+        final CalculationCache cache = new CalculationCache();
+        final int nSamples = in.readInt();
+        for (int i = 0; i < nSamples; i++) {
+            final String id = in.readUTF();
+            final byte[] hash = readHash(in);
+            final int flags = in.readByte();
+            final PcaAnnotated pca = (flags & HAS_PCA) != 0
+                    ? PcaAnnotated.readFrom(in) : null;
+            final GreatCircle circle = (flags & HAS_GREAT_CIRCLE) != 0
+                    ? GreatCircle.readFrom(in) : null;
+            cache.samples.put(id, new SampleEntry(hash, pca, circle,
+                    in.readDouble()));
+        }
+        final int nSites = in.readInt();
+        for (int i = 0; i < nSites; i++) {
+            final String name = in.readUTF();
+            final byte[] hash = readHash(in);
+            final int flags = in.readByte();
+            final FisherValues fisher = (flags & HAS_FISHER) != 0
+                    ? FisherValues.readFrom(in) : null;
+            final GreatCircles circles = (flags & HAS_GREAT_CIRCLES) != 0
+                    ? GreatCircles.readFrom(in) : null;
+            cache.sites.put(name, new SiteEntry(hash, fisher, circles));
+        }
+        return cache;
+    }
+
+    /**
+     * Writes this cache to a file.
+     *
+     * @param file the file to write
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeTo(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new GZIPOutputStream(
+                        new FileOutputStream(file))))) {
+            writeTo(out);
+        }
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(samples.size());
+        for (Map.Entry<String, SampleEntry> e: samples.entrySet()) {
+            final SampleEntry entry = e.getValue();
+            out.writeUTF(e.getKey());
+            out.write(entry.hash);
+            out.writeByte((entry.pca != null ? HAS_PCA : 0) |
+                    (entry.greatCircle != null ? HAS_GREAT_CIRCLE : 0));
+            if (entry.pca != null) {
+                entry.pca.writeTo(out);
+            }
+            if (entry.greatCircle != null) {
+                entry.greatCircle.writeTo(out);
+            }
+            out.writeDouble(entry.magSusJump);
+        }
+        out.writeInt(sites.size());
+        for (Map.Entry<String, SiteEntry> e: sites.entrySet()) {
+            final SiteEntry entry = e.getValue();
+            out.writeUTF(e.getKey());
+            out.write(entry.hash);
+            out.writeByte((entry.fisher != null ? HAS_FISHER : 0) |
+                    (entry.greatCircles != null ? HAS_GREAT_CIRCLES : 0));
+            if (entry.fisher != null) {
+                entry.fisher.writeTo(out);
+            }
+            if (entry.greatCircles != null) {
+                entry.greatCircles.writeTo(out);
+            }
+        }
+    }
+
+    /**
+     * Restores the calculation results for a sample, if this cache holds
+     * results calculated from identical data with the same correction.
+     *
+     * @param sample the sample whose results should be restored
+     * @param correction the correction which would be used for the
+     * calculations
+     * @return {@code true} if the results were restored; {@code false}
+     * if they must be calculated
+     */
+    boolean restore(Sample sample, Correction correction) {
+        final SampleEntry entry = samples.get(sample.getNameOrDepth());
+        if (entry == null || correction.includesEmpty() ||
+                !Arrays.equals(entry.hash, hash(sample, correction))) {
+            misses++;
+            return false;
+        }
+        sample.restoreCalculations(entry.pca, entry.greatCircle,
+                entry.magSusJump, correction);
+        hits++;
+        return true;
+    }
+
+    /**
+     * Stores the current calculation results for a sample.
+     *
+     * @param sample the sample whose results should be stored
+     * @param correction the correction with which the results were
+     * calculated
+     */
+    void store(Sample sample, Correction correction) {
+        if (correction.includesEmpty()) {
+            /*
+             * Empty-slot corrections depend on data outside the sample,
+             * so there's no reliable key for them.
+             */
+            return;
+        }
+        samples.put(sample.getNameOrDepth(),
+                new SampleEntry(hash(sample, correction),
+                sample.getPcaAnnotated(), sample.getGreatCircle(),
+                sample.getMagSusJump()));
+    }
+
+    /**
+     * Restores the calculation results for a site, if this cache holds
+     * results calculated from identical sample results. The results for
+     * the site's samples must already be up to date.
+     *
+     * @param site the site whose results should be restored
+     * @param validityCondition the great-circle validity condition
+     * @return {@code true} if the results were restored; {@code false}
+     * if they must be calculated
+     */
+    boolean restore(Site site, String validityCondition) {
+        final SiteEntry entry = sites.get(site.getName());
+        if (entry == null ||
+                !Arrays.equals(entry.hash, hash(site, validityCondition))) {
+            misses++;
+            return false;
+        }
+        site.restoreCalculations(entry.fisher, entry.greatCircles);
+        hits++;
+        return true;
+    }
+
+    /**
+     * Stores the current calculation results for a site.
+     *
+     * @param site the site whose results should be stored
+     * @param validityCondition the great-circle validity condition
+     */
+    void store(Site site, String validityCondition) {
+        sites.put(site.getName(), new SiteEntry(
+                hash(site, validityCondition), site.getFisherValues(),
+                site.getGreatCircles()));
+    }
+
+    /**
+     * @return the number of samples and sites whose results were restored
+     * from this cache
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of samples and sites whose results could not be
+     * restored from this cache
+     */
+    public int getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of sample entries in this cache
+     */
+    public int getSampleCount() {
+        return samples.size();
+    }
+
+    /**
+     * @return the number of site entries in this cache
+     */
+    public int getSiteCount() {
+        return sites.size();
+    }
+
+    private static byte[] readHash(DataInput in) throws IOException {
+        final byte[] hash = new byte[HASH_LENGTH];
+        in.readFully(hash);
+        return hash;
+    }
+
+    private static byte[] hash(Sample sample, Correction correction) {
+        final Hasher hasher = new Hasher();
+        try {
+            final DataOutputStream out = hasher.out;
+            out.writeUTF(correction.toString());
+            out.writeInt(sample.getTreatmentSteps().size());
+            for (TreatmentStep step: sample.getTreatmentSteps()) {
+                writeVector(out, step.hasMagMoment()
+                        ? step.getMoment(correction) : null);
+                out.writeUTF(String.valueOf(step.getTreatmentType()));
+                out.writeDouble(step.getTreatmentLevel());
+                out.writeDouble(step.getMagSus());
+                out.writeDouble(step.getTemperature());
+                out.writeByte((step.isHidden() ? 1 : 0) |
+                        (step.isInPca() ? 2 : 0) |
+                        (step.isOnCircle() ? 4 : 0) |
+                        (step.isPcaAnchored() ? 8 : 0));
+            }
+        } catch (IOException ex) {
+            // A DigestOutputStream over a null stream can't throw this.
+            throw new IllegalStateException(ex);
+        }
+        return hasher.digest();
+    }
+
+    private static byte[] hash(Site site, String validityCondition) {
+        final Hasher hasher = new Hasher();
+        try {
+            final DataOutputStream out = hasher.out;
+            out.writeBoolean(validityCondition != null);
+            if (validityCondition != null) {
+                out.writeUTF(validityCondition);
+            }
+            out.writeInt(site.getSamples().size());
+            for (Sample sample: site.getSamples()) {
+                writeVector(out, sample.getDirection());
+                writeVector(out, sample.getPcaAnnotated() == null ? null :
+                        sample.getPcaValues().getDirection());
+                final GreatCircle circle = sample.getGreatCircle();
+                out.writeBoolean(circle != null);
+                if (circle != null) {
+                    circle.writeTo(out);
+                }
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return hasher.digest();
+    }
+
+    private static void writeVector(DataOutput out, Vec3 v)
+            throws IOException {
+        out.writeBoolean(v != null);
+        if (v != null) {
+            v.writeTo(out);
+        }
+    }
+
+    private static class Hasher {
+        final MessageDigest digest;
+        final DataOutputStream out;
+
+        Hasher() {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException ex) {
+                // Every Java platform is required to support SHA-256.
+                throw new IllegalStateException(ex);
+            }
+            out = new DataOutputStream(new DigestOutputStream(
+                    new OutputStream() {
+                        @Override
+                        public void write(int b) {
+                        }
+                    }, digest));
+            try {
+                out.writeInt(FORMAT_VERSION);
+            } catch (IOException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+
+        byte[] digest() {
+            return Arrays.copyOf(digest.digest(), HASH_LENGTH);
+        }
+    }
+}
@@ -0,0 +1,611 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.talvi.puffinplot.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import net.talvi.puffinplot.Metrics;
+
+import static java.lang.Math.PI;
+import static java.lang.Math.acos;
+import static java.lang.Math.cos;
+import static java.lang.Math.exp;
+import static java.lang.Math.log;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.sin;
+import static java.lang.Math.sqrt;
+import static java.lang.Math.toDegrees;
+
+/**
+ * Tests whether two or more groups of directions share a common mean
+ * direction. A reversal test is a common-mean test in which the directions
+ * of one polarity are inverted before testing.
+ * <p>
+ * Two tests are performed.
+ * <ul>
+ * <li>Watson's V<sub>w</sub> test (Watson, 1983): the observed statistic
+ * V<sub>w</sub> is compared with a distribution of V<sub>w</sub> simulated
+ * by drawing groups of the same sizes and precisions from Fisher
+ * distributions with a common mean. For two groups, the angle between the
+ * means and the critical angle are also calculated and the result is
+ * classified after McFadden and McElhinny (1990).</li>
+ * <li>The bootstrap coordinate test (Tauxe et al., 1991): the mean of each
+ * group is repeatedly recalculated from pseudo-samples drawn with
+ * replacement, and the test is passed if the 95% confidence intervals of
+ * the bootstrapped means overlap in all three Cartesian components.</li>
+ * </ul>
+ * The simulations run in parallel. Each iteration uses its own random
+ * number generator, seeded by mixing the test's seed with the numbers of
+ * the simulation and the iteration, so the results are reproducible and
+ * independent of the number of threads. The directions of each group
+ * are held in primitive arrays, and the iterations allocate nothing beyond
+ * their random number generators.
+ * <p>
+ * References:
+ * <p>
+ * Watson, G. S., 1983. Large sample theory of the Langevin distribution.
+ * Journal of Statistical Planning and Inference, 8, pp. 245–256.
+ * <p>
+ * McFadden, P. L. &amp; McElhinny, M. W., 1990. Classification of the
+ * reversal test in palaeomagnetism. Geophysical Journal International, 103,
+ * pp. 725–729.
+ * <p>
+ * Tauxe, L., Kylstra, N. &amp; Constable, C., 1991. Bootstrap statistics
+ * for paleomagnetic data. Journal of Geophysical Research, 96,
+ * pp. 11723–11740.
+ *
+ * @author pont
+ */
+public final class CommonMeanTest {
+
+    private static final List<String> HEADERS = Collections.unmodifiableList(
+            Arrays.asList("Test", "Groups", "N", "Vw", "Vw critical (95%)",
+                    "Vw p", "Gamma (deg)", "Gamma critical (deg)",
+                    "Classification", "Coordinate test"));
+
+    /*
+     * The increment of the SplitMix64 generator, used to spread
+     * consecutive stream and iteration numbers before they are mixed
+     * into a seed.
+     */
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    /*
+     * The random number stream of the Watson V_w simulation. The bootstrap
+     * of group g uses stream g + 1.
+     */
+    private static final int SIMULATION_STREAM = 0;
+
+    /*
+     * The largest precision parameter used in the simulations. Identical
+     * directions have an infinite estimated precision, which would make
+     * V_w undefined (infinity minus infinity); a precision of 10^8
+     * corresponds to an angular standard deviation of around 0.01
+     * degrees for a single direction, far below any measurement error.
+     */
+    private static final double MAX_KAPPA = 1e8;
+
+    private final String name;
+    private final List<String> groupNames;
+    private final int n;
+    private final double vw;
+    private final double[] simulatedVw;
+    private final double gamma;
+    private final double criticalGamma;
+    private final double[][][] coordinateBounds;
+
+    /**
+     * A builder which collects groups of directions and performs the
+     * tests on them.
+     */
+    public static final class Builder {
+
+        private final List<String> names = new ArrayList<>();
+        private final List<Vec3Array> groups = new ArrayList<>();
+        private String testName = "Common mean";
+        private int iterations = 5000;
+        private long seed = 0;
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a group of directions.
+         *
+         * @param name the name of the group
+         * @param directions the directions in the group; non-finite
+         * directions are ignored, and the rest are normalized
+         * @return this builder
+         */
+        public Builder addGroup(String name, Collection<Vec3> directions) {
+            final List<Vec3> finite = new ArrayList<>(directions.size());
+            for (Vec3 direction: directions) {
+                if (direction != null && direction.isFinite()) {
+                    finite.add(direction);
+                }
+            }
+            final Vec3Array array = Vec3Array.of(finite);
+            array.normalize();
+            names.add(name);
+            groups.add(array);
+            return this;
+        }
+
+        /**
+         * Adds the sample directions of a site as a group.
+         *
+         * @param site the site to add
+         * @return this builder
+         */
+        public Builder addSite(Site site) {
+            return addGroup(site.getName(), sampleDirections(
+                    site.getSamples()));
+        }
+
+        /**
+         * Adds the sample directions of a suite as a group.
+         *
+         * @param suite the suite to add
+         * @return this builder
+         */
+        public Builder addSuite(Suite suite) {
+            return addGroup(suite.getName(), sampleDirections(
+                    suite.getSamples()));
+        }
+
+        /**
+         * Sets the name of the test, used in exported results. The default
+         * is "Common mean".
+         *
+         * @param testName the name of the test
+         * @return this builder
+         */
+        public Builder name(String testName) {
+            this.testName = testName;
+            return this;
+        }
+
+        /**
+         * Sets the number of Monte Carlo iterations for each of the two
+         * tests. The default is 5000.
+         *
+         * @param iterations the number of iterations
+         * @return this builder
+         */
+        public Builder iterations(int iterations) {
+            if (iterations < 1) {
+                throw new IllegalArgumentException(
+                        "At least one iteration is required");
+            }
+            this.iterations = iterations;
+            return this;
+        }
+
+        /**
+         * Sets the seed from which the random number streams are derived.
+         *
+         * @param seed the random seed
+         * @return this builder
+         */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Performs the tests.
+         *
+         * @return the results of the tests
+         * @throws IllegalStateException if there are fewer than two groups
+         * or any group has fewer than two directions
+         */
+        public CommonMeanTest calculate() {
+            if (groups.size() < 2) {
+                throw new IllegalStateException(
+                        "At least two groups are required");
+            }
+            for (int i = 0; i < groups.size(); i++) {
+                if (groups.get(i).size() < 2) {
+                    throw new IllegalStateException(String.format(
+                            Locale.ENGLISH, "Group \"%s\" has fewer than "
+                                    + "two directions", names.get(i)));
+                }
+            }
+            final Metrics.Timer timer =
+                    Metrics.start("commonMeanTest.calculate");
+            try {
+                return new CommonMeanTest(this);
+            } finally {
+                timer.stop();
+            }
+        }
+    }
+
+    /**
+     * Returns a builder for a common-mean test.
+     *
+     * @return a new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns a builder for a reversal test on a collection of directions.
+     * The directions are divided by hemisphere, as in
+     * {@link Suite#doReversalTest(List)}, and the upper-hemisphere
+     * (reversed) directions are inverted.
+     *
+     * @param directions the directions to test
+     * @return a builder for a reversal test on the directions
+     */
+    public static Builder reversalTest(Collection<Vec3> directions) {
+        final List<Vec3> normal = new ArrayList<>(directions.size());
+        final List<Vec3> reversed = new ArrayList<>(directions.size());
+        for (Vec3 direction: directions) {
+            if (direction.z > 0) {
+                normal.add(direction);
+            } else {
+                reversed.add(direction.invert());
+            }
+        }
+        return builder().name("Reversal").addGroup("Normal", normal).
+                addGroup("Reversed", reversed);
+    }
+
+    private static List<Vec3> sampleDirections(Collection<Sample> samples) {
+        final List<Vec3> directions = new ArrayList<>(samples.size());
+        for (Sample sample: samples) {
+            if (sample.getDirection() != null) {
+                directions.add(sample.getDirection());
+            }
+        }
+        return directions;
+    }
+
+    private CommonMeanTest(Builder builder) {
+        name = builder.testName;
+        groupNames = Collections.unmodifiableList(
+                new ArrayList<>(builder.names));
+        final Vec3Array[] groups = builder.groups.toArray(new Vec3Array[0]);
+        final int nGroups = groups.length;
+        final int[] sizes = new int[nGroups];
+        final double[] kappas = new double[nGroups];
+        final Vec3[] sums = new Vec3[nGroups];
+        int total = 0;
+        for (int g = 0; g < nGroups; g++) {
+            sizes[g] = groups[g].size();
+            sums[g] = groups[g].sum();
+            kappas[g] = kappa(sizes[g], sums[g].mag());
+            total += sizes[g];
+        }
+        n = total;
+        vw = watsonV(sizes, sums);
+
+        final int iterations = builder.iterations;
+        final long seed = builder.seed;
+        simulatedVw = IntStream.range(0, iterations).parallel().mapToDouble(
+                i -> simulateWatsonV(sizes, kappas,
+                        random(seed, SIMULATION_STREAM, i))).toArray();
+        Arrays.sort(simulatedVw);
+
+        if (nGroups == 2) {
+            gamma = toDegrees(sums[0].angleTo(sums[1]));
+            final double a = kappas[0] * sums[0].mag();
+            final double b = kappas[1] * sums[1].mag();
+            final double criticalRw =
+                    a + b - getCriticalVw() / 2;
+            criticalGamma = toDegrees(acos(max(-1, min(1,
+                    (criticalRw * criticalRw - a * a - b * b) / (2 * a * b)))));
+        } else {
+            gamma = Double.NaN;
+            criticalGamma = Double.NaN;
+        }
+
+        coordinateBounds = new double[nGroups][][];
+        for (int g = 0; g < nGroups; g++) {
+            final Vec3Array group = groups[g];
+            final int stream = g + 1;
+            final double[][] means = new double[3][iterations];
+            IntStream.range(0, iterations).parallel().forEach(
+                    i -> bootstrapMean(group, random(seed, stream, i),
+                            means, i));
+            coordinateBounds[g] = new double[3][];
+            for (int c = 0; c < 3; c++) {
+                Arrays.sort(means[c]);
+                coordinateBounds[g][c] = new double[] {
+                    means[c][(int) (0.025 * iterations)],
+                    means[c][max(0, (int) Math.ceil(0.975 * iterations) - 1)]
+                };
+            }
+        }
+    }
+
+    /**
+     * Returns the random number generator for one iteration of one
+     * simulation. The seed, stream, and iteration are combined with the
+     * SplitMix64 finalizer, so the generators for adjacent iterations and
+     * streams start from unrelated states rather than from successive
+     * states of one SplittableRandom sequence.
+     *
+     * @param seed the seed for the whole test
+     * @param stream the number of the simulation
+     * @param iteration the number of the iteration within the simulation
+     * @return a generator for the iteration
+     */
+    static SplittableRandom random(long seed, int stream, int iteration) {
+        final long streamSeed = mix(seed + GOLDEN_GAMMA * (stream + 1L));
+        return new SplittableRandom(
+                mix(streamSeed + GOLDEN_GAMMA * (iteration + 1L)));
+    }
+
+    /*
+     * The SplitMix64 finalizer.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /*
+     * Fisher's estimate of the precision parameter, limited to MAX_KAPPA.
+     * The limit also applies if rounding makes r equal to, or slightly
+     * greater than, n.
+     */
+    private static double kappa(int n, double r) {
+        final double kappa = (n - 1) / (n - r);
+        return kappa >= 0 && kappa < MAX_KAPPA ? kappa : MAX_KAPPA;
+    }
+
+    /*
+     * Calculates V_w from the vector sums of the groups. V_w is twice the
+     * difference between the sum of the weighted resultant lengths and the
+     * length of the weighted resultant, each group being weighted by its
+     * precision.
+     */
+    private static double watsonV(int[] sizes, Vec3[] sums) {
+        double sw = 0, x = 0, y = 0, z = 0;
+        for (int g = 0; g < sizes.length; g++) {
+            final double r = sums[g].mag();
+            final double k = kappa(sizes[g], r);
+            sw += k * r;
+            x += k * sums[g].x;
+            y += k * sums[g].y;
+            z += k * sums[g].z;
+        }
+        return 2 * (sw - sqrt(x * x + y * y + z * z));
+    }
+
+    /*
+     * Simulates V_w for groups drawn from Fisher distributions with a
+     * common (vertical) mean and the observed sizes and precisions.
+     */
+    private static double simulateWatsonV(int[] sizes, double[] kappas,
+            SplittableRandom random) {
+        double sw = 0, wx = 0, wy = 0, wz = 0;
+        for (int g = 0; g < sizes.length; g++) {
+            final double k = kappas[g];
+            final double l = exp(-2 * k);
+            double x = 0, y = 0, z = 0;
+            for (int i = 0; i < sizes[g]; i++) {
+                /*
+                 * Draw a Fisher deviate about the z axis (Fisher et al.,
+                 * 1987, p. 59).
+                 */
+                final double cosTheta =
+                        1 + log(random.nextDouble() * (1 - l) + l) / k;
+                final double sinTheta =
+                        sqrt(max(0, 1 - cosTheta * cosTheta));
+                final double phi = 2 * PI * random.nextDouble();
+                x += sinTheta * cos(phi);
+                y += sinTheta * sin(phi);
+                z += cosTheta;
+            }
+            final double r = sqrt(x * x + y * y + z * z);
+            final double kSim = kappa(sizes[g], r);
+            sw += kSim * r;
+            wx += kSim * x;
+            wy += kSim * y;
+            wz += kSim * z;
+        }
+        return 2 * (sw - sqrt(wx * wx + wy * wy + wz * wz));
+    }
+
+    /*
+     * Draws a pseudo-sample from a group and stores the Cartesian
+     * components of its unit mean vector in the specified column of means.
+     */
+    private static void bootstrapMean(Vec3Array group,
+            SplittableRandom random, double[][] means, int column) {
+        final int size = group.size();
+        double x = 0, y = 0, z = 0;
+        for (int i = 0; i < size; i++) {
+            final int j = random.nextInt(size);
+            x += group.getX(j);
+            y += group.getY(j);
+            z += group.getZ(j);
+        }
+        final double r = sqrt(x * x + y * y + z * z);
+        means[0][column] = x / r;
+        means[1][column] = y / r;
+        means[2][column] = z / r;
+    }
+
+    /**
+     * @return the name of the test
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the names of the groups
+     */
+    public List<String> getGroupNames() {
+        return groupNames;
+    }
+
+    /**
+     * @return the total number of directions in all the groups
+     */
+    public int getN() {
+        return n;
+    }
+
+    /**
+     * @return the observed value of Watson's V<sub>w</sub> statistic
+     */
+    public double getVw() {
+        return vw;
+    }
+
+    /**
+     * @return the 95th percentile of the simulated V<sub>w</sub>
+     * distribution
+     */
+    public double getCriticalVw() {
+        return simulatedVw[min(simulatedVw.length - 1,
+                (int) (0.95 * simulatedVw.length))];
+    }
+
+    /**
+     * @return the proportion of simulated V<sub>w</sub> values at least as
+     * large as the observed value
+     */
+    public double getVwPValue() {
+        int index = Arrays.binarySearch(simulatedVw, vw);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        while (index > 0 && simulatedVw[index - 1] == vw) {
+            index--;
+        }
+        return (double) (simulatedVw.length - index) / simulatedVw.length;
+    }
+
+    /**
+     * @return {@code true} if the V<sub>w</sub> test does not reject a
+     * common mean at the 95% level
+     */
+    public boolean isVwTestPassed() {
+        return vw <= getCriticalVw();
+    }
+
+    /**
+     * @return the angle between the two group means in degrees, or NaN
+     * if there are more than two groups
+     */
+    public double getGamma() {
+        return gamma;
+    }
+
+    /**
+     * @return the critical angle between the two group means in degrees,
+     * or NaN if there are more than two groups
+     */
+    public double getCriticalGamma() {
+        return criticalGamma;
+    }
+
+    /**
+     * Returns the classification of the test after McFadden and McElhinny
+     * (1990): A, B, or C if the V<sub>w</sub> test is passed with a
+     * critical angle of at most 5°, 10°, or 20° respectively,
+     * "Indeterminate" if it is passed with a larger critical angle, and
+     * "Negative" if it is failed. If there are more than two groups, the
+     * classification is "Positive" or "Negative".
+     *
+     * @return the classification of the test
+     */
+    public String getClassification() {
+        if (!isVwTestPassed()) {
+            return "Negative";
+        }
+        if (Double.isNaN(criticalGamma)) {
+            return "Positive";
+        }
+        return criticalGamma <= 5 ? "A" : criticalGamma <= 10 ? "B"
+                : criticalGamma <= 20 ? "C" : "Indeterminate";
+    }
+
+    /**
+     * Returns the bounds of the 95% confidence interval of one Cartesian
+     * component of a group's bootstrapped mean direction.
+     *
+     * @param group the index of the group
+     * @param component the component (0 for x, 1 for y, 2 for z)
+     * @return a two-element array containing the lower and upper bounds
+     */
+    public double[] getCoordinateBounds(int group, int component) {
+        return coordinateBounds[group][component].clone();
+    }
+
+    /**
+     * @return {@code true} if, for each Cartesian component, the 95%
+     * confidence intervals of all the groups' bootstrapped means overlap
+     */
+    public boolean isCoordinateTestPassed() {
+        for (int c = 0; c < 3; c++) {
+            double lower = Double.NEGATIVE_INFINITY;
+            double upper = Double.POSITIVE_INFINITY;
+            for (double[][] bounds: coordinateBounds) {
+                lower = max(lower, bounds[c][0]);
+                upper = min(upper, bounds[c][1]);
+            }
+            if (lower > upper) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the results as a list of strings. The order of the fields is
+     * the same as the order of the headers provided by {@link #getHeaders()}.
+     *
+     * @return the results as a list of strings
+     */
+    public List<String> toStrings() {
+        return Arrays.asList(name, String.join(" / ", groupNames),
+                Integer.toString(n), fmt(vw), fmt(getCriticalVw()),
+                fmt(getVwPValue()), Double.isNaN(gamma) ? "" : fmt(gamma),
+                Double.isNaN(criticalGamma) ? "" : fmt(criticalGamma),
+                getClassification(),
+                isCoordinateTestPassed() ? "Pass" : "Fail");
+    }
+
+    /**
+     * @return the headers describing the fields returned by
+     * {@link #toStrings()}
+     */
+    public static List<String> getHeaders() {
+        return HEADERS;
+    }
+
+    private static String fmt(double d) {
+        return String.format(Locale.ENGLISH, "%.4f", d);
+    }
+}
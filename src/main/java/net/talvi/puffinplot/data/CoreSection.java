@@ -74,14 +74,13 @@ public class CoreSection implements SampleGroup {
 
     /**
      * Rotates the declinations of all the data points in all the samples
-     * by the specified angle.
+     * by the specified angle. Sample calculation results are updated as
+     * described for {@link Sample#rotateAroundZAxis(double)}.
      * 
      * @param clockwiseDegrees rotation angle
      */
     public void rotateDeclinations(double clockwiseDegrees) {
-        getSamples().forEach(s -> s.getTreatmentSteps().forEach(
-                d -> d.setMoment(d.getMoment().
-                        rotZ(Math.toRadians(clockwiseDegrees)))));
+        getSamples().forEach(s -> s.rotateAroundZAxis(clockwiseDegrees));
         for (Sample s : getSamples()) {
             if (s.getImportedDirection() != null) {
                 s.setImportedDirection(s.getImportedDirection().
@@ -143,8 +143,11 @@ public class CoreSections {
                     getDirectionNearEnd(CoreSection.End.TOP, margin).
                     getDecDeg();
             final double offset = alignTo - topDeclination;
+            /*
+             * The rotation also rotates the PCA directions, so they don't
+             * need to be recalculated.
+             */
             section.rotateDeclinations(offset);
-            section.getSamples().forEach(s -> s.doPca(Correction.NONE));
             alignTo = section.
                     getDirectionNearEnd(CoreSection.End.BOTTOM, margin).
                     getDecDeg();
@@ -165,7 +168,6 @@ public class CoreSections {
             final double offset = targetDeclination - initialMean;
             for (CoreSection section : sections.values()) {
                 section.rotateDeclinations(offset);
-                section.getSamples().forEach(s -> s.doPca(Correction.NONE));
             }
         }
     }
@@ -41,6 +41,15 @@ public class CustomFields<T> {
         values.addAll(initialValues);
     }
 
+    /**
+     * Creates a copy of a set of custom fields.
+     *
+     * @param fields the fields to copy
+     */
+    CustomFields(CustomFields<T> fields) {
+        this(fields.values);
+    }
+
     /** Creates an empty set of custom fields. */
     public CustomFields() {
         this(Collections.emptyList());
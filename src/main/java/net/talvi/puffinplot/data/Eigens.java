@@ -89,13 +89,11 @@ public class Eigens {
      */
     public static Eigens fromVectors(Collection<Vec3> vectors,
             boolean normalize) {
-        final Matrix orientationTensor = new Matrix(3,3); // zeros
-        for (Vec3 vector: vectors) {
-            orientationTensor.plusEquals(normalize
-                    ? vector.normalize().oTensor()
-                    : vector.oTensor());
+        final Vec3Array array = Vec3Array.of(vectors);
+        if (normalize) {
+            array.normalize();
         }
-        return new Eigens(orientationTensor);
+        return new Eigens(array.orientationTensor());
     }
 
     private static int[] order(double[] x) {
@@ -16,6 +16,9 @@
  */
 package net.talvi.puffinplot.data;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -80,16 +83,16 @@ public class FisherValues implements FisherParams {
             return null;
         }
         
-        final List<Vec3> normPoints = new ArrayList<>(vectors.size());
+        final Vec3Array normArray = Vec3Array.of(vectors);
         final double N = vectors.size();
-        for (Vec3 point: vectors) {
-            // TODO handle point = (0, 0, 0) case -- should never happen
-            // with real data but currently results in NaNs for normPoints
-            // so needs to be handled explicitly if it ever does occur.
-            normPoints.add(point.normalize());
-        }
+        // TODO handle point = (0, 0, 0) case -- should never happen
+        // with real data but currently results in NaNs for normPoints
+        // so needs to be handled explicitly if it ever does occur.
+        normArray.normalize();
+        final List<Vec3> normPoints = normArray.toList();
+        final Vec3 sum = normArray.sum();
         final double p = 0.05; // significance level, so 0.05 for 95%
-        final double R = Vec3.sum(normPoints).mag(); // vector sum length
+        final double R = sum.mag(); // vector sum length
         // TODO Handle N=R case -- should probably give k = +infinity,
         // a95 = 0 (but existing calculation should already produce a95=0).
         final double k = (N-1)/(N-R);
@@ -103,8 +106,7 @@ public class FisherValues implements FisherParams {
          */
         final double a95 = Math.toDegrees(acos(cosOfA95));
 
-        return new FisherValues(normPoints, a95, k, R,
-                Vec3.meanDirection(normPoints));
+        return new FisherValues(normPoints, a95, k, R, sum.normalize());
     }
     
     @Override
@@ -220,4 +222,38 @@ public class FisherValues implements FisherParams {
     public static List<String> getEmptyFields() {
         return Collections.nCopies(HEADERS.size(), "");
     }
+
+    /**
+     * Returns these statistics rotated about the z axis. Fisherian
+     * statistics other than the mean direction are unaffected by a rigid
+     * rotation of the directions, so they are not recalculated.
+     *
+     * @param angle the angle of rotation in radians
+     * @return the rotated statistics
+     */
+    FisherValues rotZ(double angle) {
+        final List<Vec3> rotatedDirections =
+                new ArrayList<>(directions.size());
+        for (Vec3 direction: directions) {
+            rotatedDirections.add(direction.rotZ(angle));
+        }
+        return new FisherValues(rotatedDirections, a95, k, R,
+                meanDirection.rotZ(angle));
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        Vec3.writeList(out, directions);
+        out.writeDouble(a95);
+        out.writeDouble(k);
+        out.writeDouble(R);
+        meanDirection.writeTo(out);
+    }
+
+    static FisherValues readFrom(DataInput in) throws IOException {
+        final List<Vec3> directions = Vec3.readList(in);
+        final double a95 = in.readDouble();
+        final double k = in.readDouble();
+        final double R = in.readDouble();
+        return new FisherValues(directions, a95, k, R, Vec3.readFrom(in));
+    }
 }
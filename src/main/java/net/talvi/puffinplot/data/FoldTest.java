@@ -0,0 +1,492 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.talvi.puffinplot.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import net.talvi.puffinplot.Metrics;
+
+import static java.lang.Math.acos;
+import static java.lang.Math.cos;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.sqrt;
+import static java.lang.Math.toRadians;
+
+/**
+ * A bootstrap fold test after Tauxe and Watson (1994).
+ * <p>
+ * The directions are progressively untilted, from (by default) −50% to
+ * 150% of the full bedding correction, and the principal eigenvalue τ1 of
+ * the orientation tensor is calculated at each step. The untilting which
+ * maximizes τ1 gives the tightest grouping of the directions. The same
+ * calculation is carried out on a large number of bootstrap pseudo-samples,
+ * drawn in parallel, and the distribution of their optimal untilting
+ * percentages gives a 95% confidence interval. If the interval includes
+ * 100% but not 0%, the magnetization was acquired before folding; if it
+ * includes 0% but not 100%, after folding.
+ * <p>
+ * Partial untilting uses the same rotation as a full formation correction
+ * (see {@link Vec3#correctForm(double, double)}), with the dip angle scaled
+ * by the untilting fraction. The rotated directions, and their
+ * contributions to the orientation tensor, are calculated once for every
+ * direction and untilting step before the bootstrap starts, so the
+ * bootstrap itself consists only of weighted sums over primitive arrays.
+ * <p>
+ * Reference: Tauxe, L. &amp; Watson, G. S., 1994. The fold test: an
+ * eigen analysis approach. Earth and Planetary Science Letters, 122,
+ * pp. 331–341.
+ *
+ * @author pont
+ */
+public final class FoldTest {
+
+    private static final List<String> HEADERS = Collections.unmodifiableList(
+            Arrays.asList("Fold test N", "Fold test bootstraps",
+                    "Fold test best untilting (%)",
+                    "Fold test lower 95% (%)", "Fold test upper 95% (%)",
+                    "Fold test tau1 at best"));
+
+    private final int n;
+    private final double[] percentages;
+    private final double[] tau1;
+    private final int best;
+    private final double[] bootstrapOptima;
+
+    private FoldTest(int n, double[] percentages, double[] tau1,
+            int best, double[] bootstrapOptima) {
+        this.n = n;
+        this.percentages = percentages;
+        this.tau1 = tau1;
+        this.best = best;
+        this.bootstrapOptima = bootstrapOptima;
+    }
+
+    /**
+     * A builder which collects directions and bedding orientations and
+     * performs the fold test on them.
+     */
+    public static final class Builder {
+
+        private final List<Vec3> directions = new ArrayList<>();
+        private final List<double[]> beddings = new ArrayList<>();
+        private double minPercent = -50, maxPercent = 150, stepPercent = 1;
+        private int bootstraps = 1000;
+        private long seed = 0;
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a direction to the test.
+         *
+         * @param direction a direction in geographic co-ordinates; it will
+         * be normalized
+         * @param dipAzimuth the dip azimuth of the bedding in degrees
+         * @param dip the dip angle of the bedding in degrees
+         * @return this builder
+         */
+        public Builder add(Vec3 direction, double dipAzimuth, double dip) {
+            if (!direction.isFinite() || !Double.isFinite(dipAzimuth)
+                    || !Double.isFinite(dip)) {
+                throw new IllegalArgumentException(
+                        "Directions and bedding must be finite");
+            }
+            directions.add(direction.normalize());
+            beddings.add(new double[] {toRadians(dipAzimuth),
+                toRadians(dip)});
+            return this;
+        }
+
+        /**
+         * Adds the direction of a sample to the test, using the formation
+         * orientation of the sample as the bedding. If the direction was
+         * calculated with a formation correction, the correction is reversed
+         * to obtain the geographic direction. Samples without a finite
+         * direction or formation orientation are ignored.
+         *
+         * @param sample the sample to add
+         * @param correction the correction with which the sample direction
+         * was calculated; it must include the sample orientation correction
+         * @return this builder
+         */
+        public Builder addSample(Sample sample, Correction correction) {
+            if (!correction.includesSample()) {
+                throw new IllegalArgumentException("Sample directions must be "
+                        + "in geographic or tectonic co-ordinates");
+            }
+            final Vec3 direction = sample.getDirection();
+            double dipAzimuth = sample.getFormAz();
+            final double dip = sample.getFormDip();
+            if (direction == null || !direction.isFinite()
+                    || !Double.isFinite(dipAzimuth)
+                    || !Double.isFinite(dip)) {
+                return this;
+            }
+            if (correction.isMagDevAppliedToFormation()) {
+                dipAzimuth += sample.getMagDev();
+            }
+            Vec3 geographic = direction;
+            if (correction.includesFormation()) {
+                /*
+                 * The correction is a rotation, so its inverse is its
+                 * transpose.
+                 */
+                geographic = direction.transform(transpose(
+                        Vec3.getFormationCorrectionMatrix(
+                                toRadians(dipAzimuth), toRadians(dip))));
+            }
+            return add(geographic, dipAzimuth, dip);
+        }
+
+        /**
+         * Sets the range of untilting to examine. The default is from −50%
+         * to 150% in steps of 1%.
+         *
+         * @param minPercent the smallest untilting percentage
+         * @param maxPercent the largest untilting percentage
+         * @param stepPercent the step between untilting percentages
+         * @return this builder
+         */
+        public Builder range(double minPercent, double maxPercent,
+                double stepPercent) {
+            if (!(maxPercent >= minPercent) || !(stepPercent > 0)) {
+                throw new IllegalArgumentException("Invalid untilting range");
+            }
+            this.minPercent = minPercent;
+            this.maxPercent = maxPercent;
+            this.stepPercent = stepPercent;
+            return this;
+        }
+
+        /**
+         * Sets the number of bootstrap pseudo-samples. The default is 1000.
+         *
+         * @param bootstraps the number of bootstrap pseudo-samples
+         * @return this builder
+         */
+        public Builder bootstraps(int bootstraps) {
+            if (bootstraps < 1) {
+                throw new IllegalArgumentException(
+                        "At least one bootstrap is required");
+            }
+            this.bootstraps = bootstraps;
+            return this;
+        }
+
+        /**
+         * Sets the seed for the random selection of pseudo-samples. Each
+         * pseudo-sample is drawn from its own generator derived from this
+         * seed, so the results do not depend on how the work is divided
+         * between threads.
+         *
+         * @param seed the random seed
+         * @return this builder
+         */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * @return the number of directions added so far
+         */
+        public int size() {
+            return directions.size();
+        }
+
+        /**
+         * Performs the fold test.
+         *
+         * @return the results of the fold test
+         * @throws IllegalStateException if fewer than two directions have
+         * been added
+         */
+        public FoldTest calculate() {
+            if (directions.size() < 2) {
+                throw new IllegalStateException(
+                        "At least two directions are required");
+            }
+            final Metrics.Timer timer = Metrics.start("foldTest.calculate");
+            try {
+                return new Tensors(this).calculate(bootstraps, seed);
+            } finally {
+                timer.stop();
+            }
+        }
+    }
+
+    /**
+     * Returns the random number generator for one pseudo-sample. The seed
+     * and index are combined with the SplitMix64 finalizer, so the
+     * generators for adjacent indices start from unrelated states. (Adding
+     * a multiple of SplittableRandom's own increment to the seed would
+     * make each generator repeat its neighbour's sequence shifted by one
+     * draw.)
+     *
+     * @param seed the seed for the whole fold test
+     * @param index the index of the pseudo-sample
+     * @return a generator for the pseudo-sample
+     */
+    static SplittableRandom random(long seed, int index) {
+        long z = seed + 0x9E3779B97F4A7C15L * (index + 1L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return new SplittableRandom(z ^ (z >>> 31));
+    }
+
+    /**
+     * The orientation tensor contributions of every direction at every
+     * untilting step, stored as one array per tensor component and step.
+     */
+    private static final class Tensors {
+        private final int n;
+        private final double[] percentages;
+        private final double[][] xx, xy, xz, yy, yz, zz;
+
+        Tensors(Builder builder) {
+            n = builder.directions.size();
+            final int steps = (int) Math.floor((builder.maxPercent
+                    - builder.minPercent) / builder.stepPercent + 1e-9) + 1;
+            percentages = new double[steps];
+            xx = new double[steps][n];
+            xy = new double[steps][n];
+            xz = new double[steps][n];
+            yy = new double[steps][n];
+            yz = new double[steps][n];
+            zz = new double[steps][n];
+            for (int s = 0; s < steps; s++) {
+                percentages[s] = builder.minPercent + s * builder.stepPercent;
+                final double fraction = percentages[s] / 100;
+                for (int i = 0; i < n; i++) {
+                    final double[] bedding = builder.beddings.get(i);
+                    final Vec3 v = builder.directions.get(i).transform(
+                            Vec3.getFormationCorrectionMatrix(bedding[0],
+                                    bedding[1] * fraction));
+                    xx[s][i] = v.x * v.x;
+                    xy[s][i] = v.x * v.y;
+                    xz[s][i] = v.x * v.z;
+                    yy[s][i] = v.y * v.y;
+                    yz[s][i] = v.y * v.z;
+                    zz[s][i] = v.z * v.z;
+                }
+            }
+        }
+
+        FoldTest calculate(int bootstraps, long seed) {
+            final double[] weights = new double[n];
+            Arrays.fill(weights, 1);
+            final double[] tau1 = new double[percentages.length];
+            final int best = optimum(weights, tau1);
+            final double[] optima = IntStream.range(0, bootstraps).parallel()
+                    .mapToDouble(i -> percentages[bootstrap(seed, i)])
+                    .toArray();
+            Arrays.sort(optima);
+            return new FoldTest(n, percentages, tau1, best, optima);
+        }
+
+        /*
+         * Draws one pseudo-sample and returns the index of its optimal
+         * untilting step. The pseudo-sample is represented by the number
+         * of times each direction was drawn.
+         */
+        private int bootstrap(long seed, int index) {
+            final SplittableRandom random = random(seed, index);
+            final double[] weights = new double[n];
+            for (int i = 0; i < n; i++) {
+                weights[random.nextInt(n)] += 1;
+            }
+            return optimum(weights, null);
+        }
+
+        /*
+         * Returns the index of the untilting step with the largest
+         * principal eigenvalue for the weighted directions, optionally
+         * storing the normalized eigenvalue for each step.
+         */
+        private int optimum(double[] weights, double[] tau1) {
+            double total = 0;
+            for (int i = 0; i < n; i++) {
+                total += weights[i];
+            }
+            int best = 0;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int s = 0; s < percentages.length; s++) {
+                final double[] sxx = xx[s], sxy = xy[s], sxz = xz[s],
+                        syy = yy[s], syz = yz[s], szz = zz[s];
+                double txx = 0, txy = 0, txz = 0, tyy = 0, tyz = 0, tzz = 0;
+                for (int i = 0; i < n; i++) {
+                    final double w = weights[i];
+                    txx += w * sxx[i];
+                    txy += w * sxy[i];
+                    txz += w * sxz[i];
+                    tyy += w * syy[i];
+                    tyz += w * syz[i];
+                    tzz += w * szz[i];
+                }
+                final double value = largestEigenvalue(txx, txy, txz,
+                        tyy, tyz, tzz) / total;
+                if (tau1 != null) {
+                    tau1[s] = value;
+                }
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = s;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Returns the largest eigenvalue of a symmetric three-by-three matrix,
+     * using the closed-form trigonometric solution of the characteristic
+     * equation.
+     *
+     * @param a00 matrix element (0, 0)
+     * @param a01 matrix element (0, 1)
+     * @param a02 matrix element (0, 2)
+     * @param a11 matrix element (1, 1)
+     * @param a12 matrix element (1, 2)
+     * @param a22 matrix element (2, 2)
+     * @return the largest eigenvalue of the matrix
+     */
+    static double largestEigenvalue(double a00, double a01, double a02,
+            double a11, double a12, double a22) {
+        final double p1 = a01 * a01 + a02 * a02 + a12 * a12;
+        final double q = (a00 + a11 + a22) / 3;
+        final double b00 = a00 - q, b11 = a11 - q, b22 = a22 - q;
+        final double p2 = b00 * b00 + b11 * b11 + b22 * b22 + 2 * p1;
+        if (p2 == 0) {
+            return q; // a multiple of the identity matrix
+        }
+        final double p = sqrt(p2 / 6);
+        final double det = b00 * (b11 * b22 - a12 * a12)
+                - a01 * (a01 * b22 - a12 * a02)
+                + a02 * (a01 * a12 - b11 * a02);
+        final double r = max(-1, min(1, det / (2 * p * p * p)));
+        return q + 2 * p * cos(acos(r) / 3);
+    }
+
+    private static double[][] transpose(double[][] m) {
+        return new double[][] {
+            {m[0][0], m[1][0], m[2][0]},
+            {m[0][1], m[1][1], m[2][1]},
+            {m[0][2], m[1][2], m[2][2]}};
+    }
+
+    /**
+     * @return a new builder for a fold test
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the number of directions in the test
+     */
+    public int getN() {
+        return n;
+    }
+
+    /**
+     * @return the number of bootstrap pseudo-samples
+     */
+    public int getBootstrapCount() {
+        return bootstrapOptima.length;
+    }
+
+    /**
+     * @return the untilting percentages examined, in ascending order
+     */
+    public double[] getPercentages() {
+        return percentages.clone();
+    }
+
+    /**
+     * @return the normalized principal eigenvalue τ1 of the directions at
+     * each of the untilting percentages returned by {@link #getPercentages()}
+     */
+    public double[] getTau1() {
+        return tau1.clone();
+    }
+
+    /**
+     * @return the untilting percentage which maximizes τ1 for the
+     * supplied directions
+     */
+    public double getBestPercentage() {
+        return percentages[best];
+    }
+
+    /**
+     * @return the optimal untilting percentage of each bootstrap
+     * pseudo-sample, in ascending order
+     */
+    public double[] getBootstrapOptima() {
+        return bootstrapOptima.clone();
+    }
+
+    /**
+     * @return the lower limit of the 95% confidence interval for the
+     * optimal untilting percentage
+     */
+    public double getLowerBound() {
+        return bootstrapOptima[(int) (0.025 * bootstrapOptima.length)];
+    }
+
+    /**
+     * @return the upper limit of the 95% confidence interval for the
+     * optimal untilting percentage
+     */
+    public double getUpperBound() {
+        return bootstrapOptima[max(0,
+                (int) Math.ceil(0.975 * bootstrapOptima.length) - 1)];
+    }
+
+    /**
+     * Returns the results as a list of strings. The order of the fields is
+     * the same as the order of the headers provided by {@link #getHeaders()}.
+     *
+     * @return the results as a list of strings
+     */
+    public List<String> toStrings() {
+        return Arrays.asList(Integer.toString(getN()),
+                Integer.toString(getBootstrapCount()),
+                fmt(getBestPercentage()), fmt(getLowerBound()),
+                fmt(getUpperBound()), String.format(Locale.ENGLISH, "%.4f",
+                        tau1[best]));
+    }
+
+    /**
+     * @return the headers describing the fields returned by
+     * {@link #toStrings()}
+     */
+    public static List<String> getHeaders() {
+        return HEADERS;
+    }
+
+    private static String fmt(double percentage) {
+        return String.format(Locale.ENGLISH, "%.1f", percentage);
+    }
+}
@@ -16,6 +16,9 @@
  */
 package net.talvi.puffinplot.data;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -234,4 +237,32 @@ public final class GreatCircle {
         }
         return mad1;
     }
+
+    /**
+     * Returns this great circle rotated about the z axis, together with
+     * its fitted points. The result is the same as fitting a great circle
+     * to the rotated points.
+     *
+     * @param angle the angle of rotation in radians
+     * @return the rotated great circle
+     */
+    GreatCircle rotZ(double angle) {
+        final List<Vec3> rotatedPoints = new ArrayList<>(points.size());
+        for (Vec3 point: points) {
+            rotatedPoints.add(point.rotZ(angle));
+        }
+        return new GreatCircle(pole.rotZ(angle), rotatedPoints, mad1);
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        pole.writeTo(out);
+        Vec3.writeList(out, points);
+        out.writeDouble(mad1);
+    }
+
+    static GreatCircle readFrom(DataInput in) throws IOException {
+        final Vec3 pole = Vec3.readFrom(in);
+        final List<Vec3> points = Vec3.readList(in);
+        return new GreatCircle(pole, points, in.readDouble());
+    }
 }
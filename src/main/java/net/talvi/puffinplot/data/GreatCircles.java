@@ -16,6 +16,9 @@
  */
 package net.talvi.puffinplot.data;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -374,4 +377,36 @@ public final class GreatCircles implements FisherParams {
     public double getR() {
         return R;
     }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(circles.size());
+        for (GreatCircle circle: circles) {
+            circle.writeTo(out);
+        }
+        Vec3.writeList(out, endpoints);
+        direction.writeTo(out);
+        out.writeDouble(R);
+        out.writeBoolean(validityCondition != null);
+        if (validityCondition != null) {
+            out.writeUTF(validityCondition);
+        }
+    }
+
+    static GreatCircles readFrom(DataInput in) throws IOException {
+        final int nCircles = in.readInt();
+        if (nCircles < 0) {
+            throw new IOException("Invalid circle count " + nCircles);
+        }
+        final List<GreatCircle> circles = new ArrayList<>(nCircles);
+        for (int i = 0; i < nCircles; i++) {
+            circles.add(GreatCircle.readFrom(in));
+        }
+        final List<Vec3> endpoints = Vec3.readList(in);
+        final Vec3 direction = Vec3.readFrom(in);
+        final double R = in.readDouble();
+        final String validityCondition =
+                in.readBoolean() ? in.readUTF() : null;
+        return new GreatCircles(Collections.unmodifiableList(circles),
+                endpoints, direction, R, validityCondition);
+    }
 }
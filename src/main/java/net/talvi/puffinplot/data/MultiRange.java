@@ -1,6 +1,7 @@
 package net.talvi.puffinplot.data;
 
 import java.util.*;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
 /**
@@ -35,6 +36,16 @@ public class MultiRange {
         return ranges.stream().anyMatch(range -> range.contains(value));
     }
 
+    /**
+     * Calls the supplied consumer with the lower and upper limits of
+     * each range in this multirange.
+     *
+     * @param consumer a consumer to receive the range limits
+     */
+    void forEachRange(BiConsumer<Double, Double> consumer) {
+        ranges.forEach(range -> consumer.accept(range.from, range.to));
+    }
+
     private static class Range {
         public final double from;
         public final double to;
@@ -16,6 +16,9 @@
  */
 package net.talvi.puffinplot.data;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -145,4 +148,31 @@ public class PcaAnnotated {
     public static List<String> getEmptyFields() {
         return Collections.nCopies(HEADERS.size(), "");
     }
+
+    /**
+     * Returns these PCA results rotated about the z axis.
+     *
+     * @param angle the angle of rotation in radians
+     * @return the rotated results
+     * @see PcaValues#rotZ(double)
+     */
+    PcaAnnotated rotZ(double angle) {
+        return new PcaAnnotated(pcaValues.rotZ(angle), demagStart, demagEnd,
+                contiguous);
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        pcaValues.writeTo(out);
+        out.writeDouble(demagStart);
+        out.writeDouble(demagEnd);
+        out.writeBoolean(contiguous);
+    }
+
+    static PcaAnnotated readFrom(DataInput in) throws IOException {
+        final PcaValues pcaValues = PcaValues.readFrom(in);
+        final double demagStart = in.readDouble();
+        final double demagEnd = in.readDouble();
+        return new PcaAnnotated(pcaValues, demagStart, demagEnd,
+                in.readBoolean());
+    }
 }
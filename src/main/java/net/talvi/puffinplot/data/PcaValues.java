@@ -16,6 +16,9 @@
  */
 package net.talvi.puffinplot.data;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -190,4 +193,42 @@ public class PcaValues {
             fmt(getMad1()), fmt(getMad3()), anchored ? "Y" : "N",
             getEquation(), Integer.toString(getNpoints()));
     }
+
+    /**
+     * Returns these PCA results rotated about the z axis. Since PCA is
+     * unaffected by a rigid rotation of the data, the result is the same
+     * as a PCA of the rotated points, but no eigen-decomposition is needed.
+     *
+     * @param angle the angle of rotation in radians
+     * @return the rotated results
+     */
+    PcaValues rotZ(double angle) {
+        return new PcaValues(direction.rotZ(angle), mad1, mad3,
+                origin == Vec3.ORIGIN ? Vec3.ORIGIN : origin.rotZ(angle),
+                anchored, nPoints);
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        direction.writeTo(out);
+        out.writeDouble(mad1);
+        out.writeDouble(mad3);
+        origin.writeTo(out);
+        out.writeBoolean(anchored);
+        out.writeInt(nPoints);
+    }
+
+    static PcaValues readFrom(DataInput in) throws IOException {
+        final Vec3 direction = Vec3.readFrom(in);
+        final double mad1 = in.readDouble();
+        final double mad3 = in.readDouble();
+        final Vec3 origin = Vec3.readFrom(in);
+        final boolean anchored = in.readBoolean();
+        /*
+         * getEquation identifies an anchored fit by reference equality
+         * with Vec3.ORIGIN, so the identity has to be restored here.
+         */
+        return new PcaValues(direction, mad1, mad3,
+                anchored ? Vec3.ORIGIN : origin, anchored,
+                in.readInt());
+    }
 }
@@ -34,7 +34,6 @@ import java.util.stream.Collectors;
 import Jama.Matrix;
 
 import static java.lang.Double.parseDouble;
-import static java.lang.Math.abs;
 import static java.lang.Math.toRadians;
 import java.util.function.Consumer;
 import java.util.function.ObjDoubleConsumer;
@@ -47,6 +46,7 @@ import java.util.function.ObjDoubleConsumer;
 public class Sample {
 
     private List<TreatmentStep> treatmentSteps;
+    private volatile TreatmentLevelIndex treatmentLevelIndex;
     private Site site;
     private String nameOrDepth;
     private double depth;
@@ -64,6 +64,13 @@ public class Sample {
     private double formAz = Double.NaN, formDip = Double.NaN;
     private double magDev = Double.NaN;
     private FisherValues fisherValues;
+    /*
+     * The corrections with which the current PCA, great-circle, and Fisher
+     * results were calculated, or null if not known.
+     */
+    private Correction pcaCorrection;
+    private Correction greatCircleCorrection;
+    private Correction fisherCorrection;
     private Vec3 importedDirection = null;
     private static final Logger LOGGER =
             Logger.getLogger("net.talvi.puffinplot");
@@ -103,6 +110,7 @@ public class Sample {
              */
         }
         this.depth = depthTmp;
+        invalidateStatistics();
     }
     
     /**
@@ -112,6 +120,7 @@ public class Sample {
         touch();
         pca = null;
         forEachTreatmentStep(step -> step.setInPca(false));
+        fireChange(SuiteChangeEvent.Type.CALCULATIONS);
     }
     
     /**
@@ -121,6 +130,7 @@ public class Sample {
         touch();
         greatCircle = null;
         forEachTreatmentStep(step -> step.setOnCircle(false));
+        fireChange(SuiteChangeEvent.Type.CALCULATIONS);
     }
     
     /**
@@ -129,11 +139,13 @@ public class Sample {
      */
     public void clearCalculations() {
         touch();
-        clearPca();
-        clearGreatCircle();
-        fisherValues = null;
-        mdf = null;
-        selectNone();
+        runInTransaction(() -> {
+            clearPca();
+            clearGreatCircle();
+            fisherValues = null;
+            mdf = null;
+            selectNone();
+        });
     }
     
     /**
@@ -154,6 +166,7 @@ public class Sample {
     public void calculateMdf() {
         touch();
         mdf = MedianDestructiveField.calculate(getVisibleTreatmentSteps());
+        fireChange(SuiteChangeEvent.Type.CALCULATIONS);
     }
 
     /**
@@ -222,6 +235,7 @@ public class Sample {
             }
         }
         magSusJump = msj;
+        fireChange(SuiteChangeEvent.Type.CALCULATIONS);
     }
 
     /**
@@ -264,12 +278,14 @@ public class Sample {
      */
     public void hideAndDeselectSelectedPoints() {
         touch();
-        for (TreatmentStep step : getTreatmentSteps()) {
-            if (step.isSelected()) {
-                step.setSelected(false);
-                step.setHidden(true);
+        runInTransaction(() -> {
+            for (TreatmentStep step : getTreatmentSteps()) {
+                if (step.isSelected()) {
+                    step.setSelected(false);
+                    step.setHidden(true);
+                }
             }
-        }
+        });
     }
     
     /**
@@ -290,11 +306,13 @@ public class Sample {
      */
     public void selectVisible() {
         touch();
-        for (TreatmentStep step : getTreatmentSteps()) {
-            if (!step.isHidden()) {
-                step.setSelected(true);
+        runInTransaction(() -> {
+            for (TreatmentStep step : getTreatmentSteps()) {
+                if (!step.isHidden()) {
+                    step.setSelected(true);
+                }
             }
-        }
+        });
     }
 
     /**
@@ -324,10 +342,14 @@ public class Sample {
      * @see TreatmentStep#getTreatmentLevel()
      */
     public void selectByTreatmentLevelRange(double min, double max) {
-        for (TreatmentStep step: getTreatmentSteps()) {
-            final double level = step.getTreatmentLevel();
-            step.setSelected(min <= level && level <= max);
-        }
+        final BitSet inRange = new BitSet(treatmentSteps.size());
+        getTreatmentLevelIndex().markRange(min, max, inRange);
+        final List<TreatmentStep> steps = getTreatmentSteps();
+        runInTransaction(() -> {
+            for (int i = 0; i < steps.size(); i++) {
+                steps.get(i).setSelected(inRange.get(i));
+            }
+        });
     }
     
     /**
@@ -421,13 +443,7 @@ public class Sample {
      * @return the first datum in the sample with the given treatment level
      */
     public TreatmentStep getTreatmentStepByLevel(double level) {
-        final double threshold = 1e-6;
-        for (TreatmentStep step: treatmentSteps) {
-            if (abs(step.getTreatmentLevel() - level) < threshold) {
-                return step;
-            }
-        }
-        return null;
+        return getTreatmentLevelIndex().find(level);
     }
     
     /**
@@ -451,14 +467,33 @@ public class Sample {
      */
     public TreatmentStep getTreatmentStepByTypeAndLevel(
             Set<TreatmentType> types, double level) {
-        final double threshold = 1e-6;
-        for (TreatmentStep step: treatmentSteps) {
-            if (abs(step.getTreatmentLevel() - level) < threshold
-                    && types.contains(step.getTreatmentType())) {
-                return step;
-            }
+        return getTreatmentLevelIndex().find(types, level);
+    }
+    
+    /**
+     * Returns an index of this sample's treatment steps by treatment level.
+     * The index is built on demand and discarded whenever the steps or
+     * their treatment levels change.
+     * 
+     * @return an index of this sample's treatment steps
+     */
+    private TreatmentLevelIndex getTreatmentLevelIndex() {
+        TreatmentLevelIndex index = treatmentLevelIndex;
+        if (index == null) {
+            index = new TreatmentLevelIndex(treatmentSteps);
+            treatmentLevelIndex = index;
         }
-        return null;
+        return index;
+    }
+    
+    /**
+     * Discards this sample's treatment level index, so that it will be
+     * rebuilt when next required. Called when the treatment steps are
+     * added, removed, or reordered, or when the treatment type or level
+     * of a step changes.
+     */
+    void invalidateTreatmentLevelIndex() {
+        treatmentLevelIndex = null;
     }
     
     /**
@@ -490,10 +525,12 @@ public class Sample {
             setMagDev(treatmentStep.getMagDev());
         }
         treatmentSteps.add(treatmentStep);
+        invalidateTreatmentLevelIndex();
         if (treatmentStep.hasMagSus()) {
             hasMsData = true;
         }
         treatmentStep.setSample(this);
+        fireChange(SuiteChangeEvent.Type.STEPS_CHANGED);
     }
 
     /**
@@ -580,8 +617,41 @@ public class Sample {
          */
         touch();
         boolean firstStepAnchored = getTreatmentSteps().get(0).isPcaAnchored();
-        setPcaAnchored(firstStepAnchored);
-        pca = PcaAnnotated.calculate(this, correction);
+        runInTransaction(() -> {
+            setPcaAnchored(firstStepAnchored);
+            pca = PcaAnnotated.calculate(this, correction);
+            pcaCorrection = copyCorrection(correction);
+            fireChange(SuiteChangeEvent.Type.CALCULATIONS);
+        });
+    }
+    
+    /**
+     * Sets the results of this sample's calculations to previously
+     * calculated values, as if {@link #doPca(Correction)},
+     * {@link #fitGreatCircle(Correction)}, and
+     * {@link #calculateMagSusJump()} had been called.
+     *
+     * @param pca the PCA results, or {@code null} for none
+     * @param greatCircle the great-circle fit, or {@code null} for none
+     * @param magSusJump the magnetic susceptibility jump temperature
+     * @param correction the correction with which the results were
+     * calculated
+     * @see CalculationCache
+     */
+    void restoreCalculations(PcaAnnotated pca, GreatCircle greatCircle,
+            double magSusJump, Correction correction) {
+        touch();
+        runInTransaction(() -> {
+            if (hasTreatmentSteps()) {
+                setPcaAnchored(getTreatmentSteps().get(0).isPcaAnchored());
+            }
+            this.pca = pca;
+            this.greatCircle = greatCircle;
+            this.magSusJump = magSusJump;
+            pcaCorrection = copyCorrection(correction);
+            greatCircleCorrection = pcaCorrection;
+            fireChange(SuiteChangeEvent.Type.CALCULATIONS);
+        });
     }
     
     /**
@@ -638,6 +708,7 @@ public class Sample {
      */
     public void setImportedDirection(Vec3 importedDirection) {
         this.importedDirection = importedDirection;
+        invalidateStatistics();
     }
 
     /**
@@ -708,6 +779,8 @@ public class Sample {
         final List<Vec3> points = getCirclePoints(correction);
         if (points.size() < 2) return;
         greatCircle = GreatCircle.fromBestFit(points);
+        greatCircleCorrection = copyCorrection(correction);
+        fireChange(SuiteChangeEvent.Type.CALCULATIONS);
     }
     
     /**
@@ -785,6 +858,7 @@ public class Sample {
      * @param newNameOrDepth
      */
     public void setNameOrDepth(String newNameOrDepth) {
+        touch();
         nameOrDepth = newNameOrDepth;
         if (getMeasurementType() == MeasurementType.CONTINUOUS) {
             setDepth(nameOrDepth);
@@ -903,11 +977,14 @@ public class Sample {
      */
     public void setSelectionBitSet(BitSet selection) {
         touch();
-        for (int i = 0; i<Math.min(selection.size(), treatmentSteps.size());
-                i++) {
-            final TreatmentStep treatmentStep = treatmentSteps.get(i);
-            treatmentStep.setSelected(selection.get(i));
-        }
+        runInTransaction(() -> {
+            for (int i = 0;
+                    i < Math.min(selection.size(), treatmentSteps.size());
+                    i++) {
+                final TreatmentStep treatmentStep = treatmentSteps.get(i);
+                treatmentStep.setSelected(selection.get(i));
+            }
+        });
     }
 
     /**
@@ -927,6 +1004,7 @@ public class Sample {
     public void setSite(Site site) {
         touch();
         this.site = site;
+        fireChange(SuiteChangeEvent.Type.SITES);
     }
 
     /**
@@ -1091,6 +1169,36 @@ public class Sample {
         return customNotes;
     }
 
+    /**
+     * Sets the value of one of this sample's custom flags. If the index
+     * is outside the range of available custom flags, nothing happens.
+     *
+     * @param number the index of the flag to set
+     * @param value the value to which to set the flag
+     */
+    public void setCustomFlag(int number, boolean value) {
+        if (number < customFlags.size()
+                && !Objects.equals(customFlags.get(number), value)) {
+            touch();
+            customFlags.set(number, value);
+        }
+    }
+
+    /**
+     * Sets the value of one of this sample's custom notes. If the index
+     * is outside the range of available custom notes, nothing happens.
+     *
+     * @param number the index of the note to set
+     * @param value the value to which to set the note
+     */
+    public void setCustomNote(int number, String value) {
+        if (number < customNotes.size()
+                && !Objects.equals(customNotes.get(number), value)) {
+            touch();
+            customNotes.set(number, value);
+        }
+    }
+
     /**
      * Returns this sample's dip azimuth in degrees.
      *
@@ -1263,8 +1371,125 @@ public class Sample {
      */
     public void touch() {
         if (suite != null) {
+            suite.recordForUndo(this);
             suite.setSaved(false);
         }
+        invalidateStatistics();
+    }
+
+    /**
+     * A snapshot of a sample's own fields, used by {@link SuiteHistory}.
+     * The treatment step list and the custom fields are copied, but the
+     * treatment steps themselves and the calculation results (which are immutable) are shared with
+     * the sample.
+     */
+    static final class State {
+        private final List<TreatmentStep> treatmentSteps;
+        private final Site site;
+        private final String nameOrDepth;
+        private final double depth;
+        private final boolean isEmptySlot;
+        private final GreatCircle greatCircle;
+        private final PcaAnnotated pca;
+        private final MedianDestructiveField mdf;
+        private final boolean hasMsData;
+        private final Tensor ams;
+        private final double magSusJump;
+        private final double sampAz, sampDip, formAz, formDip, magDev;
+        private final FisherValues fisherValues;
+        private final Correction pcaCorrection;
+        private final Correction greatCircleCorrection;
+        private final Correction fisherCorrection;
+        private final Vec3 importedDirection;
+        private final CustomFields<Boolean> customFlags;
+        private final CustomFields<String> customNotes;
+
+        private State(Sample sample) {
+            treatmentSteps = new ArrayList<>(sample.treatmentSteps);
+            site = sample.site;
+            nameOrDepth = sample.nameOrDepth;
+            depth = sample.depth;
+            isEmptySlot = sample.isEmptySlot;
+            greatCircle = sample.greatCircle;
+            pca = sample.pca;
+            mdf = sample.mdf;
+            hasMsData = sample.hasMsData;
+            ams = sample.ams;
+            magSusJump = sample.magSusJump;
+            sampAz = sample.sampAz;
+            sampDip = sample.sampDip;
+            formAz = sample.formAz;
+            formDip = sample.formDip;
+            magDev = sample.magDev;
+            fisherValues = sample.fisherValues;
+            pcaCorrection = sample.pcaCorrection;
+            greatCircleCorrection = sample.greatCircleCorrection;
+            fisherCorrection = sample.fisherCorrection;
+            importedDirection = sample.importedDirection;
+            customFlags = new CustomFields<>(sample.customFlags);
+            customNotes = new CustomFields<>(sample.customNotes);
+        }
+    }
+
+    /**
+     * Returns a snapshot of this sample's state, for use by
+     * {@link SuiteHistory}.
+     *
+     * @return a snapshot of this sample's state
+     */
+    State saveState() {
+        return new State(this);
+    }
+
+    /**
+     * Restores this sample to a previously saved state. Site membership
+     * is restored through the sites' own states, so only this sample's
+     * reference to its site is changed here.
+     *
+     * @param state the state to restore
+     */
+    void restoreState(State state) {
+        if (!treatmentSteps.equals(state.treatmentSteps)) {
+            fireChange(SuiteChangeEvent.Type.STEPS_CHANGED);
+        }
+        treatmentSteps = new ArrayList<>(state.treatmentSteps);
+        site = state.site;
+        nameOrDepth = state.nameOrDepth;
+        depth = state.depth;
+        isEmptySlot = state.isEmptySlot;
+        greatCircle = state.greatCircle;
+        pca = state.pca;
+        mdf = state.mdf;
+        hasMsData = state.hasMsData;
+        ams = state.ams;
+        magSusJump = state.magSusJump;
+        sampAz = state.sampAz;
+        sampDip = state.sampDip;
+        formAz = state.formAz;
+        formDip = state.formDip;
+        magDev = state.magDev;
+        fisherValues = state.fisherValues;
+        pcaCorrection = state.pcaCorrection;
+        greatCircleCorrection = state.greatCircleCorrection;
+        fisherCorrection = state.fisherCorrection;
+        importedDirection = state.importedDirection;
+        customFlags = new CustomFields<>(state.customFlags);
+        customNotes = new CustomFields<>(state.customNotes);
+        invalidateTreatmentLevelIndex();
+        invalidateStatistics();
+    }
+    
+    /**
+     * Informs this sample's suite that the sample's contribution to the
+     * suite statistics may have changed. Unlike {@link #touch()}, this
+     * does not affect the suite's saved state.
+     * 
+     * @see SuiteStatistics
+     */
+    void invalidateStatistics() {
+        if (suite != null) {
+            suite.getStatistics().invalidate(this);
+        }
     }
 
     /**
@@ -1279,6 +1504,9 @@ public class Sample {
             directions.add(step.getMoment(correction));
         }
         fisherValues = FisherValues.calculate(directions);
+        fisherCorrection = copyCorrection(correction);
+        invalidateStatistics();
+        fireChange(SuiteChangeEvent.Type.CALCULATIONS);
     }
     
     /**
@@ -1289,19 +1517,79 @@ public class Sample {
      * {@code items} steps will be kept, and the rest deleted.
      */
     public void truncateTreatmentSteps(int items) {
+        touch();
         treatmentSteps = treatmentSteps.subList(0, items);
+        invalidateTreatmentLevelIndex();
+        invalidateStatistics();
+        fireChange(SuiteChangeEvent.Type.STEPS_CHANGED);
     }
     
     /**
      * Rotate all the magnetic moment vectors of this sample about the
      * z axis.
+     * <p>
+     * Any PCA, great-circle, and Fisher results are updated to match.
+     * A result calculated without orientation or empty-slot corrections
+     * is simply rotated along with the data, since a rigid rotation of the
+     * data rotates these results without otherwise changing them. A result
+     * calculated with either correction is recalculated with the same
+     * correction. Results read from a file, whose correction is not known,
+     * are left unchanged.
      *
      * @param angleDegrees the angle (in degrees) by which to rotate the
      * magnetic moments
      */
     public void rotateAroundZAxis(double angleDegrees) {
-        forEachTreatmentStep(step -> step.setMoment(
-                step.getMoment().rotZ(Math.toRadians(angleDegrees))));
+        final double angle = Math.toRadians(angleDegrees);
+        touch();
+        runInTransaction(() -> {
+            forEachTreatmentStep(step -> step.setMoment(
+                    step.getMoment().rotZ(angle)));
+            if (pca != null && pcaCorrection != null) {
+                if (commutesWithZRotation(pcaCorrection)) {
+                    pca = pca.rotZ(angle);
+                } else {
+                    doPca(pcaCorrection);
+                }
+            }
+            if (greatCircle != null && greatCircleCorrection != null) {
+                if (commutesWithZRotation(greatCircleCorrection)) {
+                    greatCircle = greatCircle.rotZ(angle);
+                } else {
+                    fitGreatCircle(greatCircleCorrection);
+                }
+            }
+            if (fisherValues != null && fisherCorrection != null) {
+                if (commutesWithZRotation(fisherCorrection)) {
+                    fisherValues = fisherValues.rotZ(angle);
+                    invalidateStatistics();
+                } else {
+                    calculateFisher(fisherCorrection);
+                }
+            }
+            fireChange(SuiteChangeEvent.Type.CALCULATIONS);
+        });
+    }
+
+    /**
+     * Reports whether rotating the raw data about the z axis rotates the
+     * corrected data by the same angle. This is not the case if the data
+     * are rotated into another coordinate system, or if an (unrotated)
+     * empty-slot measurement is subtracted from them.
+     */
+    private static boolean commutesWithZRotation(Correction correction) {
+        return !correction.includesSample() && !correction.includesEmpty();
+    }
+
+    /**
+     * Correction objects are mutable, so a copy is kept of the correction
+     * used for a calculation.
+     */
+    private static Correction copyCorrection(Correction correction) {
+        return correction == null ? null :
+                new Correction(correction.includesTray(),
+                        correction.includesEmpty(), correction.getRotation(),
+                        correction.isMagDevAppliedToFormation());
     }
     
     /**
@@ -1350,7 +1638,14 @@ public class Sample {
      * @param toRemove the treatmentSteps to remove
      */
     public void removeData(Collection<TreatmentStep> toRemove) {
-        toRemove.forEach(d -> treatmentSteps.remove(d));
+        final Set<TreatmentStep> removalSet = toRemove instanceof Set ?
+                (Set<TreatmentStep>) toRemove : new HashSet<>(toRemove);
+        touch();
+        if (treatmentSteps.removeIf(removalSet::contains)) {
+            fireChange(SuiteChangeEvent.Type.STEPS_CHANGED);
+        }
+        invalidateTreatmentLevelIndex();
+        invalidateStatistics();
     }
 
     /**
@@ -1408,25 +1703,41 @@ public class Sample {
      * first sample's treatmentSteps list. The subsequent samples should
      * therefore be discarded after calling this function.
      * 
-     * @param samples 
+     * @param samples the samples to merge
+     * @return the number of duplicate treatment steps which were merged
+     * (see {@link #mergeDuplicateTreatmentSteps()})
      */
-    public static void mergeSamples(List<Sample> samples) {
+    public static int mergeSamples(List<Sample> samples) {
         if (samples.size() < 2) {
-            return;
+            return 0;
         }
         final Sample firstSample = samples.get(0);
         for (Sample sample : samples.subList(1, samples.size())) {
             sample.getTreatmentSteps().
                     forEach(step -> firstSample.addTreatmentStep(step));
         }
-        firstSample.mergeDuplicateTreatmentSteps();
+        final int stepsMerged =
+                firstSample.mergeDuplicateTreatmentSteps().size();
         firstSample.treatmentSteps.sort(new TreatmentLevelComparator());
+        firstSample.invalidateTreatmentLevelIndex();
+        firstSample.fireChange(SuiteChangeEvent.Type.STEPS_CHANGED);
+        return stepsMerged;
     }
 
+    /**
+     * Returns the treatment steps whose treatment levels lie within
+     * any of the ranges of the supplied multirange, in their order
+     * within this sample.
+     * 
+     * @param multirange a set of treatment level ranges
+     * @return the treatment steps within the specified ranges
+     */
     public List<TreatmentStep> getStepsInRanges(MultiRange multirange) {
-        return getTreatmentSteps().stream()
-                .filter(ts -> multirange.contains(ts.getTreatmentLevel()))
-                .collect(Collectors.toList());
+        final TreatmentLevelIndex index = getTreatmentLevelIndex();
+        final BitSet inRange = new BitSet(treatmentSteps.size());
+        multirange.forEachRange((from, to) ->
+                index.markRange(from, to, inRange));
+        return index.getSteps(inRange);
     }
 
     private static class TreatmentTypeAndLevel {
@@ -1463,6 +1774,25 @@ public class Sample {
     }
     
     private void forEachTreatmentStep(Consumer<TreatmentStep> f) {
-        getTreatmentSteps().forEach(f);
+        runInTransaction(() -> getTreatmentSteps().forEach(f));
+    }
+    
+    /**
+     * Runs the supplied code in a transaction on this sample's suite, so
+     * that any changes it makes are reported in a single change event.
+     * If the sample is not in a suite, the code is simply run.
+     */
+    private void runInTransaction(Runnable action) {
+        if (suite == null) {
+            action.run();
+        } else {
+            suite.runInTransaction(action);
+        }
+    }
+    
+    private void fireChange(SuiteChangeEvent.Type type) {
+        if (suite != null) {
+            suite.fireChange(type, this, null);
+        }
     }
 }
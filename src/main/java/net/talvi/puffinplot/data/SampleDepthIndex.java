@@ -0,0 +1,100 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.talvi.puffinplot.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An immutable index of samples sorted by numeric depth. It is used to
+ * join the samples of two continuous suites by depth, so that depths
+ * which are numerically equal but were written differently in the
+ * original data files (for example "1.5" and "1.50") still match.
+ * Samples with a depth of NaN are not indexed.
+ *
+ * @author pont
+ */
+final class SampleDepthIndex {
+
+    private final double[] depths;
+    private final Sample[] samples;
+
+    /**
+     * Creates a depth index for the supplied samples.
+     *
+     * @param samples the samples to index
+     */
+    SampleDepthIndex(List<Sample> samples) {
+        final List<Integer> order = new ArrayList<>(samples.size());
+        final double[] allDepths = new double[samples.size()];
+        for (int i = 0; i < samples.size(); i++) {
+            allDepths[i] = samples.get(i).getDepth();
+            if (!Double.isNaN(allDepths[i])) {
+                order.add(i);
+            }
+        }
+        /*
+         * The sort is stable, so samples with equal depths are kept in
+         * suite order.
+         */
+        order.sort((i, j) -> Double.compare(allDepths[i], allDepths[j]));
+        depths = new double[order.size()];
+        this.samples = new Sample[order.size()];
+        for (int i = 0; i < order.size(); i++) {
+            depths[i] = allDepths[order.get(i)];
+            this.samples[i] = samples.get(order.get(i));
+        }
+    }
+
+    /**
+     * Returns the sample whose depth is closest to the specified depth,
+     * provided that the difference does not exceed the tolerance. If
+     * two samples are equally close, the shallower one is returned;
+     * samples with identical depths are considered in suite order.
+     *
+     * @param depth a depth
+     * @param tolerance the largest acceptable difference between the
+     * specified depth and the depth of the returned sample
+     * @return the closest matching sample, or {@code null} if there is
+     * no sample within the tolerance
+     */
+    Sample find(double depth, double tolerance) {
+        if (Double.isNaN(depth)) {
+            return null;
+        }
+        int low = 0, high = depths.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (depths[mid] < depth - tolerance) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        Sample best = null;
+        double bestDifference = Double.POSITIVE_INFINITY;
+        for (int i = low; i < depths.length && depths[i] <= depth + tolerance;
+                i++) {
+            final double difference = Math.abs(depths[i] - depth);
+            if (difference < bestDifference) {
+                best = samples[i];
+                bestDifference = difference;
+            }
+        }
+        return best;
+    }
+}
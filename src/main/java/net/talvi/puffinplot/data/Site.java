@@ -20,9 +20,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 import java.util.logging.Logger;
 
 import static java.util.Collections.max;
@@ -42,8 +44,16 @@ public class Site implements SampleGroup {
     private static final Logger logger =
             Logger.getLogger("net.talvi.puffinplot");
     private final String name;
-    private final List<Sample> samples;
+    /*
+     * Samples are held in an insertion-ordered set, so that membership tests,
+     * additions, and removals are constant-time while the order of the
+     * samples is preserved. The list returned by getSamples() is built
+     * lazily and discarded whenever the membership changes.
+     */
+    private final Set<Sample> samples;
+    private volatile List<Sample> sampleList = null;
     private FisherValues fisher;
+    private ArasonLevi inclinationStats;
     private GreatCircles greatCircles;
     private double height = Double.NaN;
     private Location location = null;
@@ -52,12 +62,15 @@ public class Site implements SampleGroup {
     /**
      * Creates a site containing the specified samples.
      * 
+     * The supplied list is copied, so subsequent modifications to it will
+     * not affect the site.
+     * 
      * @param name the name of the site
      * @param samples the samples contained in the site
      */
     public Site(String name, List<Sample> samples) {
         this.name = name;
-        this.samples = samples;
+        this.samples = new LinkedHashSet<>(samples);
     }
 
     /**
@@ -67,7 +80,7 @@ public class Site implements SampleGroup {
      */
     public Site(String name) {
         this.name = name;
-        this.samples = new ArrayList<>();
+        this.samples = new LinkedHashSet<>();
     }
 
     /**
@@ -78,13 +91,30 @@ public class Site implements SampleGroup {
      * available, the sample Fisher mean (if any) and the imported sample
      * direction (if any) are used in turn as fallbacks. The results are stored
      * within the site. If the site has a location set, the VGP will also be
-     * calculated and stored. If no sample directions exist for this site, the
-     * site's current Fisherian statistics (if any) will be cleared.
+     * calculated and stored. Arason-Levi inclination-only statistics are
+     * also calculated on the same directions. If no sample directions exist
+     * for this site, the site's current Fisherian statistics (if any) will be
+     * cleared.
      *
      * @param correction the correction to apply to the magnetic moment data
      * when performing the PCA calculations
      */
     public void calculateFisherStats(Correction correction) {
+        calculateFisherStats(correction, true);
+    }
+
+    /**
+     * Calculates Fisherian statistics as for
+     * {@link #calculateFisherStats(Correction)}, optionally leaving the
+     * inclination-only statistics to be calculated later, in a batch
+     * with other sites, by {@link #calculateInclinationStats(List)}.
+     *
+     * @param correction the correction to apply to the magnetic moment data
+     * when performing the PCA calculations
+     * @param inclinations {@code true} to calculate the inclination-only
+     * statistics
+     */
+    void calculateFisherStats(Correction correction, boolean inclinations) {
         final Collection<Vec3> directions =
                 new ArrayList<>(getSamples().size());
         for (Sample sample : getSamples()) {
@@ -102,7 +132,60 @@ public class Site implements SampleGroup {
         if (getLocation() != null) {
             calculateVgp();
         }
+        if (inclinations) {
+            calculateInclinationStats(Collections.singletonList(this));
+        }
+    }
 
+    /**
+     * Calculates Arason-Levi inclination-only statistics on the current
+     * sample directions of the supplied sites and stores the results in the
+     * sites. The sites are processed in parallel.
+     *
+     * @param sites the sites for which to calculate statistics
+     * @see ArasonLevi#calculateAll(List)
+     */
+    static void calculateInclinationStats(List<Site> sites) {
+        final List<List<Double>> inclinations = new ArrayList<>(sites.size());
+        for (Site site: sites) {
+            inclinations.add(site.getSampleInclinations());
+        }
+        final List<ArasonLevi> results =
+                ArasonLevi.calculateAll(inclinations);
+        for (int i = 0; i < sites.size(); i++) {
+            sites.get(i).inclinationStats = results.get(i);
+        }
+    }
+
+    private List<Double> getSampleInclinations() {
+        final List<Double> inclinations = new ArrayList<>(samples.size());
+        for (Sample sample: getSamples()) {
+            final Vec3 direction = sample.getDirection();
+            if (direction != null && direction.isFinite()) {
+                inclinations.add(direction.getIncDeg());
+            }
+        }
+        return inclinations;
+    }
+
+    /**
+     * Sets the results of this site's calculations to previously
+     * calculated values, as if
+     * {@link #calculateFisherStats(Correction)} and
+     * {@link #calculateGreatCirclesDirection(Correction, String)} had
+     * been called.
+     *
+     * @param fisher the Fisher statistics, or {@code null} for none
+     * @param greatCircles the great-circle mean, or {@code null} for none
+     * @see CalculationCache
+     */
+    void restoreCalculations(FisherValues fisher,
+            GreatCircles greatCircles) {
+        this.fisher = fisher;
+        this.greatCircles = greatCircles;
+        if (getLocation() != null) {
+            calculateVgp();
+        }
     }
 
     /**
@@ -110,6 +193,7 @@ public class Site implements SampleGroup {
      */
     public void clearFisherStats() {
         fisher = null;
+        inclinationStats = null;
     }
 
     /**
@@ -178,7 +262,10 @@ public class Site implements SampleGroup {
      */
     @Override
     public List<Sample> getSamples() {
-        return Collections.unmodifiableList(samples);
+        if (sampleList == null) {
+            sampleList = Collections.unmodifiableList(new ArrayList<>(samples));
+        }
+        return sampleList;
     }
 
     /**
@@ -190,6 +277,19 @@ public class Site implements SampleGroup {
         return fisher;
     }
 
+    /**
+     * Returns the Arason-Levi inclination-only statistics (if any)
+     * calculated for this site. In a long core study, where each site is
+     * a depth window of the core, these give the inclination-only mean for
+     * the window.
+     *
+     * @return the inclination-only statistics (if any) calculated for this
+     * site
+     */
+    public ArasonLevi getInclinationStats() {
+        return inclinationStats;
+    }
+
     /**
      * Returns the great-circle parameters (if any) calculated for this site.
      *
@@ -272,13 +372,65 @@ public class Site implements SampleGroup {
         greatCircles = null;
     }
 
+    private void recordForUndo(Sample sample) {
+        if (sample.getSuite() != null) {
+            sample.getSuite().recordForUndo(this);
+        }
+    }
+
+    /**
+     * A snapshot of a site's membership and results, used by
+     * {@link SuiteHistory}.
+     */
+    static final class State {
+        private final Set<Sample> samples;
+        private final FisherValues fisher;
+        private final ArasonLevi inclinationStats;
+        private final GreatCircles greatCircles;
+        private final VGP vgp;
+
+        private State(Site site) {
+            samples = new LinkedHashSet<>(site.samples);
+            fisher = site.fisher;
+            inclinationStats = site.inclinationStats;
+            greatCircles = site.greatCircles;
+            vgp = site.vgp;
+        }
+    }
+
+    /**
+     * Returns a snapshot of this site's state, for use by
+     * {@link SuiteHistory}.
+     *
+     * @return a snapshot of this site's state
+     */
+    State saveState() {
+        return new State(this);
+    }
+
+    /**
+     * Restores this site to a previously saved state.
+     *
+     * @param state the state to restore
+     */
+    void restoreState(State state) {
+        samples.clear();
+        samples.addAll(state.samples);
+        sampleList = null;
+        fisher = state.fisher;
+        inclinationStats = state.inclinationStats;
+        greatCircles = state.greatCircles;
+        vgp = state.vgp;
+    }
+
     void addSample(Sample sample) {
         if (sample == null) {
             logger.warning("null sample passed to Site.addSample.");
             return;
         }
-        if (!samples.contains(sample)) {
-            samples.add(sample);
+        recordForUndo(sample);
+        if (samples.add(sample)) {
+            sampleList = null;
             sample.setSite(this);
         }
     }
@@ -288,7 +440,10 @@ public class Site implements SampleGroup {
             logger.warning("null sample passed to Site.removeSample.");
             return;
         }
-        samples.remove(sample);
+        recordForUndo(sample);
+        if (samples.remove(sample)) {
+            sampleList = null;
+        }
     }
 
     /**
@@ -16,6 +16,7 @@
  */
 package net.talvi.puffinplot.data;
 
+import java.util.AbstractList;
 import java.util.List;
 import java.util.Locale;
 
@@ -27,7 +28,7 @@ public class StepwiseSampleRpiEstimate implements SampleRpiEstimate {
     
     private final Sample nrmSample;
     private final Sample normalizer;
-    private final List<Double> intensities;
+    private final double[] intensities;
     private final double meanRatio;
     private final double slope;
     private final double r;
@@ -36,6 +37,13 @@ public class StepwiseSampleRpiEstimate implements SampleRpiEstimate {
     StepwiseSampleRpiEstimate(List<Double> intensities, Sample nrmSample,
             Sample normalizer, double meanRatio,
             double slope, double r, double rSquared) {
+        this(intensities.stream().mapToDouble(Double::doubleValue).toArray(),
+                nrmSample, normalizer, meanRatio, slope, r, rSquared);
+    }
+
+    StepwiseSampleRpiEstimate(double[] intensities, Sample nrmSample,
+            Sample normalizer, double meanRatio,
+            double slope, double r, double rSquared) {
         this.nrmSample = nrmSample;
         this.normalizer = normalizer;
         this.intensities = intensities;
@@ -61,10 +69,21 @@ public class StepwiseSampleRpiEstimate implements SampleRpiEstimate {
     }
 
     /**
-     * @return the intensities
+     * @return the intensities, as an unmodifiable view of the underlying
+     * array
      */
     public List<Double> getIntensities() {
-        return intensities;
+        return new AbstractList<Double>() {
+            @Override
+            public Double get(int index) {
+                return intensities[index];
+            }
+
+            @Override
+            public int size() {
+                return intensities.length;
+            }
+        };
     }
 
     /**
@@ -99,7 +118,7 @@ public class StepwiseSampleRpiEstimate implements SampleRpiEstimate {
     public String toCommaSeparatedString() {
         final StringBuilder builder = new StringBuilder();
         builder.append(getNrmSample().getTreatmentSteps().get(0).getDepth());
-        for (double intensity : getIntensities()) {
+        for (double intensity : intensities) {
             if (intensity != -1) {
                 builder.append(String.format(Locale.ENGLISH, ",%g", intensity));
             } else {
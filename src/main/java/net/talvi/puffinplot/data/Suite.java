@@ -24,6 +24,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.text.DateFormat;
 import java.text.ParseException;
@@ -36,8 +37,10 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -48,6 +51,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
+import net.talvi.puffinplot.Metrics;
 import net.talvi.puffinplot.PuffinUserException;
 import net.talvi.puffinplot.data.file.AmsLoader;
 import net.talvi.puffinplot.data.file.CaltechLoader;
@@ -61,6 +65,7 @@ import net.talvi.puffinplot.data.file.TwoGeeLoader;
 import net.talvi.puffinplot.data.file.UcDavisLoader;
 import net.talvi.puffinplot.data.file.ZplotLoader;
 import net.talvi.puffinplot.data.file.FileLoader;
+import net.talvi.puffinplot.jfr.FlightEvents;
 
 /**
  * A suite of data, containing a number of samples. This will usually correspond
@@ -69,16 +74,20 @@ import net.talvi.puffinplot.data.file.FileLoader;
 public final class Suite implements SampleGroup {
 
     private List<Site> sites = new ArrayList<>();
+    private final Map<String, Site> sitesByName = new HashMap<>();
     private File puffinFile;
     private final List<Sample> samples = new ArrayList<>(); // samples in order
     private LinkedHashMap<String, Sample> samplesById =
             new LinkedHashMap<>(); // name or depth as appropriate
     private HashMap<Sample, Integer> indicesBySample; // maps sample to index
+    private final SuiteStatistics statistics = new SuiteStatistics();
     private int currentSampleIndex = -1;
     private MeasurementType measurementType = MeasurementType.UNSET;
     private String name;
     private List<Sample> emptyTraySamples;
     private SuiteCalcs suiteCalcs;
+    private CommonMeanTest commonMeanTest;
+    private CalculationCache calculationCache;
     private boolean hasUnknownTreatType = false;
     private static final Logger LOGGER =
             Logger.getLogger("net.talvi.puffinplot");
@@ -87,6 +96,7 @@ public final class Suite implements SampleGroup {
     private CustomNoteNames customNoteNames =
             new CustomNoteNames(Collections.<String>emptyList());
     private List<KentParams> amsBootstrapParams = null;
+    private SuiteHistory history = null;
     private List<KentParams> hextParams = null;
     private boolean saved = true;
     private Date creationDate;
@@ -97,6 +107,10 @@ public final class Suite implements SampleGroup {
     private final String suiteCreator;
     private String fileCreator;
     private final Set<SavedListener> savedListenerSet = new HashSet<>();
+    private final Set<ChangeListener> changeListenerSet =
+            new LinkedHashSet<>();
+    private int transactionDepth = 0;
+    private SuiteChangeEvent pendingChangeEvent = null;
 
     /**
      * Update this suit's internal index mapping samples to their indices
@@ -122,7 +136,14 @@ public final class Suite implements SampleGroup {
      */
     public void calculateSuiteMeans(List<Sample> selSamples,
             List<Site> selSites) {
-        suiteCalcs = doCalculateSuiteMeans(selSamples, selSites);
+        final Object event = FlightEvents.beginCalculation();
+        try {
+            suiteCalcs = doCalculateSuiteMeans(selSamples, selSites);
+        } finally {
+            FlightEvents.endCalculation(event, "suiteMeans",
+                    selSamples.size(), selSites.size());
+        }
+        fireChange(SuiteChangeEvent.Type.CALCULATIONS, null, null);
     }
     
     private static SuiteCalcs doCalculateSuiteMeans(List<Sample> selSamples,
@@ -158,11 +179,26 @@ public final class Suite implements SampleGroup {
             }
         }
         
+        final List<ArasonLevi> inclinationStats = ArasonLevi.calculateAll(
+                Arrays.asList(finiteInclinations(siteDirs),
+                        finiteInclinations(sampleDirs)));
+        
         return new SuiteCalcs(
                 SuiteCalcs.Means.calculate(siteDirs),
                 SuiteCalcs.Means.calculate(sampleDirs),
                 SuiteCalcs.Means.calculate(siteVgps),
-                SuiteCalcs.Means.calculate(sampleVgps));
+                SuiteCalcs.Means.calculate(sampleVgps),
+                inclinationStats.get(0), inclinationStats.get(1));
+    }
+    
+    private static List<Double> finiteInclinations(List<Vec3> directions) {
+        final List<Double> inclinations = new ArrayList<>(directions.size());
+        for (Vec3 direction: directions) {
+            if (direction.isFinite()) {
+                inclinations.add(direction.getIncDeg());
+            }
+        }
+        return inclinations;
     }
     
     /**
@@ -204,6 +240,28 @@ public final class Suite implements SampleGroup {
                 FisherValues.calculate(reversed));
     }
     
+    /**
+     * Returns the most recent common-mean or reversal test associated with
+     * this suite, or {@code null} if there is none.
+     *
+     * @return the common-mean test associated with this suite
+     */
+    public CommonMeanTest getCommonMeanTest() {
+        return commonMeanTest;
+    }
+
+    /**
+     * Associates a common-mean or reversal test with this suite, so that it
+     * is included in the suite mean export.
+     *
+     * @param commonMeanTest the test to associate with this suite, or
+     * {@code null} to remove the current test
+     * @see #writeCalcsSuite(Writer)
+     */
+    public void setCommonMeanTest(CommonMeanTest commonMeanTest) {
+        this.commonMeanTest = commonMeanTest;
+    }
+
     /**
      * Returns the Fisher parameters calculated on the entire suite.
      *
@@ -224,9 +282,17 @@ public final class Suite implements SampleGroup {
      */
     public void calculateSiteFishers(Correction correction) {
         setSaved(false);
-        for (Site site : getSites()) {
-            site.calculateFisherStats(correction);
+        final Object event = FlightEvents.beginCalculation();
+        try {
+            for (Site site : getSites()) {
+                site.calculateFisherStats(correction, false);
+            }
+            Site.calculateInclinationStats(getSites());
+        } finally {
+            FlightEvents.endCalculation(event, "siteFishers", 0,
+                    getSites().size());
         }
+        fireChange(SuiteChangeEvent.Type.CALCULATIONS, null, null);
     }
 
     /**
@@ -268,59 +334,76 @@ public final class Suite implements SampleGroup {
 
     /**
      * Saves the data in this suite to a specified file. The specified file is
-     * also set as the default PuffinPlot file for this suite.
+     * also set as the default PuffinPlot file for this suite. Any calculation
+     * cache is written alongside it (see {@link #writeCalculationCache()}).
      *
      * @param file the file to which to save the suite's data
      * @throws PuffinUserException if an error occurred while saving data
      */
     public void saveAs(File file)
             throws PuffinUserException {
-        final List<String> fields = TreatmentParameter.getRealFieldStrings();
-
+        if (!saved) {
+            modificationDate = new Date();
+        }
+        final Metrics.Timer timer = Metrics.start("suite.saveAs");
         try (OutputStream stream = new FileOutputStream(file);
                 OutputStreamWriter writer =
-                        new OutputStreamWriter(stream, StandardCharsets.UTF_8);
-                CsvWriter csvWriter = new CsvWriter(writer, "\t");) {
-            
-            writer.write("PuffinPlot file. Version 3\n");
-            csvWriter.writeCsv(fields);
-
-            for (Sample sample : getSamples()) {
-                for (TreatmentStep treatmentStep : sample.getTreatmentSteps()) {
-                    csvWriter.writeCsv(treatmentStep.toStrings());
-                }
-            }
-
-            writer.write("\n");
-            for (Sample sample : getSamples()) {
-                List<String> lines = sample.toStrings();
-                for (String line : lines) {
-                    String w = String.format(Locale.ENGLISH, "SAMPLE\t%s\t%s\n",
-                            sample.getNameOrDepth(), line);
-                    writer.write(w);
-                }
-            }
-            for (Site site : getSites()) {
-                List<String> lines = site.toStrings();
-                for (String line : lines) {
-                    String w = String.format(Locale.ENGLISH, "SITE\t%s\t%s\n",
-                            site.getName(), line);
-                    writer.write(w);
-                }
-            }
-            if (!saved) {
-                modificationDate = new Date();
-            }
-            for (String line : toStrings()) {
-                writer.write(String.format(Locale.ENGLISH, "SUITE\t%s\n",
-                        line));
-            }
+                        new OutputStreamWriter(stream, StandardCharsets.UTF_8)) {
+            writePuffinData(writer);
             puffinFile = file;
             name = file.getName();
             setSaved(true);
         } catch (IOException ex) {
             throw new PuffinUserException(ex);
+        } finally {
+            timer.stop();
         }
+        writeCalculationCache();
+    }
+
+    /**
+     * Writes the data in this suite, in PuffinPlot file format, to a
+     * specified writer. Unlike {@link #saveAs(File)}, this method does not
+     * change the suite's default PuffinPlot file or its saved state. The
+     * writer is flushed but not closed.
+     *
+     * @param writer the writer to which to write the suite's data
+     * @throws IOException if an error occurred while writing the data
+     */
+    public void writePuffinData(Writer writer) throws IOException {
+        final List<String> fields = TreatmentParameter.getRealFieldStrings();
+        final CsvWriter csvWriter = new CsvWriter(writer, "\t");
+        writer.write("PuffinPlot file. Version 3\n");
+        csvWriter.writeCsv(fields);
+
+        for (Sample sample : getSamples()) {
+            for (TreatmentStep treatmentStep : sample.getTreatmentSteps()) {
+                csvWriter.writeCsv(treatmentStep.toStrings());
+            }
+        }
+
+        writer.write("\n");
+        for (Sample sample : getSamples()) {
+            List<String> lines = sample.toStrings();
+            for (String line : lines) {
+                String w = String.format(Locale.ENGLISH, "SAMPLE\t%s\t%s\n",
+                        sample.getNameOrDepth(), line);
+                writer.write(w);
+            }
+        }
+        for (Site site : getSites()) {
+            List<String> lines = site.toStrings();
+            for (String line : lines) {
+                String w = String.format(Locale.ENGLISH, "SITE\t%s\t%s\n",
+                        site.getName(), line);
+                writer.write(w);
+            }
+        }
+        for (String line : toStrings()) {
+            writer.write(String.format(Locale.ENGLISH, "SUITE\t%s\n",
+                    line));
+        }
+        writer.flush();
     }
 
     /**
@@ -359,9 +442,12 @@ public final class Suite implements SampleGroup {
         final String datumName = step.getIdOrDepth();
         Sample sample = samplesById.get(datumName);
         if (sample == null) {
+            recordStructureForUndo();
             sample = new Sample(datumName, this);
             samplesById.put(datumName, sample);
             samples.add(sample);
+            statistics.add(sample);
+            fireChange(SuiteChangeEvent.Type.SAMPLES_ADDED, sample, null);
         }
         step.setSuite(this);
         sample.addTreatmentStep(step);
@@ -392,11 +478,20 @@ public final class Suite implements SampleGroup {
      */
     public void doSampleCalculations(Correction correction) {
         setSaved(false);
-        for (Sample sample : getSamples()) {
-            sample.doPca(correction);
-            sample.fitGreatCircle(correction);
-            sample.calculateMagSusJump();
+        final Object event = FlightEvents.beginCalculation();
+        final Metrics.Timer timer = Metrics.start("suite.sampleCalculations");
+        try {
+            for (Sample sample : getSamples()) {
+                sample.doPca(correction);
+                sample.fitGreatCircle(correction);
+                sample.calculateMagSusJump();
+            }
+        } finally {
+            timer.stop();
+            FlightEvents.endCalculation(event, "sampleCalculations",
+                    getNumSamples(), 0);
         }
+        Metrics.add("suite.samplesCalculated", getNumSamples());
     }
 
     /**
@@ -416,20 +511,29 @@ public final class Suite implements SampleGroup {
     public void doSiteCalculations(Correction correction,
             String greatCirclesValidityCondition) {
         setSaved(false);
-        // TODO we can use getSites for this now!
+        final Object event = FlightEvents.beginCalculation();
         final Set<Site> sitesDone = new HashSet<>();
-        for (Sample sample : getSamples()) {
-            final Site site = sample.getSite();
-            if (site == null) {
-                continue;
-            }
-            if (sitesDone.contains(site)) {
-                continue;
+        final Metrics.Timer timer = Metrics.start("suite.siteCalculations");
+        try {
+            // TODO we can use getSites for this now!
+            for (Sample sample : getSamples()) {
+                final Site site = sample.getSite();
+                if (site == null) {
+                    continue;
+                }
+                if (sitesDone.contains(site)) {
+                    continue;
+                }
+                site.calculateFisherStats(correction, false);
+                site.calculateGreatCirclesDirection(correction,
+                        greatCirclesValidityCondition);
+                sitesDone.add(site);
             }
-            site.calculateFisherStats(correction);
-            site.calculateGreatCirclesDirection(correction,
-                    greatCirclesValidityCondition);
-            sitesDone.add(site);
+            Site.calculateInclinationStats(new ArrayList<>(sitesDone));
+        } finally {
+            timer.stop();
+            FlightEvents.endCalculation(event, "siteCalculations",
+                    getNumSamples(), sitesDone.size());
         }
     }
 
@@ -481,6 +585,16 @@ public final class Suite implements SampleGroup {
      */
     public List<String> readFiles(List<File> files, FileType fileType,
             Map<String, Object> importOptions) throws IOException {
+        final Metrics.Timer timer = Metrics.start("suite.readFiles");
+        try {
+            return doReadFiles(files, fileType, importOptions);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    private List<String> doReadFiles(List<File> files, FileType fileType,
+            Map<String, Object> importOptions) throws IOException {
         Objects.requireNonNull(files, "files may not be null");
         if (files.isEmpty()) {
             throw new IllegalArgumentException("File list must be non-empty.");
@@ -526,60 +640,71 @@ public final class Suite implements SampleGroup {
             FileLoader loader;
             final Map<String, Object> options = new HashMap<>(importOptions);
             LoadedData loadedData = null;
-            switch (fileType) {
-            case TWOGEE:
-                loader = new TwoGeeLoader();
-                loadedData = loader.readFile(file, options);
-                break;
-            case PUFFINPLOT_OLD:
-                loader = new TwoGeeLoader();
-                loadedData = loader.readFile(file, options);
-                if (files.size() == 1) {
-                    puffinFile = file;
-                }
-                break;
-            case PUFFINPLOT_NEW:
-                loader = new PplLoader();
-                loadedData = loader.readFile(file, options);
-                if (files.size() == 1) {
-                    puffinFile = file;
+            final Object loadEvent = FlightEvents.beginFileLoad();
+            final Metrics.Timer loadTimer =
+                    Metrics.start("load." + fileType.name());
+            try {
+                switch (fileType) {
+                case TWOGEE:
+                    loader = new TwoGeeLoader();
+                    loadedData = loader.readFile(file, options);
+                    break;
+                case PUFFINPLOT_OLD:
+                    loader = new TwoGeeLoader();
+                    loadedData = loader.readFile(file, options);
+                    if (files.size() == 1) {
+                        puffinFile = file;
+                    }
+                    break;
+                case PUFFINPLOT_NEW:
+                    loader = new PplLoader();
+                    loadedData = loader.readFile(file, options);
+                    if (files.size() == 1) {
+                        puffinFile = file;
+                    }
+                    break;
+                case ZPLOT:
+                    loader = new ZplotLoader();
+                    loadedData = loader.readFile(file, options);
+                    break;
+                case CALTECH:
+                    loader = new CaltechLoader();
+                    loadedData = loader.readFile(file, options);
+                    break;
+                case IAPD:
+                    loader = new IapdLoader();
+                    loadedData = loader.readFile(file, options);
+                    break;
+                case UCDAVIS:
+                    loader = new UcDavisLoader();
+                    loadedData = loader.readFile(file, options);
+                    break;
+                case CUSTOM_TABULAR:
+                    loader = new TabularFileLoader();
+                    loadedData = loader.readFile(file, options);
+                    break;
+                case PMD_ENKIN:
+                    loader = new PmdLoader();
+                    loadedData = loader.readFile(file, options);
+                    break;
+                case JR6:
+                    loader = new Jr6Loader();
+                    loadedData = loader.readFile(file, options);
+                    break;
+                case DIRECTIONS:
+                    return readDirectionalData(files); // NB: return, not break
+                default:
+                    loadWarnings.add(String.format(Locale.ENGLISH,
+                            "%s is of unknown file type.", file.getName()));
+                    break;
                 }
-                break;
-            case ZPLOT:
-                loader = new ZplotLoader();
-                loadedData = loader.readFile(file, options);
-                break;
-            case CALTECH:
-                loader = new CaltechLoader();
-                loadedData = loader.readFile(file, options);
-                break;
-            case IAPD:
-                loader = new IapdLoader();
-                loadedData = loader.readFile(file, options);
-                break;
-            case UCDAVIS:
-                loader = new UcDavisLoader();
-                loadedData = loader.readFile(file, options);
-                break;
-            case CUSTOM_TABULAR:
-                loader = new TabularFileLoader();
-                loadedData = loader.readFile(file, options);
-                break;
-            case PMD_ENKIN:
-                loader = new PmdLoader();
-                loadedData = loader.readFile(file, options);
-                break;
-            case JR6:
-                loader = new Jr6Loader();
-                loadedData = loader.readFile(file, options);
-                break;
-            case DIRECTIONS:
-                return readDirectionalData(files); // NB: return, not break
-            default:
-                loadWarnings.add(String.format(Locale.ENGLISH,
-                        "%s is of unknown file type.", file.getName()));
-                break;
+            } finally {
+                loadTimer.stop();
+                FlightEvents.endFileLoad(loadEvent, file, fileType,
+                        loadedData == null ? 0 :
+                                loadedData.getTreatmentSteps().size());
             }
+            Metrics.increment("suite.filesRead");
             
             if (loadedData != null) {
                 final List<TreatmentStep> loadedSteps =
@@ -717,8 +842,11 @@ public final class Suite implements SampleGroup {
     }
 
     void addSample(Sample sample, final String sampleName) {
+        recordStructureForUndo();
         samples.add(sample);
         samplesById.put(sampleName, sample);
+        statistics.add(sample);
+        fireChange(SuiteChangeEvent.Type.SAMPLES_ADDED, sample, null);
     }
     
     /**
@@ -737,6 +865,138 @@ public final class Suite implements SampleGroup {
         doSampleCalculations(correction);
         doSiteCalculations(correction, greatCirclesValidityCondition);
     }
+
+    /**
+     * Performs all possible sample and site calculations, reusing results
+     * from a calculation cache where possible. The results for any sample
+     * or site whose data are unchanged since the cache was written are
+     * restored from the cache; all other results are calculated as in
+     * {@link #doAllCalculations(Correction, String)}.
+     *
+     * @param correction the correction to apply to the magnetic moment data
+     * when performing the calculations
+     * @param greatCirclesValidityCondition an expression which is evaluated to
+     * determine whether a great-circles direction is considered valid
+     * @param previous a cache of previously calculated results; may be
+     * {@code null}
+     * @return a new cache containing all the current results, which is
+     * also kept to be written when the suite is saved
+     */
+    public CalculationCache doAllCalculations(Correction correction,
+            String greatCirclesValidityCondition,
+            CalculationCache previous) {
+        setSaved(false);
+        final CalculationCache cache = new CalculationCache();
+        final Object event = FlightEvents.beginCalculation();
+        final Metrics.Timer timer = Metrics.start("suite.cachedCalculations");
+        try {
+            for (Sample sample: getSamples()) {
+                if (previous == null ||
+                        !previous.restore(sample, correction)) {
+                    sample.doPca(correction);
+                    sample.fitGreatCircle(correction);
+                    sample.calculateMagSusJump();
+                }
+                cache.store(sample, correction);
+            }
+            final List<Site> sitesDone = new ArrayList<>(getSites().size());
+            for (Site site: getSites()) {
+                if (site.getSamples().isEmpty()) {
+                    continue;
+                }
+                if (previous == null || !previous.restore(site,
+                        greatCirclesValidityCondition)) {
+                    site.calculateFisherStats(correction, false);
+                    site.calculateGreatCirclesDirection(correction,
+                            greatCirclesValidityCondition);
+                }
+                cache.store(site, greatCirclesValidityCondition);
+                sitesDone.add(site);
+            }
+            /*
+             * Inclination-only statistics are not cached, but they are
+             * cheap to recalculate as a parallel batch.
+             */
+            Site.calculateInclinationStats(sitesDone);
+        } finally {
+            timer.stop();
+            FlightEvents.endCalculation(event, "cachedCalculations",
+                    getNumSamples(), getSites().size());
+        }
+        if (previous != null) {
+            Metrics.add("suite.cacheHits", previous.getHits());
+            Metrics.add("suite.cacheMisses", previous.getMisses());
+        }
+        calculationCache = cache;
+        return cache;
+    }
+
+    /**
+     * Performs all possible sample and site calculations, using the
+     * calculation cache stored alongside this suite's PuffinPlot file.
+     * Results are restored from the cache where they are still valid. The
+     * cache file is not rewritten here, but when the suite is next saved.
+     * If the suite has no associated PuffinPlot file, this method is
+     * equivalent to {@link #doAllCalculations(Correction, String)}.
+     * Problems reading the cache are logged but otherwise ignored, since
+     * they can only cause unnecessary recalculation.
+     *
+     * @param correction the correction to apply to the magnetic moment data
+     * when performing the calculations
+     * @param greatCirclesValidityCondition an expression which is evaluated to
+     * determine whether a great-circles direction is considered valid
+     * @see CalculationCache#getSidecarFile(File)
+     */
+    public void doAllCalculationsUsingCache(Correction correction,
+            String greatCirclesValidityCondition) {
+        if (getPuffinFile() == null) {
+            doAllCalculations(correction, greatCirclesValidityCondition);
+            return;
+        }
+        final File cacheFile =
+                CalculationCache.getSidecarFile(getPuffinFile());
+        CalculationCache previous = null;
+        if (cacheFile.exists()) {
+            try {
+                previous = CalculationCache.readFrom(cacheFile);
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Ignoring calculation cache "
+                        + cacheFile, ex);
+            }
+        }
+        final CalculationCache current = doAllCalculations(correction,
+                greatCirclesValidityCondition, previous);
+        if (previous != null) {
+            LOGGER.log(Level.INFO, "Calculation cache {0}: {1} hits, "
+                    + "{2} misses", new Object[] {cacheFile,
+                        previous.getHits(), previous.getMisses()});
+        }
+    }
+
+    /**
+     * Writes the results of the last cached calculation (see
+     * {@link #doAllCalculations(Correction, String, CalculationCache)}) to
+     * the calculation cache file alongside this suite's PuffinPlot file.
+     * The cached results are keyed by the data from which they were
+     * calculated, so they remain valid whatever has changed since. Does
+     * nothing if the suite has no PuffinPlot file or no cached results.
+     * Problems writing the cache are logged but otherwise ignored.
+     *
+     * @see CalculationCache#getSidecarFile(File)
+     */
+    public void writeCalculationCache() {
+        if (getPuffinFile() == null || calculationCache == null) {
+            return;
+        }
+        final File cacheFile =
+                CalculationCache.getSidecarFile(getPuffinFile());
+        try {
+            calculationCache.writeTo(cacheFile);
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Could not write calculation cache "
+                    + cacheFile, ex);
+        }
+    }
     
     /**
      * Exports sample calculations to a specified file in CSV format.
@@ -749,53 +1009,65 @@ public final class Suite implements SampleGroup {
             throw new PuffinUserException("No samples in suite.");
         }
             
-        try (FileWriter fw = new FileWriter(file);
-                CsvWriter writer = new CsvWriter(fw)) {
-            writer.writeCsv("Suite", measurementType.getColumnHeader(),
-                    "NRM intensity (A/m)",
-                    "MS jump temp. (degC)",
-                    "Steps",
-                    PcaAnnotated.getHeaders(),
-                    GreatCircle.getHeaders(),
-                    MedianDestructiveField.getHeaders(),
-                    FisherValues.getHeaders(),
-                    Tensor.getHeaders(),
-                    customFlagNames.toStrings(),
-                    customNoteNames.toStrings(),
-                    "Initial MS");
-            for (Sample sample: samples) {
-                final PcaAnnotated pca = sample.getPcaAnnotated();
-                final MedianDestructiveField mdf = sample.getMdf();
-                final GreatCircle circle = sample.getGreatCircle();
-                final FisherValues fisher = sample.getFisherValues();
-                final Tensor ams = sample.getAms();
-                writer.writeCsv(getName(), sample.getNameOrDepth(),
-                        String.format(Locale.ENGLISH, "%.4g", sample.getNrm()),
-                        String.format(Locale.ENGLISH, "%.4g",
-                                sample.getMagSusJump()),
-                        sample.getTreatmentSteps().size(),
-                        pca == null ? PcaAnnotated.getEmptyFields() :
-                                pca.toStrings(),
-                        circle == null ? GreatCircle.getEmptyFields() :
-                                circle.toStrings(),
-                        mdf == null ? MedianDestructiveField.getEmptyFields() :
-                                mdf.toStrings(),
-                        fisher == null ? FisherValues.getEmptyFields() :
-                                fisher.toStrings(),
-                        ams == null ? Tensor.getEmptyFields() :
-                                ams.toStrings(),
-                        sample.getCustomFlags().toStrings(),
-                        sample.getCustomNotes().toStrings(),
-                        sample.getTreatmentSteps().isEmpty() ? ""
-                            : String.format(Locale.ENGLISH, "%.4g",
-                                sample.getTreatmentStepByIndex(0).getMagSus())
-                );
-            }
+        try (FileWriter fw = new FileWriter(file)) {
+            writeCalcsSample(fw);
         } catch (IOException ex) {
             throw new PuffinUserException(ex);
         }
     }
 
+    /**
+     * Writes sample calculations in CSV format to a specified writer.
+     * The writer is flushed but not closed.
+     *
+     * @param out the writer to which to write the sample calculations
+     * @throws IOException if an error occurred while writing
+     */
+    public void writeCalcsSample(Writer out) throws IOException {
+        final CsvWriter writer = new CsvWriter(out);
+        writer.writeCsv("Suite", measurementType.getColumnHeader(),
+                "NRM intensity (A/m)",
+                "MS jump temp. (degC)",
+                "Steps",
+                PcaAnnotated.getHeaders(),
+                GreatCircle.getHeaders(),
+                MedianDestructiveField.getHeaders(),
+                FisherValues.getHeaders(),
+                Tensor.getHeaders(),
+                customFlagNames.toStrings(),
+                customNoteNames.toStrings(),
+                "Initial MS");
+        for (Sample sample: samples) {
+            final PcaAnnotated pca = sample.getPcaAnnotated();
+            final MedianDestructiveField mdf = sample.getMdf();
+            final GreatCircle circle = sample.getGreatCircle();
+            final FisherValues fisher = sample.getFisherValues();
+            final Tensor ams = sample.getAms();
+            writer.writeCsv(getName(), sample.getNameOrDepth(),
+                    String.format(Locale.ENGLISH, "%.4g", sample.getNrm()),
+                    String.format(Locale.ENGLISH, "%.4g",
+                            sample.getMagSusJump()),
+                    sample.getTreatmentSteps().size(),
+                    pca == null ? PcaAnnotated.getEmptyFields() :
+                            pca.toStrings(),
+                    circle == null ? GreatCircle.getEmptyFields() :
+                            circle.toStrings(),
+                    mdf == null ? MedianDestructiveField.getEmptyFields() :
+                            mdf.toStrings(),
+                    fisher == null ? FisherValues.getEmptyFields() :
+                            fisher.toStrings(),
+                    ams == null ? Tensor.getEmptyFields() :
+                            ams.toStrings(),
+                    sample.getCustomFlags().toStrings(),
+                    sample.getCustomNotes().toStrings(),
+                    sample.getTreatmentSteps().isEmpty() ? ""
+                        : String.format(Locale.ENGLISH, "%.4g",
+                            sample.getTreatmentStepByIndex(0).getMagSus())
+            );
+        }
+        out.flush();
+    }
+
     /**
      * Exports site calculations to a specified file in CSV format.
      *
@@ -807,37 +1079,51 @@ public final class Suite implements SampleGroup {
             // A null check here would be dead code: sites is never null.
             throw new PuffinUserException("No sites are defined.");
         }
-        try (FileWriter fw = new FileWriter(file);
-                CsvWriter writer = new CsvWriter(fw)) {
-            writer.writeCsv("Site", "Samples",
-                    FisherValues.getHeaders(), GreatCircles.getHeaders(),
-                    Site.getGreatCircleLimitHeader(),
-                    Location.getHeaders(), VGP.getHeaders());
-            for (Site site: getSites()) {
-                final List<String> fisherCsv = (site.getFisherValues() == null)
-                        ? FisherValues.getEmptyFields()
-                        : site.getFisherValues().toStrings();
-                final List<String> gcCsv = (site.getGreatCircles() == null)
-                        ? GreatCircles.getEmptyFields()
-                        : site.getGreatCircles().toStrings();
-                final List<String> gcCsv2 = (site.getGreatCircles() == null)
-                        ? Collections.nCopies(4, "")
-                        : site.getGreatCircleLimitStrings();
-                final List<String> locCsv = (site.getLocation()== null)
-                        ? Location.getEmptyFields()
-                        : site.getLocation().toStrings();
-                final List<String> vgpCsv = (site.getVgp()== null)
-                        ? VGP.getEmptyFields()
-                        : site.getVgp().toStrings();                
-                writer.writeCsv(site,
-                        Integer.toString(site.getSamples().size()),
-                        fisherCsv, gcCsv, gcCsv2, locCsv, vgpCsv);
-            }
+        try (FileWriter fw = new FileWriter(file)) {
+            writeCalcsSite(fw);
         } catch (IOException ex) {
            throw new PuffinUserException(ex);
         }
     }
 
+    /**
+     * Writes site calculations in CSV format to a specified writer.
+     * The writer is flushed but not closed.
+     *
+     * @param out the writer to which to write the site calculations
+     * @throws IOException if an error occurred while writing
+     */
+    public void writeCalcsSite(Writer out) throws IOException {
+        final CsvWriter writer = new CsvWriter(out);
+        writer.writeCsv("Site", "Samples",
+                FisherValues.getHeaders(), GreatCircles.getHeaders(),
+                Site.getGreatCircleLimitHeader(),
+                Location.getHeaders(), VGP.getHeaders(),
+                ArasonLevi.getHeaders());
+        for (Site site: getSites()) {
+            final List<String> fisherCsv = (site.getFisherValues() == null)
+                    ? FisherValues.getEmptyFields()
+                    : site.getFisherValues().toStrings();
+            final List<String> gcCsv = (site.getGreatCircles() == null)
+                    ? GreatCircles.getEmptyFields()
+                    : site.getGreatCircles().toStrings();
+            final List<String> gcCsv2 = (site.getGreatCircles() == null)
+                    ? Collections.nCopies(4, "")
+                    : site.getGreatCircleLimitStrings();
+            final List<String> locCsv = (site.getLocation()== null)
+                    ? Location.getEmptyFields()
+                    : site.getLocation().toStrings();
+            final List<String> vgpCsv = (site.getVgp()== null)
+                    ? VGP.getEmptyFields()
+                    : site.getVgp().toStrings();                
+            writer.writeCsv(site,
+                    Integer.toString(site.getSamples().size()),
+                    fisherCsv, gcCsv, gcCsv2, locCsv, vgpCsv,
+                    ArasonLevi.toStrings(site.getInclinationStats()));
+        }
+        out.flush();
+    }
+
     /**
      * Saves the Fisher mean direction for the whole suite to a file in CSV
      * format
@@ -849,17 +1135,42 @@ public final class Suite implements SampleGroup {
         if (suiteCalcs == null) {
             throw new PuffinUserException("There are no calculations to save.");
         }
-        try (FileWriter fw = new FileWriter(file);
-                CsvWriter writer = new CsvWriter(fw)) {
-            writer.writeCsv(SuiteCalcs.getHeaders());
-            for (List<String> line: suiteCalcs.toStrings()) {
-                writer.writeCsv(line);
-            }
+        try (FileWriter fw = new FileWriter(file)) {
+            writeCalcsSuite(fw);
         } catch (IOException ex) {
            throw new PuffinUserException(ex);
         }
     }
 
+    /**
+     * Writes the suite mean calculations in CSV format to a specified
+     * writer. The Fisher means are followed by a blank line and a table of
+     * the inclination-only means and, if a common-mean test is associated
+     * with this suite, by another blank line and the results of the test.
+     * The writer is flushed but not closed.
+     *
+     * @param out the writer to which to write the mean directions
+     * @throws IOException if an error occurred while writing
+     */
+    public void writeCalcsSuite(Writer out) throws IOException {
+        final CsvWriter writer = new CsvWriter(out);
+        writer.writeCsv(SuiteCalcs.getHeaders());
+        for (List<String> line: suiteCalcs.toStrings()) {
+            writer.writeCsv(line);
+        }
+        writer.writeCsv("");
+        writer.writeCsv(SuiteCalcs.getInclinationHeaders());
+        for (List<String> line: suiteCalcs.inclinationsToStrings()) {
+            writer.writeCsv(line);
+        }
+        if (commonMeanTest != null) {
+            writer.writeCsv("");
+            writer.writeCsv(CommonMeanTest.getHeaders());
+            writer.writeCsv(commonMeanTest.toStrings());
+        }
+        out.flush();
+    }
+
     /**
      * Returns a sample from this suite with the specified name, or {@code null}
      * if no such sample exists.
@@ -1324,9 +1635,13 @@ public final class Suite implements SampleGroup {
                      * TreatmentStep lines.
                      */
                     if (sample == null) {
+                        recordStructureForUndo();
                         sample = new Sample(sampleId, this);
                         samplesById.put(sampleId, sample);
                         samples.add(sample);
+                        statistics.add(sample);
+                        fireChange(SuiteChangeEvent.Type.SAMPLES_ADDED,
+                                sample, null);
                     }
                     sample.fromString(line.substring(8 + sampleId.length()));
                     break;
@@ -1376,6 +1691,7 @@ public final class Suite implements SampleGroup {
         setSaved(false);
         amsBootstrapParams = null;
         hextParams = null;
+        fireChange(SuiteChangeEvent.Type.CALCULATIONS, null, null);
     }
 
     /**
@@ -1400,22 +1716,30 @@ public final class Suite implements SampleGroup {
      */
     public Site getSiteByName(String siteName) {
         Objects.requireNonNull(siteName);
-        for (Site site : sites) {
-            if (siteName.equals(site.getName())) {
-                return site;
-            }
-        }
-        return null;
+        return sitesByName.get(siteName);
     }
 
     Site getOrCreateSite(String siteName) {
         Site site = getSiteByName(siteName);
         if (site == null) {
+            recordStructureForUndo();
             site = new Site(siteName);
             sites.add(site);
+            sitesByName.put(siteName, site);
         }
         return site;
     }
+    
+    /**
+     * Rebuilds the name-to-site map from the site list. If two sites share a
+     * name, the one appearing first in the list is indexed.
+     */
+    private void updateSiteIndex() {
+        sitesByName.clear();
+        for (Site site : sites) {
+            sitesByName.putIfAbsent(site.getName(), site);
+        }
+    }
 
     /**
      * Returns the name of the PuffinPlot file associated with this suite, if
@@ -1428,6 +1752,19 @@ public final class Suite implements SampleGroup {
         return puffinFile;
     }
 
+    /**
+     * Sets the PuffinPlot file associated with this suite, without writing
+     * to it. This is intended for a suite whose data were read from a copy
+     * of the file, such as a journal snapshot. The suite's name is set to
+     * the name of the file.
+     *
+     * @param file the PuffinPlot file to associate with this suite
+     */
+    public void setPuffinFile(File file) {
+        puffinFile = file;
+        name = file.getName();
+    }
+
     /**
      * @return true if the suite has not been modified since it was last saved
      */
@@ -1480,28 +1817,29 @@ public final class Suite implements SampleGroup {
 
     /**
      * Rotate the declination of magnetic moment data in this suite according to
-     * the discrete ID of the sample.
+     * the discrete ID of the sample. Sample calculation results are updated
+     * as described for {@link Sample#rotateAroundZAxis(double)}. The
+     * rotations are made as a single undoable edit.
      * 
      * @param rotations a map from discrete sample IDs to rotation angles
      * (clockwise in degrees)
      */
     public void rotateSamplesByDiscreteId(Map<String, Double> rotations) {
-        for (Sample sample : getSamples()) {
-            final String discreteId = sample.getDiscreteId();
-            if (rotations.containsKey(discreteId)) {
-                final double rotationAngle = rotations.get(discreteId);
-                for (TreatmentStep treatmentStep : sample.getTreatmentSteps()) {
-                    treatmentStep.setMoment(treatmentStep.getMoment().
-                            rotZ(Math.toRadians(rotationAngle)));
+        runAsEdit("Rotate samples", () -> {
+            for (Sample sample : getSamples()) {
+                final String discreteId = sample.getDiscreteId();
+                if (rotations.containsKey(discreteId)) {
+                    sample.rotateAroundZAxis(rotations.get(discreteId));
                 }
             }
-        }
+        });
     }
     
     /**
      * Align the declinations of core sections in this suite.It is assumed that
      * the suite is continuous; the discrete IDs of samples are interpreted as
-     * core section identifiers.
+     * core section identifiers. The alignment is made as a single undoable
+     * edit.
      *
      * @param margin the number of samples to average at the end of each section
      * to determine the declination
@@ -1512,10 +1850,12 @@ public final class Suite implements SampleGroup {
      */
     public void alignSectionDeclinations(int margin, double targetDeclination,
             CoreSections.TargetDeclinationType targetType) {
-        final CoreSections coreSections =
-                CoreSections.fromSampleListByDiscreteId(getSamples());
-        coreSections.alignSections(margin, targetDeclination,
-                CoreSections.TargetDeclinationType.TOP);
+        runAsEdit("Align section declinations", () -> {
+            final CoreSections coreSections =
+                    CoreSections.fromSampleListByDiscreteId(getSamples());
+            coreSections.alignSections(margin, targetDeclination,
+                    CoreSections.TargetDeclinationType.TOP);
+        });
     }
     
     /**
@@ -1562,24 +1902,98 @@ public final class Suite implements SampleGroup {
      * result in all sorts of weirdness), so this is a useful way to restore
      * order in the event that a suite does get into a funny state.
      *
+     * The duplicates are found in a single pass, and the suite's sample list
+     * and indices are rebuilt once after all the groups have been merged,
+     * so the time taken is proportional to the number of samples rather
+     * than to the number of duplicate groups multiplied by the number of
+     * samples.
+     *
      * @param samples the collection of samples within which to merge duplicates
      *                (non-null)
+     * @return a report of the number of samples and treatment steps merged
      * 
      * @throws NullPointerException is {@code samples} is null
      */
-    public void mergeDuplicateSamples(Collection<Sample> samples) {
+    public MergeReport mergeDuplicateSamples(Collection<Sample> samples) {
         Objects.requireNonNull(samples);
-        Map<String, List<Sample>> duplicateGroups = samples.stream().
-                collect(Collectors.groupingBy(Sample::getNameOrDepth));
+        final Map<String, List<Sample>> duplicateGroups = new HashMap<>();
+        for (Sample sample: samples) {
+            duplicateGroups.computeIfAbsent(sample.getNameOrDepth(),
+                    id -> new ArrayList<>(1)).add(sample);
+        }
         
-        for (String id : duplicateGroups.keySet()) {
-            final List<Sample> sampleGroup = duplicateGroups.get(id);
-            /*
-             * The sample group might only contain one sample, but there's
-             * no need to make a special case for that eventuality.
-             */
-            Sample.mergeSamples(sampleGroup);
-            removeSamples(sampleGroup.subList(1, sampleGroup.size()));
+        final Set<Sample> samplesToRemove = new HashSet<>();
+        final List<Sample> mergedSamples = new ArrayList<>();
+        int stepsMerged = 0;
+        recordStructureForUndo();
+        startTransaction();
+        try {
+            for (List<Sample> sampleGroup: duplicateGroups.values()) {
+                if (sampleGroup.size() < 2) {
+                    continue;
+                }
+                stepsMerged += Sample.mergeSamples(sampleGroup);
+                mergedSamples.add(sampleGroup.get(0));
+                fireChange(SuiteChangeEvent.Type.STEP_DATA,
+                        sampleGroup.get(0), null);
+                samplesToRemove.addAll(
+                        sampleGroup.subList(1, sampleGroup.size()));
+            }
+            if (!samplesToRemove.isEmpty()) {
+                removeSamples(samplesToRemove);
+                /*
+                 * removeSamples removes the ID of each duplicate from the ID
+                 * map, which also removes the mapping for the retained sample.
+                 */
+                mergedSamples.forEach(
+                        s -> samplesById.put(s.getNameOrDepth(), s));
+            }
+        } finally {
+            endTransaction();
+        }
+        return new MergeReport(samplesToRemove.size(), stepsMerged);
+    }
+    
+    /**
+     * A summary of the results of a sample merge operation.
+     * 
+     * @see Suite#mergeDuplicateSamples(java.util.Collection) 
+     */
+    public static final class MergeReport {
+        private final int samplesMerged;
+        private final int stepsMerged;
+
+        private MergeReport(int samplesMerged, int stepsMerged) {
+            this.samplesMerged = samplesMerged;
+            this.stepsMerged = stepsMerged;
+        }
+
+        /**
+         * Returns the number of samples which were merged into other samples
+         * and removed from the suite.
+         * 
+         * @return the number of samples removed by merging
+         */
+        public int getSamplesMerged() {
+            return samplesMerged;
+        }
+
+        /**
+         * Returns the number of duplicate treatment steps which were merged
+         * into other treatment steps and removed from their samples.
+         * 
+         * @return the number of treatment steps removed by merging
+         */
+        public int getStepsMerged() {
+            return stepsMerged;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format(Locale.ENGLISH,
+                    "%d duplicate sample%s and %d duplicate step%s merged.",
+                    samplesMerged, samplesMerged == 1 ? "" : "s",
+                    stepsMerged, stepsMerged == 1 ? "" : "s");
         }
     }
 
@@ -1674,19 +2088,26 @@ public final class Suite implements SampleGroup {
             throw new IllegalArgumentException(
                     "Too few samples with AMS data.");
         }
-        switch (calcType) {
-            case HEXT:
-                hextParams = KentParams.calculateHext(tensors, scriptPath);
-                break;
-            case BOOT:
-                amsBootstrapParams = KentParams.calculateBootstrap(tensors,
-                        false, scriptPath);
-                break;
-            case PARA_BOOT:
-                amsBootstrapParams = KentParams.calculateBootstrap(tensors,
-                        true, scriptPath);
-                break;
+        final Object event = FlightEvents.beginAmsCalculation();
+        try {
+            switch (calcType) {
+                case HEXT:
+                    hextParams =
+                            KentParams.calculateHext(tensors, scriptPath);
+                    break;
+                case BOOT:
+                    amsBootstrapParams = KentParams.calculateBootstrap(
+                            tensors, false, scriptPath);
+                    break;
+                case PARA_BOOT:
+                    amsBootstrapParams = KentParams.calculateBootstrap(
+                            tensors, true, scriptPath);
+                    break;
+            }
+        } finally {
+            FlightEvents.endAmsCalculation(event, calcType, tensors.size());
         }
+        fireChange(SuiteChangeEvent.Type.CALCULATIONS, null, null);
     }
     
     private void removeEmptySites() {
@@ -1695,9 +2116,12 @@ public final class Suite implements SampleGroup {
          * iteration’ --
          * http://docs.oracle.com/javase/tutorial/collections/interfaces/collection.html
          */
+        recordStructureForUndo();
         for (Iterator<Site> it = sites.iterator(); it.hasNext(); ) {
-            if (it.next().isEmpty()) {
+            final Site site = it.next();
+            if (site.isEmpty()) {
                 it.remove();
+                sitesByName.remove(site.getName(), site);
             }
         }
     }
@@ -1712,14 +2136,7 @@ public final class Suite implements SampleGroup {
         if (!getMeasurementType().isContinuous()) {
             return Double.NaN;
         }
-        double minimum = Double.POSITIVE_INFINITY;
-        for (Sample sample : getSamples()) {
-            final double depth = sample.getDepth();
-            if (depth < minimum) {
-                minimum = depth;
-            }
-        }
-        return minimum;
+        return statistics.getMinDepth();
     }
         
     /**
@@ -1732,14 +2149,17 @@ public final class Suite implements SampleGroup {
         if (!getMeasurementType().isContinuous()) {
             return Double.NaN;
         }
-        double maximum = Double.NEGATIVE_INFINITY;
-        for (Sample sample : getSamples()) {
-            final double depth = sample.getDepth();
-            if (depth > maximum) {
-                maximum = depth;
-            }
-        }
-        return maximum;
+        return statistics.getMaxDepth();
+    }
+    
+    /**
+     * Returns the incrementally maintained aggregate statistics for the
+     * samples in this suite.
+     *
+     * @return the statistics for this suite
+     */
+    public SuiteStatistics getStatistics() {
+        return statistics;
     }
     
     /**
@@ -1751,7 +2171,15 @@ public final class Suite implements SampleGroup {
      */
     public void clearSites(Collection<Sample> samples) {
         setSaved(false);
-        samples.forEach(sample -> sample.setSite(null));
+        runInTransaction(() -> {
+            for (Sample sample : samples) {
+                final Site oldSite = sample.getSite();
+                if (oldSite != null) {
+                    oldSite.removeSample(sample);
+                }
+                sample.setSite(null);
+            }
+        });
         rebuildSiteListFromSamples();
     }
     
@@ -1764,9 +2192,11 @@ public final class Suite implements SampleGroup {
          * ordering of any two samples s1 and s2 such that s1 ∈ S1 and s2 ∈ S2.
          * (More loosely: sites will be ordered like their samples.)
          */
+        recordStructureForUndo();
         sites = getSamples().stream().map(sample -> sample.getSite())
                 .filter(Objects::nonNull).distinct()
                 .collect(Collectors.toList());
+        updateSiteIndex();
     }
     
     /**
@@ -1790,6 +2220,10 @@ public final class Suite implements SampleGroup {
      * Sets sites for supplied samples according to a supplied site namer. Where
      * a site with the required name exists, it will be used; otherwise a new
      * site with the required name will be created.
+     * <p>
+     * The assignment is done in a single pass over the samples. A sample
+     * which is already in the requested site keeps its position within that
+     * site.
      *
      * @param samples the samples for which to set sites
      * @param siteNamer the site namer which will produce the site names
@@ -1797,15 +2231,18 @@ public final class Suite implements SampleGroup {
     public void setSitesForSamples(Collection<Sample> samples,
             SiteNamer siteNamer) {
         setSaved(false);
-        for (Sample sample : samples) {
-            final Site oldSite = sample.getSite();
-            final Site newSite = getOrCreateSite(siteNamer.siteName(sample));
-            if (oldSite != null) {
-                oldSite.removeSample(sample);
+        runInTransaction(() -> {
+            for (Sample sample : samples) {
+                final Site oldSite = sample.getSite();
+                final Site newSite =
+                        getOrCreateSite(siteNamer.siteName(sample));
+                if (oldSite != null && oldSite != newSite) {
+                    oldSite.removeSample(sample);
+                }
+                sample.setSite(newSite);
+                newSite.addSample(sample);
             }
-            sample.setSite(newSite);
-            newSite.addSample(sample);
-        }
+        });
         removeEmptySites();
     }
     
@@ -1863,16 +2300,18 @@ public final class Suite implements SampleGroup {
     public void setSiteNamesByDepth(Collection<Sample> samples,
             final double thickness) {
         setSaved(false);
-        setSitesForSamples(samples, new SiteNamer() {
-            @Override
-            public String siteName(Sample sample) {
-                final double minDepth = getMinDepth();
-                final double relDepth = sample.getDepth() - minDepth;
-                final double slice = Math.floor(relDepth / thickness);
-                final String sliceName = String.format(Locale.ENGLISH, "%.2f",
-                        slice * thickness + minDepth);
-                return sliceName;
-            }
+        final double minDepth = getMinDepth();
+        /*
+         * Many samples share each slice, so we only format each slice name
+         * once.
+         */
+        final Map<Double, String> sliceNames = new HashMap<>();
+        setSitesForSamples(samples, sample -> {
+            final double relDepth = sample.getDepth() - minDepth;
+            final double slice = Math.floor(relDepth / thickness);
+            return sliceNames.computeIfAbsent(slice,
+                    s -> String.format(Locale.ENGLISH, "%.2f",
+                            s * thickness + minDepth));
         });
     }
     
@@ -1887,6 +2326,7 @@ public final class Suite implements SampleGroup {
      * @return a new sample with the supplied identifier
      */
     private Sample insertNewSample(String id) {
+        recordStructureForUndo();
         final Sample newSample = new Sample(id, this);
         int position = -1;
         do {
@@ -1896,6 +2336,8 @@ public final class Suite implements SampleGroup {
                     compareTo(newSample.getNameOrDepth()) < 0);
         samples.add(position, newSample);
         samplesById.put(newSample.getNameOrDepth(), newSample);
+        statistics.add(newSample);
+        fireChange(SuiteChangeEvent.Type.SAMPLES_ADDED, newSample, null);
         return newSample;
     }
 
@@ -1931,6 +2373,7 @@ public final class Suite implements SampleGroup {
      * Sorts this suite's samples in ascending order of depth
      */
     public void sortSamplesByDepth() {
+        recordStructureForUndo();
         Collections.sort(samples, (Sample arg0, Sample arg1) ->
                 Double.compare(arg0.getDepth(), arg1.getDepth()));
         updateReverseIndex();
@@ -1976,11 +2419,18 @@ public final class Suite implements SampleGroup {
      * @param samplesToRemove the samples to remove
      */
     public void removeSamples(Collection<Sample> samplesToRemove) {
-        samples.removeAll(samplesToRemove);
+        final Set<Sample> removalSet = samplesToRemove instanceof Set ?
+                (Set<Sample>) samplesToRemove : new HashSet<>(samplesToRemove);
+        recordStructureForUndo();
+        samples.removeIf(removalSet::contains);
         samplesToRemove.forEach(s -> samplesById.remove(s.getNameOrDepth()));
+        samplesToRemove.forEach(statistics::remove);
         ensureCurrentSampleIndexValid();
         updateReverseIndex();
         setSaved(false);
+        runInTransaction(() -> samplesToRemove.forEach(sample ->
+                fireChange(SuiteChangeEvent.Type.SAMPLES_REMOVED, sample,
+                        null)));
     }
     
     private void ensureCurrentSampleIndexValid() {
@@ -2006,7 +2456,8 @@ public final class Suite implements SampleGroup {
     
     /**
      * Converts this suite from a discrete suite to a continuous suite
-     * using a supplied mapping from sample names to depths.
+     * using a supplied mapping from sample names to depths. The conversion
+     * is made as a single undoable edit.
      * 
      * @param nameToDepth a map containing a depth string for each sample name
      * 
@@ -2025,16 +2476,19 @@ public final class Suite implements SampleGroup {
             throw new MissingSampleNameException(
                     "Missing sample name key(s) in nameToDepth");
         }
-        setMeasurementType(MeasurementType.CONTINUOUS);
-        samplesById = new LinkedHashMap<>();
-        for (Sample sample : getSamples()) {
-            final String newSampleName =
-                    nameToDepth.get(sample.getNameOrDepth());
-            sample.setNameOrDepth(newSampleName);
-            samplesById.put(newSampleName, sample);
-        }
-        updateReverseIndex();
-        sortSamplesByDepth();
+        runAsEdit("Discrete to continuous", () -> {
+            recordStructureForUndo();
+            setMeasurementType(MeasurementType.CONTINUOUS);
+            samplesById = new LinkedHashMap<>();
+            for (Sample sample : getSamples()) {
+                final String newSampleName =
+                        nameToDepth.get(sample.getNameOrDepth());
+                sample.setNameOrDepth(newSampleName);
+                samplesById.put(newSampleName, sample);
+            }
+            updateReverseIndex();
+            sortSamplesByDepth();
+        });
     }
     
     /**
@@ -2061,6 +2515,108 @@ public final class Suite implements SampleGroup {
         convertDiscreteToContinuous(nameToDepth);
     }
     
+    /**
+     * Returns the undo history for this suite, creating it if necessary.
+     * Changes to the suite are only recorded once the history has been
+     * created, so a suite which never uses undo pays nothing for it.
+     *
+     * @return the undo history for this suite
+     */
+    public SuiteHistory getHistory() {
+        if (history == null) {
+            history = new SuiteHistory(this);
+        }
+        return history;
+    }
+
+    /**
+     * Performs an action as a single undoable edit, if an undo history is
+     * being kept, and reports its changes to change listeners in a single
+     * event.
+     */
+    private void runAsEdit(String description, Runnable action) {
+        if (history != null) {
+            history.run(description, () -> runInTransaction(action));
+        } else {
+            runInTransaction(action);
+        }
+    }
+
+    void recordForUndo(TreatmentStep step) {
+        if (history != null) {
+            history.record(step);
+        }
+    }
+
+    void recordForUndo(Sample sample) {
+        if (history != null) {
+            history.record(sample);
+        }
+    }
+
+    void recordForUndo(Site site) {
+        if (history != null) {
+            history.record(site);
+        }
+    }
+
+    private void recordStructureForUndo() {
+        if (history != null) {
+            history.recordStructure();
+        }
+    }
+
+    /**
+     * A snapshot of a suite's sample and site containers, used by
+     * {@link SuiteHistory}. Only references are copied: the samples and
+     * sites themselves are shared with the suite.
+     */
+    static final class State {
+        private final List<Sample> samples;
+        private final Map<String, Sample> samplesById;
+        private final List<Site> sites;
+        private final MeasurementType measurementType;
+        private final int currentSampleIndex;
+
+        private State(Suite suite) {
+            samples = new ArrayList<>(suite.samples);
+            samplesById = new LinkedHashMap<>(suite.samplesById);
+            sites = new ArrayList<>(suite.sites);
+            measurementType = suite.measurementType;
+            currentSampleIndex = suite.currentSampleIndex;
+        }
+
+        List<Sample> getSamples() {
+            return samples;
+        }
+    }
+
+    State saveState() {
+        return new State(this);
+    }
+
+    void restoreState(State state) {
+        final Set<Sample> restored = Collections.newSetFromMap(
+                new IdentityHashMap<>());
+        restored.addAll(state.samples);
+        samples.stream().filter(s -> !restored.contains(s)).
+                forEach(statistics::remove);
+        final Set<Sample> current = Collections.newSetFromMap(
+                new IdentityHashMap<>());
+        current.addAll(samples);
+        state.samples.stream().filter(s -> !current.contains(s)).
+                forEach(statistics::add);
+        samples.clear();
+        samples.addAll(state.samples);
+        samplesById = new LinkedHashMap<>(state.samplesById);
+        sites = new ArrayList<>(state.sites);
+        updateSiteIndex();
+        measurementType = state.measurementType;
+        currentSampleIndex = state.currentSampleIndex;
+        updateReverseIndex();
+        ensureCurrentSampleIndexValid();
+    }
+
     /**
      * A listener interface for modifications to the Suite's save state.
      * 
@@ -2095,4 +2651,107 @@ public final class Suite implements SampleGroup {
     public void removeSavedListener(SavedListener savedListener) {
         savedListenerSet.remove(savedListener);
     }
+    
+    /**
+     * A listener for changes to the data in a suite.
+     * <p>
+     * Unlike {@link SavedListener}, which only reports that the suite
+     * has been modified, a change listener is told what kind of change
+     * occurred and which samples and treatment steps were affected.
+     */
+    public static interface ChangeListener {
+        
+        /**
+         * This method is called when the data in the suite change.
+         * 
+         * @param event a description of the changes
+         */
+        public void suiteChanged(SuiteChangeEvent event);
+    }
+    
+    /**
+     * Add a listener for changes to this suite's data
+     * 
+     * @param changeListener the new listener
+     */
+    public void addChangeListener(ChangeListener changeListener) {
+        changeListenerSet.add(changeListener);
+    }
+    
+    /**
+     * Remove a listener for changes to this suite's data
+     * 
+     * @param changeListener the listener to remove
+     */
+    public void removeChangeListener(ChangeListener changeListener) {
+        changeListenerSet.remove(changeListener);
+    }
+    
+    /**
+     * Runs the supplied code in a transaction. All the changes made within
+     * the transaction are reported to change listeners in a single event
+     * when it ends. Transactions may be nested, in which case the event is
+     * sent when the outermost transaction ends.
+     * 
+     * @param action the code to run
+     */
+    public void runInTransaction(Runnable action) {
+        startTransaction();
+        try {
+            action.run();
+        } finally {
+            endTransaction();
+        }
+    }
+    
+    void startTransaction() {
+        transactionDepth++;
+    }
+    
+    void endTransaction() {
+        if (transactionDepth == 0) {
+            throw new IllegalStateException("No transaction in progress.");
+        }
+        transactionDepth--;
+        if (transactionDepth == 0 && pendingChangeEvent != null) {
+            final SuiteChangeEvent event = pendingChangeEvent;
+            pendingChangeEvent = null;
+            dispatchChangeEvent(event);
+        }
+    }
+    
+    /**
+     * Reports a change to the change listeners, or adds it to the pending
+     * event if a transaction is in progress.
+     * 
+     * @param type the type of change
+     * @param sample the affected sample, or {@code null}
+     * @param step the affected treatment step, or {@code null}
+     */
+    void fireChange(SuiteChangeEvent.Type type, Sample sample,
+            TreatmentStep step) {
+        if (changeListenerSet.isEmpty()) {
+            return;
+        }
+        if (transactionDepth > 0) {
+            if (pendingChangeEvent == null) {
+                pendingChangeEvent = new SuiteChangeEvent(this);
+            }
+            pendingChangeEvent.add(type, sample, step);
+        } else {
+            final SuiteChangeEvent event = new SuiteChangeEvent(this);
+            event.add(type, sample, step);
+            dispatchChangeEvent(event);
+        }
+    }
+    
+    private void dispatchChangeEvent(SuiteChangeEvent event) {
+        /*
+         * Copy the listener set so that listeners may remove themselves
+         * while handling the event.
+         */
+        for (ChangeListener listener: new ArrayList<>(changeListenerSet)) {
+            listener.suiteChanged(event);
+        }
+    }
 }
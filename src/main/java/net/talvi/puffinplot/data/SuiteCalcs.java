@@ -31,6 +31,7 @@ import java.util.List;
 public final class SuiteCalcs {
 
     private static final List<String> HEADERS;
+    private static final List<String> INCLINATION_HEADERS;
     
     static {
         List<String> headersTemp = new ArrayList<>();
@@ -38,6 +39,10 @@ public final class SuiteCalcs {
         headersTemp.add("Group");
         headersTemp.addAll(FisherValues.getHeaders());
         HEADERS = Collections.unmodifiableList(headersTemp);
+        headersTemp = new ArrayList<>();
+        headersTemp.add("Type");
+        headersTemp.addAll(ArasonLevi.getHeaders());
+        INCLINATION_HEADERS = Collections.unmodifiableList(headersTemp);
     }
 
     /**
@@ -130,9 +135,11 @@ public final class SuiteCalcs {
     private final Means dirsBySample;
     private final Means vgpsBySite;
     private final Means vgpsBySample;
+    private final ArasonLevi inclinationsBySite;
+    private final ArasonLevi inclinationsBySample;
     
     /**
-     * Creates a new SuiteCalcs object.
+     * Creates a new SuiteCalcs object with no inclination-only statistics.
      * 
      * @param dirsBySite direction statistics calculated by site
      * @param dirsBySample direction statistics calculated by sample
@@ -141,10 +148,30 @@ public final class SuiteCalcs {
      */
     public SuiteCalcs(Means dirsBySite, Means dirsBySample,
             Means vgpsBySite, Means vgpsBySample) {
+        this(dirsBySite, dirsBySample, vgpsBySite, vgpsBySample, null, null);
+    }
+
+    /**
+     * Creates a new SuiteCalcs object.
+     * 
+     * @param dirsBySite direction statistics calculated by site
+     * @param dirsBySample direction statistics calculated by sample
+     * @param vgpsBySite VGP statistics calculated by site
+     * @param vgpsBySample VGP statistics calculated by sample
+     * @param inclinationsBySite Arason-Levi inclination-only statistics
+     * calculated by site (may be {@code null})
+     * @param inclinationsBySample Arason-Levi inclination-only statistics
+     * calculated by sample (may be {@code null})
+     */
+    public SuiteCalcs(Means dirsBySite, Means dirsBySample,
+            Means vgpsBySite, Means vgpsBySample,
+            ArasonLevi inclinationsBySite, ArasonLevi inclinationsBySample) {
         this.dirsBySite = dirsBySite;
         this.dirsBySample = dirsBySample;
         this.vgpsBySite = vgpsBySite;
         this.vgpsBySample = vgpsBySample;
+        this.inclinationsBySite = inclinationsBySite;
+        this.inclinationsBySample = inclinationsBySample;
     }
     
     /**
@@ -174,6 +201,22 @@ public final class SuiteCalcs {
     public Means getVgpsBySample() {
         return vgpsBySample;
     }
+
+    /**
+     * @return Arason-Levi inclination-only statistics on the site mean
+     * directions, or {@code null} if there are none
+     */
+    public ArasonLevi getInclinationsBySite() {
+        return inclinationsBySite;
+    }
+
+    /**
+     * @return Arason-Levi inclination-only statistics on the sample
+     * directions, or {@code null} if there are none
+     */
+    public ArasonLevi getInclinationsBySample() {
+        return inclinationsBySample;
+    }
     
     /**
      * @return a string-matrix representation of these suite statistics.
@@ -200,11 +243,35 @@ public final class SuiteCalcs {
         return result;
     } 
     
+    /**
+     * @return a string-matrix representation of the inclination-only
+     * statistics
+     */
+    public List<List<String>> inclinationsToStrings() {
+        final List<List<String>> result = new ArrayList<>(2);
+        for (int grouping=0; grouping<2; grouping++) {
+            final List<String> strings = new ArrayList<>(7);
+            strings.add(grouping==0 ? "Site dir" : "Sample dir");
+            strings.addAll(ArasonLevi.toStrings(grouping==0 ?
+                    inclinationsBySite : inclinationsBySample));
+            result.add(strings);
+        }
+        return result;
+    }
+    
     /**
      * @return headers corresponding to fields returned by {@link #toStrings()}.
      */
     public static List<String> getHeaders() {
         return HEADERS;
     }
+
+    /**
+     * @return headers corresponding to fields returned by
+     * {@link #inclinationsToStrings()}.
+     */
+    public static List<String> getInclinationHeaders() {
+        return INCLINATION_HEADERS;
+    }
     
 }
@@ -0,0 +1,153 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.talvi.puffinplot.data;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * A description of one or more changes to the data in a suite.
+ * <p>
+ * An event records the kinds of change which occurred, and the samples and
+ * treatment steps which were affected. Changes made within a transaction
+ * (see {@link Suite#runInTransaction(Runnable)}) are combined into a single
+ * event, which is delivered when the transaction ends.
+ *
+ * @author pont
+ * @see Suite.ChangeListener
+ */
+public final class SuiteChangeEvent {
+
+    /**
+     * The kinds of change which can be reported.
+     */
+    public enum Type {
+        /** treatment steps were selected or deselected */
+        STEP_SELECTION,
+        /** treatment step flags (hidden, PCA, great circle, anchoring)
+         * were changed */
+        STEP_FLAGS,
+        /** treatment step magnetic moments were changed */
+        STEP_MOMENT,
+        /** other treatment step data (e.g. treatment levels) were
+         * changed */
+        STEP_DATA,
+        /** treatment steps were added to, removed from, or reordered
+         * within samples */
+        STEPS_CHANGED,
+        /** samples were added to the suite */
+        SAMPLES_ADDED,
+        /** samples were removed from the suite */
+        SAMPLES_REMOVED,
+        /** samples were assigned to different sites */
+        SITES,
+        /** calculation results (PCA, great circles, Fisher means, MDF,
+         * and so on) were changed or cleared */
+        CALCULATIONS;
+    }
+
+    private final Suite suite;
+    private final Set<Type> types = EnumSet.noneOf(Type.class);
+    private final Set<Sample> samples = new LinkedHashSet<>();
+    private final Set<TreatmentStep> treatmentSteps = new LinkedHashSet<>();
+
+    SuiteChangeEvent(Suite suite) {
+        this.suite = suite;
+    }
+
+    /**
+     * Adds a change to this event.
+     *
+     * @param type the type of change
+     * @param sample the affected sample, or {@code null} if no particular
+     * sample was affected
+     * @param step the affected treatment step, or {@code null} if no
+     * particular treatment step was affected
+     */
+    void add(Type type, Sample sample, TreatmentStep step) {
+        types.add(type);
+        if (sample != null) {
+            samples.add(sample);
+        }
+        if (step != null) {
+            treatmentSteps.add(step);
+        }
+    }
+
+    boolean isEmpty() {
+        return types.isEmpty();
+    }
+
+    /**
+     * Returns the suite which changed.
+     *
+     * @return the suite which changed
+     */
+    public Suite getSuite() {
+        return suite;
+    }
+
+    /**
+     * Returns the kinds of change which occurred.
+     *
+     * @return the kinds of change which occurred
+     */
+    public Set<Type> getTypes() {
+        return Collections.unmodifiableSet(types);
+    }
+
+    /**
+     * Reports whether this event includes a change of the specified type.
+     *
+     * @param type a type of change
+     * @return {@code true} if this event includes a change of that type
+     */
+    public boolean contains(Type type) {
+        return types.contains(type);
+    }
+
+    /**
+     * Returns the samples affected by the changes, in the order in which
+     * they were first changed. Samples which were removed from the suite
+     * are included.
+     *
+     * @return the samples affected by the changes
+     */
+    public Set<Sample> getSamples() {
+        return Collections.unmodifiableSet(samples);
+    }
+
+    /**
+     * Returns the treatment steps affected by the changes, in the order in
+     * which they were first changed. This only includes steps which were
+     * modified individually; when a sample is added or removed, its steps
+     * are not listed.
+     *
+     * @return the treatment steps affected by the changes
+     */
+    public Set<TreatmentStep> getTreatmentSteps() {
+        return Collections.unmodifiableSet(treatmentSteps);
+    }
+
+    @Override
+    public String toString() {
+        return "SuiteChangeEvent" + types + " (" + samples.size()
+                + " samples, " + treatmentSteps.size() + " steps)";
+    }
+}
@@ -0,0 +1,348 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.talvi.puffinplot.data;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An undo and redo history for a suite.
+ * <p>
+ * The history is divided into edits, each of which is normally a single
+ * user operation. An edit is normally made by {@link #run(String, Runnable)},
+ * which ends the edit when the operation finishes; calls to {@code run} may
+ * be nested, in which case the inner operations become part of the outermost
+ * edit. Changes made outside any edit (for example, step selections made
+ * with the mouse) are gathered into an implicit edit, which ends when the
+ * next edit is started or when an edit is undone or redone.
+ * <p>
+ * Snapshots are taken by copying on first write: the first time a treatment
+ * step, sample, or site is modified within an edit, its previous state is
+ * saved, and later modifications within the same edit cost nothing more.
+ * The saved states are shallow: they share immutable values (vectors and
+ * calculation results) with the live objects, and a sample's state copies
+ * only its list of references to treatment steps and its custom fields.
+ * Starting an edit is therefore constant-time, and the memory used by an
+ * edit is proportional to the number of objects it changed. The suite's own
+ * sample and site lists are only saved by edits which change the suite's
+ * structure, such as removing or merging samples.
+ * <p>
+ * Site means are not saved; they should be recalculated after an undo or
+ * redo if they are needed.
+ *
+ * @author pont
+ * @see Suite#getHistory()
+ */
+public final class SuiteHistory {
+
+    /**
+     * The default maximum number of edits which can be undone.
+     */
+    public static final int DEFAULT_LIMIT = 50;
+
+    private final Suite suite;
+    private final Deque<Edit> undoStack = new ArrayDeque<>();
+    private final Deque<Edit> redoStack = new ArrayDeque<>();
+    private Edit current = null;
+    private int depth = 0;
+    private boolean restoring = false;
+    private int limit = DEFAULT_LIMIT;
+
+    private static final class Edit {
+        final String description;
+        final Map<TreatmentStep, TreatmentStep> steps =
+                new IdentityHashMap<>();
+        final Map<Sample, Sample.State> samples = new IdentityHashMap<>();
+        final Map<Site, Site.State> sites = new IdentityHashMap<>();
+        Suite.State structure = null;
+
+        Edit(String description) {
+            this.description = description;
+        }
+
+        boolean isEmpty() {
+            return steps.isEmpty() && samples.isEmpty() && sites.isEmpty()
+                    && structure == null;
+        }
+    }
+
+    SuiteHistory(Suite suite) {
+        this.suite = suite;
+    }
+
+    /**
+     * Ends the current edit (if any) and starts a new one. Subsequent
+     * changes to the suite will be undone together by a single call to
+     * {@link #undo()}. The new edit is open-ended: it lasts until the next
+     * edit is started or an edit is undone or redone, so
+     * {@link #run(String, Runnable)} should be preferred wherever the
+     * changes can be made by a single action. Within an action performed
+     * by {@code run}, this method does nothing.
+     *
+     * @param description a short description of the edit, suitable for
+     * display in a menu (e.g. "Remove samples")
+     */
+    public void checkpoint(String description) {
+        if (depth == 0) {
+            endEdit();
+            current = new Edit(description);
+        }
+    }
+
+    /**
+     * Performs an action as a single undoable edit. The edit ends when
+     * the action finishes, so later changes to the suite are not added
+     * to it. If this method is called from within another action
+     * performed by {@code run}, the changes become part of the
+     * enclosing edit.
+     *
+     * @param description a short description of the edit, suitable for
+     * display in a menu (e.g. "Remove samples")
+     * @param action the action to perform
+     */
+    public void run(String description, Runnable action) {
+        if (depth == 0) {
+            endEdit();
+            current = new Edit(description);
+        }
+        depth++;
+        try {
+            action.run();
+        } finally {
+            depth--;
+            if (depth == 0) {
+                endEdit();
+            }
+        }
+    }
+
+    private void endEdit() {
+        if (current != null && !current.isEmpty()) {
+            undoStack.push(current);
+            while (undoStack.size() > limit) {
+                undoStack.removeLast();
+            }
+        }
+        current = null;
+    }
+
+    private Edit currentEdit() {
+        if (current == null) {
+            current = new Edit("Edit");
+        }
+        if (current.isEmpty()) {
+            /*
+             * This is the first change since the last checkpoint, so the
+             * redo history no longer applies.
+             */
+            redoStack.clear();
+        }
+        return current;
+    }
+
+    void record(TreatmentStep step) {
+        if (!restoring) {
+            final Edit edit = currentEdit();
+            if (!edit.steps.containsKey(step)) {
+                edit.steps.put(step, step.saveState());
+            }
+        }
+    }
+
+    void record(Sample sample) {
+        if (!restoring) {
+            final Edit edit = currentEdit();
+            if (!edit.samples.containsKey(sample)) {
+                edit.samples.put(sample, sample.saveState());
+            }
+        }
+    }
+
+    void record(Site site) {
+        if (!restoring) {
+            final Edit edit = currentEdit();
+            if (!edit.sites.containsKey(site)) {
+                edit.sites.put(site, site.saveState());
+            }
+        }
+    }
+
+    void recordStructure() {
+        if (!restoring) {
+            final Edit edit = currentEdit();
+            if (edit.structure == null) {
+                edit.structure = suite.saveState();
+            }
+        }
+    }
+
+    /**
+     * Reports whether there is an edit which can be undone.
+     *
+     * @return {@code true} if there is an edit which can be undone
+     */
+    public boolean canUndo() {
+        return (current != null && !current.isEmpty()) || !undoStack.isEmpty();
+    }
+
+    /**
+     * Reports whether there is an edit which can be redone.
+     *
+     * @return {@code true} if there is an edit which can be redone
+     */
+    public boolean canRedo() {
+        return !redoStack.isEmpty();
+    }
+
+    /**
+     * Returns the description of the edit which would be undone by
+     * {@link #undo()}.
+     *
+     * @return the description of the next edit to undo, or {@code null}
+     * if there is none
+     */
+    public String getUndoDescription() {
+        if (current != null && !current.isEmpty()) {
+            return current.description;
+        }
+        return undoStack.isEmpty() ? null : undoStack.peek().description;
+    }
+
+    /**
+     * Returns the description of the edit which would be redone by
+     * {@link #redo()}.
+     *
+     * @return the description of the next edit to redo, or {@code null}
+     * if there is none
+     */
+    public String getRedoDescription() {
+        return redoStack.isEmpty() ? null : redoStack.peek().description;
+    }
+
+    /**
+     * Undoes the most recent edit. If there is nothing to undo, nothing
+     * happens.
+     */
+    public void undo() {
+        endEdit();
+        if (!undoStack.isEmpty()) {
+            redoStack.push(apply(undoStack.pop()));
+        }
+    }
+
+    /**
+     * Redoes the most recently undone edit. If there is nothing to redo,
+     * nothing happens.
+     */
+    public void redo() {
+        endEdit();
+        if (!redoStack.isEmpty()) {
+            undoStack.push(apply(redoStack.pop()));
+        }
+    }
+
+    /**
+     * Discards all undo and redo history.
+     */
+    public void clear() {
+        current = null;
+        undoStack.clear();
+        redoStack.clear();
+    }
+
+    /**
+     * Sets the maximum number of edits which can be undone. If more edits
+     * than this are made, the oldest are discarded.
+     *
+     * @param limit the maximum number of edits to keep (at least 1)
+     */
+    public void setLimit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1");
+        }
+        this.limit = limit;
+        while (undoStack.size() > limit) {
+            undoStack.removeLast();
+        }
+    }
+
+    /**
+     * Restores the states saved in an edit, and returns an edit which
+     * will reverse the restoration.
+     */
+    private Edit apply(Edit edit) {
+        final Edit inverse = new Edit(edit.description);
+        if (edit.structure != null) {
+            inverse.structure = suite.saveState();
+        }
+        edit.samples.keySet().forEach(
+                sample -> inverse.samples.put(sample, sample.saveState()));
+        edit.sites.keySet().forEach(
+                site -> inverse.sites.put(site, site.saveState()));
+        edit.steps.keySet().forEach(
+                step -> inverse.steps.put(step, step.saveState()));
+
+        restoring = true;
+        try {
+            suite.runInTransaction(() -> {
+                if (edit.structure != null) {
+                    final Set<Sample> before =
+                            identitySet(inverse.structure.getSamples());
+                    suite.restoreState(edit.structure);
+                    final Set<Sample> after =
+                            identitySet(edit.structure.getSamples());
+                    before.stream().filter(s -> !after.contains(s)).
+                            forEach(s -> suite.fireChange(
+                                    SuiteChangeEvent.Type.SAMPLES_REMOVED,
+                                    s, null));
+                    after.stream().filter(s -> !before.contains(s)).
+                            forEach(s -> suite.fireChange(
+                                    SuiteChangeEvent.Type.SAMPLES_ADDED,
+                                    s, null));
+                }
+                edit.sites.forEach(Site::restoreState);
+                edit.samples.forEach((sample, state) -> {
+                    sample.restoreState(state);
+                    suite.fireChange(SuiteChangeEvent.Type.SITES,
+                            sample, null);
+                    suite.fireChange(SuiteChangeEvent.Type.CALCULATIONS,
+                            sample, null);
+                });
+                edit.steps.forEach((step, state) -> {
+                    step.restoreState(state);
+                    suite.fireChange(SuiteChangeEvent.Type.STEP_DATA,
+                            step.getSample(), step);
+                });
+            });
+        } finally {
+            restoring = false;
+        }
+        suite.setSaved(false);
+        return inverse;
+    }
+
+    private static Set<Sample> identitySet(Iterable<Sample> samples) {
+        final Set<Sample> result =
+                Collections.newSetFromMap(new IdentityHashMap<>());
+        samples.forEach(result::add);
+        return result;
+    }
+}
@@ -0,0 +1,485 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.talvi.puffinplot.data;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.talvi.puffinplot.Metrics;
+import net.talvi.puffinplot.PuffinUserException;
+
+/**
+ * A write-ahead journal of the edits made to a suite since it was last saved.
+ * <p>
+ * A journal listens for changes to a suite and appends a record of each
+ * changed treatment step and each changed site assignment to a journal file
+ * next to the suite's PuffinPlot file (see {@link #getJournalFile(File)}).
+ * The records are written on a background thread, and the cost of writing
+ * them depends only on the number of changed treatment steps, not on the
+ * size of the suite. When the suite is saved, the journal file is deleted,
+ * since the PuffinPlot file then contains all the journalled changes.
+ * <p>
+ * {@link #compactIfNeeded()} should be called periodically, from the thread
+ * which owns the suite, to fold a large journal into a snapshot: a copy of
+ * the unsaved suite in PuffinPlot format, kept next to the journal (see
+ * {@link #getSnapshotFile(File)}). The snapshot is written on the
+ * background thread, and the journal then starts again from it. The
+ * PuffinPlot file itself is only written when the user saves the suite,
+ * which also deletes the snapshot.
+ * <p>
+ * When a PuffinPlot file is reopened, any snapshot which is newer than the
+ * file (see {@link #getRecoveryFile(File)}) should be read in its place, and
+ * {@link #replay(Suite)} then reapplies any changes recorded in the
+ * journal. A suite which has never been saved has no PuffinPlot file, so
+ * its changes cannot be journalled until it is first saved.
+ * <p>
+ * The journal is a UTF-8 text file. The first line is a header, and the
+ * second lists the treatment step fields in the same form as a PuffinPlot
+ * file. Each subsequent line is a single record, terminated by an
+ * {@code END} field so that a record truncated by a crash can be detected
+ * and ignored.
+ * <p>
+ * Treatment step records identify a step by its position within its sample.
+ * If steps are added to, removed from, or reordered within a sample, the
+ * positions in subsequent records no longer match the saved file, so the
+ * journal writes a {@code STEPS_CHANGED} barrier and records nothing
+ * further until the suite is saved or compacted. Replay stops at the
+ * barrier, and {@link #compactIfNeeded()} writes a snapshot at its next
+ * call.
+ *
+ * @author pont
+ */
+public final class SuiteJournal implements Closeable {
+
+    private static final Logger LOGGER =
+            Logger.getLogger("net.talvi.puffinplot");
+    private static final String HEADER = "PuffinPlot journal. Version 1";
+    private static final String SUFFIX = ".journal";
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+    private static final String END = "END";
+    private static final String BARRIER = "STEPS_CHANGED";
+
+    /**
+     * The journal size, in bytes, above which
+     * {@link #compactIfNeeded()} will fold the journal into a snapshot.
+     */
+    public static final long COMPACTION_THRESHOLD = 256 * 1024;
+
+    private final Suite suite;
+    private final ExecutorService writer;
+    private final Suite.ChangeListener changeListener = this::suiteChanged;
+    private final Suite.SavedListener savedListener = this::savedStateChanged;
+    private volatile File journalFile;
+    private volatile File snapshotFile;
+    private volatile boolean fullSaveNeeded = false;
+    private volatile boolean stepsChanged = false;
+
+    /**
+     * Creates a new journal for a suite and starts recording changes to it.
+     * Any existing journal file for the suite is appended to, so
+     * {@link #replay(Suite)} should be called first if required.
+     *
+     * @param suite the suite whose changes should be journalled
+     */
+    public SuiteJournal(Suite suite) {
+        this.suite = suite;
+        journalFile = suite.getPuffinFile() == null ? null :
+                getJournalFile(suite.getPuffinFile());
+        snapshotFile = suite.getPuffinFile() == null ? null :
+                getSnapshotFile(suite.getPuffinFile());
+        writer = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "PuffinPlot journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        suite.addChangeListener(changeListener);
+        suite.addSavedListener(savedListener);
+    }
+
+    /**
+     * Returns the journal file for a specified PuffinPlot file.
+     *
+     * @param puffinFile a PuffinPlot file
+     * @return the corresponding journal file
+     */
+    public static File getJournalFile(File puffinFile) {
+        return new File(puffinFile.getParentFile(),
+                puffinFile.getName() + SUFFIX);
+    }
+
+    /**
+     * Returns the snapshot file for a specified PuffinPlot file.
+     *
+     * @param puffinFile a PuffinPlot file
+     * @return the corresponding snapshot file
+     */
+    public static File getSnapshotFile(File puffinFile) {
+        return new File(puffinFile.getParentFile(),
+                puffinFile.getName() + SNAPSHOT_SUFFIX);
+    }
+
+    /**
+     * Returns the file from which a PuffinPlot file's latest state should be
+     * read: its snapshot, if there is one newer than the file, and otherwise
+     * the file itself. The suite's journal should be replayed after reading
+     * either.
+     *
+     * @param puffinFile a PuffinPlot file
+     * @return the file to read in its place
+     */
+    public static File getRecoveryFile(File puffinFile) {
+        final File snapshot = getSnapshotFile(puffinFile);
+        return snapshot.exists()
+                && snapshot.lastModified() >= puffinFile.lastModified()
+                ? snapshot : puffinFile;
+    }
+
+    /**
+     * Reapplies the changes recorded in a suite's journal file, if it has
+     * one. A truncated final record is ignored, as are records for samples
+     * or treatment steps which do not exist in the suite. Replay stops at
+     * a record of a change to the samples' lists of treatment steps, since
+     * the treatment step positions in any later records are not valid for
+     * the suite as saved.
+     *
+     * @param suite the suite to which to apply the journalled changes
+     * @return the number of records which were applied
+     * @throws IOException if the journal file exists but could not be read
+     */
+    public static int replay(Suite suite) throws IOException {
+        if (suite.getPuffinFile() == null) {
+            return 0;
+        }
+        final File file = getJournalFile(suite.getPuffinFile());
+        if (!file.exists()) {
+            return 0;
+        }
+        final List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file),
+                        StandardCharsets.UTF_8))) {
+            final String header = reader.readLine();
+            if (header == null) {
+                return 0;
+            }
+            if (!HEADER.equals(header)) {
+                throw new IOException(file + " is not a PuffinPlot journal.");
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        if (lines.isEmpty()) {
+            return 0;
+        }
+        final String[] fieldNames = lines.get(0).split("\t", -1);
+        if (!"FIELDS".equals(fieldNames[0])) {
+            throw new IOException("No field list in " + file);
+        }
+        final List<TreatmentParameter> fields =
+                new ArrayList<>(fieldNames.length - 1);
+        for (int i = 1; i < fieldNames.length; i++) {
+            try {
+                fields.add(TreatmentParameter.valueOf(fieldNames[i]));
+            } catch (IllegalArgumentException ex) {
+                fields.add(null); // from a newer version; ignore it
+            }
+        }
+        final int[] applied = {0};
+        suite.runInTransaction(() -> {
+            for (String line : lines.subList(1, lines.size())) {
+                if (line.startsWith(BARRIER + "\t")) {
+                    LOGGER.log(Level.WARNING, "Journal {0} records a change "
+                            + "to treatment step lists; later edits were "
+                            + "not recoverable", file);
+                    break;
+                }
+                if (applyRecord(suite, fields, line.split("\t", -1))) {
+                    applied[0]++;
+                }
+            }
+        });
+        return applied[0];
+    }
+
+    private static boolean applyRecord(Suite suite,
+            List<TreatmentParameter> fields, String[] parts) {
+        if (parts.length < 4 || !END.equals(parts[parts.length - 1])) {
+            LOGGER.log(Level.WARNING, "Ignoring incomplete journal record");
+            return false;
+        }
+        final Sample sample = suite.getSampleByName(parts[1]);
+        if (sample == null) {
+            return false;
+        }
+        switch (parts[0]) {
+            case "STEP":
+                final int index;
+                try {
+                    index = Integer.parseInt(parts[2]);
+                } catch (NumberFormatException ex) {
+                    return false;
+                }
+                if (index < 0 || index >= sample.getTreatmentSteps().size()
+                        || parts.length != fields.size() + 4) {
+                    return false;
+                }
+                final TreatmentStep step =
+                        sample.getTreatmentSteps().get(index);
+                for (int i = 0; i < fields.size(); i++) {
+                    final TreatmentParameter field = fields.get(i);
+                    final String value = parts[i + 3];
+                    if (field != null && !value.equals(step.getValue(field))) {
+                        step.setValue(field, value, 1.);
+                    }
+                }
+                return true;
+            case "SITE":
+                final List<Sample> samples = Collections.singletonList(sample);
+                if (parts[2].isEmpty()) {
+                    suite.clearSites(samples);
+                } else {
+                    suite.setSitesForSamples(samples, s -> parts[2]);
+                }
+                return true;
+            default:
+                LOGGER.log(Level.WARNING, "Unknown journal record {0}",
+                        parts[0]);
+                return false;
+        }
+    }
+
+    private void suiteChanged(SuiteChangeEvent event) {
+        if (event.contains(SuiteChangeEvent.Type.SAMPLES_ADDED)
+                || event.contains(SuiteChangeEvent.Type.SAMPLES_REMOVED)) {
+            /*
+             * The journal can't express structural changes, so they are
+             * only preserved by a full save.
+             */
+            fullSaveNeeded = true;
+        }
+        if (journalFile == null || stepsChanged) {
+            return;
+        }
+        final List<String> records = new ArrayList<>();
+        if (event.contains(SuiteChangeEvent.Type.STEPS_CHANGED)) {
+            /*
+             * Step records from here on would refer to step positions
+             * which don't exist in the saved file, so end the journal.
+             */
+            stepsChanged = true;
+            fullSaveNeeded = true;
+            records.add(BARRIER + "\t" + END);
+            final File file = journalFile;
+            writer.execute(() -> append(file, records));
+            return;
+        }
+        for (TreatmentStep step : event.getTreatmentSteps()) {
+            final Sample sample = step.getSample();
+            if (sample == null) {
+                continue;
+            }
+            final int index = sample.getTreatmentSteps().indexOf(step);
+            if (index < 0) {
+                continue;
+            }
+            records.add("STEP\t" + sample.getNameOrDepth() + "\t" + index
+                    + "\t" + String.join("\t", step.toStrings()) + "\t" + END);
+        }
+        if (event.contains(SuiteChangeEvent.Type.SITES)) {
+            for (Sample sample : event.getSamples()) {
+                final Site site = sample.getSite();
+                records.add("SITE\t" + sample.getNameOrDepth() + "\t"
+                        + (site == null ? "" : site.getName()) + "\t" + END);
+            }
+        }
+        if (!records.isEmpty()) {
+            final File file = journalFile;
+            writer.execute(() -> append(file, records));
+        }
+    }
+
+    private static void append(File file, List<String> records) {
+        final StringBuilder sb = new StringBuilder();
+        if (file.length() == 0) {
+            sb.append(HEADER).append("\n").append("FIELDS\t").
+                    append(String.join("\t",
+                            TreatmentParameter.getRealFieldStrings())).
+                    append("\n");
+        }
+        for (String record : records) {
+            sb.append(record).append("\n");
+        }
+        try (OutputStream stream = new FileOutputStream(file, true)) {
+            stream.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Could not write to journal " + file,
+                    ex);
+        }
+        Metrics.add("journal.records", records.size());
+    }
+
+    private void savedStateChanged(boolean saved) {
+        if (!saved) {
+            return;
+        }
+        /*
+         * The suite file now holds everything in the journal. The suite may
+         * also have been saved under a new name, in which case the journal
+         * moves with it.
+         */
+        final File oldJournal = journalFile;
+        final File oldSnapshot = snapshotFile;
+        journalFile = getJournalFile(suite.getPuffinFile());
+        snapshotFile = getSnapshotFile(suite.getPuffinFile());
+        fullSaveNeeded = false;
+        stepsChanged = false;
+        writer.execute(() -> {
+            delete(oldJournal);
+            delete(oldSnapshot);
+        });
+    }
+
+    private static void delete(File file) {
+        if (file != null && file.exists() && !file.delete()) {
+            LOGGER.log(Level.WARNING, "Could not delete {0}", file);
+        }
+    }
+
+    /**
+     * Writes a snapshot of the suite if the journal has grown beyond
+     * {@link #COMPACTION_THRESHOLD} or contains changes which it cannot
+     * represent. The suite's data are copied on the calling thread, which
+     * should be the thread which modifies the suite, and then written to
+     * the snapshot file on the journal's background thread, after which
+     * the journal is emptied. The suite's PuffinPlot file and saved state
+     * are not changed.
+     *
+     * @return {@code true} if a snapshot was taken
+     * @throws PuffinUserException if the suite's data could not be copied
+     */
+    public boolean compactIfNeeded() throws PuffinUserException {
+        final File journal = journalFile;
+        final File snapshot = snapshotFile;
+        if (journal == null || suite.isSaved()) {
+            return false;
+        }
+        if (fullSaveNeeded || journal.length() > COMPACTION_THRESHOLD) {
+            final StringWriter data = new StringWriter();
+            try {
+                suite.writePuffinData(data);
+            } catch (IOException ex) {
+                throw new PuffinUserException(ex);
+            }
+            /*
+             * Records of later changes are queued after the snapshot, so
+             * their step positions refer to the snapshot's contents.
+             */
+            fullSaveNeeded = false;
+            stepsChanged = false;
+            writer.execute(() -> writeSnapshot(snapshot, data.toString(),
+                    journal));
+            return true;
+        }
+        return false;
+    }
+
+    private void writeSnapshot(File snapshot, String data, File journal) {
+        final Metrics.Timer timer = Metrics.start("journal.snapshot");
+        try {
+            final File temporary = new File(snapshot.getParentFile(),
+                    snapshot.getName() + ".tmp");
+            Files.write(temporary.toPath(),
+                    data.getBytes(StandardCharsets.UTF_8));
+            Files.move(temporary.toPath(), snapshot.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            delete(journal);
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Could not write snapshot " + snapshot,
+                    ex);
+            /*
+             * The journal is kept, so retry at the next compaction.
+             */
+            fullSaveNeeded = true;
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Stops journalling and deletes the journal and snapshot files. Intended
+     * to be called when the user closes the suite and discards the unsaved
+     * changes.
+     */
+    public void discard() {
+        final File journal = journalFile;
+        final File snapshot = snapshotFile;
+        journalFile = null;
+        snapshotFile = null;
+        writer.execute(() -> {
+            delete(journal);
+            delete(snapshot);
+        });
+        close();
+    }
+
+    /**
+     * Stops journalling, waiting for any pending records to be written.
+     */
+    @Override
+    public void close() {
+        suite.removeChangeListener(changeListener);
+        suite.removeSavedListener(savedListener);
+        writer.shutdown();
+        try {
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for all the records submitted so far to be written.
+     */
+    void flush() {
+        try {
+            writer.submit(() -> { }).get();
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -16,18 +16,22 @@
  */
 package net.talvi.puffinplot.data;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.Writer;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.apache.commons.math3.stat.regression.SimpleRegression;
 
@@ -44,6 +48,13 @@ public class SuiteRpiEstimate<EstimateType extends SampleRpiEstimate> {
     
     private static final Logger LOGGER =
             Logger.getLogger("net.talvi.puffinplot");
+    
+    /**
+     * The default tolerance used when matching NRM samples with normalizer
+     * samples by depth.
+     */
+    public static final double DEFAULT_DEPTH_TOLERANCE = 1e-6;
+    
     private final List<Double> treatmentLevels;
     private final List<EstimateType> rpis;
     private final Suite nrmSuite;
@@ -56,14 +67,16 @@ public class SuiteRpiEstimate<EstimateType extends SampleRpiEstimate> {
     }
     
     /**
-     * Write this RPI estimate to a CSV file.
+     * Write this RPI estimate to a CSV file. The lines for the individual
+     * samples are written one at a time through a buffer, rather than being
+     * assembled in memory first.
      * 
      * @param path the path of the file to which to write the data
      * @throws IOException if an error occurred while writing the file
      */
     public void writeToFile(String path) throws IOException {
         final File outFile = new File(path);
-        try (FileWriter writer = new FileWriter(outFile)) {
+        try (Writer writer = new BufferedWriter(new FileWriter(outFile))) {
             writer.write("Depth,");
             for (double level: getTreatmentLevels()) {
                 writer.write(String.format(Locale.ENGLISH, "%g,", level));
@@ -76,7 +89,8 @@ public class SuiteRpiEstimate<EstimateType extends SampleRpiEstimate> {
     }
     
     /**
-     * Estimate RPI by normalizing NRM to MS.
+     * Estimate RPI by normalizing NRM to MS. Samples are matched by
+     * depth using {@link #DEFAULT_DEPTH_TOLERANCE}.
      * 
      * @param nrmSuite suite containing NRM data
      * @param msSuite suite containing magnetic susceptibility normalizer data
@@ -84,27 +98,44 @@ public class SuiteRpiEstimate<EstimateType extends SampleRpiEstimate> {
      */
     public static SuiteRpiEstimate<MagSusSampleRpiEstimate>
         calculateWithMagSus(Suite nrmSuite, Suite msSuite) {
+        return calculateWithMagSus(nrmSuite, msSuite, DEFAULT_DEPTH_TOLERANCE);
+    }
+    
+    /**
+     * Estimate RPI by normalizing NRM to MS. Each NRM sample is matched
+     * with the normalizer sample closest to it in depth, provided that
+     * their depths differ by no more than the specified tolerance.
+     * 
+     * @param nrmSuite suite containing NRM data
+     * @param msSuite suite containing magnetic susceptibility normalizer data
+     * @param depthTolerance the largest depth difference for which two
+     *        samples are considered to match
+     * @return a collection of RPI estimates
+     */
+    public static SuiteRpiEstimate<MagSusSampleRpiEstimate>
+        calculateWithMagSus(Suite nrmSuite, Suite msSuite,
+                double depthTolerance) {
+        final SampleDepthIndex msIndex =
+                new SampleDepthIndex(msSuite.getSamples());
         final List<MagSusSampleRpiEstimate> rpis =
-                new ArrayList<>(nrmSuite.getNumSamples());
-        for (Sample nrmSample: nrmSuite.getSamples()) {
-            final double nrm = nrmSample.getNrm();
-            final String depth =
-                    nrmSample.getTreatmentSteps().get(0).getDepth();
-            final Sample msSample = msSuite.getSampleByName(depth);
-            if (msSample != null) {
-                final double ms =
-                        msSample.getTreatmentSteps().get(0).getMagSus();
-                final double rpi = nrm / ms;
-                rpis.add(new MagSusSampleRpiEstimate(nrmSample, msSample, rpi));
+                calculateForEachSample(nrmSuite, nrmSample -> {
+            final Sample msSample =
+                    msIndex.find(nrmSample.getDepth(), depthTolerance);
+            if (msSample == null) {
+                return null;
             }
-        }
+            final double nrm = nrmSample.getNrm();
+            final double ms = msSample.getTreatmentSteps().get(0).getMagSus();
+            return new MagSusSampleRpiEstimate(nrmSample, msSample, nrm / ms);
+        });
         return new SuiteRpiEstimate<>(Collections.emptyList(), rpis,
                 nrmSuite);
     }
     
     /**
      * Estimate RPI by normalizing a stepwise demagnetized NRM to another
-     * stepwise demagnetized remanence (ARM or IRM).
+     * stepwise demagnetized remanence (ARM or IRM). Samples are matched by
+     * depth using {@link #DEFAULT_DEPTH_TOLERANCE}.
      * 
      * @param nrmSuite suite containing NRM data
      * @param normalizerSuite suite containing AF demagnetization normalizer
@@ -116,15 +147,28 @@ public class SuiteRpiEstimate<EstimateType extends SampleRpiEstimate> {
     public static SuiteRpiEstimate<StepwiseSampleRpiEstimate>
         calculateWithStepwiseAF(Suite nrmSuite,
             Suite normalizerSuite, double minLevel, double maxLevel) {
-        final double[] allTreatmentLevels =
-                nrmSuite.getSamples().get(0).getTreatmentLevels();
-        
-        final List<Double> treatmentLevels =
-                Arrays.stream(allTreatmentLevels).boxed().
-                filter(x -> x >= minLevel-1e-10 && x <= maxLevel+1e-10).
-                collect(Collectors.toList());
-        final int nLevels = treatmentLevels.size();
-            
+        return calculateWithStepwiseAF(nrmSuite, normalizerSuite,
+                minLevel, maxLevel, DEFAULT_DEPTH_TOLERANCE);
+    }
+    
+    /**
+     * Estimate RPI by normalizing a stepwise demagnetized NRM to another
+     * stepwise demagnetized remanence (ARM or IRM). Each NRM sample is
+     * matched with the normalizer sample closest to it in depth, provided
+     * that their depths differ by no more than the specified tolerance.
+     * 
+     * @param nrmSuite suite containing NRM data
+     * @param normalizerSuite suite containing AF demagnetization normalizer
+     *        data
+     * @param minLevel lowest AF treatment level to consider
+     * @param maxLevel highest AF treatment level to consider
+     * @param depthTolerance the largest depth difference for which two
+     *        samples are considered to match
+     * @return a collection of RPI estimates
+     */
+    public static SuiteRpiEstimate<StepwiseSampleRpiEstimate>
+        calculateWithStepwiseAF(Suite nrmSuite, Suite normalizerSuite,
+                double minLevel, double maxLevel, double depthTolerance) {
         /*
          * We have to get steps by treatment type as well as level, to avoid
          * accidentally retrieving the initial remanence-application step when
@@ -139,69 +183,28 @@ public class SuiteRpiEstimate<EstimateType extends SampleRpiEstimate> {
                 Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
                         TreatmentType.DEGAUSS_XYZ, TreatmentType.DEGAUSS_Z)));
         
-        final List<StepwiseSampleRpiEstimate> rpis =
-                new ArrayList<>(nrmSuite.getNumSamples());
-        for (Sample nrmSample: nrmSuite.getSamples()) {
-            final String depth =
-                    nrmSample.getTreatmentSteps().get(0).getDepth();
-            final Sample normalizerSample =
-                    normalizerSuite.getSampleByName(depth);
-            if (normalizerSample != null) {
-                final List<Double> nrmIntensities = new ArrayList<>(nLevels);
-                final List<Double> normalizerIntensities =
-                        new ArrayList<>(nLevels);
-                final List<Double> ratios = new ArrayList<>(nLevels);
-                
-                for (double demagStep: treatmentLevels) {
-                    final TreatmentStep nrmStep =
-                            nrmSample.getTreatmentStepByLevel(demagStep);
-                    /*
-                     * We have to treat the first step as a special case, since
-                     * it's where the remanence is imparted so its treatment
-                     * level will correspond to the ARM or IRM field but we're
-                     * actually interested in its AF demag step, which is 0. We
-                     * assume that this will just be the first datum and fetch
-                     * it by index.
-                     */
-                    final TreatmentStep normalizerStep = demagStep == 0 ?
-                            normalizerSample.getTreatmentStepByIndex(0) :
-                            normalizerSample.getTreatmentStepByTypeAndLevel(
-                                    demagTreatmentTypes, demagStep);
-                    if (nrmStep != null && normalizerStep != null) {
-                        final double nrmInt = nrmStep.getIntensity();
-                        final double armInt = normalizerStep.getIntensity();
-                        ratios.add(nrmInt / armInt);
-                        nrmIntensities.add(nrmInt);
-                        normalizerIntensities.add(armInt);
-                    } else {
-                        ratios.add(-1.); // code for "leave blank"
-                    }
-                }
-                double totalRatio = 0;
-                final SimpleRegression regression = new SimpleRegression();
-                final int nPairs = nrmIntensities.size();
-                for (int i = 0; i < nPairs; i++) {
-                    totalRatio += nrmIntensities.get(i)
-                            / normalizerIntensities.get(i);
-                    regression.addData(normalizerIntensities.get(i),
-                            nrmIntensities.get(i));
-                }
-                rpis.add(new StepwiseSampleRpiEstimate(ratios,
-                        nrmSample, normalizerSample,
-                        totalRatio / nPairs,
-                        regression.getSlope(),
-                        regression.getR(),
-                        regression.getRSquare()));
-            }
-        }
-        return new SuiteRpiEstimate<>(treatmentLevels, rpis, nrmSuite);
+        /*
+         * We have to treat the first step as a special case, since it's
+         * where the remanence is imparted so its treatment level will
+         * correspond to the ARM or IRM field but we're actually interested
+         * in its AF demag step, which is 0. We assume that this will just be
+         * the first datum and fetch it by index.
+         */
+        return calculateStepwise(nrmSuite, normalizerSuite,
+                minLevel, maxLevel, depthTolerance,
+                (normalizerSample, demagStep) -> demagStep == 0 ?
+                        normalizerSample.getTreatmentStepByIndex(0) :
+                        normalizerSample.getTreatmentStepByTypeAndLevel(
+                                demagTreatmentTypes, demagStep),
+                false);
     }
 
     /**
      * Estimate RPI by normalizing a stepwise demagnetized NRM to a
      * stepwise imparted ARM. For a stepwise <i>demagnetized</i>
      * ARM, {@link #calculateWithStepwiseAF(net.talvi.puffinplot.data.Suite, net.talvi.puffinplot.data.Suite, double, double) }
-     * should be used.
+     * should be used. Samples are matched by depth using
+     * {@link #DEFAULT_DEPTH_TOLERANCE}.
      *
      * @param nrmSuite suite containing NRM data
      * @param normalizerSuite suite containing ARM acquisition normalizer data
@@ -212,86 +215,131 @@ public class SuiteRpiEstimate<EstimateType extends SampleRpiEstimate> {
     public static SuiteRpiEstimate<StepwiseSampleRpiEstimate>
             calculateWithStepwiseARM(Suite nrmSuite,
                     Suite normalizerSuite, double minLevel, double maxLevel) {
-        /*
-         * TODO: there is a lot of duplicated code between
-         * calculateWithStepwiseARM and calculateWithStepwiseAF -- factor it
-         * out.
-         */
-                
-        final double[] allTreatmentLevels
-                = nrmSuite.getSamples().get(0).getTreatmentLevels();
-
-        final List<Double> treatmentLevels
-                = Arrays.stream(allTreatmentLevels).boxed()
-                        .filter(x ->
-                                x >= minLevel - 1e-10 && x <= maxLevel + 1e-10)
-                        .collect(Collectors.toList());
-        final int nLevels = treatmentLevels.size();
+        return calculateWithStepwiseARM(nrmSuite, normalizerSuite,
+                minLevel, maxLevel, DEFAULT_DEPTH_TOLERANCE);
+    }
 
+    /**
+     * Estimate RPI by normalizing a stepwise demagnetized NRM to a
+     * stepwise imparted ARM. Each NRM sample is matched with the normalizer
+     * sample closest to it in depth, provided that their depths differ by
+     * no more than the specified tolerance.
+     *
+     * @param nrmSuite suite containing NRM data
+     * @param normalizerSuite suite containing ARM acquisition normalizer data
+     * @param minLevel lowest ARM treatment level to consider (AF intensity)
+     * @param maxLevel highest ARM treatment level to consider (AF intensity)
+     * @param depthTolerance the largest depth difference for which two
+     *        samples are considered to match
+     * @return a collection of RPI estimates
+     */
+    public static SuiteRpiEstimate<StepwiseSampleRpiEstimate>
+            calculateWithStepwiseARM(Suite nrmSuite, Suite normalizerSuite,
+                    double minLevel, double maxLevel, double depthTolerance) {
         /*
          * Could also just assume that all normalizer steps have ARM treatment
          * type, but may as well filter by treatment type as well as level since
          * it's easy to do and may be useful e.g. if we have a single suite
          * containing both AF demagnetization and stepwise ARM application.
-        */
-        final Set<TreatmentType> demagTreatmentTypes =
+         *
+         * ARM intensities are increasing, and NRM intensities are
+         * decreasing, so the regression will produce a negative slope
+         * which we invert when constructing the estimate.
+         */
+        final Set<TreatmentType> armTreatmentTypes =
                 Collections.singleton(TreatmentType.ARM);
-
-        final List<StepwiseSampleRpiEstimate> rpis
-                = new ArrayList<>(nrmSuite.getNumSamples());
-        for (Sample nrmSample: nrmSuite.getSamples()) {
-            final String depth
-                    = nrmSample.getTreatmentSteps().get(0).getDepth();
-            final Sample normalizerSample
-                    = normalizerSuite.getSampleByName(depth);
-            if (normalizerSample != null) {
-                final List<Double> nrmIntensities = new ArrayList<>(nLevels);
-                final List<Double> normalizerIntensities
-                        = new ArrayList<>(nLevels);
-                final List<Double> ratios = new ArrayList<>(nLevels);
-
-                for (double demagStep: treatmentLevels) {
-                    final TreatmentStep nrmStep
-                            = nrmSample.getTreatmentStepByLevel(demagStep);
-
-                    final TreatmentStep normalizerStep =
-                            normalizerSample.getTreatmentStepByTypeAndLevel(
-                                    demagTreatmentTypes, demagStep);
-                    if (nrmStep != null && normalizerStep != null) {
-                        final double nrmInt = nrmStep.getIntensity();
-                        final double armInt = normalizerStep.getIntensity();
-                        ratios.add(nrmInt / armInt);
-                        nrmIntensities.add(nrmInt);
-                        normalizerIntensities.add(armInt);
-                    } else {
-                        ratios.add(-1.); // code for "leave blank"
-                    }
-                }
-                double totalRatio = 0;
-                final SimpleRegression regression = new SimpleRegression();
-                final int nPairs = nrmIntensities.size();
-                /*
-                 * ARM intensities are increasing, and NRM intensities
-                 * are increasing, so this will produce a negative slope
-                 * which we invert when constructing the estimate.
-                 */
-                for (int i = 0; i < nPairs; i++) {
-                    totalRatio += nrmIntensities.get(i)
-                            / normalizerIntensities.get(i);
-                    regression.addData(normalizerIntensities.get(i),
-                            nrmIntensities.get(i));
+        return calculateStepwise(nrmSuite, normalizerSuite,
+                minLevel, maxLevel, depthTolerance,
+                (normalizerSample, level) ->
+                        normalizerSample.getTreatmentStepByTypeAndLevel(
+                                armTreatmentTypes, level),
+                true);
+    }
+        
+    /**
+     * Finds the normalizer treatment step corresponding to a specified
+     * treatment level of the NRM sample.
+     */
+    @FunctionalInterface
+    private interface NormalizerStepFinder {
+        TreatmentStep find(Sample normalizerSample, double treatmentLevel);
+    }
+    
+    private static SuiteRpiEstimate<StepwiseSampleRpiEstimate>
+            calculateStepwise(Suite nrmSuite, Suite normalizerSuite,
+                    double minLevel, double maxLevel, double depthTolerance,
+                    NormalizerStepFinder normalizerStepFinder,
+                    boolean invertSlope) {
+        final double[] levels = Arrays.stream(
+                nrmSuite.getSamples().get(0).getTreatmentLevels())
+                .filter(x -> x >= minLevel-1e-10 && x <= maxLevel+1e-10)
+                .toArray();
+        final List<Double> treatmentLevels = Collections.unmodifiableList(
+                Arrays.stream(levels).boxed().collect(Collectors.toList()));
+        final int nLevels = levels.length;
+        final SampleDepthIndex normalizerIndex =
+                new SampleDepthIndex(normalizerSuite.getSamples());
+        
+        final List<StepwiseSampleRpiEstimate> rpis =
+                calculateForEachSample(nrmSuite, nrmSample -> {
+            final Sample normalizerSample = normalizerIndex.find(
+                    nrmSample.getDepth(), depthTolerance);
+            if (normalizerSample == null) {
+                return null;
+            }
+            final double[] nrmIntensities = new double[nLevels];
+            final double[] normalizerIntensities = new double[nLevels];
+            final double[] ratios = new double[nLevels];
+            int nPairs = 0;
+            for (int i = 0; i < nLevels; i++) {
+                final double level = levels[i];
+                final TreatmentStep nrmStep =
+                        nrmSample.getTreatmentStepByLevel(level);
+                final TreatmentStep normalizerStep =
+                        normalizerStepFinder.find(normalizerSample, level);
+                if (nrmStep != null && normalizerStep != null) {
+                    final double nrmInt = nrmStep.getIntensity();
+                    final double normInt = normalizerStep.getIntensity();
+                    ratios[i] = nrmInt / normInt;
+                    nrmIntensities[nPairs] = nrmInt;
+                    normalizerIntensities[nPairs] = normInt;
+                    nPairs++;
+                } else {
+                    ratios[i] = -1; // code for "leave blank"
                 }
-                rpis.add(new StepwiseSampleRpiEstimate(ratios,
-                        nrmSample, normalizerSample,
-                        totalRatio / nPairs,
-                        -regression.getSlope(),
-                        regression.getR(),
-                        regression.getRSquare()));
             }
-        }
+            double totalRatio = 0;
+            final SimpleRegression regression = new SimpleRegression();
+            for (int i = 0; i < nPairs; i++) {
+                totalRatio += nrmIntensities[i] / normalizerIntensities[i];
+                regression.addData(normalizerIntensities[i],
+                        nrmIntensities[i]);
+            }
+            final double slope = regression.getSlope();
+            return new StepwiseSampleRpiEstimate(ratios,
+                    nrmSample, normalizerSample,
+                    totalRatio / nPairs,
+                    invertSlope ? -slope : slope,
+                    regression.getR(),
+                    regression.getRSquare());
+        });
         return new SuiteRpiEstimate<>(treatmentLevels, rpis, nrmSuite);
     }
-        
+    
+    /**
+     * Applies an estimator to each sample in a suite. The samples are
+     * processed in parallel, but the results are returned in suite order.
+     * Samples for which the estimator returns {@code null} are omitted.
+     */
+    private static <T> List<T> calculateForEachSample(Suite suite,
+            Function<Sample, T> estimator) {
+        final List<Sample> samples = suite.getSamples();
+        return IntStream.range(0, samples.size()).parallel()
+                .mapToObj(i -> estimator.apply(samples.get(i)))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
     /**
      * @return the treatment levels from which this RPI estimate was calculated
      */
@@ -0,0 +1,467 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.talvi.puffinplot.data;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Aggregate statistics over all the samples in a suite, maintained
+ * incrementally.
+ * <p>
+ * The statistics cover the depth range, the distribution of NRM intensities,
+ * the maximum magnetic intensity, the range of sample inclinations, and the
+ * set of treatment levels used for each treatment type. Rather than
+ * rescanning the whole suite whenever one of these values is requested, a
+ * summary of each sample's contribution is stored. When a sample is
+ * modified, added, or removed, only its own contribution is recalculated
+ * (lazily, on the next query). Querying unchanged statistics is therefore
+ * cheap, which matters for plots that are redrawn frequently.
+ * <p>
+ * The suite informs this object of added and removed samples; samples
+ * report their own modifications via {@link #invalidate(Sample)}.
+ *
+ * @author pont
+ */
+public final class SuiteStatistics {
+
+    /**
+     * Inclinations steeper than this value (in degrees) contribute to the
+     * mean returned by {@link #getMeanSteepInclination()}.
+     */
+    public static final double STEEP_INCLINATION_THRESHOLD = 30;
+
+    /*
+     * Maps each sample in the suite to a summary of its contribution, or
+     * to null if the contribution is out of date.
+     */
+    private final Map<Sample, SampleSummary> summaries = new HashMap<>();
+    private final Set<Sample> dirty = new LinkedHashSet<>();
+    private final SortedMultiset depths = new SortedMultiset();
+    private final SortedMultiset nrms = new SortedMultiset();
+    private final SortedMultiset intensities = new SortedMultiset();
+    private final SortedMultiset inclinations = new SortedMultiset();
+    private final Map<TreatmentType, SortedMultiset> levels =
+            new EnumMap<>(TreatmentType.class);
+    private double steepInclinationSum = 0;
+    private int steepInclinationCount = 0;
+    private long version = 0;
+    private long histogramVersion = -1;
+    private HistogramKey histogramKey = null;
+    private int[] histogram = null;
+
+    /**
+     * Creates a new, empty statistics object.
+     */
+    SuiteStatistics() {
+        for (TreatmentType type: TreatmentType.values()) {
+            levels.put(type, new SortedMultiset());
+        }
+    }
+
+    /**
+     * Adds a sample to the statistics. Its contribution will be calculated
+     * on the next query.
+     *
+     * @param sample the sample to add (non-null)
+     */
+    synchronized void add(Sample sample) {
+        if (!summaries.containsKey(sample)) {
+            summaries.put(sample, null);
+            dirty.add(sample);
+        }
+    }
+
+    /**
+     * Removes a sample's contribution from the statistics.
+     *
+     * @param sample the sample to remove
+     */
+    synchronized void remove(Sample sample) {
+        if (summaries.containsKey(sample)) {
+            final SampleSummary summary = summaries.remove(sample);
+            dirty.remove(sample);
+            if (summary != null) {
+                retract(summary);
+            }
+        }
+    }
+
+    /**
+     * Marks a sample's contribution as out of date. It will be recalculated
+     * on the next query. If the sample is not part of these statistics,
+     * this method has no effect.
+     *
+     * @param sample a sample whose data have changed
+     */
+    synchronized void invalidate(Sample sample) {
+        if (summaries.containsKey(sample) && dirty.add(sample)) {
+            final SampleSummary summary = summaries.put(sample, null);
+            if (summary != null) {
+                retract(summary);
+            }
+        }
+    }
+
+    /**
+     * Returns a number which changes whenever the statistics change. This
+     * can be used by clients to determine whether derived values need to be
+     * recalculated.
+     *
+     * @return the current version of these statistics
+     */
+    public synchronized long getVersion() {
+        update();
+        return version;
+    }
+
+    /**
+     * Returns the minimum sample depth, or positive infinity if no sample
+     * has a defined depth.
+     *
+     * @return the minimum sample depth
+     */
+    public synchronized double getMinDepth() {
+        update();
+        return depths.first(Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Returns the maximum sample depth, or negative infinity if no sample
+     * has a defined depth.
+     *
+     * @return the maximum sample depth
+     */
+    public synchronized double getMaxDepth() {
+        update();
+        return depths.last(Double.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * Returns the number of samples with a defined NRM intensity.
+     *
+     * @return the number of samples with a defined NRM intensity
+     */
+    public synchronized int getNrmCount() {
+        update();
+        return nrms.size();
+    }
+
+    /**
+     * Returns the lowest NRM intensity in the suite, or NaN if there are
+     * no NRM intensities.
+     *
+     * @return the lowest NRM intensity in the suite
+     */
+    public synchronized double getMinNrm() {
+        update();
+        return nrms.first(Double.NaN);
+    }
+
+    /**
+     * Returns the highest NRM intensity in the suite, or NaN if there are
+     * no NRM intensities.
+     *
+     * @return the highest NRM intensity in the suite
+     */
+    public synchronized double getMaxNrm() {
+        update();
+        return nrms.last(Double.NaN);
+    }
+
+    /**
+     * Returns a histogram of the NRM intensities in the suite. The range
+     * from {@code minimum} to {@code maximum} is divided into
+     * {@code nBuckets} buckets, and each sample NRM is assigned to the
+     * nearest bucket boundary; values at the upper limit are assigned to
+     * the last bucket. Values outside the range are ignored. The result is
+     * cached until the statistics change.
+     *
+     * @param minimum the lower limit of the histogram
+     * @param maximum the upper limit of the histogram
+     * @param nBuckets the number of buckets (positive)
+     * @return the number of samples in each bucket
+     */
+    public synchronized int[] getNrmHistogram(double minimum, double maximum,
+            int nBuckets) {
+        update();
+        final HistogramKey key = new HistogramKey(minimum, maximum, nBuckets);
+        if (histogramVersion != version || !key.equals(histogramKey)) {
+            histogram = new int[nBuckets];
+            final double range = maximum - minimum;
+            for (Map.Entry<Double, Integer> entry: nrms.entries()) {
+                int bucket = (int) Math.round(
+                        nBuckets * (entry.getKey() - minimum) / range);
+                if (bucket == nBuckets) {
+                    bucket--; // rightmost edge of rightmost bucket
+                }
+                if (bucket >= 0 && bucket < nBuckets) {
+                    histogram[bucket] += entry.getValue();
+                }
+            }
+            histogramKey = key;
+            histogramVersion = version;
+        }
+        return Arrays.copyOf(histogram, histogram.length);
+    }
+
+    /**
+     * Returns the highest magnetic intensity of any treatment step in the
+     * suite, or 0 if there are no treatment steps.
+     *
+     * @return the highest magnetic intensity in the suite
+     */
+    public synchronized double getMaxIntensity() {
+        update();
+        return intensities.last(0);
+    }
+
+    /**
+     * Returns the number of samples with a defined depth and a sample
+     * direction.
+     *
+     * @return the number of samples contributing to the inclination
+     * statistics
+     */
+    public synchronized int getInclinationCount() {
+        update();
+        return inclinations.size();
+    }
+
+    /**
+     * Returns the shallowest (most negative) sample inclination in degrees,
+     * or NaN if there are no inclinations. Only samples with a defined depth
+     * and a sample direction are considered.
+     *
+     * @return the lowest sample inclination in degrees
+     */
+    public synchronized double getMinInclination() {
+        update();
+        return inclinations.first(Double.NaN);
+    }
+
+    /**
+     * Returns the steepest (most positive) sample inclination in degrees,
+     * or NaN if there are no inclinations. Only samples with a defined depth
+     * and a sample direction are considered.
+     *
+     * @return the highest sample inclination in degrees
+     */
+    public synchronized double getMaxInclination() {
+        update();
+        return inclinations.last(Double.NaN);
+    }
+
+    /**
+     * Returns the mean of those sample inclinations which exceed
+     * {@link #STEEP_INCLINATION_THRESHOLD}, or NaN if there are none.
+     *
+     * @return the mean of the steep sample inclinations, in degrees
+     */
+    public synchronized double getMeanSteepInclination() {
+        update();
+        return steepInclinationSum / steepInclinationCount;
+    }
+
+    /**
+     * Returns the distinct treatment levels used in the suite for the
+     * specified treatment type, in ascending order.
+     *
+     * @param type a treatment type (non-null)
+     * @return the distinct treatment levels for the specified type
+     */
+    public synchronized NavigableSet<Double> getTreatmentLevels(
+            TreatmentType type) {
+        update();
+        return Collections.unmodifiableNavigableSet(
+                new TreeSet<>(levels.get(type).distinctValues()));
+    }
+
+    /**
+     * Returns the highest treatment level used in the suite for the
+     * specified treatment type, or 0 if there are no steps of that type.
+     *
+     * @param type a treatment type (non-null)
+     * @return the highest treatment level for the specified type
+     */
+    public synchronized double getMaxTreatmentLevel(TreatmentType type) {
+        update();
+        return Math.max(0, levels.get(type).last(0));
+    }
+
+    private void update() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        for (Sample sample: dirty) {
+            final SampleSummary summary = new SampleSummary(sample);
+            summaries.put(sample, summary);
+            contribute(summary);
+        }
+        dirty.clear();
+        version++;
+    }
+
+    private void contribute(SampleSummary summary) {
+        depths.add(summary.depth);
+        nrms.add(summary.nrm);
+        intensities.add(summary.maxIntensity);
+        inclinations.add(summary.inclination);
+        if (summary.inclination > STEEP_INCLINATION_THRESHOLD) {
+            steepInclinationSum += summary.inclination;
+            steepInclinationCount++;
+        }
+        for (int i = 0; i < summary.types.length; i++) {
+            levels.get(summary.types[i]).add(summary.levels[i]);
+        }
+    }
+
+    private void retract(SampleSummary summary) {
+        depths.remove(summary.depth);
+        nrms.remove(summary.nrm);
+        intensities.remove(summary.maxIntensity);
+        inclinations.remove(summary.inclination);
+        if (summary.inclination > STEEP_INCLINATION_THRESHOLD) {
+            steepInclinationSum -= summary.inclination;
+            steepInclinationCount--;
+        }
+        for (int i = 0; i < summary.types.length; i++) {
+            levels.get(summary.types[i]).remove(summary.levels[i]);
+        }
+        version++;
+    }
+
+    /**
+     * An immutable record of one sample's contribution to the statistics.
+     * NaN values denote quantities which are undefined for the sample.
+     */
+    private static final class SampleSummary {
+        final double depth;
+        final double nrm;
+        final double maxIntensity;
+        final double inclination;
+        final TreatmentType[] types;
+        final double[] levels;
+
+        SampleSummary(Sample sample) {
+            depth = sample.getDepth();
+            nrm = sample.hasTreatmentSteps() ? sample.getNrm() : Double.NaN;
+            maxIntensity = sample.hasTreatmentSteps()
+                    ? TreatmentStep.maxIntensity(sample.getTreatmentSteps())
+                    : Double.NaN;
+            final Vec3 direction = sample.getDirection();
+            inclination = (sample.hasTreatmentSteps() && direction != null
+                    && !Double.isNaN(depth))
+                    ? direction.getIncDeg() : Double.NaN;
+            final int nSteps = sample.getNumberOfSteps();
+            types = new TreatmentType[nSteps];
+            levels = new double[nSteps];
+            for (int i = 0; i < nSteps; i++) {
+                final TreatmentStep step = sample.getTreatmentStepByIndex(i);
+                types[i] = step.getTreatmentType();
+                levels[i] = step.getTreatmentLevel();
+            }
+        }
+    }
+
+    /**
+     * A sorted multiset of doubles, implemented as a map from values to
+     * their multiplicities. NaN values are silently ignored.
+     */
+    private static final class SortedMultiset {
+        private final TreeMap<Double, Integer> counts = new TreeMap<>();
+        private int size = 0;
+
+        void add(double value) {
+            if (!Double.isNaN(value)) {
+                counts.merge(value, 1, Integer::sum);
+                size++;
+            }
+        }
+
+        void remove(double value) {
+            if (!Double.isNaN(value)) {
+                final Integer count = counts.get(value);
+                if (count != null) {
+                    if (count == 1) {
+                        counts.remove(value);
+                    } else {
+                        counts.put(value, count - 1);
+                    }
+                    size--;
+                }
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        double first(double defaultValue) {
+            return counts.isEmpty() ? defaultValue : counts.firstKey();
+        }
+
+        double last(double defaultValue) {
+            return counts.isEmpty() ? defaultValue : counts.lastKey();
+        }
+
+        Set<Map.Entry<Double, Integer>> entries() {
+            return counts.entrySet();
+        }
+
+        NavigableSet<Double> distinctValues() {
+            return counts.navigableKeySet();
+        }
+    }
+
+    private static final class HistogramKey {
+        private final double minimum;
+        private final double maximum;
+        private final int nBuckets;
+
+        HistogramKey(double minimum, double maximum, int nBuckets) {
+            this.minimum = minimum;
+            this.maximum = maximum;
+            this.nBuckets = nBuckets;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof HistogramKey)) {
+                return false;
+            }
+            final HistogramKey other = (HistogramKey) obj;
+            return Double.compare(minimum, other.minimum) == 0
+                    && Double.compare(maximum, other.maximum) == 0
+                    && nBuckets == other.nBuckets;
+        }
+
+        @Override
+        public int hashCode() {
+            return Double.hashCode(minimum) ^ Double.hashCode(maximum)
+                    ^ nBuckets;
+        }
+    }
+}
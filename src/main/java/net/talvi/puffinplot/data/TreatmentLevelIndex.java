@@ -0,0 +1,206 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.talvi.puffinplot.data;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable index of the treatment steps in a sample, sorted by
+ * treatment level. It allows steps to be found by approximate level
+ * (and optionally treatment type) and by level range using binary
+ * search, rather than a scan of the whole step list.
+ * <p>
+ * Steps are identified by their positions in the list from which the
+ * index was built. Where several steps match a query, the one which
+ * occurs first in that list is returned, so the results are the same
+ * as those of a linear scan. Steps with a treatment level of NaN are
+ * not indexed, since they cannot match any level or range.
+ *
+ * @author pont
+ */
+final class TreatmentLevelIndex {
+
+    /**
+     * Treatment levels which differ by less than this value are considered
+     * equal.
+     */
+    static final double TOLERANCE = 1e-6;
+
+    private final List<TreatmentStep> steps;
+    private final Entries allEntries;
+    private final Map<TreatmentType, Entries> entriesByType =
+            new EnumMap<>(TreatmentType.class);
+
+    /**
+     * Creates an index of the supplied treatment steps. The list is
+     * copied, so later changes to it are not reflected in the index.
+     *
+     * @param steps the treatment steps to index
+     */
+    TreatmentLevelIndex(List<TreatmentStep> steps) {
+        this.steps = new ArrayList<>(steps);
+        final int nSteps = this.steps.size();
+        final double[] levels = new double[nSteps];
+        final TreatmentType[] types = new TreatmentType[nSteps];
+        final Map<TreatmentType, Integer> typeCounts =
+                new EnumMap<>(TreatmentType.class);
+        for (int i = 0; i < nSteps; i++) {
+            final TreatmentStep step = this.steps.get(i);
+            levels[i] = step.getTreatmentLevel();
+            types[i] = step.getTreatmentType();
+            typeCounts.merge(types[i], 1, Integer::sum);
+        }
+        allEntries = new Entries(levels, null, types, nSteps);
+        for (Map.Entry<TreatmentType, Integer> entry: typeCounts.entrySet()) {
+            entriesByType.put(entry.getKey(), new Entries(levels,
+                    entry.getKey(), types, entry.getValue()));
+        }
+    }
+
+    /**
+     * Returns the first step whose treatment level is within
+     * {@link #TOLERANCE} of the specified level.
+     *
+     * @param level a treatment level
+     * @return the first matching step, or {@code null} if there is none
+     */
+    TreatmentStep find(double level) {
+        return stepAt(allEntries.firstPositionNear(level));
+    }
+
+    /**
+     * Returns the first step whose treatment type is in the supplied set
+     * and whose treatment level is within {@link #TOLERANCE} of the
+     * specified level.
+     *
+     * @param types the acceptable treatment types
+     * @param level a treatment level
+     * @return the first matching step, or {@code null} if there is none
+     */
+    TreatmentStep find(Set<TreatmentType> types, double level) {
+        int first = Integer.MAX_VALUE;
+        for (TreatmentType type: types) {
+            final Entries entries = entriesByType.get(type);
+            if (entries != null) {
+                first = Math.min(first, entries.firstPositionNear(level));
+            }
+        }
+        return stepAt(first);
+    }
+
+    /**
+     * Marks the positions of all the steps with treatment levels in the
+     * specified closed interval.
+     *
+     * @param min the lowest treatment level to include
+     * @param max the highest treatment level to include
+     * @param positions a set to which the positions of the matching steps
+     * will be added
+     */
+    void markRange(double min, double max, BitSet positions) {
+        allEntries.markRange(min, max, positions);
+    }
+
+    /**
+     * Returns the steps at the marked positions, in their original order.
+     *
+     * @param positions a set of step positions
+     * @return the steps at the marked positions
+     */
+    List<TreatmentStep> getSteps(BitSet positions) {
+        final List<TreatmentStep> result =
+                new ArrayList<>(positions.cardinality());
+        positions.stream().forEach(i -> result.add(steps.get(i)));
+        return result;
+    }
+
+    private TreatmentStep stepAt(int position) {
+        return position == Integer.MAX_VALUE ? null : steps.get(position);
+    }
+
+    /**
+     * Parallel arrays of levels and step positions, sorted by level and
+     * then by position.
+     */
+    private static class Entries {
+
+        private final double[] levels;
+        private final int[] positions;
+
+        Entries(double[] allLevels, TreatmentType type,
+                TreatmentType[] allTypes, int capacity) {
+            final List<Integer> order = new ArrayList<>(capacity);
+            for (int i = 0; i < allLevels.length; i++) {
+                if ((type == null || allTypes[i] == type)
+                        && !Double.isNaN(allLevels[i])) {
+                    order.add(i);
+                }
+            }
+            /*
+             * List.sort is stable, so steps with equal levels stay in
+             * their original order.
+             */
+            order.sort((i, j) -> Double.compare(allLevels[i], allLevels[j]));
+            levels = new double[order.size()];
+            positions = new int[order.size()];
+            for (int i = 0; i < order.size(); i++) {
+                positions[i] = order.get(i);
+                levels[i] = allLevels[positions[i]];
+            }
+        }
+
+        /**
+         * Returns the index of the first entry with a level strictly greater
+         * than (if {@code strict}) or greater than or equal to the supplied
+         * value.
+         */
+        private int lowerBound(double value, boolean strict) {
+            int low = 0, high = levels.length;
+            while (low < high) {
+                final int mid = (low + high) >>> 1;
+                if (levels[mid] < value
+                        || (strict && levels[mid] == value)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        int firstPositionNear(double level) {
+            int first = Integer.MAX_VALUE;
+            for (int i = lowerBound(level - TOLERANCE, true);
+                    i < levels.length && levels[i] < level + TOLERANCE; i++) {
+                first = Math.min(first, positions[i]);
+            }
+            return first;
+        }
+
+        void markRange(double min, double max, BitSet result) {
+            for (int i = lowerBound(min, false);
+                    i < levels.length && levels[i] <= max; i++) {
+                result.set(positions[i]);
+            }
+        }
+    }
+}
@@ -91,6 +91,7 @@ public class TreatmentStep {
     private boolean hidden = false;
     private Sample sample;
     private Suite suite;
+    private int modificationCount = 0;
 
     /**
      * Creates a treatment step with a specified magnetization vector.
@@ -137,6 +138,7 @@ public class TreatmentStep {
     public void setSelected(boolean v) {
         touch();
         selected = v;
+        fireChange(SuiteChangeEvent.Type.STEP_SELECTION);
     }
 
     /**
@@ -156,6 +158,7 @@ public class TreatmentStep {
     public void setSampAz(double v) {
         touch();
         sampAz = v;
+        fireChange(SuiteChangeEvent.Type.STEP_DATA);
     }
 
     /**
@@ -175,6 +178,7 @@ public class TreatmentStep {
     public void setSampDip(double dip) {
         touch();
         sampDip = dip;
+        fireChange(SuiteChangeEvent.Type.STEP_DATA);
     }
 
     /**
@@ -194,6 +198,7 @@ public class TreatmentStep {
     public void setFormAz(double azimuth) {
         touch();
         formAz = azimuth;
+        fireChange(SuiteChangeEvent.Type.STEP_DATA);
     }
 
     /**
@@ -213,6 +218,7 @@ public class TreatmentStep {
     public void setFormDip(double dip) {
         touch();
         formDip = dip;
+        fireChange(SuiteChangeEvent.Type.STEP_DATA);
     }
 
     /**
@@ -232,6 +238,7 @@ public class TreatmentStep {
     public void setMagDev(double azimuth) {
         touch();
         magDev = azimuth;
+        fireChange(SuiteChangeEvent.Type.STEP_DATA);
     }
 
     /**
@@ -252,6 +259,7 @@ public class TreatmentStep {
     public void setPcaAnchored(boolean isAnchored) {
         touch();
         pcaAnchored = isAnchored;
+        fireChange(SuiteChangeEvent.Type.STEP_FLAGS);
     }
 
     /**
@@ -312,6 +320,7 @@ public class TreatmentStep {
     public void setHidden(boolean newHidden) {
         touch();
         hidden = newHidden;
+        fireChange(SuiteChangeEvent.Type.STEP_FLAGS);
     }
 
     /**
@@ -418,8 +427,9 @@ public class TreatmentStep {
      * etc.)
      */
     public void setTreatmentType(TreatmentType type) {
-        touch();
+        touchTreatmentLevel();
         treatmentType = type;
+        fireChange(SuiteChangeEvent.Type.STEP_DATA);
     }
 
     /**
@@ -437,8 +447,9 @@ public class TreatmentStep {
      * @param v for AF or ARM treatment, the AF field strength in the x axis
      */
     public void setAfX(double v) {
-        touch();
+        touchTreatmentLevel();
         afx = v;
+        fireChange(SuiteChangeEvent.Type.STEP_DATA);
     }
 
     /**
@@ -456,8 +467,9 @@ public class TreatmentStep {
      * @param v for AF or ARM treatment, the AF field strength in the y axis
      */
     public void setAfY(double v) {
-        touch();
+        touchTreatmentLevel();
         afy = v;
+        fireChange(SuiteChangeEvent.Type.STEP_DATA);
     }
 
     /**
@@ -475,8 +487,9 @@ public class TreatmentStep {
      * @param v for AF or ARM treatment, the AF field strength in the z axis
      */
     public void setAfZ(double v) {
-        touch();
+        touchTreatmentLevel();
         afz = v;
+        fireChange(SuiteChangeEvent.Type.STEP_DATA);
     }
 
     /**
@@ -494,8 +507,9 @@ public class TreatmentStep {
      * @param field for IRM treatment, the IRM field strength
      */
     public void setIrmField(double field) {
-        touch();
+        touchTreatmentLevel();
         irmField = field;
+        fireChange(SuiteChangeEvent.Type.STEP_DATA);
     }
 
     /**
@@ -552,8 +566,9 @@ public class TreatmentStep {
      * Celsius
      */
     public void setTemperature(double newTemperature) {
-        touch();
+        touchTreatmentLevel();
         temperature = newTemperature;
+        fireChange(SuiteChangeEvent.Type.STEP_DATA);
     }
 
     /**
@@ -753,6 +768,7 @@ public class TreatmentStep {
     public void setOnCircle(boolean v) {
         touch();
         onCircle = v;
+        fireChange(SuiteChangeEvent.Type.STEP_FLAGS);
     }
 
     /**
@@ -772,6 +788,7 @@ public class TreatmentStep {
     public void setInPca(boolean v) {
         touch();
         inPca = v;
+        fireChange(SuiteChangeEvent.Type.STEP_FLAGS);
     }
     
     /**
@@ -891,6 +908,7 @@ public class TreatmentStep {
     public void setMoment(Vec3 v) {
         touch();
         moment = v;
+        fireChange(SuiteChangeEvent.Type.STEP_MOMENT);
     }
 
     /**
@@ -937,6 +955,7 @@ public class TreatmentStep {
     public void rot180(MeasurementAxis axis) {
         touch();
         moment = moment.rot180(axis);
+        fireChange(SuiteChangeEvent.Type.STEP_MOMENT);
     }
 
     
@@ -946,6 +965,7 @@ public class TreatmentStep {
     void invertMoment() {
         touch();
         moment = moment.invert();
+        fireChange(SuiteChangeEvent.Type.STEP_MOMENT);
     }
     
     /**
@@ -1430,6 +1450,27 @@ public class TreatmentStep {
             default:
                 throw new IllegalArgumentException("Unknown field " + field);
         }
+        modificationCount++;
+        if (sample != null) {
+            /*
+             * Some fields are set directly rather than via their setters,
+             * so the treatment level may have changed.
+             */
+            sample.invalidateTreatmentLevelIndex();
+        }
+        fireChange(SuiteChangeEvent.Type.STEP_DATA);
+    }
+    
+    /**
+     * Returns a count which changes whenever this treatment step is
+     * modified. Clients can use it to tell whether values derived from
+     * this step (for example, formatted strings for display) are still
+     * up to date.
+     * 
+     * @return the current modification count of this treatment step
+     */
+    public int getModificationCount() {
+        return modificationCount;
     }
 
     /**
@@ -1517,12 +1558,113 @@ public class TreatmentStep {
     /**
      * Sets this tratment steps's suite as "modified". Intended to be called
      * from any method that modifies the datum, to keep track of whether
-     * the suite has been saved since the last modification. 
+     * the suite has been saved since the last modification. The containing
+     * sample's contribution to the suite statistics is also invalidated,
+     * and the modification count is incremented.
      */
     public void touch() {
+        final Suite owner = sample != null && sample.getSuite() != null ?
+                sample.getSuite() : suite;
+        if (owner != null) {
+            owner.recordForUndo(this);
+        }
+        modificationCount++;
         if (suite != null) {
             suite.setSaved(false);
         }
+        if (sample != null) {
+            sample.invalidateStatistics();
+        }
+    }
+    
+    /**
+     * Returns a detached copy of this treatment step's state, for use
+     * by {@link SuiteHistory}. The copy shares this step's immutable
+     * field values, so it is cheap to make.
+     *
+     * @return a copy of this treatment step's state
+     */
+    TreatmentStep saveState() {
+        final TreatmentStep copy = new TreatmentStep(moment);
+        copyFields(this, copy);
+        return copy;
+    }
+
+    /**
+     * Restores this treatment step to a state previously returned by
+     * {@link #saveState()}.
+     *
+     * @param state the state to restore
+     */
+    void restoreState(TreatmentStep state) {
+        copyFields(state, this);
+        modificationCount++;
+        if (sample != null) {
+            sample.invalidateTreatmentLevelIndex();
+            sample.invalidateStatistics();
+        }
+    }
+
+    private static void copyFields(TreatmentStep from, TreatmentStep to) {
+        to.discreteId = from.discreteId;
+        to.measurementType = from.measurementType;
+        to.treatmentType = from.treatmentType;
+        to.afx = from.afx;
+        to.afy = from.afy;
+        to.afz = from.afz;
+        to.temperature = from.temperature;
+        to.magSus = from.magSus;
+        to.sampAz = from.sampAz;
+        to.sampDip = from.sampDip;
+        to.formAz = from.formAz;
+        to.formDip = from.formDip;
+        to.magDev = from.magDev;
+        to.depth = from.depth;
+        to.irmField = from.irmField;
+        to.armField = from.armField;
+        to.armAxis = from.armAxis;
+        to.moment = from.moment;
+        to.runNumber = from.runNumber;
+        to.volume = from.volume;
+        to.area = from.area;
+        to.timestamp = from.timestamp;
+        to.xDrift = from.xDrift;
+        to.yDrift = from.yDrift;
+        to.zDrift = from.zDrift;
+        to.slotNumber = from.slotNumber;
+        to.line = from.line;
+        to.selected = from.selected;
+        to.inPca = from.inPca;
+        to.onCircle = from.onCircle;
+        to.pcaAnchored = from.pcaAnchored;
+        to.hidden = from.hidden;
+        to.sample = from.sample;
+        to.suite = from.suite;
+    }
+
+    /**
+     * Marks this treatment step as modified (see {@link #touch()}) and
+     * informs the containing sample that its treatment level may have
+     * changed.
+     */
+    private void touchTreatmentLevel() {
+        touch();
+        if (sample != null) {
+            sample.invalidateTreatmentLevelIndex();
+        }
+    }
+    
+    /**
+     * Reports a change to this treatment step to the listeners of the
+     * containing suite. This should be called after the change has been
+     * made, so that listeners see the new state.
+     */
+    private void fireChange(SuiteChangeEvent.Type type) {
+        final Suite owner = sample != null && sample.getSuite() != null ?
+                sample.getSuite() : suite;
+        if (owner != null) {
+            owner.fireChange(type, sample, this);
+        }
     }
     
     /**
@@ -16,6 +16,9 @@
  */
 package net.talvi.puffinplot.data;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -1321,4 +1324,49 @@ public class Vec3 {
         final double delta = Double.max(mag0, mag1) * precision;
         return (distance(v) < delta);
     }
+
+    /**
+     * Writes this vector in binary form.
+     *
+     * @param out the destination
+     * @throws IOException if an I/O error occurs
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeDouble(x);
+        out.writeDouble(y);
+        out.writeDouble(z);
+    }
+
+    /**
+     * Reads a vector written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in the source
+     * @return the vector
+     * @throws IOException if an I/O error occurs
+     */
+    static Vec3 readFrom(DataInput in) throws IOException {
+        final double x = in.readDouble();
+        final double y = in.readDouble();
+        return new Vec3(x, y, in.readDouble());
+    }
+
+    static void writeList(DataOutput out, List<Vec3> vectors)
+            throws IOException {
+        out.writeInt(vectors.size());
+        for (Vec3 v: vectors) {
+            v.writeTo(out);
+        }
+    }
+
+    static List<Vec3> readList(DataInput in) throws IOException {
+        final int size = in.readInt();
+        if (size < 0) {
+            throw new IOException("Invalid vector count " + size);
+        }
+        final List<Vec3> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(readFrom(in));
+        }
+        return result;
+    }
 }
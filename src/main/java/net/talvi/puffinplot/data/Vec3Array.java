@@ -0,0 +1,239 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.talvi.puffinplot.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import Jama.Matrix;
+
+import static java.lang.Math.PI;
+import static java.lang.Math.atan2;
+import static java.lang.Math.sqrt;
+
+/**
+ * A mutable array of three-dimensional vectors, stored as three primitive
+ * arrays of components, with bulk operations on the whole array.
+ * <p>
+ * The bulk operations avoid the per-vector allocation of the equivalent
+ * {@link Vec3} methods, and the element-wise operations are simple
+ * loops over the component arrays, which the JIT compiler can unroll and
+ * vectorize. Each operation uses the same arithmetic, in the same order,
+ * as the corresponding {@link Vec3} operation, so the results are
+ * identical to those of the object-at-a-time calculation.
+ *
+ * @author pont
+ */
+public final class Vec3Array {
+
+    private final double[] x, y, z;
+
+    /**
+     * Creates a new array of zero vectors.
+     *
+     * @param size the number of vectors in the array
+     */
+    public Vec3Array(int size) {
+        x = new double[size];
+        y = new double[size];
+        z = new double[size];
+    }
+
+    /**
+     * Creates a new array containing the supplied vectors.
+     *
+     * @param vectors the vectors to copy into the array
+     * @return an array containing the supplied vectors, in iteration order
+     */
+    public static Vec3Array of(Collection<Vec3> vectors) {
+        final Vec3Array array = new Vec3Array(vectors.size());
+        int i = 0;
+        for (Vec3 v: vectors) {
+            array.x[i] = v.x;
+            array.y[i] = v.y;
+            array.z[i] = v.z;
+            i++;
+        }
+        return array;
+    }
+
+    /**
+     * @return the number of vectors in this array
+     */
+    public int size() {
+        return x.length;
+    }
+
+    /**
+     * Returns a vector from this array.
+     *
+     * @param index the index of the vector
+     * @return the vector at the specified index
+     */
+    public Vec3 get(int index) {
+        return new Vec3(x[index], y[index], z[index]);
+    }
+
+    /**
+     * @param index the index of a vector
+     * @return the x component of the vector
+     */
+    public double getX(int index) {
+        return x[index];
+    }
+
+    /**
+     * @param index the index of a vector
+     * @return the y component of the vector
+     */
+    public double getY(int index) {
+        return y[index];
+    }
+
+    /**
+     * @param index the index of a vector
+     * @return the z component of the vector
+     */
+    public double getZ(int index) {
+        return z[index];
+    }
+
+    /**
+     * Sets a vector in this array.
+     *
+     * @param index the index of the vector
+     * @param v the new value of the vector
+     */
+    public void set(int index, Vec3 v) {
+        x[index] = v.x;
+        y[index] = v.y;
+        z[index] = v.z;
+    }
+
+    /**
+     * @return a new list containing the vectors in this array
+     */
+    public List<Vec3> toList() {
+        final List<Vec3> list = new ArrayList<>(x.length);
+        for (int i = 0; i < x.length; i++) {
+            list.add(new Vec3(x[i], y[i], z[i]));
+        }
+        return list;
+    }
+
+    /**
+     * Normalizes all the vectors in this array in place. As with
+     * {@link Vec3#normalize()}, the result for a zero or non-finite vector
+     * is undefined.
+     */
+    public void normalize() {
+        for (int i = 0; i < x.length; i++) {
+            final double m = sqrt(x[i] * x[i] + y[i] * y[i] + z[i] * z[i]);
+            x[i] = x[i] / m;
+            y[i] = y[i] / m;
+            z[i] = z[i] / m;
+        }
+    }
+
+    /**
+     * @return the sum of the vectors in this array
+     */
+    public Vec3 sum() {
+        double xs = 0, ys = 0, zs = 0;
+        for (int i = 0; i < x.length; i++) {
+            xs += x[i];
+            ys += y[i];
+            zs += z[i];
+        }
+        return new Vec3(xs, ys, zs);
+    }
+
+    /**
+     * Calculates the dot product of each vector in this array with
+     * a supplied vector.
+     *
+     * @param v the vector with which to take the dot products
+     * @param result an array of at least {@link #size()} elements, into
+     * which the dot products are written
+     */
+    public void dot(Vec3 v, double[] result) {
+        final double vx = v.x, vy = v.y, vz = v.z;
+        for (int i = 0; i < x.length; i++) {
+            result[i] = x[i] * vx + y[i] * vy + z[i] * vz;
+        }
+    }
+
+    /**
+     * Multiplies all the vectors in this array in place by a supplied
+     * matrix, as in {@link Vec3#transform(double[][])}.
+     *
+     * @param matrix a three-by-three matrix
+     */
+    public void transform(double[][] matrix) {
+        final double m00 = matrix[0][0], m01 = matrix[0][1],
+                m02 = matrix[0][2], m10 = matrix[1][0], m11 = matrix[1][1],
+                m12 = matrix[1][2], m20 = matrix[2][0], m21 = matrix[2][1],
+                m22 = matrix[2][2];
+        for (int i = 0; i < x.length; i++) {
+            final double xi = x[i], yi = y[i], zi = z[i];
+            x[i] = xi * m00 + yi * m01 + zi * m02;
+            y[i] = xi * m10 + yi * m11 + zi * m12;
+            z[i] = xi * m20 + yi * m21 + zi * m22;
+        }
+    }
+
+    /**
+     * Calculates the declination and inclination of each vector in this
+     * array, as in {@link Vec3#getDecRad()} and {@link Vec3#getIncRad()}.
+     *
+     * @param decs an array of at least {@link #size()} elements, into
+     * which the declinations are written, in radians
+     * @param incs an array of at least {@link #size()} elements, into
+     * which the inclinations are written, in radians
+     */
+    public void getDecIncRad(double[] decs, double[] incs) {
+        for (int i = 0; i < x.length; i++) {
+            final double dec = atan2(y[i], x[i]);
+            decs[i] = dec < 0 ? dec + 2 * PI : dec;
+            incs[i] = atan2(z[i], sqrt(x[i] * x[i] + y[i] * y[i]));
+        }
+    }
+
+    /**
+     * Returns the orientation tensor of the vectors in this array: the sum
+     * of the outer products of each vector with itself.
+     *
+     * @return the orientation tensor of the vectors in this array
+     */
+    public Matrix orientationTensor() {
+        double xx = 0, xy = 0, xz = 0, yy = 0, yz = 0, zz = 0;
+        for (int i = 0; i < x.length; i++) {
+            final double xi = x[i], yi = y[i], zi = z[i];
+            xx += xi * xi;
+            xy += xi * yi;
+            xz += xi * zi;
+            yy += yi * yi;
+            yz += yi * zi;
+            zz += zi * zi;
+        }
+        return new Matrix(new double[][] {
+            {xx, xy, xz},
+            {xy, yy, yz},
+            {xz, yz, zz}});
+    }
+}
@@ -0,0 +1,54 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.talvi.puffinplot.jfr;
+
+import java.io.File;
+import java.io.IOException;
+
+import net.talvi.puffinplot.data.AmsCalculationType;
+import net.talvi.puffinplot.data.FileType;
+
+/**
+ * A destination for PuffinPlot's flight recorder events. Events are
+ * represented by opaque handles, so that callers never refer to
+ * flight recorder classes directly.
+ *
+ * @author pont
+ */
+interface EventSink {
+
+    Object beginFileLoad();
+
+    void endFileLoad(Object handle, File file, FileType fileType,
+            int treatmentSteps);
+
+    Object beginCalculation();
+
+    void endCalculation(Object handle, String calculation, int samples,
+            int sites);
+
+    Object beginAmsCalculation();
+
+    void endAmsCalculation(Object handle, AmsCalculationType type,
+            int samples);
+
+    Object beginPlotDraw();
+
+    void endPlotDraw(Object handle, String plotName, int points);
+
+    void startRecording(File destination) throws IOException;
+}
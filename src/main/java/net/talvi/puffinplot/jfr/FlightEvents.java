@@ -0,0 +1,179 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.talvi.puffinplot.jfr;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.talvi.puffinplot.data.AmsCalculationType;
+import net.talvi.puffinplot.data.FileType;
+
+/**
+ * Emits PuffinPlot's Java Flight Recorder events.
+ * <p>
+ * Each operation is recorded by calling a {@code begin} method before it
+ * starts and passing the returned handle to the corresponding {@code end}
+ * method when it finishes. If the flight recorder API is not available in
+ * the running JVM, or PuffinPlot was built without its event classes, the
+ * {@code begin} methods return {@code null} and the {@code end} methods do
+ * nothing. If it is available but no recording is
+ * in progress, the cost is that of creating a small object.
+ *
+ * @author pont
+ */
+public final class FlightEvents {
+
+    private static final Logger LOGGER =
+            Logger.getLogger("net.talvi.puffinplot");
+    private static final EventSink SINK = createSink();
+
+    private FlightEvents() {
+    }
+
+    private static EventSink createSink() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return (EventSink) Class.forName(
+                    "net.talvi.puffinplot.jfr.JfrEventSink").
+                    getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            LOGGER.log(Level.FINE, "Flight recorder API not available", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Reports whether the flight recorder API is available.
+     *
+     * @return {@code true} if flight recorder events can be emitted
+     */
+    public static boolean isAvailable() {
+        return SINK != null;
+    }
+
+    /**
+     * Starts a flight recording using PuffinPlot's bundled settings. The
+     * recording is written to the specified file when the JVM exits.
+     *
+     * @param destination the file to which to write the recording
+     * @throws IOException if the flight recorder is not available or the
+     * recording could not be started
+     */
+    public static void startRecording(File destination) throws IOException {
+        if (SINK == null) {
+            throw new IOException("Java Flight Recorder is not available "
+                    + "in this Java runtime.");
+        }
+        SINK.startRecording(destination);
+    }
+
+    /**
+     * Begins a file load event.
+     *
+     * @return an event handle
+     */
+    public static Object beginFileLoad() {
+        return SINK == null ? null : SINK.beginFileLoad();
+    }
+
+    /**
+     * Ends a file load event.
+     *
+     * @param handle the handle returned by {@link #beginFileLoad()}
+     * @param file the file which was read
+     * @param fileType the type of the file
+     * @param treatmentSteps the number of treatment steps read
+     */
+    public static void endFileLoad(Object handle, File file,
+            FileType fileType, int treatmentSteps) {
+        if (handle != null) {
+            SINK.endFileLoad(handle, file, fileType, treatmentSteps);
+        }
+    }
+
+    /**
+     * Begins a calculation event.
+     *
+     * @return an event handle
+     */
+    public static Object beginCalculation() {
+        return SINK == null ? null : SINK.beginCalculation();
+    }
+
+    /**
+     * Ends a calculation event.
+     *
+     * @param handle the handle returned by {@link #beginCalculation()}
+     * @param calculation a short name for the calculation
+     * @param samples the number of samples used or updated
+     * @param sites the number of sites used or updated
+     */
+    public static void endCalculation(Object handle, String calculation,
+            int samples, int sites) {
+        if (handle != null) {
+            SINK.endCalculation(handle, calculation, samples, sites);
+        }
+    }
+
+    /**
+     * Begins an AMS calculation event.
+     *
+     * @return an event handle
+     */
+    public static Object beginAmsCalculation() {
+        return SINK == null ? null : SINK.beginAmsCalculation();
+    }
+
+    /**
+     * Ends an AMS calculation event.
+     *
+     * @param handle the handle returned by {@link #beginAmsCalculation()}
+     * @param type the type of AMS calculation
+     * @param samples the number of samples with AMS data
+     */
+    public static void endAmsCalculation(Object handle,
+            AmsCalculationType type, int samples) {
+        if (handle != null) {
+            SINK.endAmsCalculation(handle, type, samples);
+        }
+    }
+
+    /**
+     * Begins a plot draw event.
+     *
+     * @return an event handle
+     */
+    public static Object beginPlotDraw() {
+        return SINK == null ? null : SINK.beginPlotDraw();
+    }
+
+    /**
+     * Ends a plot draw event.
+     *
+     * @param handle the handle returned by {@link #beginPlotDraw()}
+     * @param plotName the internal name of the plot
+     * @param points the number of data points drawn
+     */
+    public static void endPlotDraw(Object handle, String plotName,
+            int points) {
+        if (handle != null) {
+            SINK.endPlotDraw(handle, plotName, points);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Java Flight Recorder support for PuffinPlot. This package defines
+ * custom flight recorder events for PuffinPlot's loading, calculation,
+ * and rendering operations, and allows a recording to be started from
+ * the command line.
+ * <p>
+ * The flight recorder API is not present in all Java 8 runtimes, so all
+ * access to it goes through {@link net.talvi.puffinplot.jfr.FlightEvents},
+ * which does nothing if the API is unavailable. The event classes
+ * themselves are in the {@code src/main/java11} source tree, which is only
+ * compiled when building with JDK 11 or later; a Java 8 build omits them
+ * and the flight recorder is then never available.
+ */
+package net.talvi.puffinplot.jfr;
@@ -23,6 +23,7 @@ import java.awt.geom.Rectangle2D;
 
 import net.talvi.puffinplot.data.Sample;
 import net.talvi.puffinplot.data.Suite;
+import net.talvi.puffinplot.data.SuiteStatistics;
 import net.talvi.puffinplot.plots.PlotAxis.AxisParameters;
 
 /**
@@ -67,36 +68,16 @@ public class DepthPlot extends Plot {
                 withLabel("Depth").withNumberEachTick();
         final PlotAxis xAxis = new PlotAxis(xAxisParams, this);
         
-        double minInc = 0, maxInc = 0, totalInc = 0;
-        int numberOfIncs = 0;
-        boolean anyData = false;
-        for (Sample sample: suite.getSamples()) {
-            if (!sample.hasTreatmentSteps()) {
-                continue;
-            }
-            if (sample.getDirection() == null) {
-                continue;
-            }
-            if (Double.isNaN(sample.getDepth())) {
-                continue;
-            }
-            anyData = true;
-            final double inc = sample.getDirection().getIncDeg();
-            if (inc < minInc) {
-                minInc = inc;
-            }
-            if (inc > maxInc) {
-                maxInc = inc;
-            }
-            if (inc > 30) {
-                totalInc += inc;
-                numberOfIncs++;
-            }
-        }
-        
-        if (!anyData) {
+        /*
+         * The inclination range is taken from the suite statistics, which
+         * are only recalculated for samples that have changed.
+         */
+        final SuiteStatistics statistics = suite.getStatistics();
+        if (statistics.getInclinationCount() == 0) {
             return;
         }
+        final double minInc = Math.min(0, statistics.getMinInclination());
+        final double maxInc = Math.max(0, statistics.getMaxInclination());
         
         final AxisParameters upAxisParams = 
                 new AxisParameters(maxInc, Direction.UP).
@@ -139,7 +120,8 @@ public class DepthPlot extends Plot {
                 (int)(dim.getMaxY() - downAxis.getLength()));
         drawPoints(graphics);
         
-        writeString(graphics, String.format("%f", totalInc / numberOfIncs),
+        writeString(graphics, String.format("%f",
+                statistics.getMeanSteepInclination()),
                 (float) getDimensions().getMinX(),
                 (float) getDimensions().getMinY());
     }
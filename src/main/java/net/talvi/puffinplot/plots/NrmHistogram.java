@@ -19,17 +19,16 @@ package net.talvi.puffinplot.plots;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.geom.Rectangle2D;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 
 import net.talvi.puffinplot.data.Sample;
-import net.talvi.puffinplot.data.Suite;
+import net.talvi.puffinplot.data.SuiteStatistics;
 import net.talvi.puffinplot.plots.PlotAxis.AxisParameters;
 
 /**
  * A histogram of the intensities of natural remanent magnetizations of
- * a collection of samples.
+ * a collection of samples. The histogram counts are taken from the
+ * suite's {@link SuiteStatistics}, so redrawing an unchanged suite does
+ * not require a scan of its samples.
  * 
  * @author pont
  */
@@ -76,30 +75,22 @@ public class NrmHistogram extends Plot {
         if (selectedSample==null) {
             return;
         }
-        final Suite suite = selectedSample.getSuite();
-        final List<Double> nrms = new ArrayList<>(suite.getSamples().size());
-        for (Sample sample: suite.getSamples()) {
-            if (sample.hasTreatmentSteps()) {
-                nrms.add(sample.getNrm());
-            }
-        }
-        if (nrms.isEmpty()) {
+        final SuiteStatistics statistics =
+                selectedSample.getSuite().getStatistics();
+        if (statistics.getNrmCount() == 0) {
             return;
         }
-        final double minimum = 0; //Collections.min(nrms);
-        final double maximum = Collections.max(nrms);
+        final double minimum = 0;
+        final double maximum = statistics.getMaxNrm();
         final double range = maximum-minimum;
         final int nBuckets = 50;
         final Rectangle2D dim =
                 cropRectangle(getDimensions(), 270, 200, 50, 250);
-        final List<Integer> buckets =
-                new ArrayList<>(Collections.nCopies(nBuckets, 0));
-        for (double nrm : nrms) {
-            int bucket = (int) Math.round(nBuckets * (nrm-minimum)/range);
-            if (bucket == nBuckets) {
-                bucket--;  // rightmost edge of rightmost bucket
-            }
-            buckets.set(bucket, 1+buckets.get(bucket));
+        final int[] buckets =
+                statistics.getNrmHistogram(minimum, maximum, nBuckets);
+        int maxBucket = 0;
+        for (int count : buckets) {
+            maxBucket = Math.max(maxBucket, count);
         }
 
         AxisParameters hAxisParams = new AxisParameters(range, Direction.RIGHT).
@@ -107,7 +98,7 @@ public class NrmHistogram extends Plot {
                 withStartValue(minimum);
         final PlotAxis hAxis = new PlotAxis(hAxisParams, this);
         final PlotAxis vAxis = new PlotAxis(
-                new AxisParameters(Collections.max(buckets), Direction.UP).
+                new AxisParameters(maxBucket, Direction.UP).
                 withLabel("Number of samples").withNumberEachTick(), this);
         
         final double hScale = dim.getWidth() / hAxis.getLength();
@@ -120,9 +111,9 @@ public class NrmHistogram extends Plot {
             double xPos = dim.getMinX() + 
                     (((double) i) / (double) nBuckets) * range * hScale;
             Rectangle2D r = new Rectangle2D.Double(xPos,
-                    dim.getMaxY() - buckets.get(i) * vScale,
+                    dim.getMaxY() - buckets[i] * vScale,
                     range * hScale/(double)nBuckets,
-                    buckets.get(i) * vScale);
+                    buckets[i] * vScale);
             graphics.setColor(Color.gray);
             graphics.fill(r);
         }
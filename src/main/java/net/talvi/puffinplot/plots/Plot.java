@@ -20,8 +20,8 @@ import java.awt.BasicStroke;
 import java.awt.Graphics2D;
 import java.awt.Stroke;
 import java.awt.event.MouseEvent;
+import java.awt.font.FontRenderContext;
 import java.awt.font.TextAttribute;
-import java.awt.font.TextLayout;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
@@ -41,8 +41,10 @@ import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import net.talvi.puffinplot.Metrics;
 import net.talvi.puffinplot.data.Sample;
 import net.talvi.puffinplot.data.TreatmentStep;
+import net.talvi.puffinplot.jfr.FlightEvents;
 import net.talvi.puffinplot.window.PuffinRenderingHints;
 
 import static java.awt.font.TextAttribute.SUPERSCRIPT;
@@ -82,6 +84,8 @@ public abstract class Plot
     private static final float TICK_LENGTH_IN_UNITS = 48.0f;
     private static final float FONT_SIZE_IN_UNITS = 120.0f;
     private static final float SLOPPY_SELECTION_RADIUS_IN_UNITS = 128.0f;
+    /** the maximum number of plotted points to draw in draft mode */
+    private static final int MAX_DRAFT_POINTS = 1000;
     /** the default size of a plotted data point */
     protected static final double PLOT_POINT_SIZE = 24.;
     private Map<Attribute,Object> attributeMap = new HashMap<>();
@@ -304,7 +308,8 @@ public abstract class Plot
      */
     protected void writeString(Graphics2D g, String text, float x, float y) {
         if (text != null && !"".equals(text)) {
-            writeString(g, new AttributedString(text), x, y);
+            g.drawString(getTextLayout(g, text, 0).getText().getIterator(),
+                    x, y);
         }
     }
 
@@ -326,6 +331,50 @@ public abstract class Plot
         graphics.drawString(as.getIterator(), x, y);
     }
 
+    /**
+     * Returns the layout of a string with this plot's standard text
+     * attributes, from the shared {@link TextLayoutCache}.
+     *
+     * @param graphics the graphics context in which the text will be drawn
+     * @param text the text to lay out
+     * @param θ the rotation of the text, in radians (0 = horizontal)
+     * @return the laid-out text
+     */
+    TextLayoutCache.CachedLayout getTextLayout(Graphics2D graphics, String text,
+            double θ) {
+        return TextLayoutCache.getShared().get(text, attributeMap, θ,
+                rotatedFontRenderContext(graphics, θ));
+    }
+
+    /**
+     * Returns the layout of an attributed string, from the shared
+     * {@link TextLayoutCache}. This plot's standard text attributes
+     * are applied to the string.
+     *
+     * @param graphics the graphics context in which the text will be drawn
+     * @param text the text to lay out
+     * @param θ the rotation of the text, in radians (0 = horizontal)
+     * @return the laid-out text
+     */
+    TextLayoutCache.CachedLayout getTextLayout(Graphics2D graphics,
+            AttributedString text, double θ) {
+        applyTextAttributes(text);
+        return TextLayoutCache.getShared().get(text, θ,
+                rotatedFontRenderContext(graphics, θ));
+    }
+
+    private static FontRenderContext rotatedFontRenderContext(
+            Graphics2D graphics, double θ) {
+        if (θ == 0) {
+            return graphics.getFontRenderContext();
+        }
+        final AffineTransform initialTransform = graphics.getTransform();
+        graphics.rotate(θ);
+        final FontRenderContext frc = graphics.getFontRenderContext();
+        graphics.setTransform(initialTransform);
+        return frc;
+    }
+
     /**
      * Returns an attributed string representing a number in scientific
      * notation. By default a notation of the form
@@ -422,12 +471,43 @@ public abstract class Plot
      */
     protected void drawPoints(Graphics2D g) {
         g.setStroke(getStroke());
+        final boolean draft = isDraft(g);
+        final boolean labelled = areTreatmentStepsLabelled() && !draft;
+        /*
+         * In draft mode, large sets of plotted points are thinned out.
+         * Selected points are always drawn, since they give the user
+         * feedback during selection, and text lines are never skipped.
+         */
+        final int stride = draft
+                ? (points.size() + MAX_DRAFT_POINTS - 1) / MAX_DRAFT_POINTS
+                : 1;
         PlotPoint prev = null;
-        for (PlotPoint point: points) {
-            point.drawWithPossibleLine(g, prev, areTreatmentStepsLabelled());
+        for (int i = 0; i < points.size(); i++) {
+            final PlotPoint point = points.get(i);
+            if (stride > 1 && i % stride != 0 && i != points.size() - 1
+                    && point instanceof ShapePoint
+                    && !(point.getTreatmentStep() != null
+                        && point.getTreatmentStep().isSelected())) {
+                continue;
+            }
+            point.drawWithPossibleLine(g, prev, labelled);
             prev = point;
         }
     }
+
+    /**
+     * Reports whether a graphics context has been set up for draft
+     * rendering. In draft mode, plots may omit decorative elements such as
+     * labels and confidence regions in order to draw more quickly.
+     *
+     * @param graphics a graphics context
+     * @return {@code true} if the graphics context requests draft rendering
+     * @see PuffinRenderingHints#KEY_DRAFT
+     */
+    public static boolean isDraft(Graphics2D graphics) {
+        return graphics.getRenderingHint(PuffinRenderingHints.KEY_DRAFT)
+                != null;
+    }
     
     /**
      * Adds a point to this plot's internal buffer.
@@ -492,9 +572,14 @@ public abstract class Plot
         if (iterator.getBeginIndex() >= iterator.getEndIndex()) {
             return;  // skip empty strings
         }
+        putText(graphics, getTextLayout(graphics, text, θ), x, y, dir, θ,
+                padding);
+    }
 
+    private void putText(Graphics2D graphics,
+            TextLayoutCache.CachedLayout layout, double x, double y,
+            Direction dir, double θ, double padding) {
         final AffineTransform initialTransform = graphics.getTransform();
-        applyTextAttributes(text);
 
         /*
          * The obvious thing to do might be to calculate the bounding box for
@@ -503,21 +588,12 @@ public abstract class Plot
          * can affect text layout. On Linux 64-bit OpenJDK 1.7.0_25, vertical
          * text is set closer than horizontal. So the bounding box must be
          * determined by actually creating a TextLayout for a rotated
-         * FontRenderContext.
+         * FontRenderContext. The layout cache takes care of this, and also
+         * supplies the back-rotated bounding box for use in calculations
+         * requiring the untransformed bounds.
          */
-        graphics.rotate(θ);
-        final TextLayout layout =
-                new TextLayout(text.getIterator(),
-                        graphics.getFontRenderContext());
         final Rectangle2D transformedBounds = layout.getBounds();
-        graphics.setTransform(initialTransform);
-
-        /*
-         * We now back-rotate the transformed bounding box to use in
-         * calculations requiring the untransformed bounds.
-         */
-        final Rectangle2D bounds = AffineTransform.getRotateInstance(-θ).
-                createTransformedShape(transformedBounds).getBounds2D();
+        final Rectangle2D bounds = layout.getUnrotatedBounds();
 
         /*
          * Translate the co-ordinate system to the "target" point. This isn't
@@ -583,7 +659,7 @@ public abstract class Plot
          * We don't use layout.draw, since that will draw the text as a glyph
          * vector, which won't be exported as text in SVG, PDF, etc.
          */
-        graphics.drawString(text.getIterator(), 0, 0);
+        graphics.drawString(layout.getText().getIterator(), 0, 0);
         
         /*
          * Finally, we restore the initial co-ordinate system.
@@ -604,8 +680,10 @@ public abstract class Plot
      */
     public void putText(Graphics2D g, String textString, double x,
             double y, Direction dir, double θ, double padding) {
-        final AttributedString text = new AttributedString(textString);
-        putText(g, text, x, y, dir, θ, padding);
+        if (textString.isEmpty()) {
+            return;  // skip empty strings
+        }
+        putText(g, getTextLayout(g, textString, θ), x, y, dir, θ, padding);
     }
 
     
@@ -703,6 +781,32 @@ public abstract class Plot
      * @param graphics the graphics object onto which to draw this plot
      */
     public abstract void draw(Graphics2D graphics);
+    
+    /**
+     * Draws this plot, recording the time taken in PuffinPlot's performance
+     * metrics (if enabled) and as a flight recorder event.
+     *
+     * @param graphics the graphics object onto which to draw this plot
+     * @see Metrics
+     * @see FlightEvents
+     */
+    public final void drawAndRecord(Graphics2D graphics) {
+        final Object event = FlightEvents.beginPlotDraw();
+        /*
+         * Plots are drawn often, so don't build the timer name unless
+         * metrics are enabled.
+         */
+        final Metrics.Timer timer = Metrics.isEnabled()
+                ? Metrics.start("plot." + getName()) : null;
+        try {
+            draw(graphics);
+        } finally {
+            if (timer != null) {
+                timer.stop();
+            }
+            FlightEvents.endPlotDraw(event, getName(), points.size());
+        }
+    }
 
     /**
      * Reports whether this plot is visible.
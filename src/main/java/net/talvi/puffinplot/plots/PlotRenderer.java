@@ -0,0 +1,605 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.talvi.puffinplot.plots;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.DoubleConsumer;
+import java.util.function.Function;
+
+import com.itextpdf.awt.DefaultFontMapper;
+import com.itextpdf.awt.PdfGraphics2D;
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.Rectangle;
+import com.itextpdf.text.pdf.PdfContentByte;
+import com.itextpdf.text.pdf.PdfWriter;
+import net.talvi.puffinplot.SettingsSnapshot;
+import net.talvi.puffinplot.data.Correction;
+import net.talvi.puffinplot.data.MeasurementAxis;
+import net.talvi.puffinplot.data.Sample;
+import net.talvi.puffinplot.data.Site;
+import net.talvi.puffinplot.data.SuiteRpiEstimate;
+import net.talvi.puffinplot.window.PuffinRenderingHints;
+import org.apache.batik.dom.GenericDOMImplementation;
+import org.apache.batik.svggen.SVGGraphics2D;
+import org.w3c.dom.DOMImplementation;
+
+/**
+ * Renders PuffinPlot's plots without a graphical user interface.
+ * <p>
+ * A renderer draws the same set of plots as the main window, with a
+ * specified sample, correction, plot layout, and settings, to a
+ * {@link BufferedImage}, an SVG file, or a PDF file. It does not use any
+ * Swing components or the event dispatch thread, so it can be used with
+ * {@code java.awt.headless=true}.
+ * <p>
+ * A renderer is immutable, and fresh plots are created for each rendering
+ * operation, so a renderer may be used from several threads at once, and
+ * several renderers may draw from the same suite concurrently. The suite
+ * must not be modified while it is being rendered.
+ * <p>
+ * Typical usage:
+ * <pre>
+ * final BufferedImage image = PlotRenderer.builder(sample)
+ *         .correction(Correction.NONE)
+ *         .settings(SettingsSnapshot.fromMap(settings))
+ *         .build().renderImage(2);
+ * </pre>
+ *
+ * @author pont
+ */
+public final class PlotRenderer {
+
+    /**
+     * The default width of the rendered area, in plot co-ordinates.
+     */
+    public static final int DEFAULT_WIDTH = 1200;
+
+    /**
+     * The default height of the rendered area, in plot co-ordinates.
+     */
+    public static final int DEFAULT_HEIGHT = 800;
+
+    /*
+     * The height in pixels of the strips in which PNG images are
+     * rasterized.
+     */
+    private static final int PNG_STRIP_HEIGHT = 256;
+
+    /*
+     * The plots in the main window, in drawing order.
+     */
+    private static final List<Function<PlotParams, Plot>> PLOT_FACTORIES =
+            Collections.unmodifiableList(
+                    Arrays.<Function<PlotParams, Plot>>asList(
+                    SampleEqualAreaPlot::new, ZPlot::new, DemagPlot::new,
+                    DemagTable::new, SampleParamsLegend::new,
+                    PlotTitle::new, SiteParamsLegend::new, AmsPlot::new,
+                    TernaryPlot::new, SiteEqualAreaPlot::new,
+                    SuiteEqualAreaPlot::new, SampleParamsTable::new,
+                    SiteParamsTable::new, NrmHistogram::new, VgpTable::new,
+                    SuiteParamsTable::new, DepthPlot::new, VgpMap::new,
+                    RpiPlot::new));
+
+    private final Sample sample;
+    private final List<Sample> selectedSamples;
+    private final List<Site> selectedSites;
+    private final Correction correction;
+    private final MeasurementAxis vProjXaxis;
+    private final MeasurementAxis hProjXaxis;
+    private final MeasurementAxis hProjYaxis;
+    private final String layout;
+    private final SettingsSnapshot settings;
+    private final SuiteRpiEstimate rpiEstimate;
+    private final float unitSize;
+    private final int width;
+    private final int height;
+
+    /**
+     * A builder for plot renderers. All the parameters except the sample
+     * have default values.
+     */
+    public static final class Builder {
+        private Sample sample;
+        private List<Sample> selectedSamples = null;
+        private List<Site> selectedSites = Collections.emptyList();
+        private Correction correction = Correction.NONE;
+        private MeasurementAxis vProjXaxis = MeasurementAxis.X;
+        private MeasurementAxis hProjXaxis = MeasurementAxis.Y;
+        private MeasurementAxis hProjYaxis = MeasurementAxis.X;
+        private String layout = null;
+        private SettingsSnapshot settings = SettingsSnapshot.EMPTY;
+        private SuiteRpiEstimate rpiEstimate = null;
+        private float unitSize = 0.12f;
+        private int width = DEFAULT_WIDTH;
+        private int height = DEFAULT_HEIGHT;
+
+        private Builder(Sample sample) {
+            this.sample = Objects.requireNonNull(sample);
+        }
+
+        /**
+         * @param sample the sample to display in the sample plots
+         * @return this builder
+         */
+        public Builder sample(Sample sample) {
+            this.sample = Objects.requireNonNull(sample);
+            return this;
+        }
+
+        /**
+         * @param samples the selected samples, as used by plots which
+         * display several samples; defaults to the displayed sample alone
+         * @return this builder
+         */
+        public Builder selectedSamples(List<Sample> samples) {
+            this.selectedSamples = new ArrayList<>(samples);
+            return this;
+        }
+
+        /**
+         * @param sites the selected sites, whose samples are used by
+         * plots which display whole sites; defaults to no sites
+         * @return this builder
+         */
+        public Builder selectedSites(List<Site> sites) {
+            this.selectedSites = new ArrayList<>(sites);
+            return this;
+        }
+
+        /**
+         * @param correction the correction to apply to the data; defaults
+         * to {@link Correction#NONE}
+         * @return this builder
+         */
+        public Builder correction(Correction correction) {
+            this.correction = Objects.requireNonNull(correction);
+            return this;
+        }
+
+        /**
+         * Sets the axes for the Zijderveld plot. The defaults are those of
+         * the main window: vertical projection against X, and north up.
+         *
+         * @param vProjXaxis the x axis of the vertical projection
+         * @param hProjXaxis the x axis of the horizontal projection
+         * @param hProjYaxis the y axis of the horizontal projection
+         * @return this builder
+         */
+        public Builder zplotAxes(MeasurementAxis vProjXaxis,
+                MeasurementAxis hProjXaxis, MeasurementAxis hProjYaxis) {
+            this.vProjXaxis = Objects.requireNonNull(vProjXaxis);
+            this.hProjXaxis = Objects.requireNonNull(hProjXaxis);
+            this.hProjYaxis = Objects.requireNonNull(hProjYaxis);
+            return this;
+        }
+
+        /**
+         * Sets the plot layout. The layout is a string specifying the
+         * visibility, position, and size of each plot, in the format of
+         * the {@code plotSizes} setting (see
+         * {@link Plot#getDimensionsAsString()}). If no layout is set,
+         * the {@code plotSizes} setting is used if present, and otherwise
+         * the default layout.
+         *
+         * @param layout the plot layout
+         * @return this builder
+         */
+        public Builder layout(String layout) {
+            this.layout = layout;
+            return this;
+        }
+
+        /**
+         * @param settings the settings to use for the plots (e.g. font
+         * and labelling options); defaults to no settings, so that each
+         * plot uses its default values
+         * @return this builder
+         */
+        public Builder settings(SettingsSnapshot settings) {
+            this.settings = Objects.requireNonNull(settings);
+            return this;
+        }
+
+        /**
+         * @param rpiEstimate the RPI estimate to display in the RPI plot;
+         * defaults to {@code null}
+         * @return this builder
+         */
+        public Builder rpiEstimate(SuiteRpiEstimate rpiEstimate) {
+            this.rpiEstimate = rpiEstimate;
+            return this;
+        }
+
+        /**
+         * Sets the size of the rendered area in plot co-ordinates. This is
+         * the size of a rendered image at a scale of 1, and the page size
+         * (in points) of a PDF.
+         *
+         * @param width the width of the rendered area
+         * @param height the height of the rendered area
+         * @return this builder
+         */
+        public Builder size(int width, int height) {
+            if (width < 1 || height < 1) {
+                throw new IllegalArgumentException("Invalid size " + width
+                        + "×" + height);
+            }
+            this.width = width;
+            this.height = height;
+            return this;
+        }
+
+        /**
+         * @param unitSize the plot unit size (see
+         * {@link PlotParams#getUnitSize()})
+         * @return this builder
+         */
+        public Builder unitSize(float unitSize) {
+            this.unitSize = unitSize;
+            return this;
+        }
+
+        /**
+         * @return a renderer with the parameters set in this builder
+         */
+        public PlotRenderer build() {
+            return new PlotRenderer(this);
+        }
+    }
+
+    private PlotRenderer(Builder builder) {
+        sample = builder.sample;
+        selectedSamples = Collections.unmodifiableList(
+                builder.selectedSamples == null
+                ? Collections.singletonList(builder.sample)
+                : builder.selectedSamples);
+        selectedSites = Collections.unmodifiableList(builder.selectedSites);
+        correction = builder.correction;
+        vProjXaxis = builder.vProjXaxis;
+        hProjXaxis = builder.hProjXaxis;
+        hProjYaxis = builder.hProjYaxis;
+        layout = builder.layout;
+        settings = builder.settings;
+        rpiEstimate = builder.rpiEstimate;
+        unitSize = builder.unitSize;
+        width = builder.width;
+        height = builder.height;
+    }
+
+    /**
+     * Creates a builder for a renderer.
+     *
+     * @param sample the sample to display in the sample plots
+     * @return a new builder
+     */
+    public static Builder builder(Sample sample) {
+        return new Builder(sample);
+    }
+
+    /**
+     * Creates a builder initialized with the parameters of this renderer.
+     * This can be used, for example, to render the same layout for a
+     * different sample.
+     *
+     * @return a new builder
+     */
+    public Builder toBuilder() {
+        final Builder builder = new Builder(sample);
+        builder.selectedSamples = new ArrayList<>(selectedSamples);
+        builder.selectedSites = selectedSites;
+        builder.correction = correction;
+        builder.vProjXaxis = vProjXaxis;
+        builder.hProjXaxis = hProjXaxis;
+        builder.hProjYaxis = hProjYaxis;
+        builder.layout = layout;
+        builder.settings = settings;
+        builder.rpiEstimate = rpiEstimate;
+        builder.unitSize = unitSize;
+        builder.width = width;
+        builder.height = height;
+        return builder;
+    }
+
+    /**
+     * @return the width of the rendered area in plot co-ordinates
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the height of the rendered area in plot co-ordinates
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    private final class Params implements PlotParams {
+
+        @Override
+        public Sample getSample() {
+            return sample;
+        }
+
+        @Override
+        public List<Sample> getSelectedSamples() {
+            return selectedSamples;
+        }
+
+        @Override
+        public Correction getCorrection() {
+            return correction;
+        }
+
+        @Override
+        public MeasurementAxis getVprojXaxis() {
+            return vProjXaxis;
+        }
+
+        @Override
+        public MeasurementAxis getHprojXaxis() {
+            return hProjXaxis;
+        }
+
+        @Override
+        public MeasurementAxis getHprojYaxis() {
+            return hProjYaxis;
+        }
+
+        @Override
+        public List<Sample> getAllSamplesInSelectedSites() {
+            final List<Sample> samples = new ArrayList<>();
+            for (Site site: selectedSites) {
+                samples.addAll(site.getSamples());
+            }
+            return samples;
+        }
+
+        @Override
+        public String getSetting(String key, String def) {
+            if (layout != null && "plotSizes".equals(key)) {
+                return layout;
+            }
+            return settings.get(key, def);
+        }
+
+        @Override
+        public boolean getSettingBoolean(String key, boolean def) {
+            return settings.getBoolean(key, def);
+        }
+
+        @Override
+        public float getUnitSize() {
+            return unitSize;
+        }
+
+        @Override
+        public SuiteRpiEstimate getSuiteRpiEstimate() {
+            return rpiEstimate;
+        }
+    }
+
+    /**
+     * Creates the set of plots shown in PuffinPlot's main window. Both the
+     * main window and the renderer use this method, so that they always
+     * show the same plots.
+     *
+     * @param params the parameters for the plots
+     * @return all the plots, visible or not, in drawing order
+     */
+    public static List<Plot> createMainPlots(PlotParams params) {
+        final List<Plot> plots = new ArrayList<>(PLOT_FACTORIES.size() + 1);
+        for (Function<PlotParams, Plot> factory: PLOT_FACTORIES) {
+            final Plot plot = factory.apply(params);
+            plots.add(plot);
+            if (plot instanceof ZPlot) {
+                /*
+                 * The legend must be drawn after the Zplot, since it reads
+                 * the order of magnitude from the Zplot's axes.
+                 */
+                plots.add(((ZPlot) plot).getLegend());
+            }
+        }
+        return plots;
+    }
+
+    /**
+     * Creates a new set of plots for this renderer's parameters.
+     *
+     * @return the visible plots, in drawing order
+     */
+    List<Plot> createPlots() {
+        final List<Plot> plots = createMainPlots(new Params());
+        plots.removeIf(plot -> !plot.isVisible());
+        return plots;
+    }
+
+    /**
+     * Draws the visible plots to a graphics context. The graphics
+     * context's rendering hints are replaced with PuffinPlot's standard
+     * hints; its transform is used as it is, so it may be scaled or
+     * translated to render part of the display or to render at a higher
+     * resolution.
+     *
+     * @param graphics the graphics context to which to draw
+     */
+    public void draw(Graphics2D graphics) {
+        draw(graphics, createPlots());
+    }
+
+    /**
+     * Draws a set of plots created by {@link #createPlots()} to a graphics
+     * context, as for {@link #draw(Graphics2D)}. Reusing the same plots for
+     * several drawings saves creating them afresh each time, but they must
+     * not be drawn by more than one thread at once.
+     *
+     * @param graphics the graphics context to which to draw
+     * @param plots the plots to draw
+     */
+    void draw(Graphics2D graphics, List<Plot> plots) {
+        /*
+         * A new hints object is used, since some graphics implementations
+         * modify the object passed to setRenderingHints, and the shared
+         * instance may be in use on another thread.
+         */
+        graphics.setRenderingHints(PuffinRenderingHints.newInstance());
+        graphics.setPaint(Color.BLACK);
+        for (Plot plot: plots) {
+            plot.drawAndRecord(graphics);
+        }
+    }
+
+    /**
+     * Renders the visible plots to an image with a white background.
+     *
+     * @param scale the scale factor from plot co-ordinates to pixels
+     * @return an image of the plots
+     */
+    public BufferedImage renderImage(double scale) {
+        if (!(scale > 0)) {
+            throw new IllegalArgumentException("Invalid scale " + scale);
+        }
+        final BufferedImage image = new BufferedImage(
+                (int) Math.ceil(width * scale),
+                (int) Math.ceil(height * scale),
+                BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+            graphics.scale(scale, scale);
+            draw(graphics);
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * Writes the visible plots to a stream as a PNG image with a white
+     * background. One plot unit is taken as one point (1/72 inch), so a
+     * resolution of 72 dpi produces the same image as
+     * {@code renderImage(1)}. The image is rasterized in strips on all
+     * available processors and encoded as it is produced, so the whole
+     * image is never held in memory. The stream is not closed.
+     *
+     * @param stream the stream to which to write
+     * @param dpi the resolution of the image, in dots per inch
+     * @throws IOException if an error occurred while writing
+     */
+    public void writePng(OutputStream stream, double dpi)
+            throws IOException {
+        writePng(stream, dpi, fraction -> {});
+    }
+
+    /**
+     * Writes the visible plots to a stream as a PNG image, as for
+     * {@link #writePng(OutputStream, double)}, reporting progress as the
+     * image is written. If the calling thread is interrupted, writing
+     * stops with an {@link java.io.InterruptedIOException}.
+     *
+     * @param stream the stream to which to write
+     * @param dpi the resolution of the image, in dots per inch
+     * @param progress receives the fraction of the image written so far,
+     * from 0 to 1
+     * @throws IOException if an error occurred while writing
+     */
+    public void writePng(OutputStream stream, double dpi,
+            DoubleConsumer progress) throws IOException {
+        new TiledPngWriter(this, dpi, PNG_STRIP_HEIGHT,
+                Runtime.getRuntime().availableProcessors()).
+                write(stream, progress);
+    }
+
+    /**
+     * Writes the visible plots to a stream in SVG format. The stream is
+     * not closed.
+     *
+     * @param stream the stream to which to write
+     * @throws IOException if an error occurred while writing
+     */
+    public void writeSvg(OutputStream stream) throws IOException {
+        final DOMImplementation domImpl =
+                GenericDOMImplementation.getDOMImplementation();
+        final org.w3c.dom.Document document = domImpl.createDocument(
+                "http://www.w3.org/2000/svg", "svg", null);
+        final SVGGraphics2D svgGenerator = new SVGGraphics2D(document);
+        svgGenerator.setUnsupportedAttributes(null);
+        svgGenerator.setSVGCanvasSize(new Dimension(width, height));
+        draw(svgGenerator);
+        final Writer writer =
+                new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+        svgGenerator.stream(writer, true);
+        writer.flush();
+    }
+
+    /**
+     * Writes the visible plots to a stream in PDF format, with one page
+     * for each of the specified samples. The stream is closed when the
+     * document is complete.
+     *
+     * @param stream the stream to which to write
+     * @param samples the samples to render, one per page; if empty, a
+     * single page is written for this renderer's sample
+     * @throws IOException if an error occurred while writing
+     */
+    public void writePdf(OutputStream stream, List<Sample> samples)
+            throws IOException {
+        final Document document =
+                new Document(new Rectangle(width, height));
+        try {
+            final PdfWriter writer = PdfWriter.getInstance(document, stream);
+            final DefaultFontMapper mapper = new DefaultFontMapper();
+            document.open();
+            final PdfContentByte content = writer.getDirectContent();
+            final List<Sample> pageSamples = samples.isEmpty()
+                    ? Collections.singletonList(sample) : samples;
+            for (Sample pageSample: pageSamples) {
+                document.newPage();
+                final PlotRenderer pageRenderer = pageSample == sample
+                        ? this : toBuilder().sample(pageSample).build();
+                final Graphics2D graphics = new PdfGraphics2D(content,
+                        width, height, mapper, false, false, 99);
+                try {
+                    pageRenderer.draw(graphics);
+                } finally {
+                    graphics.dispose();
+                }
+            }
+        } catch (DocumentException ex) {
+            throw new IOException(ex);
+        } finally {
+            if (document.isOpen()) {
+                document.close();
+            }
+        }
+    }
+}
@@ -117,7 +117,7 @@ public class SeparateSuiteEqualAreaPlot extends EqualAreaPlot {
             final Point2D meanPoint = project(vector);
             addPoint(null, meanPoint, vector.z>0, firstPoint, !firstPoint);
 
-            if (fisher.isA95Valid()) {
+            if (fisher.isA95Valid() && !isDraft(graphics)) {
                 final GeneralPath pathToFill =
                         new GeneralPath(GeneralPath.WIND_EVEN_ODD, 72);
                 boolean firstEllipsePoint = true;
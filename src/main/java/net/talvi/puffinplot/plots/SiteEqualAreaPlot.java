@@ -167,7 +167,8 @@ public class SiteEqualAreaPlot extends EqualAreaPlot {
     }
     
     private void writeSampleLabel(Sample s, PlotPoint point) {
-        if (params.getSettingBoolean("plots.labelSamplesInSitePlots", false)) {
+        if (params.getSettingBoolean("plots.labelSamplesInSitePlots", false)
+                && !isDraft(cachedGraphics)) {
             final Point2D centre = point.getCentre();
             putText(cachedGraphics, s.getNameOrDepth(),
                     centre.getX(), centre.getY(), Direction.RIGHT,
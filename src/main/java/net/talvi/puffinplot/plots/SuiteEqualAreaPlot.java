@@ -107,7 +107,8 @@ public class SuiteEqualAreaPlot extends EqualAreaPlot {
                 final FisherParams siteMean = site.getFisherParams();
                 if (siteMean != null) {
                     if (params.getSettingBoolean(
-                            "plots.showSiteA95sOnSuitePlot", false)) {
+                            "plots.showSiteA95sOnSuitePlot", false)
+                            && !isDraft(graphics)) {
                         drawSiteA95(siteMean);
                     }
                     final Vec3 meanDirection = siteMean.getMeanDirection();
@@ -163,7 +164,8 @@ public class SuiteEqualAreaPlot extends EqualAreaPlot {
     }
 
     private void writePointLabel(String text, PlotPoint point) {
-        if (params.getSettingBoolean("plots.labelPointsInSuitePlots", false)) {
+        if (params.getSettingBoolean("plots.labelPointsInSuitePlots", false)
+                && !isDraft(cachedGraphics)) {
             final Point2D centre = point.getCentre();
             putText(cachedGraphics, text, centre.getX(), centre.getY(),
                     Direction.RIGHT,
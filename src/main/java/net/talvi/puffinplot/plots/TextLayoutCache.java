@@ -0,0 +1,325 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.talvi.puffinplot.plots;
+
+import java.awt.font.FontRenderContext;
+import java.awt.font.TextLayout;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.text.AttributedCharacterIterator;
+import java.text.AttributedCharacterIterator.Attribute;
+import java.text.AttributedString;
+import java.text.CharacterIterator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import net.talvi.puffinplot.Metrics;
+
+/**
+ * A bounded cache of laid-out text for plot labels.
+ * <p>
+ * Creating a {@link TextLayout} to measure a label is one of the most
+ * expensive parts of drawing a plot, and most labels (axis tick numbers,
+ * treatment levels, sample names, table cells) are the same from one
+ * redraw to the next. This cache stores the layout and measured bounds
+ * of a string, keyed by its text, its text attributes, its rotation, and
+ * the font render context in which it was laid out. When the cache is
+ * full, the least recently used entry is discarded.
+ * <p>
+ * The text itself is still drawn from an attributed string rather than
+ * from the cached layout, so that it is exported as text rather than as
+ * shapes in vector formats such as SVG and PDF.
+ * <p>
+ * The cache is thread-safe. Hit and miss statistics are available from
+ * the cache itself and are also recorded as {@link Metrics} counters.
+ *
+ * @author pont
+ */
+public final class TextLayoutCache {
+
+    /**
+     * The default maximum number of entries in the shared cache.
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private static final TextLayoutCache SHARED =
+            new TextLayoutCache(DEFAULT_CAPACITY);
+
+    private final int capacity;
+    private final Map<Key, CachedLayout> entries;
+    private long hits = 0, misses = 0, evictions = 0;
+
+    /**
+     * A laid-out string and its measured bounds.
+     */
+    static final class CachedLayout {
+        private final AttributedString text;
+        private final TextLayout layout;
+        private final Rectangle2D bounds;
+        private final Rectangle2D unrotatedBounds;
+
+        private CachedLayout(AttributedString text, TextLayout layout,
+                double θ) {
+            this.text = text;
+            this.layout = layout;
+            this.bounds = layout.getBounds();
+            this.unrotatedBounds = AffineTransform.getRotateInstance(-θ).
+                    createTransformedShape(bounds).getBounds2D();
+        }
+
+        /**
+         * @return the text, with all its attributes applied; the returned
+         * object must not be modified
+         */
+        AttributedString getText() {
+            return text;
+        }
+
+        /**
+         * @return the layout of the text
+         */
+        TextLayout getLayout() {
+            return layout;
+        }
+
+        /**
+         * @return the bounds of the text in its own (rotated) co-ordinate
+         * system; the returned object must not be modified
+         */
+        Rectangle2D getBounds() {
+            return bounds;
+        }
+
+        /**
+         * @return the bounds of the text, back-rotated into the co-ordinate
+         * system of the plot; the returned object must not be modified
+         */
+        Rectangle2D getUnrotatedBounds() {
+            return unrotatedBounds;
+        }
+    }
+
+    private static final class Key {
+        private final String text;
+        /*
+         * For a plain string, the map of attributes applied to the whole
+         * string; for an attributed string, a list of alternating run
+         * limits and attribute maps.
+         */
+        private final Object style;
+        private final double θ;
+        private final FontRenderContext frc;
+        private final int hash;
+
+        Key(String text, Object style, double θ, FontRenderContext frc) {
+            this.text = text;
+            this.style = style;
+            this.θ = θ;
+            this.frc = frc;
+            this.hash = Objects.hash(text, style, θ, frc);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) other;
+            return hash == key.hash
+                    && Double.compare(θ, key.θ) == 0
+                    && text.equals(key.text)
+                    && style.equals(key.style)
+                    && frc.equals(key.frc);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Creates a new, empty cache.
+     *
+     * @param capacity the maximum number of entries to hold (at least 1)
+     */
+    public TextLayoutCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<Key, CachedLayout>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<Key, CachedLayout> eldest) {
+                if (size() > TextLayoutCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cache shared by all plots.
+     *
+     * @return the shared cache
+     */
+    public static TextLayoutCache getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the layout of a plain string with the specified attributes
+     * applied to the whole string.
+     *
+     * @param text the text to lay out
+     * @param attributes the attributes of the text
+     * @param θ the rotation of the text, in radians
+     * @param frc the font render context, including the rotation
+     * @return the laid-out text
+     */
+    CachedLayout get(String text, Map<? extends Attribute, ?> attributes,
+            double θ, FontRenderContext frc) {
+        final CachedLayout cached = lookUp(new Key(text, attributes, θ, frc));
+        if (cached != null) {
+            return cached;
+        }
+        final AttributedString as = new AttributedString(text, attributes);
+        final CachedLayout entry =
+                new CachedLayout(as, new TextLayout(as.getIterator(), frc), θ);
+        store(new Key(text, Collections.unmodifiableMap(
+                new HashMap<>(attributes)), θ, frc), entry);
+        return entry;
+    }
+
+    /**
+     * Returns the layout of an attributed string.
+     *
+     * @param text the text to lay out, with all its attributes applied
+     * @param θ the rotation of the text, in radians
+     * @param frc the font render context, including the rotation
+     * @return the laid-out text
+     */
+    CachedLayout get(AttributedString text, double θ, FontRenderContext frc) {
+        final AttributedCharacterIterator iterator = text.getIterator();
+        final StringBuilder builder = new StringBuilder(
+                iterator.getEndIndex() - iterator.getBeginIndex());
+        final List<Object> runs = new ArrayList<>(4);
+        for (char c = iterator.first(); c != CharacterIterator.DONE;
+                c = iterator.next()) {
+            builder.append(c);
+            if (iterator.getIndex() == iterator.getRunStart()) {
+                runs.add(iterator.getRunLimit());
+                /*
+                 * The iterator's map may be a live view of the string's
+                 * attributes, so the key holds a copy.
+                 */
+                runs.add(new HashMap<>(iterator.getAttributes()));
+            }
+        }
+        final Key key = new Key(builder.toString(), runs, θ, frc);
+        final CachedLayout cached = lookUp(key);
+        if (cached != null) {
+            return cached;
+        }
+        final AttributedString copy =
+                new AttributedString(text.getIterator());
+        final CachedLayout entry =
+                new CachedLayout(copy,
+                        new TextLayout(copy.getIterator(), frc), θ);
+        store(key, entry);
+        return entry;
+    }
+
+    private synchronized CachedLayout lookUp(Key key) {
+        final CachedLayout entry = entries.get(key);
+        if (entry != null) {
+            hits++;
+            Metrics.increment("plot.textLayoutHits");
+        } else {
+            misses++;
+            Metrics.increment("plot.textLayoutMisses");
+        }
+        return entry;
+    }
+
+    private synchronized void store(Key key, CachedLayout entry) {
+        entries.put(key, entry);
+    }
+
+    /**
+     * Removes all entries from the cache. The statistics are not reset.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Resets the hit, miss, and eviction counts to zero.
+     */
+    public synchronized void resetStatistics() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    /**
+     * @return the number of requests which were satisfied from the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of requests for which text had to be laid out
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of entries discarded to keep the cache within
+     * its capacity
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return the number of entries currently in the cache
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the maximum number of entries in the cache
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+}
@@ -20,11 +20,8 @@ import java.awt.Color;
 import java.awt.FontMetrics;
 import java.awt.Graphics2D;
 import java.awt.Shape;
-import java.awt.font.TextLayout;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
-import java.text.AttributedCharacterIterator;
-import java.text.AttributedString;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -44,7 +41,7 @@ class TextLinePoint implements PlotPoint {
     private final double yPos;
     private final List<Double> xSpacing;
     private Rectangle2D bbox;
-    private final List<AttributedCharacterIterator> strings;
+    private final List<String> strings;
     private final double xMin;
     private final Color colour;
 
@@ -65,13 +62,12 @@ class TextLinePoint implements PlotPoint {
         for (int i = 0; i < values.size(); i++) {
             final String s = values.get(i);
             final double space = xSpacing.get(i);
-            final AttributedString as = new AttributedString(s);
-            plot.applyTextAttributes(as);
-            final AttributedCharacterIterator ai = as.getIterator();
-            strings.add(ai);
+            strings.add(s);
             final double x = xMin + xPos;
-            final Rectangle2D b =
-                    metrics.getStringBounds(ai, 0, s.length(), graphics);
+            final Rectangle2D b = s.isEmpty()
+                    ? metrics.getStringBounds(s, graphics)
+                    : metrics.getStringBounds(plot.getTextLayout(graphics, s, 0)
+                            .getText().getIterator(), 0, s.length(), graphics);
             final Rectangle2D b2 = new Rectangle2D.Double(b.getMinX() + x,
                     b.getMinY() + yPos, b.getWidth(), b.getHeight());
             if (bbox == null) {
@@ -97,7 +93,13 @@ class TextLinePoint implements PlotPoint {
 
         double x = xMin + 10;
         for (int i = 0; i < strings.size(); i++) {
-            final AttributedCharacterIterator s = strings.get(i);
+            final String s = strings.get(i);
+            if (s.isEmpty()) {
+                x += xSpacing.get(i);
+                continue;
+            }
+            final TextLayoutCache.CachedLayout layout =
+                    plot.getTextLayout(g, s, 0);
             /*
              * Note: TextLayout is more accurate than
              * FontMetrics::getStringBounds, since the latter uses a plain
@@ -106,11 +108,11 @@ class TextLinePoint implements PlotPoint {
              * one-pixel horizontal offset between negative and non-negative
              * numbers; so far I've found no possible remedy for this.
              */
-            final TextLayout tl = new TextLayout(s, g.getFontRenderContext());
-            final Rectangle2D bounds = tl.getBounds();
+            final Rectangle2D bounds = layout.getBounds();
             final double space = xSpacing.get(i);
             final double xOffset = space - bounds.getWidth();
-            g.drawString(s, (float) (x + xOffset), (float) yPos);
+            g.drawString(layout.getText().getIterator(),
+                    (float) (x + xOffset), (float) yPos);
             x += space;
         }
     }
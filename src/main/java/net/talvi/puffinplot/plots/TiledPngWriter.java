@@ -0,0 +1,388 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.talvi.puffinplot.plots;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.DoubleConsumer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a rendering of a set of plots as a PNG image, rasterizing the
+ * image in horizontal strips in parallel.
+ * <p>
+ * Each strip is drawn into its own small image by a worker thread and
+ * then encoded and compressed into the PNG stream in order. Each worker
+ * thread creates the plots once and reuses them for all the strips it
+ * draws. The strips held in memory at once are limited by a byte budget,
+ * so very large images (e.g. a full layout at 1200 dpi) can be written
+ * without ever holding the whole image, or more than a few strips of
+ * it, in memory.
+ *
+ * @author pont
+ */
+final class TiledPngWriter {
+
+    private static final byte[] PNG_SIGNATURE =
+            {(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+    private static final int IDAT_CHUNK_SIZE = 1 << 16;
+    private static final double POINTS_PER_INCH = 72;
+    private static final double METRES_PER_INCH = 0.0254;
+
+    /**
+     * The default limit on the memory used by rasterized strips which
+     * are waiting to be encoded.
+     */
+    static final long DEFAULT_MAX_PENDING_BYTES = 64L << 20;
+
+    private final PlotRenderer renderer;
+    private final double dpi;
+    private final int stripHeight;
+    private final int threads;
+    private final long maxPendingBytes;
+
+    /**
+     * Creates a new PNG writer.
+     *
+     * @param renderer the renderer for the plots
+     * @param dpi the resolution in dots per inch, taking one plot unit
+     *   as one point (1/72 inch)
+     * @param stripHeight the height of each rasterized strip in pixels
+     * @param threads the number of threads to use for rasterization
+     */
+    TiledPngWriter(PlotRenderer renderer, double dpi, int stripHeight,
+            int threads) {
+        this(renderer, dpi, stripHeight, threads, DEFAULT_MAX_PENDING_BYTES);
+    }
+
+    /**
+     * Creates a new PNG writer with a specified limit on the memory used
+     * by rasterized strips. At least one strip is always rasterized at a
+     * time, however small the limit.
+     *
+     * @param renderer the renderer for the plots
+     * @param dpi the resolution in dots per inch, taking one plot unit
+     *   as one point (1/72 inch)
+     * @param stripHeight the height of each rasterized strip in pixels
+     * @param threads the maximum number of threads to use for rasterization
+     * @param maxPendingBytes the maximum number of bytes of rasterized
+     *   strips to hold in memory at once
+     */
+    TiledPngWriter(PlotRenderer renderer, double dpi, int stripHeight,
+            int threads, long maxPendingBytes) {
+        if (!(dpi > 0)) {
+            throw new IllegalArgumentException("Invalid resolution " + dpi);
+        }
+        if (stripHeight < 1 || threads < 1) {
+            throw new IllegalArgumentException(
+                    "Strip height and thread count must be positive");
+        }
+        this.renderer = renderer;
+        this.dpi = dpi;
+        this.stripHeight = stripHeight;
+        this.threads = threads;
+        this.maxPendingBytes = maxPendingBytes;
+    }
+
+    /**
+     * @return the scale factor from plot co-ordinates to pixels
+     */
+    double getScale() {
+        return dpi / POINTS_PER_INCH;
+    }
+
+    /**
+     * @return the width of the image in pixels
+     */
+    int getWidth() {
+        return (int) Math.ceil(renderer.getWidth() * getScale());
+    }
+
+    /**
+     * @return the height of the image in pixels
+     */
+    int getHeight() {
+        return (int) Math.ceil(renderer.getHeight() * getScale());
+    }
+
+    /**
+     * Returns the maximum number of rasterized strips to hold in memory
+     * at once: enough to keep every thread busy, as far as the memory
+     * limit allows, and never less than one.
+     *
+     * @return the maximum number of strips in memory at once
+     */
+    int getMaxPendingStrips() {
+        final long stripBytes = 4L * getWidth() * stripHeight;
+        return (int) Math.max(1,
+                Math.min(2L * threads, maxPendingBytes / stripBytes));
+    }
+
+    /**
+     * Writes the PNG image to a stream. The stream is not closed.
+     *
+     * @param stream the stream to which to write
+     * @throws IOException if an error occurs during writing
+     */
+    void write(OutputStream stream) throws IOException {
+        write(stream, fraction -> {});
+    }
+
+    /**
+     * Writes the PNG image to a stream, reporting progress as each strip
+     * is written. The stream is not closed. If the calling thread is
+     * interrupted, writing stops with an {@link InterruptedIOException}.
+     *
+     * @param stream the stream to which to write
+     * @param progress receives the fraction of the image written so far,
+     *   from 0 to 1, after each strip
+     * @throws IOException if an error occurs during writing
+     */
+    void write(OutputStream stream, DoubleConsumer progress)
+            throws IOException {
+        final int width = getWidth();
+        final int height = getHeight();
+        final DataOutputStream out = new DataOutputStream(stream);
+        out.write(PNG_SIGNATURE);
+        writeHeader(out, width, height);
+        writePhysicalDimensions(out);
+
+        final int stripCount = (height + stripHeight - 1) / stripHeight;
+        final int maxPending = getMaxPendingStrips();
+        final ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(Math.min(threads, maxPending), stripCount));
+        /*
+         * Each worker thread keeps its own set of plots, since a plot
+         * records its points as it draws and so cannot be shared between
+         * threads drawing at the same time.
+         */
+        final ThreadLocal<List<Plot>> plots =
+                ThreadLocal.withInitial(renderer::createPlots);
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try (IdatOutputStream idat = new IdatOutputStream(out);
+                DeflaterOutputStream deflated =
+                        new DeflaterOutputStream(idat, deflater,
+                                IDAT_CHUNK_SIZE)) {
+            /*
+             * Strips are submitted a few at a time ahead of the one being
+             * encoded, which keeps the threads busy while bounding the
+             * memory used by rasterized strips.
+             */
+            final Deque<Future<BufferedImage>> pending = new ArrayDeque<>();
+            int nextStrip = 0;
+            final byte[] row = new byte[1 + 3 * width];
+            final byte[] previous = new byte[1 + 3 * width];
+            for (int strip = 0; strip < stripCount; strip++) {
+                while (nextStrip < stripCount
+                        && pending.size() < maxPending) {
+                    final int y = nextStrip * stripHeight;
+                    final int h = Math.min(stripHeight, height - y);
+                    pending.add(executor.submit(
+                            () -> rasterize(plots.get(), width, y, h)));
+                    nextStrip++;
+                }
+                final BufferedImage image = getStrip(pending.remove());
+                final int[] pixels = ((DataBufferInt) image.getRaster().
+                        getDataBuffer()).getData();
+                for (int y = 0; y < image.getHeight(); y++) {
+                    encodeRow(pixels, y * width, width, row, previous);
+                    deflated.write(row);
+                }
+                progress.accept((strip + 1) / (double) stripCount);
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException(
+                            "Interrupted while writing PNG");
+                }
+            }
+            deflated.finish();
+        } finally {
+            executor.shutdownNow();
+            deflater.end();
+        }
+        writeChunk(out, "IEND", new byte[0]);
+        out.flush();
+    }
+
+    private static BufferedImage getStrip(Future<BufferedImage> future)
+            throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            final InterruptedIOException interrupted =
+                    new InterruptedIOException(
+                            "Interrupted while rendering PNG");
+            interrupted.initCause(ex);
+            throw interrupted;
+        } catch (ExecutionException ex) {
+            throw new IOException("Error rendering PNG", ex.getCause());
+        }
+    }
+
+    private BufferedImage rasterize(List<Plot> plots, int width, int y,
+            int height) {
+        final BufferedImage image =
+                new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.translate(0, -y);
+            graphics.scale(getScale(), getScale());
+            renderer.draw(graphics, plots);
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * Encodes one row of RGB pixels with the PNG "Up" filter, which
+     * compresses well for plots with large uniform areas. The first byte
+     * of {@code previous} is ignored; for the first row it must be all
+     * zeros.
+     */
+    private static void encodeRow(int[] pixels, int offset, int width,
+            byte[] row, byte[] previous) {
+        row[0] = 2; // filter type: Up
+        for (int x = 0; x < width; x++) {
+            final int rgb = pixels[offset + x];
+            final int i = 1 + 3 * x;
+            row[i] = (byte) (rgb >> 16);
+            row[i + 1] = (byte) (rgb >> 8);
+            row[i + 2] = (byte) rgb;
+        }
+        /*
+         * The filtered bytes are written in place, so the unfiltered row
+         * is reconstructed for the next row's reference.
+         */
+        for (int i = 1; i < row.length; i++) {
+            final byte raw = row[i];
+            row[i] = (byte) (raw - previous[i]);
+            previous[i] = raw;
+        }
+    }
+
+    private static void writeHeader(DataOutputStream out, int width,
+            int height) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(13);
+        final DataOutputStream data = new DataOutputStream(bytes);
+        data.writeInt(width);
+        data.writeInt(height);
+        data.writeByte(8); // bit depth
+        data.writeByte(2); // colour type: RGB
+        data.writeByte(0); // compression method: deflate
+        data.writeByte(0); // filter method: adaptive
+        data.writeByte(0); // interlace method: none
+        writeChunk(out, "IHDR", bytes.toByteArray());
+    }
+
+    private void writePhysicalDimensions(DataOutputStream out)
+            throws IOException {
+        final int pixelsPerMetre = (int) Math.round(dpi / METRES_PER_INCH);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(9);
+        final DataOutputStream data = new DataOutputStream(bytes);
+        data.writeInt(pixelsPerMetre);
+        data.writeInt(pixelsPerMetre);
+        data.writeByte(1); // unit: metre
+        writeChunk(out, "pHYs", bytes.toByteArray());
+    }
+
+    private static void writeChunk(DataOutputStream out, String type,
+            byte[] data) throws IOException {
+        writeChunk(out, type, data, data.length);
+    }
+
+    private static void writeChunk(DataOutputStream out, String type,
+            byte[] data, int length) throws IOException {
+        final byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        final CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * A stream which splits the compressed image data into IDAT chunks.
+     * Closing it flushes the last chunk but does not close the underlying
+     * stream.
+     */
+    private static final class IdatOutputStream extends OutputStream {
+        private final DataOutputStream out;
+        private final byte[] buffer = new byte[IDAT_CHUNK_SIZE];
+        private int count = 0;
+
+        IdatOutputStream(DataOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                flushChunk();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length)
+                throws IOException {
+            while (length > 0) {
+                if (count == buffer.length) {
+                    flushChunk();
+                }
+                final int n = Math.min(length, buffer.length - count);
+                System.arraycopy(bytes, offset, buffer, count, n);
+                count += n;
+                offset += n;
+                length -= n;
+            }
+        }
+
+        private void flushChunk() throws IOException {
+            if (count > 0) {
+                writeChunk(out, "IDAT", buffer, count);
+                count = 0;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flushChunk();
+        }
+    }
+}
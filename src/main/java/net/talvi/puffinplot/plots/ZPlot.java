@@ -22,24 +22,16 @@ import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.text.AttributedString;
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
 
 import net.talvi.puffinplot.Util;
 import net.talvi.puffinplot.data.Correction;
 import net.talvi.puffinplot.data.MeasurementAxis;
 import net.talvi.puffinplot.data.PcaValues;
 import net.talvi.puffinplot.data.Sample;
-import net.talvi.puffinplot.data.TreatmentStep;
-import net.talvi.puffinplot.data.TreatmentStepMomentComparator;
-import net.talvi.puffinplot.data.Vec3;
 
 import static java.lang.Math.atan;
 import static java.lang.Math.cos;
 import static java.lang.Math.sin;
-import static java.util.Collections.max;
-import static java.util.Collections.min;
 
 /**
  * A Zijderveld plot for a sample's demagnetization data. The vertical
@@ -53,6 +45,10 @@ public class ZPlot extends Plot {
 
     private ZplotAxes axes;
     private final ZplotLegend legend;
+    private final ZplotProjection projection = new ZplotProjection();
+    private int pointsVersion = -1;
+    private Rectangle2D pointsDimensions = null;
+    private float pointsUnitSize = Float.NaN;
 
     /**
      * Creates a Zijderveld plot with the supplied parameters.
@@ -64,19 +60,6 @@ public class ZPlot extends Plot {
         legend = new ZplotLegend(params);
     }
 
-    private static Rectangle2D extent(List<TreatmentStep> sample, Correction c,
-            MeasurementAxis axis1, MeasurementAxis axis2) {
-        final Comparator<TreatmentStep> xComp =
-                new TreatmentStepMomentComparator(axis1, c);
-        final Comparator<TreatmentStep> yComp =
-                new TreatmentStepMomentComparator(axis2, c);
-        final double xMin = min(sample, xComp).getMoment(c).getComponent(axis1);
-        final double xMax = max(sample, xComp).getMoment(c).getComponent(axis1);
-        final double yMin = min(sample, yComp).getMoment(c).getComponent(axis2);
-        final double yMax = max(sample, yComp).getMoment(c).getComponent(axis2);
-        return new Rectangle2D.Double(xMin, yMin, xMax-xMin, yMax-yMin);
-    }
-    
     /**
      * Draws a line indicating a PCA direction.
      * 
@@ -142,24 +125,19 @@ public class ZPlot extends Plot {
     @Override
     public void draw(Graphics2D graphics) {
         final Sample sample = params.getSample();
-        if (sample == null) {
-            return;
-        }
-        final List<TreatmentStep> steps = sample.getVisibleTreatmentSteps();
-        if (steps.isEmpty()) {
+        if (sample == null || !sample.hasTreatmentSteps()) {
             return;
         }
-        
-        clearPoints();
         final Correction correction = params.getCorrection();
         final MeasurementAxis vProjXax = params.getVprojXaxis();
         final MeasurementAxis hProjXax = params.getHprojXaxis();
         final MeasurementAxis hProjYax = params.getHprojYaxis();
+        projection.update(sample, correction, hProjXax, hProjYax, vProjXax);
+        final int nSteps = projection.size();
+        if (nSteps == 0) {
+            return;
+        }
         
-        final Rectangle2D extent1 =
-                extent(steps, correction, hProjXax, hProjYax);
-        final Rectangle2D extent2 =
-                extent(steps, correction, vProjXax, MeasurementAxis.MINUSZ);
         final Rectangle2D axisDimensions =
                 cropRectangle(getDimensions(), 300, 300, 200, 200);
                 
@@ -170,8 +148,19 @@ public class ZPlot extends Plot {
             hProjYax
         };
         
-        axes = new ZplotAxes(extent1.createUnion(extent2), axisDimensions,
-                vProjXax, hProjAxes, this);
+        /*
+         * The axes and points only depend on the projections and the plot's
+         * size, so they can be reused if neither has changed. Point
+         * colours are determined by the selection state when they are drawn.
+         */
+        final boolean pointsCurrent = axes != null
+                && pointsVersion == projection.getVersion()
+                && axisDimensions.equals(pointsDimensions)
+                && pointsUnitSize == getUnitSize();
+        if (!pointsCurrent) {
+            axes = new ZplotAxes(projection.getExtent(), axisDimensions,
+                    vProjXax, hProjAxes, this);
+        }
         
         graphics.setColor(Color.BLACK);
         graphics.setStroke(getStroke());
@@ -181,41 +170,25 @@ public class ZPlot extends Plot {
         final double xOffset = axes.getXOffset();
         final double yOffset = axes.getYOffset();
         
-        /*
-         * We keep track of the points used for the PCA calculation in order to
-         * calculate the length for the short-format PCA fit line.
-         */
-        final List<Point2D> pcaPointsH = new ArrayList<>(steps.size()+1);
-        final List<Point2D> pcaPointsV = new ArrayList<>(steps.size()+1);
-
-        
-        boolean first = true;
-        for (TreatmentStep step: steps) {
-            final Vec3 v = step.getMoment(correction);
-            // Plot the point in the horizontal plane
-            final double x = xOffset + v.getComponent(hProjXax) * scale;
-            final double y = yOffset - v.getComponent(hProjYax) * scale;
-            final Point2D point = new Point2D.Double(x, y);
-            addPoint(step, point, true, first, !first);
-            if (step.isInPca()) {
-                pcaPointsH.add(point);
+        if (!pointsCurrent) {
+            clearPoints();
+            // Plot the points in the horizontal plane...
+            for (int i = 0; i < nSteps; i++) {
+                addPoint(projection.getStep(i), new Point2D.Double(
+                        xOffset + projection.getHx(i) * scale,
+                        yOffset - projection.getHy(i) * scale),
+                        true, i == 0, i > 0);
             }
-            first = false;
-        }
-        
-        first = true;
-        for (TreatmentStep step: steps) {
-            Vec3 v = step.getMoment(correction);
-            // Now plot the point in the vertical plane.
-            final double x = xOffset + v.getComponent(vProjXax) * scale;
-            final double y =
-                    yOffset - v.getComponent(MeasurementAxis.MINUSZ) * scale;
-            final Point2D point = new Point2D.Double(x, y);
-            addPoint(step, point, false, first, !first);
-            if (step.isInPca()) {
-                pcaPointsV.add(point);
+            // ... and in the vertical plane.
+            for (int i = 0; i < nSteps; i++) {
+                addPoint(projection.getStep(i), new Point2D.Double(
+                        xOffset + projection.getVx(i) * scale,
+                        yOffset - projection.getVy(i) * scale),
+                        false, i == 0, i > 0);
             }
-            first = false;
+            pointsVersion = projection.getVersion();
+            pointsDimensions = axisDimensions;
+            pointsUnitSize = getUnitSize();
         }
         
         final PcaValues pca = sample.getPcaValues();
@@ -223,12 +196,6 @@ public class ZPlot extends Plot {
                 params.getSetting("plots.zplotPcaDisplay", "Long");
         final double lineScale = "Long".equals(pcaStyle) ? 0.9 : 1.0;
         if (pca != null && !"None".equals(pcaStyle)) {
-            if (pca.isAnchored()) {
-                final Point2D origin = new Point2D.Double(axes.getXOffset(),
-                        axes.getYOffset());
-                pcaPointsH.add(origin);
-                pcaPointsV.add(origin);
-            }
             /*
              * If the PCA line style is "Short", this clip rectangle will be
              * overwritten.
@@ -240,7 +207,7 @@ public class ZPlot extends Plot {
             final double x1 = pca.getOrigin().getComponent(hProjXax) * scale;
             final double y1 = -pca.getOrigin().getComponent(hProjYax) * scale;
             if ("Short".equals(pcaStyle)) {
-                clipRectangle = Util.envelope(pcaPointsH);
+                clipRectangle = pcaEnvelope(true, pca.isAnchored());
             }
             
             drawPcaLine(graphics, xOffset + x1, yOffset + y1,
@@ -273,7 +240,7 @@ public class ZPlot extends Plot {
                  * no consistent plane onto which the PCA line can be projected.
                  */
                 if ("Short".equals(pcaStyle)) {
-                    clipRectangle = Util.envelope(pcaPointsV);
+                    clipRectangle = pcaEnvelope(false, pca.isAnchored());
                 }
                 drawPcaLine(graphics, xOffset + x2, yOffset + y2,
                         Math.PI / 2 + incCorr,
@@ -283,6 +250,48 @@ public class ZPlot extends Plot {
         drawPoints(graphics);
     }
 
+    /**
+     * Returns the smallest rectangle enclosing the plotted points which are
+     * used for PCA, in one of the projections. The plotted points are
+     * stored with the horizontal projection first, followed by the vertical
+     * projection.
+     * 
+     * @param horizontal {@code true} for the horizontal projection,
+     * {@code false} for the vertical projection
+     * @param includeOrigin {@code true} to include the origin of the axes
+     * @return the enclosing rectangle, or {@code null} if there are no
+     * points to enclose
+     */
+    private Rectangle2D pcaEnvelope(boolean horizontal, boolean includeOrigin) {
+        final int nSteps = points.size() / 2;
+        final int offset = horizontal ? 0 : nSteps;
+        double xMin = Double.POSITIVE_INFINITY;
+        double xMax = Double.NEGATIVE_INFINITY;
+        double yMin = Double.POSITIVE_INFINITY;
+        double yMax = Double.NEGATIVE_INFINITY;
+        boolean empty = true;
+        for (int i = offset; i < offset + nSteps; i++) {
+            final PlotPoint point = points.get(i);
+            if (point.getTreatmentStep().isInPca()) {
+                final Point2D centre = point.getCentre();
+                xMin = Math.min(xMin, centre.getX());
+                xMax = Math.max(xMax, centre.getX());
+                yMin = Math.min(yMin, centre.getY());
+                yMax = Math.max(yMax, centre.getY());
+                empty = false;
+            }
+        }
+        if (includeOrigin) {
+            xMin = Math.min(xMin, axes.getXOffset());
+            xMax = Math.max(xMax, axes.getXOffset());
+            yMin = Math.min(yMin, axes.getYOffset());
+            yMax = Math.max(yMax, axes.getYOffset());
+            empty = false;
+        }
+        return empty ? null :
+                new Rectangle2D.Double(xMin, yMin, xMax - xMin, yMax - yMin);
+    }
+
     /**
      * Projects a declination for plotting on non-standard axes.
      * 
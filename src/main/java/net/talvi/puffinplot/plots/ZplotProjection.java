@@ -0,0 +1,269 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.talvi.puffinplot.plots;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.List;
+
+import net.talvi.puffinplot.data.Correction;
+import net.talvi.puffinplot.data.MeasurementAxis;
+import net.talvi.puffinplot.data.Sample;
+import net.talvi.puffinplot.data.TreatmentStep;
+import net.talvi.puffinplot.data.Vec3;
+
+/**
+ * The projections of a sample's visible treatment steps onto the
+ * horizontal and vertical planes of a Zijderveld plot, in data
+ * coordinates.
+ * <p>
+ * The corrected moment of each step is calculated once and its projected
+ * components are stored in primitive arrays, which are reused for later
+ * updates. {@link #update(Sample, Correction, MeasurementAxis,
+ * MeasurementAxis, MeasurementAxis)} only recalculates the projections if
+ * the sample, its visible steps, their moments or orientations, the
+ * correction, or the projection axes have changed; checking this allocates
+ * nothing. Changes to selection and PCA flags do not affect the projections.
+ *
+ * @author pont
+ */
+final class ZplotProjection {
+
+    private Sample sample = null;
+    private int size = 0;
+    private TreatmentStep[] steps = new TreatmentStep[0];
+    private Vec3[] moments = new Vec3[0];
+    private double[] orientations = new double[0];
+    private double[] hx = new double[0], hy = new double[0];
+    private double[] vx = new double[0], vy = new double[0];
+    private Correction.Rotation rotation = null;
+    private boolean empty, magDevAppliedToFormation;
+    private MeasurementAxis hProjXaxis, hProjYaxis, vProjXaxis;
+    private Rectangle2D extent = null;
+    private int version = 0;
+
+    /**
+     * Brings the projections up to date.
+     *
+     * @param sample the sample to project
+     * @param correction the correction to apply to the moments
+     * @param hProjXaxis the x axis of the horizontal projection
+     * @param hProjYaxis the y axis of the horizontal projection
+     * @param vProjXaxis the x axis of the vertical projection
+     * @return {@code true} if the projections were recalculated
+     */
+    boolean update(Sample sample, Correction correction,
+            MeasurementAxis hProjXaxis, MeasurementAxis hProjYaxis,
+            MeasurementAxis vProjXaxis) {
+        if (isCurrent(sample, correction, hProjXaxis, hProjYaxis,
+                vProjXaxis)) {
+            return false;
+        }
+        this.sample = sample;
+        this.rotation = correction.getRotation();
+        this.empty = correction.includesEmpty();
+        this.magDevAppliedToFormation =
+                correction.isMagDevAppliedToFormation();
+        this.hProjXaxis = hProjXaxis;
+        this.hProjYaxis = hProjYaxis;
+        this.vProjXaxis = vProjXaxis;
+        final List<TreatmentStep> allSteps = sample.getTreatmentSteps();
+        ensureCapacity(allSteps.size());
+        size = 0;
+        double hxMin = Double.POSITIVE_INFINITY;
+        double hxMax = Double.NEGATIVE_INFINITY;
+        double hyMin = Double.POSITIVE_INFINITY;
+        double hyMax = Double.NEGATIVE_INFINITY;
+        double vxMin = Double.POSITIVE_INFINITY;
+        double vxMax = Double.NEGATIVE_INFINITY;
+        double vyMin = Double.POSITIVE_INFINITY;
+        double vyMax = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < allSteps.size(); i++) {
+            final TreatmentStep step = allSteps.get(i);
+            if (step.isHidden()) {
+                continue;
+            }
+            final Vec3 v = step.getMoment(correction);
+            steps[size] = step;
+            moments[size] = step.getMoment();
+            storeOrientation(step, size);
+            hx[size] = v.getComponent(hProjXaxis);
+            hy[size] = v.getComponent(hProjYaxis);
+            vx[size] = v.getComponent(vProjXaxis);
+            vy[size] = v.getComponent(MeasurementAxis.MINUSZ);
+            hxMin = Math.min(hxMin, hx[size]);
+            hxMax = Math.max(hxMax, hx[size]);
+            hyMin = Math.min(hyMin, hy[size]);
+            hyMax = Math.max(hyMax, hy[size]);
+            vxMin = Math.min(vxMin, vx[size]);
+            vxMax = Math.max(vxMax, vx[size]);
+            vyMin = Math.min(vyMin, vy[size]);
+            vyMax = Math.max(vyMax, vy[size]);
+            size++;
+        }
+        // Release references to steps which are no longer displayed.
+        Arrays.fill(steps, size, steps.length, null);
+        Arrays.fill(moments, size, moments.length, null);
+        if (size == 0) {
+            extent = null;
+        } else {
+            final Rectangle2D hExtent = new Rectangle2D.Double(hxMin, hyMin,
+                    hxMax - hxMin, hyMax - hyMin);
+            final Rectangle2D vExtent = new Rectangle2D.Double(vxMin, vyMin,
+                    vxMax - vxMin, vyMax - vyMin);
+            extent = hExtent.createUnion(vExtent);
+        }
+        version++;
+        return true;
+    }
+
+    private boolean isCurrent(Sample sample, Correction correction,
+            MeasurementAxis hProjXaxis, MeasurementAxis hProjYaxis,
+            MeasurementAxis vProjXaxis) {
+        if (sample != this.sample
+                || correction.getRotation() != rotation
+                || correction.isMagDevAppliedToFormation()
+                    != magDevAppliedToFormation
+                /*
+                 * An empty-slot correction depends on another sample's
+                 * data, so the projections are always recalculated.
+                 */
+                || correction.includesEmpty() || empty
+                || hProjXaxis != this.hProjXaxis
+                || hProjYaxis != this.hProjYaxis
+                || vProjXaxis != this.vProjXaxis) {
+            return false;
+        }
+        final boolean orientationUsed = correction.includesSample();
+        final List<TreatmentStep> allSteps = sample.getTreatmentSteps();
+        int visible = 0;
+        for (int i = 0; i < allSteps.size(); i++) {
+            final TreatmentStep step = allSteps.get(i);
+            if (step.isHidden()) {
+                continue;
+            }
+            if (visible >= size || steps[visible] != step
+                    || moments[visible] != step.getMoment()
+                    || (orientationUsed
+                        && !isOrientationUnchanged(step, visible))) {
+                return false;
+            }
+            visible++;
+        }
+        return visible == size;
+    }
+
+    private void storeOrientation(TreatmentStep step, int index) {
+        final int base = index * 5;
+        orientations[base] = step.getSampAz();
+        orientations[base + 1] = step.getSampDip();
+        orientations[base + 2] = step.getFormAz();
+        orientations[base + 3] = step.getFormDip();
+        orientations[base + 4] = step.getMagDev();
+    }
+
+    private boolean isOrientationUnchanged(TreatmentStep step, int index) {
+        final int base = index * 5;
+        return Double.compare(orientations[base], step.getSampAz()) == 0
+                && Double.compare(orientations[base + 1],
+                        step.getSampDip()) == 0
+                && Double.compare(orientations[base + 2],
+                        step.getFormAz()) == 0
+                && Double.compare(orientations[base + 3],
+                        step.getFormDip()) == 0
+                && Double.compare(orientations[base + 4],
+                        step.getMagDev()) == 0;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (steps.length >= capacity) {
+            return;
+        }
+        steps = new TreatmentStep[capacity];
+        moments = new Vec3[capacity];
+        orientations = new double[capacity * 5];
+        hx = new double[capacity];
+        hy = new double[capacity];
+        vx = new double[capacity];
+        vy = new double[capacity];
+    }
+
+    /**
+     * @return the number of projected (that is, visible) treatment steps
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param index the index of a projected treatment step
+     * @return the treatment step
+     */
+    TreatmentStep getStep(int index) {
+        return steps[index];
+    }
+
+    /**
+     * @param index the index of a projected treatment step
+     * @return the x coordinate of the step in the horizontal projection
+     */
+    double getHx(int index) {
+        return hx[index];
+    }
+
+    /**
+     * @param index the index of a projected treatment step
+     * @return the y coordinate of the step in the horizontal projection
+     * (positive in the direction of the y axis)
+     */
+    double getHy(int index) {
+        return hy[index];
+    }
+
+    /**
+     * @param index the index of a projected treatment step
+     * @return the x coordinate of the step in the vertical projection
+     */
+    double getVx(int index) {
+        return vx[index];
+    }
+
+    /**
+     * @param index the index of a projected treatment step
+     * @return the y coordinate of the step in the vertical projection
+     * (positive upward)
+     */
+    double getVy(int index) {
+        return vy[index];
+    }
+
+    /**
+     * @return the smallest rectangle containing both projections, or
+     * {@code null} if there are no projected steps
+     */
+    Rectangle2D getExtent() {
+        return extent;
+    }
+
+    /**
+     * @return a number which changes whenever the projections are
+     * recalculated
+     */
+    int getVersion() {
+        return version;
+    }
+}
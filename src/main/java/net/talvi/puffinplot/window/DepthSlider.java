@@ -36,6 +36,7 @@ import javax.swing.KeyStroke;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
+import net.talvi.puffinplot.DisplayUpdateScheduler.View;
 import net.talvi.puffinplot.PuffinApp;
 import net.talvi.puffinplot.data.Suite;
 
@@ -69,7 +70,9 @@ class DepthSlider extends JPanel
                 final Suite suite = app.getCurrentSuite();
                 if (suite != null) {
                     suite.setCurrentSampleIndex(getValue());
-                    app.updateDisplay();
+                    app.getMainWindow().getGraphDisplay().noteInteraction();
+                    app.updateDisplay(View.SAMPLE, View.TABLE,
+                            View.SITE, View.SUITE);
                 }
             }
         });
@@ -145,15 +145,18 @@ public class EditSampleParametersWindow extends JFrame {
             }
             if (event.getSource() == setButton) {
                 final List<Sample> samples = app.getSelectedSamples();
-                for (TreatmentParameter field : fields) {
-                    if (checkBoxMap.get(field).isSelected()) {
-                        final String value = textFieldMap.get(field).getText();
-                        for (Sample s: samples) {
-                            s.setValue(field, value);
+                app.performEdit("Edit sample parameters", () -> {
+                    for (TreatmentParameter field : fields) {
+                        if (checkBoxMap.get(field).isSelected()) {
+                            final String value =
+                                    textFieldMap.get(field).getText();
+                            for (Sample s: samples) {
+                                s.setValue(field, value);
+                            }
                         }
                     }
-                }
-                app.recalculateSamplesAndSites(samples);
+                    app.recalculateSamplesAndSites(samples);
+                });
                 app.updateDisplay();
                 setVisible(false);
                 dispose();
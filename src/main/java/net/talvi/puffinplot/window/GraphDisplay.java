@@ -47,6 +47,7 @@ import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.JPanel;
+import javax.swing.Timer;
 
 import net.talvi.puffinplot.data.TreatmentStep;
 import net.talvi.puffinplot.plots.Plot;
@@ -93,6 +94,18 @@ public abstract class GraphDisplay extends JPanel implements Printable {
     private final List<CurrentTreatmentStepListener>
             currentTreatmentStepListeners = new LinkedList<>();
 
+    /**
+     * The time in milliseconds after the last interaction event at which
+     * an interaction is considered to have finished. Two interaction events
+     * separated by less than this time are considered to be part of a
+     * continuous interaction.
+     */
+    private static final int INTERACTION_IDLE_MS = 250;
+    private boolean adaptiveRendering = false;
+    private boolean interacting = false;
+    private long lastInteractionTime = 0;
+    private final Timer interactionTimer;
+
     GraphDisplay() {
         this(new Dimension(1200, 800));
     }
@@ -113,6 +126,82 @@ public abstract class GraphDisplay extends JPanel implements Printable {
         mouseListener = new GdMouseListener();
         addMouseListener(mouseListener);
         addMouseMotionListener(mouseListener);
+        interactionTimer = new Timer(INTERACTION_IDLE_MS,
+                event -> finishInteraction());
+        interactionTimer.setRepeats(false);
+    }
+
+    /**
+     * Sets whether this display uses adaptive rendering. When adaptive
+     * rendering is enabled, the display is drawn with fast, low-quality
+     * rendering hints during continuous interaction (such as dragging a
+     * selection rectangle or a plot, or scrolling rapidly through samples).
+     * Plots may also omit labels and other decorative elements, and thin
+     * out large numbers of points. Full quality is restored when the
+     * interaction finishes. Printing and export are always done at full
+     * quality.
+     *
+     * @param adaptiveRendering {@code true} to enable adaptive rendering
+     * @see PuffinRenderingHints#getDraftInstance()
+     */
+    public void setAdaptiveRendering(boolean adaptiveRendering) {
+        this.adaptiveRendering = adaptiveRendering;
+        if (!adaptiveRendering) {
+            finishInteraction();
+        }
+    }
+
+    /**
+     * Reports whether this display uses adaptive rendering.
+     *
+     * @return {@code true} if this display uses adaptive rendering
+     * @see #setAdaptiveRendering(boolean)
+     */
+    public boolean isAdaptiveRendering() {
+        return adaptiveRendering;
+    }
+
+    /**
+     * Notifies this display of a user interaction which will cause it to be
+     * redrawn. If adaptive rendering is enabled and the previous interaction
+     * was recent enough for the two to be considered part of a continuous
+     * interaction, the display will be drawn in draft mode until the
+     * interaction finishes. A single, isolated interaction does not affect
+     * the rendering quality.
+     */
+    public void noteInteraction() {
+        if (!adaptiveRendering) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        if (now - lastInteractionTime < INTERACTION_IDLE_MS) {
+            interacting = true;
+        }
+        lastInteractionTime = now;
+        interactionTimer.restart();
+    }
+
+    /**
+     * Ends any interaction in progress. If the display was being drawn in
+     * draft mode, it is repainted at full quality.
+     */
+    private void finishInteraction() {
+        interactionTimer.stop();
+        lastInteractionTime = 0;
+        if (interacting) {
+            interacting = false;
+            repaint();
+        }
+    }
+
+    /**
+     * Reports whether this display is currently being drawn in draft mode.
+     *
+     * @return {@code true} if this display is currently being drawn in
+     * draft mode
+     */
+    public boolean isDrawingDraft() {
+        return interacting;
     }
 
     /**
@@ -178,7 +267,9 @@ public abstract class GraphDisplay extends JPanel implements Printable {
         final AffineTransform savedTransform = g2.getTransform();
         g2.transform(zoomTransform);
         super.paint(g2); // draws background and any components
-        g2.setRenderingHints(PuffinRenderingHints.getInstance());
+        g2.setRenderingHints(interacting && !isPaintingForPrint()
+                ? PuffinRenderingHints.getDraftInstance()
+                : PuffinRenderingHints.getInstance());
         g2.setPaint(Color.BLACK);
         g2.setPaintMode();
         final List<Plot> visiblePlots = getVisiblePlots();
@@ -199,7 +290,7 @@ public abstract class GraphDisplay extends JPanel implements Printable {
                             MouseEvent.BUTTON3;
                     plot.selectByRectangle(rUnzoomed, !rightButton);
                 }
-                for (Plot plot : visiblePlots) plot.draw(g2);
+                for (Plot plot : visiblePlots) plot.drawAndRecord(g2);
                 g2.setColor(Color.ORANGE);
                 g2.setComposite(WEAK_COMPOSITE);
                 g2.fill(r);
@@ -207,7 +298,7 @@ public abstract class GraphDisplay extends JPanel implements Printable {
                 g2.draw(r);
             } else {
                 for (Plot plot: visiblePlots) {
-                    plot.draw(g2);
+                    plot.drawAndRecord(g2);
                 }
             }
         } else {
@@ -340,6 +431,7 @@ public abstract class GraphDisplay extends JPanel implements Printable {
         public void mouseReleased(MouseEvent e) {
             draggee = null;
             draggingSelection = false;
+            finishInteraction();
             repaint();
         }
 
@@ -408,6 +500,7 @@ public abstract class GraphDisplay extends JPanel implements Printable {
         public void mouseDragged(MouseEvent e) {
             final Point2D thisPoint =
                     getAntiZoom().transform(e.getPoint(), null);
+            noteInteraction();
             if (isDragPlotMode() && getDraggingPlot() != null) {
                 final double dx = thisPoint.getX() - startPoint.getX();
                 final double dy = thisPoint.getY() - startPoint.getY();
@@ -537,6 +630,7 @@ public abstract class GraphDisplay extends JPanel implements Printable {
         final org.apache.batik.svggen.SVGGraphics2D svgGenerator =
                 new org.apache.batik.svggen.SVGGraphics2D(document);
         svgGenerator.setUnsupportedAttributes(null);
+        finishInteraction();
         paint(svgGenerator);
         //for (Plot plot: getVisiblePlots()) plot.draw(svgGenerator);
         final boolean useCssAttributes = true;
@@ -25,7 +25,6 @@ import java.awt.RenderingHints;
 import java.awt.print.PageFormat;
 import java.awt.print.Printable;
 import java.awt.print.PrinterException;
-import java.lang.reflect.InvocationTargetException;
 import java.util.List;
 
 import net.talvi.puffinplot.PuffinApp;
@@ -45,15 +44,6 @@ public class MainGraphDisplay extends GraphDisplay implements Printable {
     // samplesForPrinting is only non-null during printing.
     private List<Sample> samplesForPrinting = null;
     private int printPageIndex = -1;
-    private static final Class[] plotClasses = {
-        SampleEqualAreaPlot.class, ZPlot.class, DemagPlot.class,
-        DemagTable.class, SampleParamsLegend.class, PlotTitle.class,
-        SiteParamsLegend.class, AmsPlot.class, TernaryPlot.class,
-        SiteEqualAreaPlot.class, SuiteEqualAreaPlot.class,
-        SampleParamsTable.class, SiteParamsTable.class, NrmHistogram.class,
-        VgpTable.class, SuiteParamsTable.class, DepthPlot.class,
-        VgpMap.class, RpiPlot.class
-    };
 
     private final PlotParams params;
     private final PuffinApp app;
@@ -101,24 +91,13 @@ public class MainGraphDisplay extends GraphDisplay implements Printable {
     }
 
     private void createPlots() {
-        try {
-            for (Class plotClass: plotClasses) {
-                plots.put(plotClass,
-                        (Plot) plotClass.getConstructor(
-                                PlotParams.class).
-                                newInstance(params));
-            }
-        } catch (NoSuchMethodException | SecurityException |
-                InstantiationException | IllegalAccessException |
-                IllegalArgumentException | InvocationTargetException ex) {
-            throw new Error(ex);
-        }
         /*
-         * The legend will always be drawn after the Zplot (as required), since
-         * LinkedHashMap guarantees iteration in order of insertion.
+         * LinkedHashMap guarantees iteration in order of insertion, so the
+         * plots will be drawn in the order in which they are created.
          */
-        plots.put(ZPlot.ZplotLegend.class,
-                ((ZPlot) plots.get(ZPlot.class)).getLegend());
+        for (Plot plot: PlotRenderer.createMainPlots(params)) {
+            plots.put(plot.getClass(), plot);
+        }
     }
 
     /**
@@ -131,7 +131,8 @@ public final class MainMenuBar extends JMenuBar {
                         pa.createBundle),
                 makeMenu("Export graphics", KeyEvent.VK_G,
                         pa.exportSvgBatik, pa.exportSvgFreehep,
-                        pa.exportPdfItext, pa.exportPdfFreehep),
+                        pa.exportPdfItext, pa.exportPdfFreehep,
+                        pa.exportPng),
                 makeMenu("Import data", KeyEvent.VK_I,
                         pa.appendFiles,
                         pa.importLocations, pa.importAms),
@@ -140,6 +141,7 @@ public final class MainMenuBar extends JMenuBar {
                 pa.runJavascriptScript, pa.runPythonScript, pa.prefs, pa.quit));
         
         add(makeMenu("Edit",KeyEvent.VK_E,
+                pa.undo, pa.redo,
                 movePlotsItem, pa.resetLayout,
                 makeMenu("Treatment steps", KeyEvent.VK_T,
                         pa.selectAll, pa.clearSelection,
@@ -173,7 +175,7 @@ public final class MainMenuBar extends JMenuBar {
                 pa.clearSamplePca, pa.clearSampleGreatCircle,
                 pa.circleFit,
                 pa.greatCircleAnalysis, pa.clearSiteCalcs,
-                pa.multiSuiteMeans,
+                pa.multiSuiteMeans, pa.foldTest, pa.commonMeanTest,
                 makeMenu("AMS", KeyEvent.VK_A,
                         pa.bootAmsNaive, pa.bootAmsParam, pa.hextAms,
                         pa.clearAmsCalcs),
@@ -188,7 +190,8 @@ public final class MainMenuBar extends JMenuBar {
                         app::getSuiteEqAreaWindow)
                     ));
         add(makeMenu("Help", KeyEvent.VK_H,
-                pa.openPuffinWebsite, pa.showCiteDialog, pa.about));
+                pa.openPuffinWebsite, pa.showCiteDialog,
+                pa.showPerformanceReport, pa.about));
     }
 
     private class AnchorItem extends JCheckBoxMenuItem {
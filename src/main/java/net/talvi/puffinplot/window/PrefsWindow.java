@@ -205,6 +205,25 @@ public class PrefsWindow extends JFrame {
                 "Show site α95s on suite plot", "plots.showSiteA95sOnSuitePlot",
                 false)));
         miscPanel.add(makeAlignedCheckBox(new MagDevCheckBox()));
+        final PrefsCheckBox metricsCheckBox = new PrefsCheckBox(
+                "Collect performance metrics", PuffinApp.METRICS_PREFERENCE,
+                false);
+        metricsCheckBox.addItemListener(event ->
+                app.setMetricsEnabled(metricsCheckBox.isSelected()));
+        miscPanel.add(makeAlignedCheckBox(metricsCheckBox));
+        final PrefsCheckBox journalCheckBox = new PrefsCheckBox(
+                "Journal unsaved changes", PuffinApp.JOURNAL_PREFERENCE,
+                false);
+        journalCheckBox.addItemListener(event ->
+                app.setJournalingEnabled(journalCheckBox.isSelected()));
+        miscPanel.add(makeAlignedCheckBox(journalCheckBox));
+        final PrefsCheckBox adaptiveCheckBox = new PrefsCheckBox(
+                "Draft rendering while dragging",
+                PuffinApp.ADAPTIVE_RENDERING_PREFERENCE, true);
+        adaptiveCheckBox.addItemListener(event ->
+                app.getMainWindow().getGraphDisplay().setAdaptiveRendering(
+                        adaptiveCheckBox.isSelected()));
+        miscPanel.add(makeAlignedCheckBox(adaptiveCheckBox));
         miscPanel.add(makeLabelledPrefTextField("Demag. y-axis label",
                 "plots.demag.vAxisLabel", "Magnetization (A/m)"));
         miscPanel.add(makeLabelledPrefTextField("PmagPy folder",
@@ -408,7 +427,7 @@ public class PrefsWindow extends JFrame {
         }
         
         public void storeValue() {
-            prefs.getPrefs().put(key, getText());
+            prefs.put(key, getText());
         }
     }
     
@@ -418,7 +437,7 @@ public class PrefsWindow extends JFrame {
             boolean defaultValue) {
             super(label, prefs.getPrefs().getBoolean(key, defaultValue));
             addItemListener(event ->
-                prefs.getPrefs().putBoolean(key, isSelected())
+                prefs.putBoolean(key, isSelected())
             );
         }
     }
@@ -451,7 +470,7 @@ public class PrefsWindow extends JFrame {
 
         @Override
         public void itemStateChanged(ItemEvent e) {
-            prefs.getPrefs().put(prefsKey, getSelectedItem().toString());
+            prefs.put(prefsKey, getSelectedItem().toString());
         }
     }
 
@@ -53,12 +53,13 @@ public class ProgressDialog extends JDialog
     private final SwingWorker<Void, Void> worker;
 
     private ProgressDialog(String title, Frame owner,
-            SwingWorker<Void, Void> worker) {
+            SwingWorker<Void, Void> worker, boolean indeterminate) {
         super(owner, title, true);
 
         progressBar = new JProgressBar(0, 100);
         progressBar.setValue(0);
-        progressBar.setStringPainted(true);
+        progressBar.setIndeterminate(indeterminate);
+        progressBar.setStringPainted(!indeterminate);
         cancelButton = new JButton("Cancel");
         cancelButton.setActionCommand("start");
 
@@ -123,8 +124,26 @@ public class ProgressDialog extends JDialog
      */
     public static void showDialog(String title, Frame parent,
             SwingWorker<Void, Void> worker) {
+        showDialog(title, parent, worker, false);
+    }
+
+    /**
+     * Create and show a progress dialog for a supplied SwingWorker, as for
+     * {@link #showDialog(String, Frame, SwingWorker)}. An indeterminate
+     * dialog shows that the task is running without showing how far it
+     * has progressed; it is intended for tasks which do not report their
+     * progress.
+     * 
+     * @param title Title for the dialog
+     * @param parent Parent window for the dialog
+     * @param worker task whose progress the dialog should monitor
+     * @param indeterminate {@code true} to show an indeterminate
+     * progress bar
+     */
+    public static void showDialog(String title, Frame parent,
+            SwingWorker<Void, Void> worker, boolean indeterminate) {
         final ProgressDialog progressDialog =
-                new ProgressDialog(title, parent, worker);
+                new ProgressDialog(title, parent, worker, indeterminate);
         progressDialog.setup(parent);
         progressDialog.setVisible(true);
         // This will block until the dialog closes.
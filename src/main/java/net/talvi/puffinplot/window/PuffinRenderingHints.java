@@ -35,7 +35,12 @@ public final class PuffinRenderingHints extends RenderingHints {
     private boolean dirty;
     
     private static PuffinRenderingHints instance =
-            new PuffinRenderingHints();
+            new PuffinRenderingHints(false);
+    /*
+     * Created on first use, since it refers to KEY_DRAFT, which is
+     * initialized after these fields.
+     */
+    private static PuffinRenderingHints draftInstance = null;
 
     /**
      * Return a clean instance of this class.
@@ -48,23 +53,69 @@ public final class PuffinRenderingHints extends RenderingHints {
      */
     public static PuffinRenderingHints getInstance() {
         if (instance.dirty) {
-            instance = new PuffinRenderingHints();
+            instance = new PuffinRenderingHints(false);
         }
         return instance;
     }
+
+    /**
+     * Return a new instance of this class. Unlike {@link #getInstance()},
+     * this method never returns a shared instance, so it is safe to use
+     * from any thread.
+     *
+     * @return a new instance of {@code PuffinRenderingHints}
+     */
+    public static PuffinRenderingHints newInstance() {
+        return new PuffinRenderingHints(false);
+    }
+
+    /**
+     * Return a clean instance of this class with hints for fast, draft
+     * rendering. These hints are intended for use while the user is
+     * continuously interacting with a display (e.g. dragging a selection
+     * rectangle). They contain the key {@link #KEY_DRAFT}, which tells
+     * the plotting code that it may omit decorative elements.
+     * <p>
+     * As with {@link #getInstance()}, the returned instance is guaranteed
+     * to be unmodified.
+     *
+     * @return a clean instance of {@code PuffinRenderingHints} for draft
+     * rendering
+     */
+    public static PuffinRenderingHints getDraftInstance() {
+        if (draftInstance == null || draftInstance.dirty) {
+            draftInstance = new PuffinRenderingHints(true);
+        }
+        return draftInstance;
+    }
     
-    private PuffinRenderingHints() {
+    private PuffinRenderingHints(boolean draft) {
         super(null);
         dirty = false;
-        super.put(KEY_ALPHA_INTERPOLATION, VALUE_ALPHA_INTERPOLATION_QUALITY);
-        super.put(KEY_ANTIALIASING, VALUE_ANTIALIAS_ON);
-        super.put(KEY_COLOR_RENDERING, VALUE_COLOR_RENDER_DEFAULT);
-        super.put(KEY_DITHERING, VALUE_DITHER_DEFAULT);
-        super.put(KEY_FRACTIONALMETRICS, VALUE_FRACTIONALMETRICS_DEFAULT);
-        super.put(KEY_INTERPOLATION, VALUE_INTERPOLATION_BICUBIC);
-        super.put(KEY_RENDERING, VALUE_RENDER_QUALITY);
-        super.put(KEY_STROKE_CONTROL, VALUE_STROKE_PURE);
-        super.put(KEY_TEXT_ANTIALIASING, VALUE_TEXT_ANTIALIAS_ON);
+        if (draft) {
+            super.put(KEY_ALPHA_INTERPOLATION, VALUE_ALPHA_INTERPOLATION_SPEED);
+            super.put(KEY_ANTIALIASING, VALUE_ANTIALIAS_OFF);
+            super.put(KEY_COLOR_RENDERING, VALUE_COLOR_RENDER_SPEED);
+            super.put(KEY_DITHERING, VALUE_DITHER_DISABLE);
+            super.put(KEY_FRACTIONALMETRICS, VALUE_FRACTIONALMETRICS_OFF);
+            super.put(KEY_INTERPOLATION,
+                    VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+            super.put(KEY_RENDERING, VALUE_RENDER_SPEED);
+            super.put(KEY_STROKE_CONTROL, VALUE_STROKE_NORMALIZE);
+            super.put(KEY_TEXT_ANTIALIASING, VALUE_TEXT_ANTIALIAS_OFF);
+            super.put(KEY_DRAFT, Boolean.TRUE);
+        } else {
+            super.put(KEY_ALPHA_INTERPOLATION,
+                    VALUE_ALPHA_INTERPOLATION_QUALITY);
+            super.put(KEY_ANTIALIASING, VALUE_ANTIALIAS_ON);
+            super.put(KEY_COLOR_RENDERING, VALUE_COLOR_RENDER_DEFAULT);
+            super.put(KEY_DITHERING, VALUE_DITHER_DEFAULT);
+            super.put(KEY_FRACTIONALMETRICS, VALUE_FRACTIONALMETRICS_DEFAULT);
+            super.put(KEY_INTERPOLATION, VALUE_INTERPOLATION_BICUBIC);
+            super.put(KEY_RENDERING, VALUE_RENDER_QUALITY);
+            super.put(KEY_STROKE_CONTROL, VALUE_STROKE_PURE);
+            super.put(KEY_TEXT_ANTIALIASING, VALUE_TEXT_ANTIALIAS_ON);
+        }
     }
     
     /**
@@ -119,6 +170,15 @@ public final class PuffinRenderingHints extends RenderingHints {
      */
     public static final PuffinRenderingHints.Key KEY_E_NOTATION =
             new PuffinRenderingHints.Key(0);
+
+    /**
+     * Draw in draft mode: decorative elements such as labels and confidence
+     * regions may be omitted, and large numbers of points may be thinned
+     * out. The value is ignored; the key's existence indicates that draft
+     * mode is requested.
+     */
+    public static final PuffinRenderingHints.Key KEY_DRAFT =
+            new PuffinRenderingHints.Key(1);
     
     /**
      * A key for a PuffinPlot rendering hint.
@@ -141,7 +201,7 @@ public final class PuffinRenderingHints extends RenderingHints {
          */
         @Override
         public boolean isCompatibleValue(Object val) {
-            if (intKey()==0) {
+            if (intKey()==0 || intKey()==1) {
                 return true; // value ignored
             }
             return false;
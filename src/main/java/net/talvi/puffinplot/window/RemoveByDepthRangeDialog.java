@@ -32,6 +32,7 @@ import javax.swing.SwingConstants;
 import javax.swing.WindowConstants;
 import net.talvi.puffinplot.PuffinApp;
 import net.talvi.puffinplot.Util;
+import net.talvi.puffinplot.data.Suite;
 
 import static javax.swing.GroupLayout.Alignment;
 
@@ -159,8 +160,19 @@ public class RemoveByDepthRangeDialog extends JDialog {
     
     /**
      * Show this dialog, centred over the PuffinPlot app's main window.
+     * If the current suite is continuous and contains samples with
+     * depths, the range fields are initialized to its current depth range.
      */
     public void showOverMainWindow() {
+        final Suite suite = app.getCurrentSuite();
+        if (suite != null) {
+            final double minDepth = suite.getMinDepth();
+            final double maxDepth = suite.getMaxDepth();
+            if (minDepth <= maxDepth) {
+                rangeTopText.setText(Double.toString(minDepth));
+                rangeBottomText.setText(Double.toString(maxDepth));
+            }
+        }
         setLocationRelativeTo(app.getMainWindow());
         setVisible(true);
     }
@@ -176,7 +188,9 @@ public class RemoveByDepthRangeDialog extends JDialog {
         if (bottom == null) {
             return;
         }
-        app.getCurrentSuite().removeSamplesOutsideDepthRange(top, bottom);
+        final Suite suite = app.getCurrentSuite();
+        suite.getHistory().run("Remove samples by depth",
+                () -> suite.removeSamplesOutsideDepthRange(top, bottom));
         app.getMainWindow().suitesChanged();
         setVisible(false);
     }                                            
@@ -16,15 +16,16 @@
  */
 package net.talvi.puffinplot.window;
 
+import java.awt.FontMetrics;
 import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import javax.swing.AbstractAction;
+import javax.swing.AbstractListModel;
 import javax.swing.Action;
 import javax.swing.BoxLayout;
-import javax.swing.DefaultListModel;
 import javax.swing.JList;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
@@ -32,6 +33,7 @@ import javax.swing.KeyStroke;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
 
+import net.talvi.puffinplot.DisplayUpdateScheduler.View;
 import net.talvi.puffinplot.PuffinApp;
 import net.talvi.puffinplot.data.Sample;
 import net.talvi.puffinplot.data.Suite;
@@ -73,7 +75,7 @@ public class SampleChooser extends JPanel {
         this.app = app;
         setLayout(new BoxLayout(this, BoxLayout.X_AXIS));
         add(depthSlider = new DepthSlider(app));
-        sampleList = new SampleList(new DefaultListModel<>());
+        sampleList = new SampleList(new SampleListModel());
         samplePane = new JScrollPane(sampleList);
         samplePane.setVerticalScrollBarPolicy(
                 JScrollPane.VERTICAL_SCROLLBAR_ALWAYS);
@@ -99,10 +101,13 @@ public class SampleChooser extends JPanel {
         if (suite == null) return Collections.emptyList();
         switch (suite.getMeasurementType()) {
         case DISCRETE:
-            List names = sampleList.getSelectedValuesList();
-            samples = new ArrayList<>(names.size());
-            for (Object name : names) {
-                samples.add(suite.getSampleByName((String) name));
+            final int[] indices = sampleList.getSelectedIndices();
+            samples = new ArrayList<>(indices.length);
+            for (int index: indices) {
+                final Sample sample = suite.getSampleByIndex(index);
+                if (sample != null) {
+                    samples.add(sample);
+                }
             }
             break;
         case CONTINUOUS:
@@ -126,12 +131,75 @@ public class SampleChooser extends JPanel {
         return samples;
     }
 
+    /**
+     * A list model which reads sample names directly from a suite, rather
+     * than copying them. Setting the suite fires a single pair of
+     * events, and names are only fetched for the rows which are actually
+     * displayed.
+     */
+    private static class SampleListModel extends AbstractListModel<String> {
+        private static final long serialVersionUID = 1L;
+        private Suite suite = null;
+        private int size = 0;
+
+        void setSuite(Suite suite) {
+            if (size > 0) {
+                final int oldSize = size;
+                size = 0;
+                fireIntervalRemoved(this, 0, oldSize - 1);
+            }
+            this.suite = suite;
+            size = suite == null ? 0 : suite.getNumSamples();
+            if (size > 0) {
+                fireIntervalAdded(this, 0, size - 1);
+            }
+        }
+
+        @Override
+        public int getSize() {
+            return size;
+        }
+
+        @Override
+        public String getElementAt(int index) {
+            final Sample sample =
+                    suite == null || index >= suite.getNumSamples() ?
+                    null : suite.getSampleByIndex(index);
+            return sample == null ? "" : sample.getNameOrDepth();
+        }
+        
+        /**
+         * Returns the widest sample name in the current suite, for use
+         * as a prototype list cell. The names are measured with the
+         * supplied font metrics rather than compared by length, since
+         * in a proportional font a shorter name may be the wider one.
+         * No cells are rendered. If there are no non-empty names,
+         * a single space is returned.
+         * 
+         * @param metrics the metrics of the font used to draw the list
+         * @return the widest sample name
+         */
+        String getWidestName(FontMetrics metrics) {
+            String widest = " ";
+            int widestWidth = metrics.stringWidth(widest);
+            for (int i = 0; i < size; i++) {
+                final String name = getElementAt(i);
+                final int width = metrics.stringWidth(name);
+                if (width > widestWidth) {
+                    widest = name;
+                    widestWidth = width;
+                }
+            }
+            return widest;
+        }
+    }
+
     private class SampleList extends JList<String> {
         private static final long serialVersionUID = 1L;
 
-        final DefaultListModel<String> model;
+        final SampleListModel model;
 
-        SampleList(DefaultListModel<String> model) {
+        SampleList(SampleListModel model) {
             super(model);
             this.model = model;
             setAlignmentY(0);
@@ -142,7 +210,9 @@ public class SampleChooser extends JPanel {
                         app.getCurrentSuite().
                                 setCurrentSampleIndex(getSelectedIndex());
                     }
-                    app.updateDisplay();
+                    app.getMainWindow().getGraphDisplay().noteInteraction();
+                    app.updateDisplay(View.SAMPLE, View.TABLE, View.SITE,
+                            View.SUITE);
                 }
             });
         }
@@ -179,11 +249,15 @@ public class SampleChooser extends JPanel {
                 setVisibility(true, false);
                 break;
             case DISCRETE:
-                final DefaultListModel<String> model = sampleList.model;
-                model.clear();
-                for (Sample sample: suite.getSamples()) {
-                    model.addElement(sample.getNameOrDepth());
-                }
+                final SampleListModel model = sampleList.model;
+                model.setSuite(suite);
+                /*
+                 * A prototype value gives every cell the same size, so the
+                 * list doesn't have to render all its cells to lay itself
+                 * out.
+                 */
+                sampleList.setPrototypeCellValue(model.getWidestName(
+                        sampleList.getFontMetrics(sampleList.getFont())));
                 sampleList.setSelectedIndex(0);
                 setVisibility(false, true);
                 break;
@@ -86,7 +86,7 @@ class SampleDataPanel extends JPanel {
                 @Override
                 public void stateChanged(ChangeEvent e) {
                     SampleCheckBox scb = SampleCheckBox.this;
-                    scb.sample.getCustomFlags().set(scb.flagNum, isSelected());
+                    scb.sample.setCustomFlag(scb.flagNum, isSelected());
                 }
             });
             updateState();
@@ -111,17 +111,17 @@ class SampleDataPanel extends JPanel {
             getDocument().addDocumentListener(new DocumentListener() {
                 @Override
                 public void insertUpdate(DocumentEvent e) {
-                    sample.getCustomNotes().set(noteNum, getText());
+                    sample.setCustomNote(noteNum, getText());
                 }
 
                 @Override
                 public void removeUpdate(DocumentEvent e) {
-                    sample.getCustomNotes().set(noteNum, getText());
+                    sample.setCustomNote(noteNum, getText());
                 }
 
                 @Override
                 public void changedUpdate(DocumentEvent e) {
-                    sample.getCustomNotes().set(noteNum, getText());
+                    sample.setCustomNote(noteNum, getText());
                 }
             });
         }
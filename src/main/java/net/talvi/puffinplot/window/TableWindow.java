@@ -16,6 +16,7 @@
  */
 package net.talvi.puffinplot.window;
 
+import net.talvi.puffinplot.DisplayUpdateScheduler.View;
 import net.talvi.puffinplot.PuffinApp;
 import net.talvi.puffinplot.plots.PlotParams;
 
@@ -75,7 +76,7 @@ public class TableWindow extends JFrame {
                         params.getSample().getTreatmentSteps().get(row).
                                 toggleSelected();
                         table.repaint();
-                        app.updateDisplay();
+                        app.updateDisplay(View.SAMPLE);
                     }
                 }
             });
@@ -104,10 +105,23 @@ public class TableWindow extends JFrame {
         }
     }
     
+    /**
+     * A table model for the treatment steps of the current sample. Formatted
+     * cell values are cached per row, and a row's cache is discarded when
+     * its treatment step is replaced or modified. Rows are only formatted
+     * when the table asks for their values, so the cost of displaying a
+     * sample depends on the number of visible rows rather than the total
+     * number of steps.
+     */
     private static class DataTableModel extends AbstractTableModel {
         private static final long serialVersionUID = 1L;
+        private static final TreatmentParameter[] PARAMETERS =
+                TreatmentParameter.values();
         private final List<TableModelListener> listeners = new LinkedList<>();
         private final PlotParams params;
+        private TreatmentStep[] cachedSteps = new TreatmentStep[0];
+        private int[] cachedModificationCounts = new int[0];
+        private String[][] cachedValues = new String[0][];
 
         public DataTableModel(PlotParams params) {
             this.params = params;
@@ -124,6 +138,10 @@ public class TableWindow extends JFrame {
         }
 
         public void fireModelChangedEvent() {
+            final int rowCount = getRowCount();
+            cachedSteps = new TreatmentStep[rowCount];
+            cachedModificationCounts = new int[rowCount];
+            cachedValues = new String[rowCount][];
             for (TableModelListener listener: listeners) {
                 listener.tableChanged(new TableModelEvent(this));
             }
@@ -131,12 +149,12 @@ public class TableWindow extends JFrame {
 
         @Override
         public int getColumnCount() {
-            return TreatmentParameter.values().length - 1;
+            return PARAMETERS.length - 1;
         }
         
         @Override
         public String getColumnName(int c) {
-            return TreatmentParameter.values()[c].toString().toLowerCase();
+            return PARAMETERS[c].toString().toLowerCase();
         }
           
         @Override
@@ -150,7 +168,7 @@ public class TableWindow extends JFrame {
 
         @Override
         public Class<?> getColumnClass(int c) {
-            return TreatmentParameter.values()[c].getClass();
+            return PARAMETERS[c].getClass();
         }
 
         @Override
@@ -158,7 +176,22 @@ public class TableWindow extends JFrame {
             try {
                 final TreatmentStep step =
                         params.getSample().getTreatmentSteps().get(row);
-                return step.getValue(TreatmentParameter.values()[col]);
+                if (row >= cachedSteps.length) {
+                    return step.getValue(PARAMETERS[col]);
+                }
+                if (cachedSteps[row] != step ||
+                        cachedModificationCounts[row] !=
+                        step.getModificationCount()) {
+                    cachedSteps[row] = step;
+                    cachedModificationCounts[row] =
+                            step.getModificationCount();
+                    cachedValues[row] = new String[getColumnCount()];
+                }
+                final String[] rowValues = cachedValues[row];
+                if (rowValues[col] == null) {
+                    rowValues[col] = step.getValue(PARAMETERS[col]);
+                }
+                return rowValues[col];
             } catch (NullPointerException e) {
                 throw new RuntimeException("row " + row + " col " + col, e);
             }
@@ -123,11 +123,14 @@ public class TreatmentWindow extends JFrame implements ActionListener {
             setVisible(false);
         if (event.getSource() == setButton) {
             final TreatmentType treatmentType = treatmentCombo.getTreatmentType();
-            for (Sample sample: app.getSelectedSamples()) {
-                for (TreatmentStep treatmentStep : sample.getTreatmentSteps()) {
-                    treatmentStep.setTreatmentType(treatmentType);
+            app.performEdit("Set treatment type", () -> {
+                for (Sample sample: app.getSelectedSamples()) {
+                    for (TreatmentStep treatmentStep :
+                            sample.getTreatmentSteps()) {
+                        treatmentStep.setTreatmentType(treatmentType);
+                    }
                 }
-            }
+            });
             setVisible(false);
             app.updateDisplay();
         }
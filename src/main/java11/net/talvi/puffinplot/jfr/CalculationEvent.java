@@ -0,0 +1,47 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.talvi.puffinplot.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A flight recorder event for a calculation on the samples or sites of a
+ * suite.
+ *
+ * @author pont
+ */
+@Name("net.talvi.puffinplot.Calculation")
+@Label("Calculation")
+@Category({"PuffinPlot", "Calculation"})
+@Description("Calculations were performed on a suite")
+final class CalculationEvent extends Event {
+
+    @Label("Calculation")
+    String calculation;
+
+    @Label("Samples")
+    @Description("The number of samples used or updated")
+    int samples;
+
+    @Label("Sites")
+    @Description("The number of sites used or updated")
+    int sites;
+}
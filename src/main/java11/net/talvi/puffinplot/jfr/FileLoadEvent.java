@@ -0,0 +1,50 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.talvi.puffinplot.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A flight recorder event for the loading of a data file.
+ *
+ * @author pont
+ */
+@Name("net.talvi.puffinplot.FileLoad")
+@Label("File Load")
+@Category({"PuffinPlot", "Loading"})
+@Description("A data file was read into a suite")
+final class FileLoadEvent extends Event {
+
+    @Label("Path")
+    String path;
+
+    @Label("File Type")
+    String fileType;
+
+    @Label("File Size")
+    @DataAmount
+    long fileSize;
+
+    @Label("Treatment Steps")
+    @Description("The number of treatment steps read from the file")
+    int treatmentSteps;
+}
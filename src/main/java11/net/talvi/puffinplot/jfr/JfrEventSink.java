@@ -0,0 +1,144 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.talvi.puffinplot.jfr;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import net.talvi.puffinplot.data.AmsCalculationType;
+import net.talvi.puffinplot.data.FileType;
+
+/**
+ * An event sink which emits Java Flight Recorder events. This class is
+ * only loaded if the flight recorder API is present.
+ *
+ * @author pont
+ */
+final class JfrEventSink implements EventSink {
+
+    /**
+     * The resource containing PuffinPlot's flight recorder settings.
+     */
+    static final String CONFIGURATION_RESOURCE = "puffinplot.jfc";
+
+    @Override
+    public Object beginFileLoad() {
+        final FileLoadEvent event = new FileLoadEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endFileLoad(Object handle, File file, FileType fileType,
+            int treatmentSteps) {
+        final FileLoadEvent event = (FileLoadEvent) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = file.getPath();
+            event.fileType = fileType.name();
+            event.fileSize = file.length();
+            event.treatmentSteps = treatmentSteps;
+            event.commit();
+        }
+    }
+
+    @Override
+    public Object beginCalculation() {
+        final CalculationEvent event = new CalculationEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endCalculation(Object handle, String calculation,
+            int samples, int sites) {
+        final CalculationEvent event = (CalculationEvent) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            event.calculation = calculation;
+            event.samples = samples;
+            event.sites = sites;
+            event.commit();
+        }
+    }
+
+    @Override
+    public Object beginAmsCalculation() {
+        final AmsCalculationEvent event = new AmsCalculationEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endAmsCalculation(Object handle, AmsCalculationType type,
+            int samples) {
+        final AmsCalculationEvent event = (AmsCalculationEvent) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            event.calculationType = type.name();
+            event.samples = samples;
+            event.commit();
+        }
+    }
+
+    @Override
+    public Object beginPlotDraw() {
+        final PlotDrawEvent event = new PlotDrawEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endPlotDraw(Object handle, String plotName, int points) {
+        final PlotDrawEvent event = (PlotDrawEvent) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            event.plotName = plotName;
+            event.points = points;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void startRecording(File destination) throws IOException {
+        final InputStream stream = JfrEventSink.class.
+                getResourceAsStream(CONFIGURATION_RESOURCE);
+        if (stream == null) {
+            throw new IOException("Flight recorder configuration not found");
+        }
+        final Configuration configuration;
+        try (Reader reader = new InputStreamReader(stream,
+                        StandardCharsets.UTF_8)) {
+            configuration = Configuration.create(reader);
+        } catch (ParseException ex) {
+            throw new IOException("Invalid flight recorder configuration", ex);
+        }
+        final Recording recording = new Recording(configuration);
+        recording.setName("PuffinPlot");
+        recording.setToDisk(true);
+        recording.setDestination(destination.toPath());
+        recording.setDumpOnExit(true);
+        recording.start();
+    }
+}
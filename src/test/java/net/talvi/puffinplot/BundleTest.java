@@ -16,8 +16,13 @@
  */
 package net.talvi.puffinplot;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collections;
@@ -26,6 +31,7 @@ import java.util.stream.Collectors;
 
 import net.talvi.puffinplot.data.Correction;
 import net.talvi.puffinplot.data.Suite;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.junit.Rule;
 import org.junit.Test;
@@ -68,6 +74,41 @@ public class BundleTest {
                 "data-site.csv", "process-data.sh", "process-data.bat");
     }
     
+    @Test
+    public void testCreateBundleLeavesSuiteUnchanged() throws Exception {
+        final Suite suite = TestUtils.createDiscreteSuite();
+        final File puffinFile = temporaryFolder.newFile("suite.ppl");
+        suite.saveAs(puffinFile);
+        final Path bundlePath = temporaryFolder.getRoot().toPath().
+                resolve("bundle.zip");
+        Bundle.createBundle(suite, bundlePath, Correction.NONE,
+                suite.getSamples(), suite.getSites(), false);
+        assertEquals(puffinFile, suite.getPuffinFile());
+        assertEquals("suite.ppl", suite.getName());
+    }
+    
+    @Test
+    public void testCreateBundleEntryContents() throws Exception {
+        final Suite suite = TestUtils.createDiscreteSuite();
+        final Path bundlePath = temporaryFolder.getRoot().toPath().
+                resolve("bundle.zip");
+        Bundle.createBundle(suite, bundlePath, Correction.NONE,
+                suite.getSamples(), suite.getSites(), false);
+        final StringWriter expected = new StringWriter();
+        suite.writePuffinData(expected);
+        try (ZipFile zipFile = new ZipFile(bundlePath.toFile())) {
+            final ZipArchiveEntry pplEntry = zipFile.getEntry("data.ppl");
+            try (InputStream stream = zipFile.getInputStream(pplEntry)) {
+                assertEquals(expected.toString(), new BufferedReader(
+                        new InputStreamReader(stream, StandardCharsets.UTF_8)).
+                        lines().collect(Collectors.joining("\n", "", "\n")));
+            }
+            assertEquals(0755, zipFile.getEntry("process-data.sh").
+                    getUnixMode() & 0777);
+            assertEquals(0644, pplEntry.getUnixMode() & 0777);
+        }
+    }
+    
     private static void checkZipContents(File zip, String... filenames)
             throws IOException {
         assertTrue(zip.isFile());
@@ -0,0 +1,90 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.talvi.puffinplot;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import net.talvi.puffinplot.DisplayUpdateScheduler.View;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DisplayUpdateSchedulerTest {
+
+    private final List<Set<View>> updates = new ArrayList<>();
+    private DisplayUpdateScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        /*
+         * The long frame interval stops the timer from firing during the
+         * test, so updates only happen when flush() is called.
+         */
+        scheduler = new DisplayUpdateScheduler(updates::add, 1000000);
+    }
+
+    @Test
+    public void testRequestsAreCoalesced() {
+        scheduler.requestUpdate(View.TABLE);
+        scheduler.requestUpdate(View.SUITE);
+        scheduler.requestUpdate(View.TABLE);
+        assertTrue(scheduler.isUpdatePending());
+        assertTrue(updates.isEmpty());
+        scheduler.flush();
+        assertEquals(1, updates.size());
+        assertEquals(EnumSet.of(View.TABLE, View.SUITE), updates.get(0));
+        assertFalse(scheduler.isUpdatePending());
+    }
+
+    @Test
+    public void testFlushWithNoRequests() {
+        scheduler.flush();
+        assertTrue(updates.isEmpty());
+    }
+
+    @Test
+    public void testOnlyRequestedViewsAreUpdated() {
+        scheduler.requestUpdate(View.SAMPLE);
+        scheduler.flush();
+        assertEquals(EnumSet.of(View.SAMPLE), updates.get(0));
+        scheduler.requestUpdate(View.SAMPLE, View.TABLE);
+        scheduler.flush();
+        assertEquals(EnumSet.of(View.SAMPLE, View.TABLE), updates.get(1));
+        scheduler.requestFullUpdate();
+        scheduler.flush();
+        assertEquals(EnumSet.allOf(View.class), updates.get(2));
+    }
+
+    @Test
+    public void testRequestDuringUpdateIsDeferred() {
+        scheduler = new DisplayUpdateScheduler(views -> {
+            updates.add(views);
+            scheduler.requestUpdate(View.TABLE);
+            scheduler.flush();
+        }, 1000000);
+        scheduler.requestUpdate(View.SUITE);
+        scheduler.flush();
+        assertEquals(1, updates.size());
+        assertTrue(scheduler.isUpdatePending());
+    }
+}
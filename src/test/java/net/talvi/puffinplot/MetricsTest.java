@@ -0,0 +1,119 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.talvi.puffinplot;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import javax.management.ObjectName;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Before
+    public void setUp() {
+        Metrics.reset();
+    }
+
+    @After
+    public void tearDown() {
+        Metrics.setEnabled(false);
+        Metrics.reset();
+    }
+
+    @Test
+    public void testDisabled() {
+        Metrics.setEnabled(false);
+        final Metrics.Timer timer = Metrics.start("test.timer");
+        Metrics.increment("test.counter");
+        timer.stop();
+        assertTrue(Metrics.getTimers().isEmpty());
+        assertTrue(Metrics.getCounters().isEmpty());
+    }
+
+    @Test
+    public void testTimerAndCounter() {
+        Metrics.setEnabled(true);
+        for (int i = 0; i < 5; i++) {
+            final Metrics.Timer timer = Metrics.start("test.timer");
+            Metrics.increment("test.counter");
+            timer.stop();
+            timer.stop(); // should have no effect
+        }
+        Metrics.add("test.counter", 10);
+        final Metrics.TimerStatistics stats =
+                Metrics.getTimers().get("test.timer");
+        assertEquals(5, stats.getCount());
+        assertTrue(stats.getMaxNanos() > 0);
+        assertTrue(stats.getTotalNanos() >= stats.getMaxNanos());
+        assertEquals(15L, (long) Metrics.getCounters().get("test.counter"));
+    }
+
+    @Test
+    public void testPercentiles() {
+        Metrics.setEnabled(true);
+        for (int i = 0; i < 99; i++) {
+            Metrics.record("test.timer", 1000, -1);
+        }
+        Metrics.record("test.timer", 1_000_000, -1);
+        final Metrics.TimerStatistics stats =
+                Metrics.getTimers().get("test.timer");
+        assertTrue(stats.getPercentileNanos(0.5) >= 1000);
+        assertTrue(stats.getPercentileNanos(0.5) < 2000);
+        assertEquals(1_000_000, stats.getPercentileNanos(1));
+        assertEquals(-1, stats.getAllocatedBytes());
+    }
+
+    @Test
+    public void testWriteReport() throws IOException {
+        Metrics.setEnabled(true);
+        Metrics.record("suite.\"quoted\"", 500, 64);
+        Metrics.increment("suite.filesRead");
+        final File file = temporaryFolder.newFile("metrics.json");
+        Metrics.writeReport(file);
+        final String json = new String(Files.readAllBytes(file.toPath()),
+                StandardCharsets.UTF_8);
+        assertTrue(json.contains("\"suite.\\\"quoted\\\"\": {\"count\": 1"));
+        assertTrue(json.contains("\"allocatedBytes\": 64"));
+        assertTrue(json.contains("\"suite.filesRead\": 1"));
+        assertTrue(Metrics.getReport().contains("suite.filesRead"));
+    }
+
+    @Test
+    public void testMBean() throws Exception {
+        Metrics.registerMBean();
+        Metrics.registerMBean();
+        final ObjectName name = new ObjectName(Metrics.OBJECT_NAME);
+        assertTrue(ManagementFactory.getPlatformMBeanServer().
+                isRegistered(name));
+        assertFalse((Boolean) ManagementFactory.getPlatformMBeanServer().
+                getAttribute(name, "Enabled"));
+    }
+}
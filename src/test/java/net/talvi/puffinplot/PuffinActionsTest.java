@@ -22,6 +22,7 @@ import net.talvi.puffinplot.data.AmsCalculationType;
 import net.talvi.puffinplot.data.MeasurementAxis;
 import net.talvi.puffinplot.data.Sample;
 import net.talvi.puffinplot.data.Suite;
+import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
@@ -38,6 +39,12 @@ public class PuffinActionsTest {
                 "Can't run PuffinActions tests in a headless environment.",
                 GraphicsEnvironment.isHeadless());
     }
+
+    @Before
+    public void setUp() {
+        Mockito.doCallRealMethod().when(app).
+                performEdit(Mockito.anyString(), Mockito.any());
+    }
     
     @Test
     public void testAbout() {
@@ -75,6 +82,18 @@ public class PuffinActionsTest {
         Mockito.verify(app).exportCalcsMultiSuite();
     }
     
+    @Test
+    public void testFoldTest() {
+        actions.foldTest.actionPerformed(null);
+        Mockito.verify(app).performFoldTest();
+    }
+    
+    @Test
+    public void testCommonMeanTest() {
+        actions.commonMeanTest.actionPerformed(null);
+        Mockito.verify(app).performCommonMeanTest();
+    }
+    
     @Test
     public void testSave() {
         actions.save.actionPerformed(null);
@@ -0,0 +1,74 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.talvi.puffinplot;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SettingsSnapshotTest {
+
+    @Test
+    public void testGet() {
+        final Map<String, String> map = new HashMap<>();
+        map.put("plots.fontFamily", "Serif");
+        final SettingsSnapshot snapshot = SettingsSnapshot.fromMap(map);
+        map.put("plots.fontFamily", "Monospaced");
+        assertEquals("Serif", snapshot.get("plots.fontFamily", "SansSerif"));
+        assertEquals("x", snapshot.get("nonexistent", "x"));
+    }
+
+    @Test
+    public void testGetBoolean() {
+        final Map<String, String> map = new HashMap<>();
+        map.put("a", "TRUE");
+        map.put("b", "false");
+        map.put("c", "yes");
+        final SettingsSnapshot snapshot = SettingsSnapshot.fromMap(map);
+        assertTrue(snapshot.getBoolean("a", false));
+        assertFalse(snapshot.getBoolean("b", true));
+        assertTrue(snapshot.getBoolean("c", true));
+        assertFalse(snapshot.getBoolean("c", false));
+        assertTrue(snapshot.getBoolean("d", true));
+    }
+
+    @Test
+    public void testFromPreferences() throws BackingStoreException {
+        final Preferences node = Preferences.userRoot().
+                node("net/talvi/puffinplot/settingsSnapshotTest");
+        try {
+            node.put("plots.zplotPcaDisplay", "Short");
+            node.putBoolean("plots.labelTreatmentSteps", true);
+            final SettingsSnapshot snapshot =
+                    SettingsSnapshot.fromPreferences(node);
+            node.put("plots.zplotPcaDisplay", "Long");
+            assertEquals("Short",
+                    snapshot.get("plots.zplotPcaDisplay", "Long"));
+            assertTrue(snapshot.getBoolean("plots.labelTreatmentSteps",
+                    false));
+            assertEquals(2, snapshot.asMap().size());
+        } finally {
+            node.removeNode();
+        }
+    }
+}
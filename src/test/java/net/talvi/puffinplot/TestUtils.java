@@ -30,6 +30,8 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
@@ -147,6 +149,59 @@ public class TestUtils {
         return suite;
     }
     
+    /**
+     * Creates a continuous suite of AF-demagnetized samples, one at each
+     * whole-number depth from 1 to {@code depths}. Each sample has
+     * {@code levels} treatment steps, at AF levels of 0, 0.01, 0.02, ...
+     * Unlike {@link #createContinuousSuite()}, the steps are added only
+     * through {@link Suite#addTreatmentStep(TreatmentStep)}, as when
+     * reading a file.
+     * 
+     * @param depths the number of samples
+     * @param levels the number of treatment steps in each sample
+     * @param moment a function giving the magnetic moment of a treatment
+     * step from its depth and the index of its AF level
+     * @return a continuous suite
+     */
+    public static Suite createContinuousSuite(int depths, int levels,
+            BiFunction<Integer, Integer, Vec3> moment) {
+        return createContinuousSuite(depths, levels, moment, step -> {});
+    }
+
+    /**
+     * Creates a continuous suite as {@link #createContinuousSuite(int, int,
+     * BiFunction)} does, allowing further fields of each treatment step to
+     * be set before it is added to the suite.
+     * 
+     * @param depths the number of samples
+     * @param levels the number of treatment steps in each sample
+     * @param moment a function giving the magnetic moment of a treatment
+     * step from its depth and the index of its AF level
+     * @param customizer an action applied to each treatment step, after its
+     * depth, type, and AF level have been set
+     * @return a continuous suite
+     */
+    public static Suite createContinuousSuite(int depths, int levels,
+            BiFunction<Integer, Integer, Vec3> moment,
+            Consumer<TreatmentStep> customizer) {
+        final Suite suite = new Suite("TestUtils");
+        for (int depth = 1; depth <= depths; depth++) {
+            for (int level = 0; level < levels; level++) {
+                final TreatmentStep step =
+                        new TreatmentStep(moment.apply(depth, level));
+                step.setMeasurementType(MeasurementType.CONTINUOUS);
+                step.setDepth(Integer.toString(depth));
+                step.setTreatmentType(TreatmentType.DEGAUSS_XYZ);
+                step.setAfX(level * 0.01);
+                step.setAfY(level * 0.01);
+                step.setAfZ(level * 0.01);
+                customizer.accept(step);
+                suite.addTreatmentStep(step);
+            }
+        }
+        return suite;
+    }
+
     /**
      * Create a discrete suite of 15 samples with magnetic moment directions
      * arranged in an arc spanning the upper and lower hemispheres.
@@ -35,6 +35,7 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 /**
  *
@@ -135,6 +136,35 @@ public class ArasonLeviTest {
         }
     }
     
+    /**
+     * Tests that a batch calculation gives exactly the same results as
+     * separate calculations, in the same order.
+     */
+    @Test
+    public void testCalculateAll() {
+        final List<List<Double>> datasets = Stream.concat(
+                Arrays.stream(inputs).map(input -> DoubleStream.of(input).
+                        boxed().collect(Collectors.toList())),
+                Stream.of(Collections.<Double>emptyList())).
+                collect(Collectors.toList());
+        final List<ArasonLevi> results = ArasonLevi.calculateAll(datasets);
+        assertEquals(datasets.size(), results.size());
+        for (int i = 0; i < inputs.length; i++) {
+            assertEquals(ArasonLevi.calculate(datasets.get(i)).toStrings(),
+                    results.get(i).toStrings());
+        }
+        assertNull(results.get(inputs.length));
+    }
+    
+    @Test
+    public void testToStrings() {
+        final ArasonLevi al = ArasonLevi.calculate(Arrays.asList(12., 12.));
+        assertEquals(Arrays.asList("12.0000", "10000000000.0000", "0.0000",
+                "0.0000", "2", "0"), al.toStrings());
+        assertEquals(ArasonLevi.getHeaders().size(), al.toStrings().size());
+        assertEquals(ArasonLevi.getEmptyFields(), ArasonLevi.toStrings(null));
+    }
+    
     @Rule
     public final ExpectedException exception = ExpectedException.none();
     
@@ -0,0 +1,179 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.talvi.puffinplot.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import net.talvi.puffinplot.TestUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CalculationCacheTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static Suite makeSuite() {
+        final Suite suite = TestUtils.createContinuousSuite(6, 6,
+                (depth, level) -> Vec3.fromPolarDegrees(
+                        6 - level + depth % 2, 10 * depth + level,
+                        20 - 3 * level),
+                step -> {
+                    final int depth = Integer.parseInt(step.getDepth());
+                    final long level = Math.round(step.getAfX() * 100);
+                    step.setMagSus(level == 4 ? 10 : 1);
+                    if (depth % 3 == 0) {
+                        step.setOnCircle(level > 0);
+                    } else {
+                        step.setInPca(level > 1);
+                    }
+                });
+        suite.setSitesForSamples(suite.getSamples(),
+                sample -> Integer.parseInt(sample.getNameOrDepth()) <= 3
+                        ? "site1" : "site2");
+        return suite;
+    }
+
+    private static CalculationCache roundTrip(CalculationCache cache)
+            throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        cache.writeTo(new DataOutputStream(bytes));
+        return CalculationCache.readFrom(new DataInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    private static void assertSameResults(Suite expected, Suite actual) {
+        for (int i = 0; i < expected.getNumSamples(); i++) {
+            final Sample s0 = expected.getSampleByIndex(i);
+            final Sample s1 = actual.getSampleByIndex(i);
+            assertEquals(String.valueOf(s0.getPcaAnnotated() == null ? null :
+                    s0.getPcaAnnotated().toStrings()),
+                    String.valueOf(s1.getPcaAnnotated() == null ? null :
+                            s1.getPcaAnnotated().toStrings()));
+            assertEquals(String.valueOf(s0.getGreatCircle() == null ? null :
+                    s0.getGreatCircle().toStrings()),
+                    String.valueOf(s1.getGreatCircle() == null ? null :
+                            s1.getGreatCircle().toStrings()));
+            assertEquals(s0.getMagSusJump(), s1.getMagSusJump(), 0);
+        }
+        for (int i = 0; i < expected.getSites().size(); i++) {
+            final Site site0 = expected.getSites().get(i);
+            final Site site1 = actual.getSites().get(i);
+            assertEquals(site0.getFisherValues().toStrings(),
+                    site1.getFisherValues().toStrings());
+            assertEquals(site0.getGreatCircles() == null ? null :
+                    site0.getGreatCircles().toStrings(),
+                    site1.getGreatCircles() == null ? null :
+                    site1.getGreatCircles().toStrings());
+        }
+    }
+
+    @Test
+    public void testRestoreUnchanged() throws IOException {
+        final Suite original = makeSuite();
+        final CalculationCache cache =
+                roundTrip(original.doAllCalculations(Correction.NONE,
+                        "true", null));
+        assertEquals(6, cache.getSampleCount());
+        assertEquals(2, cache.getSiteCount());
+        final Suite reopened = makeSuite();
+        reopened.doAllCalculations(Correction.NONE, "true", cache);
+        assertEquals(8, cache.getHits());
+        assertEquals(0, cache.getMisses());
+        assertNotNull(reopened.getSampleByIndex(0).getPcaAnnotated());
+        assertNotNull(reopened.getSampleByIndex(2).getGreatCircle());
+        assertNotNull(reopened.getSites().get(1).getGreatCircles());
+        assertSameResults(original, reopened);
+    }
+
+    @Test
+    public void testRecalculateChanged() throws IOException {
+        final CalculationCache cache = roundTrip(makeSuite().
+                doAllCalculations(Correction.NONE, "true", null));
+        final Suite modified = makeSuite();
+        modified.getSampleByIndex(4).getTreatmentSteps().get(5).
+                setMoment(new Vec3(0.1, 0.2, 0.3));
+        final Suite expected = makeSuite();
+        expected.getSampleByIndex(4).getTreatmentSteps().get(5).
+                setMoment(new Vec3(0.1, 0.2, 0.3));
+        expected.doAllCalculations(Correction.NONE, "true");
+        modified.doAllCalculations(Correction.NONE, "true", cache);
+        // One changed sample, and the site which contains it
+        assertEquals(2, cache.getMisses());
+        assertEquals(6, cache.getHits());
+        assertSameResults(expected, modified);
+    }
+
+    @Test
+    public void testChangedCorrectionAndCondition() throws IOException {
+        final CalculationCache cache = roundTrip(makeSuite().
+                doAllCalculations(Correction.NONE, "true", null));
+        makeSuite().doAllCalculations(Correction.NONE, "false", cache);
+        assertEquals(2, cache.getMisses());
+        final CalculationCache cache2 = roundTrip(makeSuite().
+                doAllCalculations(Correction.NONE, "true", null));
+        makeSuite().doAllCalculations(new Correction(false, false,
+                Correction.Rotation.SAMPLE, false), "true", cache2);
+        assertTrue(cache2.getMisses() >= 6);
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectWrongVersion() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0x50504343);
+        out.writeInt(CalculationCache.FORMAT_VERSION + 1);
+        out.writeInt(0);
+        out.writeInt(0);
+        CalculationCache.readFrom(new DataInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    @Test
+    public void testSidecarFile() throws Exception {
+        final File puffinFile = temporaryFolder.newFile("test.ppl");
+        final Suite suite = makeSuite();
+        suite.saveAs(puffinFile);
+        final File sidecar = CalculationCache.getSidecarFile(puffinFile);
+        assertEquals(new File(temporaryFolder.getRoot(), "test.ppl.calc"),
+                sidecar);
+        suite.doAllCalculationsUsingCache(Correction.NONE, "true");
+        assertFalse(sidecar.exists());
+        suite.save();
+        assertTrue(sidecar.exists());
+        final CalculationCache cache = CalculationCache.readFrom(sidecar);
+        assertEquals(6, cache.getSampleCount());
+        assertNull(suite.getSampleByIndex(2).getPcaAnnotated());
+        final Suite reopened = new Suite("CalculationCacheTest");
+        reopened.readFiles(Collections.singletonList(puffinFile));
+        assertEquals(puffinFile, reopened.getPuffinFile());
+        reopened.doAllCalculationsUsingCache(Correction.NONE, "true");
+        assertSameResults(suite, reopened);
+    }
+}
@@ -0,0 +1,180 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.talvi.puffinplot.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ * @author pont
+ */
+public class CommonMeanTestTest {
+
+    private final Random random = new Random(50);
+
+    private List<Vec3> makeDirections(Vec3 mean, int n) {
+        final List<Vec3> directions = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            directions.add(mean.plus(new Vec3(random.nextGaussian(),
+                    random.nextGaussian(), random.nextGaussian()).
+                    times(0.1)).normalize());
+        }
+        return directions;
+    }
+
+    @Test
+    public void testCommonMean() {
+        final Vec3 mean = Vec3.fromPolarDegrees(1, 50, 20);
+        final CommonMeanTest test = CommonMeanTest.builder().
+                addGroup("A", makeDirections(mean, 25)).
+                addGroup("B", makeDirections(mean, 30)).
+                iterations(1000).calculate();
+        assertEquals(55, test.getN());
+        assertTrue(test.isVwTestPassed());
+        assertTrue(test.getVwPValue() > 0.05);
+        assertTrue(test.getGamma() < test.getCriticalGamma());
+        assertTrue(test.isCoordinateTestPassed());
+        assertFalse("Negative".equals(test.getClassification()));
+    }
+
+    @Test
+    public void testDistinctMeans() {
+        final CommonMeanTest test = CommonMeanTest.builder().
+                addGroup("A", makeDirections(
+                        Vec3.fromPolarDegrees(1, 50, 20), 25)).
+                addGroup("B", makeDirections(
+                        Vec3.fromPolarDegrees(1, 30, 50), 25)).
+                iterations(1000).calculate();
+        assertFalse(test.isVwTestPassed());
+        assertTrue(test.getVwPValue() < 0.05);
+        assertTrue(test.getGamma() > test.getCriticalGamma());
+        assertFalse(test.isCoordinateTestPassed());
+        assertEquals("Negative", test.getClassification());
+    }
+
+    @Test
+    public void testReversal() {
+        final Vec3 mean = Vec3.fromPolarDegrees(1, 60, 15);
+        final List<Vec3> directions = new ArrayList<>();
+        directions.addAll(makeDirections(mean, 20));
+        for (Vec3 v: makeDirections(mean, 20)) {
+            directions.add(v.invert());
+        }
+        final CommonMeanTest test = CommonMeanTest.reversalTest(directions).
+                iterations(1000).calculate();
+        assertEquals("Reversal", test.getName());
+        assertEquals(Arrays.asList("Normal", "Reversed"),
+                test.getGroupNames());
+        assertEquals(40, test.getN());
+        assertTrue(test.isVwTestPassed());
+        assertTrue(test.isCoordinateTestPassed());
+    }
+
+    @Test
+    public void testManyGroups() {
+        final Vec3 mean = Vec3.fromPolarDegrees(1, 10, 340);
+        final CommonMeanTest.Builder builder = CommonMeanTest.builder();
+        for (int i = 0; i < 5; i++) {
+            builder.addGroup("Site " + i, makeDirections(mean, 10));
+        }
+        final CommonMeanTest test = builder.iterations(500).calculate();
+        assertTrue(Double.isNaN(test.getGamma()));
+        assertTrue(Double.isNaN(test.getCriticalGamma()));
+        assertEquals(test.isVwTestPassed() ? "Positive" : "Negative",
+                test.getClassification());
+    }
+
+    @Test
+    public void testReproducible() {
+        final Vec3 mean = Vec3.fromPolarDegrees(1, 30, 0);
+        final CommonMeanTest.Builder builder = CommonMeanTest.builder().
+                addGroup("A", makeDirections(mean, 15)).
+                addGroup("B", makeDirections(mean, 15)).
+                iterations(500).seed(11);
+        final CommonMeanTest test0 = builder.calculate();
+        final CommonMeanTest test1 = builder.calculate();
+        assertEquals(test0.toStrings(), test1.toStrings());
+        for (int c = 0; c < 3; c++) {
+            assertEquals(test0.getCoordinateBounds(1, c)[0],
+                    test1.getCoordinateBounds(1, c)[0], 0);
+        }
+    }
+
+    @Test
+    public void testToStrings() {
+        final Vec3 mean = Vec3.fromPolarDegrees(1, 30, 0);
+        final CommonMeanTest test = CommonMeanTest.builder().
+                addGroup("A", makeDirections(mean, 15)).
+                addGroup("B", makeDirections(mean, 15)).
+                iterations(200).calculate();
+        final List<String> strings = test.toStrings();
+        assertEquals(CommonMeanTest.getHeaders().size(), strings.size());
+        assertEquals("Common mean", strings.get(0));
+        assertEquals("A / B", strings.get(1));
+        assertEquals("30", strings.get(2));
+    }
+
+    @Test
+    public void testIdenticalDirections() {
+        final Vec3 mean = Vec3.fromPolarDegrees(1, 40, 10);
+        final CommonMeanTest test = CommonMeanTest.builder().
+                addGroup("A", Collections.nCopies(10, mean)).
+                addGroup("B", makeDirections(mean, 10)).
+                iterations(500).calculate();
+        assertTrue(Double.isFinite(test.getVw()));
+        assertTrue(Double.isFinite(test.getCriticalVw()));
+        assertTrue(Double.isFinite(test.getVwPValue()));
+        assertTrue(Double.isFinite(test.getCriticalGamma()));
+    }
+
+    @Test
+    public void testAdjacentStreamsIndependent() {
+        final SplittableRandom first = CommonMeanTest.random(7, 0, 0);
+        final long nextIteration = CommonMeanTest.random(7, 0, 1).nextLong();
+        final long nextStream = CommonMeanTest.random(7, 1, 0).nextLong();
+        for (int i = 0; i < 100; i++) {
+            final long draw = first.nextLong();
+            assertNotEquals(draw, nextIteration);
+            assertNotEquals(draw, nextStream);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testTooFewGroups() {
+        CommonMeanTest.builder().addGroup("A",
+                makeDirections(Vec3.DOWN, 10)).calculate();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testTooFewDirections() {
+        CommonMeanTest.builder().
+                addGroup("A", makeDirections(Vec3.DOWN, 10)).
+                addGroup("B", makeDirections(Vec3.DOWN, 1)).calculate();
+    }
+}
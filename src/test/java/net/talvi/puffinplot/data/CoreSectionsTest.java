@@ -20,6 +20,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -137,6 +138,49 @@ public class CoreSectionsTest {
                 targetMeanDeclination - meanExpectedDeclination);
     }
     
+    /**
+     * Checks that alignment, which rotates the existing PCA directions
+     * along with the data, gives the same directions as recalculating them
+     * from the aligned data.
+     */
+    @Test
+    public void testAlignSectionsMatchesRecalculation() {
+        final List<Sample> samples = new ArrayList<>();
+        final Random random = new Random(47);
+        for (int section = 0; section < 4; section++) {
+            for (int i = 0; i < 5; i++) {
+                final double depth = section * 5 + i;
+                final Sample sample = new Sample(Double.toString(depth), null);
+                final Vec3 direction = Vec3.fromPolarDegrees(1,
+                        30 + random.nextDouble() * 20,
+                        random.nextDouble() * 360);
+                for (int level = 0; level < 4; level++) {
+                    final TreatmentStep step = new TreatmentStep(
+                            direction.times(4 - level).plus(new Vec3(
+                                    random.nextGaussian() * 0.05,
+                                    random.nextGaussian() * 0.05,
+                                    random.nextGaussian() * 0.05)));
+                    step.setMeasurementType(MeasurementType.CONTINUOUS);
+                    step.setDepth(Double.toString(depth));
+                    step.setDiscreteId("section" + section);
+                    step.setInPca(true);
+                    sample.addTreatmentStep(step);
+                }
+                samples.add(sample);
+            }
+        }
+        final CoreSections sections =
+                CoreSections.fromSampleListByDiscreteId(samples);
+        sections.alignSections(2, 10, CoreSections.TargetDeclinationType.MEAN);
+        final List<Vec3> propagated = samples.stream().
+                map(Sample::getDirection).collect(Collectors.toList());
+        samples.forEach(s -> s.doPca(Correction.NONE));
+        for (int i = 0; i < samples.size(); i++) {
+            assertTrue(propagated.get(i).equals(
+                    samples.get(i).getDirection(), 1e-9));
+        }
+    }
+    
     private CoreSections makeSectionsFromArrays(double[][] inputDecs) {
         final List<Sample> samples = new ArrayList<>();
         int depth = 0;
@@ -0,0 +1,138 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.talvi.puffinplot.data;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import Jama.Matrix;
+import org.junit.Test;
+
+import static java.lang.Math.toRadians;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ * @author pont
+ */
+public class FoldTestTest {
+
+    /**
+     * Creates a fold test on directions which are tightly grouped in
+     * tectonic co-ordinates and have been folded with two limbs dipping
+     * in opposite directions.
+     *
+     * @param preFolding {@code true} to fold the directions, {@code false}
+     * to leave them grouped in geographic co-ordinates
+     */
+    private static FoldTest.Builder makeBuilder(boolean preFolding) {
+        final Random random = new Random(49);
+        final FoldTest.Builder builder = FoldTest.builder();
+        final Vec3 mean = Vec3.fromPolarDegrees(1, 40, 10);
+        for (int i = 0; i < 30; i++) {
+            final double dipAz = i % 2 == 0 ? 90 : 270;
+            final double dip = 30 + random.nextDouble() * 20;
+            final Vec3 tectonic = mean.plus(new Vec3(random.nextGaussian(),
+                    random.nextGaussian(), random.nextGaussian()).
+                    times(0.05)).normalize();
+            final Vec3 geographic = preFolding
+                    ? tectonic.transform(new Matrix(
+                            Vec3.getFormationCorrectionMatrix(
+                                    toRadians(dipAz), toRadians(dip))).
+                            transpose().getArray())
+                    : tectonic;
+            builder.add(geographic, dipAz, dip);
+        }
+        return builder.bootstraps(200).seed(7);
+    }
+
+    @Test
+    public void testPreFolding() {
+        final FoldTest foldTest = makeBuilder(true).calculate();
+        assertEquals(30, foldTest.getN());
+        assertEquals(200, foldTest.getBootstrapCount());
+        assertEquals(100, foldTest.getBestPercentage(), 5);
+        assertTrue(foldTest.getLowerBound() <= 100);
+        assertTrue(foldTest.getUpperBound() >= 100);
+        assertTrue(foldTest.getLowerBound() > 0);
+    }
+
+    @Test
+    public void testPostFolding() {
+        final FoldTest foldTest = makeBuilder(false).calculate();
+        assertEquals(0, foldTest.getBestPercentage(), 5);
+        assertTrue(foldTest.getLowerBound() <= 0);
+        assertTrue(foldTest.getUpperBound() < 100);
+    }
+
+    @Test
+    public void testReproducible() {
+        assertArrayEquals(makeBuilder(true).calculate().getBootstrapOptima(),
+                makeBuilder(true).calculate().getBootstrapOptima(), 0);
+    }
+
+    @Test
+    public void testPercentagesAndTau1() {
+        final FoldTest foldTest =
+                makeBuilder(true).range(0, 100, 10).calculate();
+        assertArrayEquals(new double[] {0, 10, 20, 30, 40, 50, 60, 70, 80,
+            90, 100}, foldTest.getPercentages(), 1e-10);
+        final double[] tau1 = foldTest.getTau1();
+        assertEquals(11, tau1.length);
+        for (double t: tau1) {
+            assertTrue(t > 1. / 3 && t <= 1);
+        }
+        assertEquals(100, foldTest.getBestPercentage(), 1e-10);
+        assertEquals(Arrays.stream(tau1).max().getAsDouble(), tau1[10], 0);
+    }
+
+    @Test
+    public void testLargestEigenvalue() {
+        final Random random = new Random(3);
+        for (int i = 0; i < 100; i++) {
+            final Matrix m = new Matrix(3, 3);
+            for (int j = 0; j < 5; j++) {
+                m.plusEquals(new Vec3(random.nextGaussian(),
+                        random.nextGaussian(), random.nextGaussian()).
+                        oTensor());
+            }
+            final double expected = new Eigens(m).getValues().get(0);
+            assertEquals(expected, FoldTest.largestEigenvalue(m.get(0, 0),
+                    m.get(0, 1), m.get(0, 2), m.get(1, 1), m.get(1, 2),
+                    m.get(2, 2)), 1e-9 * expected);
+        }
+        assertEquals(2, FoldTest.largestEigenvalue(2, 0, 0, 2, 0, 2), 1e-12);
+    }
+
+    @Test
+    public void testAdjacentStreamsIndependent() {
+        final SplittableRandom first = FoldTest.random(7, 0);
+        final long next = FoldTest.random(7, 1).nextLong();
+        for (int i = 0; i < 100; i++) {
+            assertNotEquals(first.nextLong(), next);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testTooFewDirections() {
+        FoldTest.builder().add(Vec3.DOWN, 0, 10).calculate();
+    }
+}
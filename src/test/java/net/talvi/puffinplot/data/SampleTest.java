@@ -40,6 +40,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class SampleTest {
@@ -137,6 +138,108 @@ public class SampleTest {
         assertTrue(doSamplesHaveSameMoments(sample, samplePlus90BackwardRotated));
     }
     
+    /**
+     * Checks that the results produced by rotating a sample's calculations
+     * along with its data are the same as those produced by calculating them
+     * from scratch on the rotated data.
+     */
+    @Test
+    public void testRotateAroundZAxisMatchesRecalculation() {
+        final Random random = new Random(41);
+        for (int trial = 0; trial < 50; trial++) {
+            final double angle = random.nextDouble() * 720 - 360;
+            final boolean anchored = trial % 2 == 0;
+            final long seed = random.nextLong();
+            final Sample rotated = makeRandomSample(new Random(seed), 0);
+            calculateAll(rotated, anchored, Correction.NONE);
+            rotated.rotateAroundZAxis(angle);
+            final Sample recalculated =
+                    makeRandomSample(new Random(seed), angle);
+            calculateAll(recalculated, anchored, Correction.NONE);
+            
+            final PcaValues pca0 = recalculated.getPcaValues();
+            final PcaValues pca1 = rotated.getPcaValues();
+            assertTrue(pca0.getDirection().equals(pca1.getDirection(), 1e-9));
+            assertTrue(pca0.getOrigin().equals(pca1.getOrigin(), 1e-9));
+            assertEquals(pca0.getMad1(), pca1.getMad1(), 1e-9);
+            assertEquals(pca0.getMad3(), pca1.getMad3(), 1e-9);
+            assertEquals(pca0.getEquation(), pca1.getEquation());
+            
+            final GreatCircle gc0 = recalculated.getGreatCircle();
+            final GreatCircle gc1 = rotated.getGreatCircle();
+            // An eigenvector's sign is arbitrary, so compare the axes.
+            assertEquals(1, Math.abs(gc0.getPole().dot(gc1.getPole())), 1e-9);
+            assertEquals(gc0.getMad1(), gc1.getMad1(), 1e-9);
+            for (int i = 0; i < gc0.getPoints().size(); i++) {
+                assertTrue(gc0.getPoints().get(i).equals(
+                        gc1.getPoints().get(i), 1e-9));
+            }
+            
+            final FisherValues fisher0 = recalculated.getFisherValues();
+            final FisherValues fisher1 = rotated.getFisherValues();
+            assertTrue(fisher0.getMeanDirection().equals(
+                    fisher1.getMeanDirection(), 1e-9));
+            assertEquals(fisher0.getA95(), fisher1.getA95(), 1e-9);
+            assertEquals(fisher0.getK(), fisher1.getK(), 1e-6);
+        }
+    }
+    
+    /**
+     * Checks that results calculated with a sample correction, which does
+     * not commute with a rotation of the raw data, are recalculated rather
+     * than rotated.
+     */
+    @Test
+    public void testRotateAroundZAxisRecalculatesCorrectedResults() {
+        final Correction correction =
+                new Correction(false, false, Correction.Rotation.SAMPLE, false);
+        final Sample rotated = makeRandomSample(new Random(43), 0);
+        final Sample recalculated = makeRandomSample(new Random(43), 30);
+        for (Sample sample: Arrays.asList(rotated, recalculated)) {
+            for (TreatmentStep step: sample.getTreatmentSteps()) {
+                step.setSampAz(70);
+                step.setSampDip(40);
+            }
+        }
+        calculateAll(rotated, false, correction);
+        rotated.rotateAroundZAxis(30);
+        calculateAll(recalculated, false, correction);
+        assertTrue(recalculated.getPcaValues().getDirection().equals(
+                rotated.getPcaValues().getDirection(), 1e-9));
+        assertTrue(recalculated.getFisherValues().getMeanDirection().equals(
+                rotated.getFisherValues().getMeanDirection(), 1e-9));
+        assertEquals(1, Math.abs(recalculated.getGreatCircle().getPole().
+                dot(rotated.getGreatCircle().getPole())), 1e-9);
+    }
+    
+    private static Sample makeRandomSample(Random random,
+            double angleDegrees) {
+        final Sample sample = new Sample("random sample", null);
+        for (int i = 0; i < 8; i++) {
+            final Vec3 moment = new Vec3(random.nextGaussian(),
+                    random.nextGaussian(), random.nextGaussian());
+            final TreatmentStep step =
+                    new TreatmentStep(moment.rotZ(Math.toRadians(angleDegrees)));
+            step.setTreatmentType(TreatmentType.DEGAUSS_XYZ);
+            step.setAfX(i);
+            step.setAfY(i);
+            step.setAfZ(i);
+            step.setInPca(i > 1);
+            step.setOnCircle(i < 6);
+            step.setSelected(i % 2 == 0);
+            sample.addTreatmentStep(step);
+        }
+        return sample;
+    }
+    
+    private static void calculateAll(Sample sample, boolean anchored,
+            Correction correction) {
+        sample.setPcaAnchored(anchored);
+        sample.doPca(correction);
+        sample.fitGreatCircle(correction);
+        sample.calculateFisher(correction);
+    }
+    
     private Sample makeSampleFromVectors(Vec3[] vectors) {
         final Sample sample = new Sample("test sample", null);
         for (Vec3 vector: vectors) {
@@ -575,6 +678,48 @@ public class SampleTest {
                 Collections.singleton(TreatmentType.THERMAL), 5));
     }
 
+    @Test
+    public void testGetTreatmentStepByLevelWithinTolerance() {
+        assertEquals(5, simpleSample.getTreatmentStepByLevel(5 + 5e-7)
+                .getTreatmentLevel(), delta);
+        assertNull(simpleSample.getTreatmentStepByLevel(5 + 2e-6));
+    }
+
+    @Test
+    public void testGetTreatmentStepByLevelReturnsFirstMatch() {
+        final TreatmentStep duplicate = new TreatmentStep(1, 1, 1);
+        duplicate.setTreatmentType(TreatmentType.THERMAL);
+        duplicate.setTemperature(3);
+        final Sample sample = new Sample("test", null);
+        sample.addTreatmentStep(duplicate);
+        simpleSample.getTreatmentSteps().forEach(sample::addTreatmentStep);
+        assertSame(duplicate, sample.getTreatmentStepByLevel(3));
+        assertSame(simpleSample.getTreatmentStepByIndex(3),
+                sample.getTreatmentStepByTypeAndLevel(
+                        Collections.singleton(TreatmentType.DEGAUSS_XYZ), 3));
+    }
+
+    @Test
+    public void testGetTreatmentStepByLevelAfterLevelChange() {
+        final TreatmentStep step = simpleSample.getTreatmentStepByLevel(5);
+        step.setAfX(50);
+        assertNull(simpleSample.getTreatmentStepByLevel(5));
+        assertSame(step, simpleSample.getTreatmentStepByLevel(50));
+        step.setTreatmentType(TreatmentType.THERMAL);
+        step.setTemperature(500);
+        assertSame(step, simpleSample.getTreatmentStepByTypeAndLevel(
+                Collections.singleton(TreatmentType.THERMAL), 500));
+    }
+
+    @Test
+    public void testGetStepsInRanges() {
+        final List<TreatmentStep> steps = simpleSample.getStepsInRanges(
+                MultiRange.fromString("7-8,1,3-4.5"));
+        assertEquals(Arrays.asList(1., 3., 4., 7., 8.),
+                steps.stream().map(TreatmentStep::getTreatmentLevel)
+                        .collect(Collectors.toList()));
+    }
+
     @Test
     public void testGetDirectionWithFisherValues() {
         simpleSample.selectAll();
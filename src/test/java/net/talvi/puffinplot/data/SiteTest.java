@@ -244,6 +244,23 @@ public class SiteTest {
         assertEquals(Collections.singletonList(sample), site.getSamples());        
     }
     
+    @Test
+    public void testRemoveSamplePreservesOrder() {
+        final Site site = new Site("site0", standardSamples);
+        site.removeSample(standardSamples.get(3));
+        final List<Sample> expected = new ArrayList<>(standardSamples);
+        expected.remove(3);
+        assertEquals(expected, site.getSamples());
+    }
+
+    @Test
+    public void testConstructorCopiesSampleList() {
+        final List<Sample> samples = new ArrayList<>(standardSamples);
+        final Site site = new Site("site0", samples);
+        samples.clear();
+        assertEquals(standardSamples, site.getSamples());
+    }
+    
     @Test
     public void testAddSampleNull() {
         final ListHandler handler = ListHandler.createAndAdd();
@@ -71,6 +71,16 @@ public class StepwiseSampleRpiEstimateTest {
         assertEquals(intensities, estimate.getIntensities());
     }
 
+    @Test
+    public void testArrayConstructor() {
+        final StepwiseSampleRpiEstimate fromArray =
+                new StepwiseSampleRpiEstimate(new double[] {2, 4, 6, -1, 8},
+                        nrmSample, armSample, meanRatio, slope, r, rSquared);
+        assertEquals(intensities, fromArray.getIntensities());
+        assertEquals(estimate.toCommaSeparatedString(),
+                fromArray.toCommaSeparatedString());
+    }
+
     @Test
     public void testGetMeanRatio() {
         assertEquals(meanRatio, estimate.getMeanRatio(), delta);
@@ -0,0 +1,137 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.talvi.puffinplot.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import net.talvi.puffinplot.TestUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SuiteChangeEventTest {
+
+    private Suite suite;
+    private final List<SuiteChangeEvent> events = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        suite = TestUtils.createContinuousSuite(3, 4,
+                (depth, level) -> Vec3.fromPolarDegrees(4 - level,
+                        10 * depth, 20));
+        suite.addChangeListener(events::add);
+    }
+
+    @Test
+    public void testStepSelection() {
+        final TreatmentStep step =
+                suite.getSampleByIndex(0).getTreatmentSteps().get(1);
+        step.setSelected(true);
+        assertEquals(1, events.size());
+        final SuiteChangeEvent event = events.get(0);
+        assertEquals(EnumSet.of(SuiteChangeEvent.Type.STEP_SELECTION),
+                event.getTypes());
+        assertEquals(Collections.singleton(step), event.getTreatmentSteps());
+        assertEquals(Collections.singleton(suite.getSampleByIndex(0)),
+                event.getSamples());
+        assertTrue(step.isSelected());
+    }
+
+    @Test
+    public void testStepFlagsAndMoment() {
+        final TreatmentStep step =
+                suite.getSampleByIndex(1).getTreatmentSteps().get(0);
+        step.setHidden(true);
+        step.setMoment(new Vec3(1, 2, 3));
+        step.setTemperature(100);
+        assertEquals(3, events.size());
+        assertTrue(events.get(0).contains(SuiteChangeEvent.Type.STEP_FLAGS));
+        assertTrue(events.get(1).contains(SuiteChangeEvent.Type.STEP_MOMENT));
+        assertTrue(events.get(2).contains(SuiteChangeEvent.Type.STEP_DATA));
+    }
+
+    @Test
+    public void testBulkSelectionFiresOnce() {
+        suite.getSampleByIndex(2).selectAll();
+        assertEquals(1, events.size());
+        assertEquals(4, events.get(0).getTreatmentSteps().size());
+        events.clear();
+        suite.getSampleByIndex(2).selectByTreatmentLevelRange(0.015, 1);
+        assertEquals(1, events.size());
+    }
+
+    @Test
+    public void testTransaction() {
+        suite.runInTransaction(() -> {
+            for (Sample sample: suite.getSamples()) {
+                sample.selectAll();
+                sample.useSelectionForPca();
+                sample.doPca(Correction.NONE);
+            }
+            assertTrue(events.isEmpty());
+        });
+        assertEquals(1, events.size());
+        final SuiteChangeEvent event = events.get(0);
+        assertEquals(EnumSet.of(SuiteChangeEvent.Type.STEP_SELECTION,
+                SuiteChangeEvent.Type.STEP_FLAGS,
+                SuiteChangeEvent.Type.CALCULATIONS), event.getTypes());
+        assertEquals(3, event.getSamples().size());
+        assertEquals(12, event.getTreatmentSteps().size());
+    }
+
+    @Test
+    public void testSamplesRemoved() {
+        final Sample sample = suite.getSampleByIndex(1);
+        suite.removeSamples(Collections.singleton(sample));
+        assertEquals(1, events.size());
+        assertEquals(EnumSet.of(SuiteChangeEvent.Type.SAMPLES_REMOVED),
+                events.get(0).getTypes());
+        assertEquals(Collections.singleton(sample), events.get(0).getSamples());
+    }
+
+    @Test
+    public void testSamplesAdded() {
+        final TreatmentStep step = new TreatmentStep(new Vec3(1, 0, 0));
+        step.setMeasurementType(MeasurementType.CONTINUOUS);
+        step.setDepth("4");
+        suite.addTreatmentStep(step);
+        assertTrue(events.stream().anyMatch(event ->
+                event.contains(SuiteChangeEvent.Type.SAMPLES_ADDED)));
+    }
+
+    @Test
+    public void testSites() {
+        suite.setNamedSiteForSamples(suite.getSamples(), "S1");
+        assertEquals(1, events.size());
+        assertTrue(events.get(0).contains(SuiteChangeEvent.Type.SITES));
+        assertEquals(3, events.get(0).getSamples().size());
+    }
+
+    @Test
+    public void testRemoveListener() {
+        final List<SuiteChangeEvent> otherEvents = new ArrayList<>();
+        final Suite.ChangeListener listener = otherEvents::add;
+        suite.addChangeListener(listener);
+        suite.removeChangeListener(listener);
+        suite.getSampleByIndex(0).selectAll();
+        assertTrue(otherEvents.isEmpty());
+    }
+}
@@ -0,0 +1,207 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.talvi.puffinplot.data;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import net.talvi.puffinplot.TestUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SuiteHistoryTest {
+
+    private Suite suite;
+    private SuiteHistory history;
+
+    @Before
+    public void setUp() {
+        suite = TestUtils.createContinuousSuite(5, 3,
+                (depth, level) -> Vec3.fromPolarDegrees(3 - level,
+                        10 * depth, 20));
+        history = suite.getHistory();
+    }
+
+    private List<String> sampleNames() {
+        return suite.getSamples().stream().map(Sample::getNameOrDepth).
+                collect(Collectors.toList());
+    }
+
+    @Test
+    public void testUndoRedoStepChange() {
+        final TreatmentStep step =
+                suite.getSampleByIndex(2).getTreatmentSteps().get(1);
+        assertFalse(history.canUndo());
+        history.checkpoint("Select step");
+        step.setInPca(true);
+        step.setHidden(true);
+        assertTrue(history.canUndo());
+        assertEquals("Select step", history.getUndoDescription());
+        history.undo();
+        assertFalse(step.isInPca());
+        assertFalse(step.isHidden());
+        assertFalse(history.canUndo());
+        assertTrue(history.canRedo());
+        history.redo();
+        assertTrue(step.isInPca());
+        assertTrue(step.isHidden());
+    }
+
+    @Test
+    public void testUndoRemoveSamples() {
+        final List<String> namesBefore = sampleNames();
+        final Sample removed = suite.getSampleByName("5");
+        history.run("Remove samples",
+                () -> suite.removeSamplesOutsideDepthRange(2, 4));
+        assertEquals(3, suite.getNumSamples());
+        assertNull(suite.getSampleByName("5"));
+        history.undo();
+        assertEquals(namesBefore, sampleNames());
+        assertSame(removed, suite.getSampleByName("5"));
+        history.redo();
+        assertEquals(Arrays.asList("2", "3", "4"), sampleNames());
+    }
+
+    @Test
+    public void testUndoSiteAssignment() {
+        final List<Sample> samples = suite.getSamples().subList(0, 2);
+        history.run("Set sites",
+                () -> suite.setSitesForSamples(samples, sample -> "site1"));
+        assertEquals(1, suite.getSites().size());
+        assertEquals(2, suite.getSites().get(0).getSamples().size());
+        history.undo();
+        assertTrue(suite.getSites().isEmpty());
+        assertNull(suite.getSampleByIndex(0).getSite());
+        history.redo();
+        assertEquals("site1", suite.getSampleByIndex(1).getSite().getName());
+    }
+
+    @Test
+    public void testUndoRestoresSiteStatistics() {
+        for (Sample sample: suite.getSamples()) {
+            sample.selectAll();
+            sample.useSelectionForPca();
+            sample.doPca(Correction.NONE);
+        }
+        suite.setSitesForSamples(suite.getSamples().subList(0, 3),
+                sample -> "site1");
+        suite.calculateSiteFishers(Correction.NONE);
+        final Site site = suite.getSites().get(0);
+        final FisherValues fisher = site.getFisherValues();
+        final ArasonLevi inclinationStats = site.getInclinationStats();
+        assertNotNull(fisher);
+        assertNotNull(inclinationStats);
+        history.clear();
+        history.run("Clear site", () -> {
+            suite.clearSites(suite.getSamples().subList(0, 1));
+            site.clearFisherStats();
+        });
+        assertNull(site.getInclinationStats());
+        history.undo();
+        assertSame(fisher, site.getFisherValues());
+        assertSame(inclinationStats, site.getInclinationStats());
+    }
+
+    @Test
+    public void testNewEditClearsRedo() {
+        final List<TreatmentStep> steps =
+                suite.getSampleByIndex(0).getTreatmentSteps();
+        history.checkpoint("First");
+        steps.get(0).setInPca(true);
+        history.undo();
+        assertTrue(history.canRedo());
+        history.checkpoint("Second");
+        assertTrue(history.canRedo());
+        steps.get(1).setInPca(true);
+        assertFalse(history.canRedo());
+        assertNull(history.getRedoDescription());
+    }
+
+    @Test
+    public void testRunEndsEdit() {
+        final List<TreatmentStep> steps =
+                suite.getSampleByIndex(0).getTreatmentSteps();
+        history.run("Outer", () -> {
+            steps.get(0).setInPca(true);
+            history.run("Inner", () -> steps.get(1).setInPca(true));
+            steps.get(2).setInPca(true);
+        });
+        steps.get(0).setHidden(true);
+        assertEquals("Edit", history.getUndoDescription());
+        history.undo();
+        assertFalse(steps.get(0).isHidden());
+        assertTrue(steps.get(0).isInPca());
+        assertEquals("Outer", history.getUndoDescription());
+        history.undo();
+        assertFalse(steps.get(0).isInPca());
+        assertFalse(steps.get(1).isInPca());
+        assertFalse(steps.get(2).isInPca());
+        assertFalse(history.canUndo());
+    }
+
+    @Test
+    public void testUndoCustomFields() {
+        suite.getCustomFlagNames().add(0, "flag");
+        suite.getCustomNoteNames().add(0, "note");
+        final Sample sample = suite.getSampleByIndex(1);
+        history.run("Set custom fields", () -> {
+            sample.setCustomFlag(0, true);
+            sample.setCustomNote(0, "changed");
+        });
+        history.undo();
+        assertEquals(Boolean.FALSE, sample.getCustomFlags().get(0));
+        assertEquals("", sample.getCustomNotes().get(0));
+        history.redo();
+        assertEquals(Boolean.TRUE, sample.getCustomFlags().get(0));
+        assertEquals("changed", sample.getCustomNotes().get(0));
+    }
+
+    @Test
+    public void testLimit() {
+        history.setLimit(2);
+        final List<TreatmentStep> steps =
+                suite.getSampleByIndex(0).getTreatmentSteps();
+        for (TreatmentStep step : steps) {
+            history.checkpoint("Select");
+            step.setInPca(true);
+        }
+        history.undo();
+        history.undo();
+        assertFalse(history.canUndo());
+        assertTrue(steps.get(0).isInPca());
+        assertFalse(steps.get(1).isInPca());
+        assertFalse(steps.get(2).isInPca());
+    }
+
+    @Test
+    public void testUndoMarksSuiteUnsaved() {
+        suite.setSaved(true);
+        history.run("Clear sites", () -> suite.clearSites(
+                Collections.singletonList(suite.getSampleByIndex(0))));
+        suite.setSaved(true);
+        history.undo();
+        assertFalse(suite.isSaved());
+    }
+}
@@ -0,0 +1,224 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.talvi.puffinplot.data;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import net.talvi.puffinplot.PuffinUserException;
+import net.talvi.puffinplot.TestUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SuiteJournalTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File puffinFile;
+    private File journalFile;
+    private File snapshotFile;
+    private Suite suite;
+
+    @Before
+    public void setUp() throws IOException, PuffinUserException {
+        suite = TestUtils.createContinuousSuite(4, 4,
+                (depth, level) -> Vec3.fromPolarDegrees(4 - level,
+                        10 * depth, 20));
+        puffinFile = new File(temporaryFolder.getRoot(), "journal.ppl");
+        suite.saveAs(puffinFile);
+        journalFile = SuiteJournal.getJournalFile(puffinFile);
+        snapshotFile = SuiteJournal.getSnapshotFile(puffinFile);
+    }
+
+    private Suite reopen() throws IOException {
+        final Suite reopened = new Suite("SuiteJournalTest");
+        reopened.readFiles(Collections.singletonList(puffinFile));
+        return reopened;
+    }
+
+    /*
+     * Reopens the suite as PuffinApp does, from its snapshot if it has
+     * one, and replays its journal.
+     */
+    private Suite recover() throws IOException {
+        final Suite recovered = new Suite("SuiteJournalTest");
+        recovered.readFiles(Collections.singletonList(
+                SuiteJournal.getRecoveryFile(puffinFile)));
+        recovered.setPuffinFile(puffinFile);
+        SuiteJournal.replay(recovered);
+        return recovered;
+    }
+
+    @Test
+    public void testReplay() throws IOException {
+        final SuiteJournal journal = new SuiteJournal(suite);
+        suite.getSampleByIndex(1).getTreatmentSteps().get(2).setInPca(true);
+        suite.getSampleByIndex(2).getTreatmentSteps().get(0).setHidden(true);
+        suite.getSampleByIndex(3).getTreatmentSteps().get(1).setSampAz(123);
+        suite.setSitesForSamples(
+                Collections.singletonList(suite.getSampleByIndex(0)),
+                sample -> "site1");
+        journal.close();
+        assertTrue(journalFile.exists());
+
+        final Suite reopened = reopen();
+        assertFalse(reopened.getSampleByIndex(1).getTreatmentSteps().get(2).
+                isInPca());
+        assertEquals(4, SuiteJournal.replay(reopened));
+        assertTrue(reopened.getSampleByIndex(1).getTreatmentSteps().get(2).
+                isInPca());
+        assertTrue(reopened.getSampleByIndex(2).getTreatmentSteps().get(0).
+                isHidden());
+        assertEquals(123, reopened.getSampleByIndex(3).getTreatmentSteps().
+                get(1).getSampAz(), 1e-10);
+        assertEquals("site1",
+                reopened.getSampleByIndex(0).getSite().getName());
+    }
+
+    @Test
+    public void testSaveDeletesJournal() throws PuffinUserException,
+            IOException {
+        final SuiteJournal journal = new SuiteJournal(suite);
+        suite.getSampleByIndex(1).getTreatmentSteps().get(2).setInPca(true);
+        journal.flush();
+        assertTrue(journalFile.exists());
+        suite.save();
+        journal.flush();
+        assertFalse(journalFile.exists());
+        journal.close();
+        assertEquals(0, SuiteJournal.replay(reopen()));
+    }
+
+    @Test
+    public void testTruncatedRecordIgnored() throws IOException {
+        final SuiteJournal journal = new SuiteJournal(suite);
+        suite.getSampleByIndex(1).getTreatmentSteps().get(2).setInPca(true);
+        journal.close();
+        try (OutputStream stream = new FileOutputStream(journalFile, true)) {
+            stream.write("STEP\t3\t0\tfalse\tfal".getBytes(
+                    StandardCharsets.UTF_8));
+        }
+        final Suite reopened = reopen();
+        assertEquals(1, SuiteJournal.replay(reopened));
+        assertFalse(reopened.getSampleByIndex(2).getTreatmentSteps().get(0).
+                isHidden());
+    }
+
+    @Test
+    public void testStepRemovalEndsJournal() throws IOException,
+            PuffinUserException {
+        final SuiteJournal journal = new SuiteJournal(suite);
+        final Sample sample = suite.getSampleByIndex(1);
+        sample.getTreatmentSteps().get(0).setInPca(true);
+        sample.removeData(Collections.singleton(
+                sample.getTreatmentSteps().get(1)));
+        /*
+         * This step was at index 3 in the saved file but is now at index 2,
+         * so a record of the edit must not be replayed.
+         */
+        sample.getTreatmentSteps().get(2).setHidden(true);
+        journal.flush();
+
+        final Suite reopened = reopen();
+        assertEquals(1, SuiteJournal.replay(reopened));
+        final List<TreatmentStep> steps =
+                reopened.getSampleByIndex(1).getTreatmentSteps();
+        assertEquals(4, steps.size());
+        assertTrue(steps.get(0).isInPca());
+        for (TreatmentStep step: steps) {
+            assertFalse(step.isHidden());
+        }
+
+        assertTrue(journal.compactIfNeeded());
+        journal.close();
+        assertFalse(journalFile.exists());
+        assertEquals(4, reopen().getSampleByIndex(1).getTreatmentSteps().
+                size());
+        final List<TreatmentStep> recoveredSteps =
+                recover().getSampleByIndex(1).getTreatmentSteps();
+        assertEquals(3, recoveredSteps.size());
+        assertTrue(recoveredSteps.get(2).isHidden());
+    }
+
+    @Test
+    public void testDiscard() throws PuffinUserException {
+        final SuiteJournal journal = new SuiteJournal(suite);
+        suite.getSampleByIndex(1).getTreatmentSteps().get(2).setInPca(true);
+        suite.removeSamples(Collections.singletonList(
+                suite.getSampleByIndex(3)));
+        assertTrue(journal.compactIfNeeded());
+        journal.discard();
+        assertFalse(journalFile.exists());
+        assertFalse(snapshotFile.exists());
+    }
+
+    @Test
+    public void testCompactIfNeeded() throws PuffinUserException,
+            IOException {
+        final SuiteJournal journal = new SuiteJournal(suite);
+        suite.getSampleByIndex(1).getTreatmentSteps().get(2).setInPca(true);
+        assertFalse(journal.compactIfNeeded());
+        suite.removeSamples(Collections.singletonList(
+                suite.getSampleByIndex(3)));
+        final long modified = puffinFile.lastModified();
+        final long length = puffinFile.length();
+        assertTrue(journal.compactIfNeeded());
+        assertFalse(suite.isSaved());
+        suite.getSampleByIndex(2).getTreatmentSteps().get(0).setHidden(true);
+        journal.close();
+        assertEquals(modified, puffinFile.lastModified());
+        assertEquals(length, puffinFile.length());
+        assertEquals(4, reopen().getNumSamples());
+        assertTrue(snapshotFile.exists());
+        assertEquals(snapshotFile, SuiteJournal.getRecoveryFile(puffinFile));
+
+        final Suite recovered = recover();
+        assertEquals(puffinFile, recovered.getPuffinFile());
+        assertEquals(3, recovered.getNumSamples());
+        assertTrue(recovered.getSampleByIndex(1).getTreatmentSteps().get(2).
+                isInPca());
+        assertTrue(recovered.getSampleByIndex(2).getTreatmentSteps().get(0).
+                isHidden());
+    }
+
+    @Test
+    public void testSaveDeletesSnapshot() throws PuffinUserException,
+            IOException {
+        final SuiteJournal journal = new SuiteJournal(suite);
+        suite.removeSamples(Collections.singletonList(
+                suite.getSampleByIndex(3)));
+        assertTrue(journal.compactIfNeeded());
+        journal.flush();
+        assertTrue(snapshotFile.exists());
+        suite.save();
+        journal.close();
+        assertFalse(snapshotFile.exists());
+        assertEquals(puffinFile, SuiteJournal.getRecoveryFile(puffinFile));
+        assertEquals(3, reopen().getNumSamples());
+    }
+}
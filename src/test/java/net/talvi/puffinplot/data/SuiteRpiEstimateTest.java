@@ -20,6 +20,8 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -28,6 +30,7 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -97,6 +100,53 @@ public class SuiteRpiEstimateTest {
 
     }
 
+    @Test
+    public void testCalculateWithMagSusMatchesNumericDepths() {
+        final Suite nrmSuite = new Suite("test");
+        final Suite msSuite = new Suite("test");
+        for (int i = 0; i < 100; i++) {
+            final TreatmentStep nrmStep =
+                    makeStep(0.005, TreatmentType.NONE, 0, 0);
+            nrmStep.setDepth(String.format(Locale.ENGLISH, "%.1f", i * 0.5));
+            nrmSuite.addTreatmentStep(nrmStep);
+            final TreatmentStep msStep =
+                    makeStep(0, TreatmentType.NONE, 0, i + 1);
+            msStep.setDepth(String.format(Locale.ENGLISH, "%.3f", i * 0.5));
+            msSuite.addTreatmentStep(msStep);
+        }
+        final List<MagSusSampleRpiEstimate> rpis =
+                SuiteRpiEstimate.calculateWithMagSus(nrmSuite, msSuite)
+                        .getRpis();
+        assertEquals(100, rpis.size());
+        for (int i = 0; i < 100; i++) {
+            assertSame(nrmSuite.getSampleByIndex(i),
+                    rpis.get(i).getNrmSample());
+            assertEquals(0.005 / (i + 1), rpis.get(i).getRatio(), 1e-10);
+        }
+    }
+
+    @Test
+    public void testCalculateWithMagSusDepthTolerance() {
+        final Suite nrmSuite = new Suite("test");
+        final TreatmentStep nrmStep = makeStep(0.005, TreatmentType.NONE, 0, 0);
+        nrmStep.setDepth("1.01");
+        nrmSuite.addTreatmentStep(nrmStep);
+        final Suite msSuite = new Suite("test");
+        for (String depth: new String[] {"0.9", "1", "1.1"}) {
+            final TreatmentStep msStep =
+                    makeStep(0, TreatmentType.NONE, 0, 10);
+            msStep.setDepth(depth);
+            msSuite.addTreatmentStep(msStep);
+        }
+        assertTrue(SuiteRpiEstimate.calculateWithMagSus(nrmSuite, msSuite)
+                .getRpis().isEmpty());
+        final List<MagSusSampleRpiEstimate> rpis =
+                SuiteRpiEstimate.calculateWithMagSus(nrmSuite, msSuite, 0.05)
+                        .getRpis();
+        assertEquals(1, rpis.size());
+        assertSame(msSuite.getSampleByIndex(1), rpis.get(0).getNormalizer());
+    }
+
     private static TreatmentStep makeStep(double magnetization,
             TreatmentType treatmentType, double afIntensity,
             double susceptibility) {
@@ -0,0 +1,115 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.talvi.puffinplot.data;
+
+import java.util.Arrays;
+import java.util.Collections;
+import net.talvi.puffinplot.TestUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SuiteStatisticsTest {
+
+    private Suite suite;
+    private SuiteStatistics statistics;
+
+    @Before
+    public void setUp() {
+        suite = TestUtils.createContinuousSuite(5, 3,
+                (depth, level) -> Vec3.fromPolarDegrees(depth * (3 - level),
+                        10 * depth, 0));
+        statistics = suite.getStatistics();
+    }
+
+    @Test
+    public void testDepthRange() {
+        assertEquals(1, suite.getMinDepth(), 1e-10);
+        assertEquals(5, suite.getMaxDepth(), 1e-10);
+    }
+
+    @Test
+    public void testDepthRangeAfterSetDepth() {
+        suite.getSampleByIndex(4).setDepth("11");
+        assertEquals(11, suite.getMaxDepth(), 1e-10);
+        suite.getSampleByIndex(0).setDepth("0.5");
+        assertEquals(0.5, suite.getMinDepth(), 1e-10);
+    }
+
+    @Test
+    public void testDepthRangeAfterRemoval() {
+        suite.removeSamples(Collections.singleton(
+                suite.getSampleByIndex(4)));
+        assertEquals(4, suite.getMaxDepth(), 1e-10);
+        suite.removeSamplesOutsideDepthRange(2, 3);
+        assertEquals(2, suite.getMinDepth(), 1e-10);
+        assertEquals(3, suite.getMaxDepth(), 1e-10);
+    }
+
+    @Test
+    public void testNrm() {
+        assertEquals(5, statistics.getNrmCount());
+        assertEquals(3, statistics.getMinNrm(), 1e-10);
+        assertEquals(15, statistics.getMaxNrm(), 1e-10);
+        assertEquals(15, statistics.getMaxIntensity(), 1e-10);
+    }
+
+    @Test
+    public void testNrmHistogram() {
+        final int[] expected = new int[5];
+        Arrays.fill(expected, 1);
+        expected[0] = 0;
+        expected[4] = 2; // NRM of 15 goes in the rightmost bucket
+        assertArrayEquals(expected, statistics.getNrmHistogram(0, 15, 5));
+    }
+
+    @Test
+    public void testNrmAfterMomentChange() {
+        final long version = statistics.getVersion();
+        suite.getSampleByIndex(0).getTreatmentStepByIndex(0)
+                .setMoment(Vec3.fromPolarDegrees(100, 10, 0));
+        assertEquals(100, statistics.getMaxNrm(), 1e-10);
+        assertNotEquals(version, statistics.getVersion());
+    }
+
+    @Test
+    public void testInclinations() {
+        for (Sample sample: suite.getSamples()) {
+            sample.setImportedDirection(
+                    Vec3.fromPolarDegrees(1, 10 * sample.getDepth(), 0));
+        }
+        assertEquals(5, statistics.getInclinationCount());
+        assertEquals(10, statistics.getMinInclination(), 1e-10);
+        assertEquals(50, statistics.getMaxInclination(), 1e-10);
+        assertEquals(45, statistics.getMeanSteepInclination(), 1e-10);
+    }
+
+    @Test
+    public void testTreatmentLevels() {
+        assertEquals(Arrays.asList(0.0, 0.01, 0.02),
+                Arrays.asList(statistics.getTreatmentLevels(
+                        TreatmentType.DEGAUSS_XYZ).toArray()));
+        assertEquals(0.02, statistics.getMaxTreatmentLevel(
+                TreatmentType.DEGAUSS_XYZ), 1e-10);
+        assertTrue(statistics.getTreatmentLevels(
+                TreatmentType.THERMAL).isEmpty());
+    }
+}
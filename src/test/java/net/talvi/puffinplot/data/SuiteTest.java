@@ -533,8 +533,16 @@ public class SuiteTest {
                 SuiteCalcs.Means.calculate(bigSuiteSites.stream().map((s) ->
                 VGP.calculate(s.getMeanDirection(), 0, s.getLocation()).
                         getLocation().toVec3()).collect(Collectors.toList()));
+        final ArasonLevi inclinationsBySite =
+                ArasonLevi.calculate(bigSuiteSites.stream().map((s) ->
+                s.getMeanDirection().getIncDeg()).
+                        collect(Collectors.toList()));
+        final ArasonLevi inclinationsBySample =
+                ArasonLevi.calculate(testData.stream().map(Vec3::getIncDeg).
+                        collect(Collectors.toList()));
         final SuiteCalcs expectedCalcs = new SuiteCalcs(dirsBySite,
-                dirsBySample, vgpsBySite, vgpsBySample);
+                dirsBySample, vgpsBySite, vgpsBySample,
+                inclinationsBySite, inclinationsBySample);
         
         /*
          * SuiteCalcs doesn't implement an equals method, but the toStrings
@@ -546,6 +554,8 @@ public class SuiteTest {
         
         assertEquals(expectedCalcs.toStrings(),
                 multiSuiteMeans.toStrings());
+        assertEquals(expectedCalcs.inclinationsToStrings(),
+                bigSuite.getSuiteMeans().inclinationsToStrings());
         
         StringBuilder expectedFileContents = new StringBuilder();
         expectedFileContents.append(SuiteCalcs.getHeaders().stream().
@@ -554,6 +564,13 @@ public class SuiteTest {
             expectedFileContents.append(line.stream().
                     collect(Collectors.joining(",")) + "\n");
         }
+        expectedFileContents.append("\n");
+        expectedFileContents.append(SuiteCalcs.getInclinationHeaders().
+                stream().collect(Collectors.joining(",")) + "\n");
+        for (List<String> line: expectedCalcs.inclinationsToStrings()) {
+            expectedFileContents.append(line.stream().
+                    collect(Collectors.joining(",")) + "\n");
+        }
         
         final File savedCalcs = temporaryFolder.getRoot().toPath().
                 resolve("suitecalcs.csv").toFile();
@@ -888,6 +905,46 @@ public class SuiteTest {
         assertTrue(suite.getSites().isEmpty());
     }
 
+    @Test
+    public void testGetSiteByNameAfterSiteAssignment() {
+        syntheticSuite1.setSiteNamesByDepth(syntheticSuite1.getSamples(), 5);
+        final Site site0 = syntheticSuite1.getSiteByName("0.00");
+        final Site site5 = syntheticSuite1.getSiteByName("5.00");
+        assertEquals(syntheticSuite1.getSamples().subList(0, 5),
+                site0.getSamples());
+        assertEquals(syntheticSuite1.getSamples().subList(5, 10),
+                site5.getSamples());
+        assertEquals(Arrays.asList(site0, site5), syntheticSuite1.getSites());
+        syntheticSuite1.setNamedSiteForSamples(syntheticSuite1.getSamples(),
+                "all");
+        assertNull(syntheticSuite1.getSiteByName("0.00"));
+        assertNull(syntheticSuite1.getSiteByName("5.00"));
+        assertEquals(syntheticSuite1.getSamples(),
+                syntheticSuite1.getSiteByName("all").getSamples());
+    }
+    
+    @Test
+    public void testSetSitesForSamplesPreservesSampleOrderWithinSite() {
+        final Suite suite = syntheticSuite1;
+        suite.setNamedSiteForSamples(suite.getSamples(), "site1");
+        suite.setNamedSiteForSamples(suite.getSamples().subList(0, 1),
+                "site1");
+        assertEquals(suite.getSamples(),
+                suite.getSiteByName("site1").getSamples());
+    }
+    
+    @Test
+    public void testClearSitesRemovesSamplesFromSite() {
+        final Suite suite = syntheticSuite1;
+        suite.setNamedSiteForSamples(suite.getSamples(), "site1");
+        suite.clearSites(suite.getSamples().subList(0, 2));
+        final Site site = suite.getSiteByName("site1");
+        assertEquals(suite.getSamples().subList(2, suite.getNumSamples()),
+                site.getSamples());
+        suite.clearSites(suite.getSamples());
+        assertNull(suite.getSiteByName("site1"));
+    }
+
     @Test
     public void testRescaleMagSus() {
         syntheticSuite1.setSaved(true);
@@ -927,9 +984,12 @@ public class SuiteTest {
                 "Site,Samples,Fisher dec. (deg),Fisher inc. (deg),Fisher a95 (deg),Fisher k,Fisher nDirs,Fisher R,"
                 + "GC valid,GC dec. (deg),GC inc. (deg),GC a95 (deg),GC k,GC N,GC M,GC R,GC min points,"
                 + "GC D1min (degC or mT),GC D1max (degC or mT),GC D2min (degC or mT),GC D2max (degC or mT),"
-                + "Lat (deg),Long (deg),VGP lat (deg),VGP long (deg),VGP dp (deg),VGP dm (deg)\n"
-                + "0.00,5,22.8728,14.4217,16.7387,21.8470,5,4.8169,Y,183.0448,13.0636,6.8346,269.1429,5,0,4.9944,10,0.00000,0.00000,90.0000,90.0000,15.0,25.0,-68.1725,16.8419,3.5534,6.9694\n"
-                + "5.00,5,33.9598,3.3541,1.0511,5300.1858,5,4.9992,Y,189.9534,4.3122,1.6842,4422.6002,5,0,4.9997,10,0.00000,0.00000,90.0000,90.0000,,,,,,\n";
+                + "Lat (deg),Long (deg),VGP lat (deg),VGP long (deg),VGP dp (deg),VGP dm (deg),"
+                + "AL inc. (deg),AL k,AL t63 (deg),AL a95 (deg),AL nIncs,AL error\n"
+                + "0.00,5,22.8728,14.4217,16.7387,21.8470,5,4.8169,Y,183.0448,13.0636,6.8346,269.1429,5,0,4.9944,10,0.00000,0.00000,90.0000,90.0000,15.0,25.0,-68.1725,16.8419,3.5534,6.9694,"
+                + "14.4845,24.5660,16.3566,15.7456,5,0\n"
+                + "5.00,5,33.9598,3.3541,1.0511,5300.1858,5,4.9992,Y,189.9534,4.3122,1.6842,4422.6002,5,0,4.9997,10,0.00000,0.00000,90.0000,90.0000,,,,,,,"
+                + "3.3540,8475.8788,0.8776,0.8312,5,0\n";
         assertEquals(expectedCalcs, siteCalcsString);
         syntheticSuite1.getSites().forEach(s -> s.clearFisherStats());
         syntheticSuite1.getSites().forEach(s -> s.clearGcFit());
@@ -940,9 +1000,10 @@ public class SuiteTest {
                 "Site,Samples,Fisher dec. (deg),Fisher inc. (deg),Fisher a95 (deg),Fisher k,Fisher nDirs,Fisher R,"
                 + "GC valid,GC dec. (deg),GC inc. (deg),GC a95 (deg),GC k,GC N,GC M,GC R,GC min points,"
                 + "GC D1min (degC or mT),GC D1max (degC or mT),GC D2min (degC or mT),GC D2max (degC or mT),"
-                + "Lat (deg),Long (deg),VGP lat (deg),VGP long (deg),VGP dp (deg),VGP dm (deg)\n"
-                + "0.00,5,,,,,,,,,,,,,,,,,,,,15.0,25.0,-68.1725,16.8419,3.5534,6.9694\n"
-                + "5.00,5,,,,,,,,,,,,,,,,,,,,,,,,,\n";
+                + "Lat (deg),Long (deg),VGP lat (deg),VGP long (deg),VGP dp (deg),VGP dm (deg),"
+                + "AL inc. (deg),AL k,AL t63 (deg),AL a95 (deg),AL nIncs,AL error\n"
+                + "0.00,5,,,,,,,,,,,,,,,,,,,,15.0,25.0,-68.1725,16.8419,3.5534,6.9694,,,,,,\n"
+                + "5.00,5,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,\n";
         assertEquals(expectedCalcs2, siteCalcsString2);
     }
 
@@ -1753,5 +1814,28 @@ public class SuiteTest {
                 );
         }
     }
+    
+    @Test
+    public void testMergeDuplicateSamplesReport() {
+        final Suite suite0 = TestUtils.createContinuousSuite();
+        final Suite suite1 = TestUtils.createContinuousSuite();
+        final List<Sample> originalSamples =
+                new ArrayList<>(suite0.getSamples());
+        final int nSteps = suite1.getSamples().stream().
+                mapToInt(Sample::getNumberOfSteps).sum();
+        suite1.getSamples().forEach(
+                s -> suite0.addSample(s, s.getNameOrDepth()));
+        suite0.updateReverseIndex();
+        final Suite.MergeReport report =
+                suite0.mergeDuplicateSamples(suite0.getSamples());
+        assertEquals(originalSamples.size(), report.getSamplesMerged());
+        assertEquals(nSteps, report.getStepsMerged());
+        assertEquals(originalSamples, suite0.getSamples());
+        for (int i = 0; i < originalSamples.size(); i++) {
+            final Sample sample = originalSamples.get(i);
+            assertSame(sample, suite0.getSampleByName(sample.getNameOrDepth()));
+            assertEquals(i, suite0.getIndexBySample(sample));
+        }
+    }
 }
  
\ No newline at end of file
@@ -37,6 +37,7 @@ import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
@@ -50,6 +51,20 @@ public class TreatmentStepTest {
         defaultTreatmentStep = new TreatmentStep();
     }
     
+    @Test
+    public void testModificationCountChangesOnModification() {
+        final TreatmentStep step = new TreatmentStep(1, 2, 3);
+        int count = step.getModificationCount();
+        step.setSelected(true);
+        assertNotEquals(count, step.getModificationCount());
+        count = step.getModificationCount();
+        step.setValue(TreatmentParameter.AF_X, "0.5", 1);
+        assertNotEquals(count, step.getModificationCount());
+        count = step.getModificationCount();
+        step.getValue(TreatmentParameter.AF_X);
+        assertEquals(count, step.getModificationCount());
+    }
+
     @Test
     public void testThreeArgumentConstructor() {
         final TreatmentStep d = new TreatmentStep(1, 2, 3);
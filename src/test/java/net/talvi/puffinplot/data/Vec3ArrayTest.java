@@ -0,0 +1,111 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.talvi.puffinplot.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import Jama.Matrix;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ *
+ * @author pont
+ */
+public class Vec3ArrayTest {
+
+    private final List<Vec3> vectors = new ArrayList<>();
+
+    public Vec3ArrayTest() {
+        final Random random = new Random(47);
+        for (int i = 0; i < 1000; i++) {
+            vectors.add(new Vec3(random.nextGaussian() * 3,
+                    random.nextGaussian(), random.nextGaussian() - 1));
+        }
+    }
+
+    @Test
+    public void testOfAndToList() {
+        final Vec3Array array = Vec3Array.of(vectors);
+        assertEquals(vectors.size(), array.size());
+        assertEquals(vectors, array.toList());
+        array.set(3, Vec3.DOWN);
+        assertEquals(Vec3.DOWN, array.get(3));
+    }
+
+    @Test
+    public void testNormalizeAndSum() {
+        final Vec3Array array = Vec3Array.of(vectors);
+        assertEquals(Vec3.sum(vectors), array.sum());
+        array.normalize();
+        final List<Vec3> normalized = new ArrayList<>();
+        for (Vec3 v: vectors) {
+            normalized.add(v.normalize());
+        }
+        assertEquals(normalized, array.toList());
+        assertEquals(Vec3.sum(normalized), array.sum());
+    }
+
+    @Test
+    public void testDot() {
+        final Vec3 v = new Vec3(0.3, -2, 1.5);
+        final double[] dots = new double[vectors.size()];
+        Vec3Array.of(vectors).dot(v, dots);
+        for (int i = 0; i < dots.length; i++) {
+            assertEquals(vectors.get(i).dot(v), dots[i], 1e-12);
+        }
+    }
+
+    @Test
+    public void testTransform() {
+        final double[][] matrix = Vec3.getSampleCorrectionMatrix(
+                Math.toRadians(37), Math.toRadians(62));
+        final Vec3Array array = Vec3Array.of(vectors);
+        array.transform(matrix);
+        for (int i = 0; i < vectors.size(); i++) {
+            assertEquals(vectors.get(i).transform(matrix), array.get(i));
+        }
+    }
+
+    @Test
+    public void testDecInc() {
+        final double[] decs = new double[vectors.size()];
+        final double[] incs = new double[vectors.size()];
+        Vec3Array.of(vectors).getDecIncRad(decs, incs);
+        for (int i = 0; i < vectors.size(); i++) {
+            assertEquals(vectors.get(i).getDecRad(), decs[i], 0);
+            assertEquals(vectors.get(i).getIncRad(), incs[i], 0);
+        }
+    }
+
+    @Test
+    public void testOrientationTensor() {
+        final Matrix expected = new Matrix(3, 3);
+        for (Vec3 v: vectors) {
+            expected.plusEquals(v.oTensor());
+        }
+        final Matrix actual = Vec3Array.of(vectors).orientationTensor();
+        for (int row = 0; row < 3; row++) {
+            for (int col = 0; col < 3; col++) {
+                assertEquals(expected.get(row, col), actual.get(row, col), 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.talvi.puffinplot.plots;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.imageio.ImageIO;
+import net.talvi.puffinplot.TestUtils;
+import net.talvi.puffinplot.data.Suite;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ * @author pont
+ */
+public class PlotRendererTest {
+
+    private final Suite suite = TestUtils.createContinuousSuite();
+
+    private static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(),
+                null, 0, image.getWidth());
+    }
+
+    @Test
+    public void testVisiblePlotsFollowLayout() {
+        final PlotRenderer renderer =
+                PlotRenderer.builder(suite.getSampleByIndex(0)).
+                        layout("zplot true 10 10 300 300 "
+                                + "equarea false 10 10 200 200").build();
+        final List<Plot> plots = renderer.createPlots();
+        assertTrue(plots.stream().anyMatch(plot -> plot instanceof ZPlot));
+        assertTrue(plots.stream().noneMatch(
+                plot -> plot instanceof SampleEqualAreaPlot));
+    }
+
+    @Test
+    public void testRenderImageConcurrently() throws InterruptedException,
+            ExecutionException {
+        final PlotRenderer renderer =
+                PlotRenderer.builder(suite.getSampleByIndex(1)).
+                        size(600, 400).build();
+        final BufferedImage expected = renderer.renderImage(1);
+        assertEquals(600, expected.getWidth());
+        assertEquals(400, expected.getHeight());
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<BufferedImage>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> renderer.renderImage(1)));
+            }
+            for (Future<BufferedImage> future: futures) {
+                assertArrayEquals(pixels(expected), pixels(future.get()));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testWritePng() throws IOException {
+        final PlotRenderer renderer =
+                PlotRenderer.builder(suite.getSampleByIndex(2)).
+                        size(300, 200).build();
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        final TiledPngWriter writer = new TiledPngWriter(renderer, 144, 37, 3);
+        writer.write(stream);
+        final BufferedImage actual = ImageIO.read(
+                new ByteArrayInputStream(stream.toByteArray()));
+        final BufferedImage expected = renderer.renderImage(2);
+        assertEquals(600, actual.getWidth());
+        assertEquals(400, actual.getHeight());
+        final int[] actualPixels = pixels(actual);
+        final int[] expectedPixels = pixels(expected);
+        for (int i = 0; i < expectedPixels.length; i++) {
+            assertEquals(expectedPixels[i] & 0xffffff,
+                    actualPixels[i] & 0xffffff);
+        }
+    }
+
+    @Test
+    public void testWritePngWithinMemoryLimit() throws IOException {
+        final PlotRenderer renderer =
+                PlotRenderer.builder(suite.getSampleByIndex(2)).
+                        size(300, 200).build();
+        final TiledPngWriter writer =
+                new TiledPngWriter(renderer, 72, 16, 4, 300 * 16 * 4 * 2);
+        assertEquals(2, writer.getMaxPendingStrips());
+        assertEquals(1, new TiledPngWriter(renderer, 72, 16, 4, 1).
+                getMaxPendingStrips());
+        final List<Double> progress = new ArrayList<>();
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        writer.write(stream, progress::add);
+        assertEquals(13, progress.size());
+        for (int i = 1; i < progress.size(); i++) {
+            assertTrue(progress.get(i) > progress.get(i - 1));
+        }
+        assertEquals(1, progress.get(progress.size() - 1), 0);
+        final BufferedImage actual = ImageIO.read(
+                new ByteArrayInputStream(stream.toByteArray()));
+        final int[] actualPixels = pixels(actual);
+        final int[] expectedPixels = pixels(renderer.renderImage(1));
+        for (int i = 0; i < expectedPixels.length; i++) {
+            assertEquals(expectedPixels[i] & 0xffffff,
+                    actualPixels[i] & 0xffffff);
+        }
+    }
+
+    @Test
+    public void testWriteSvg() throws IOException {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        PlotRenderer.builder(suite.getSampleByIndex(0)).build().
+                writeSvg(stream);
+        final String svg =
+                new String(stream.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(svg.contains("<svg"));
+    }
+
+    @Test
+    public void testWritePdf() throws IOException {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        PlotRenderer.builder(suite.getSampleByIndex(0)).build().
+                writePdf(stream, suite.getSamples().subList(0, 2));
+        final String pdf = new String(stream.toByteArray(),
+                StandardCharsets.ISO_8859_1);
+        assertTrue(pdf.startsWith("%PDF"));
+        assertTrue(pdf.contains("/Count 2"));
+    }
+}
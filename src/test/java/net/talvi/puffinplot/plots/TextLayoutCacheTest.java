@@ -0,0 +1,111 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.talvi.puffinplot.plots;
+
+import java.awt.font.FontRenderContext;
+import java.awt.font.TextAttribute;
+import java.awt.font.TextLayout;
+import java.awt.geom.AffineTransform;
+import java.text.AttributedCharacterIterator.Attribute;
+import java.text.AttributedString;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ *
+ * @author pont
+ */
+public class TextLayoutCacheTest {
+
+    private final FontRenderContext frc =
+            new FontRenderContext(new AffineTransform(), true, false);
+    private final Map<Attribute, Object> attributes = new HashMap<>();
+
+    public TextLayoutCacheTest() {
+        attributes.put(TextAttribute.FAMILY, "SansSerif");
+        attributes.put(TextAttribute.SIZE, 12f);
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        final TextLayoutCache cache = new TextLayoutCache(10);
+        final TextLayoutCache.CachedLayout first =
+                cache.get("12.5", attributes, 0, frc);
+        assertSame(first, cache.get("12.5", attributes, 0, frc));
+        assertNotSame(first, cache.get("12.5", attributes, Math.PI / 2,
+                new FontRenderContext(AffineTransform.getRotateInstance(
+                        Math.PI / 2), true, false)));
+        attributes.put(TextAttribute.SIZE, 14f);
+        assertNotSame(first, cache.get("12.5", attributes, 0, frc));
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void testAttributedString() {
+        final TextLayoutCache cache = new TextLayoutCache(10);
+        final AttributedString superscript = new AttributedString("10-3");
+        superscript.addAttributes(attributes, 0, 4);
+        superscript.addAttribute(TextAttribute.SUPERSCRIPT,
+                TextAttribute.SUPERSCRIPT_SUPER, 2, 4);
+        final TextLayoutCache.CachedLayout first =
+                cache.get(superscript, 0, frc);
+        final AttributedString plain = new AttributedString("10-3");
+        plain.addAttributes(attributes, 0, 4);
+        assertNotSame(first, cache.get(plain, 0, frc));
+        final AttributedString superscript2 = new AttributedString("10-3");
+        superscript2.addAttributes(attributes, 0, 4);
+        superscript2.addAttribute(TextAttribute.SUPERSCRIPT,
+                TextAttribute.SUPERSCRIPT_SUPER, 2, 4);
+        assertSame(first, cache.get(superscript2, 0, frc));
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void testBoundsMatchFreshLayout() {
+        final TextLayoutCache cache = new TextLayoutCache(10);
+        final TextLayoutCache.CachedLayout entry =
+                cache.get("Units: A/m", attributes, 0, frc);
+        final TextLayout layout = new TextLayout(
+                new AttributedString("Units: A/m", attributes).getIterator(),
+                frc);
+        assertEquals(layout.getBounds(), entry.getBounds());
+        assertEquals(layout.getBounds(), entry.getUnrotatedBounds());
+    }
+
+    @Test
+    public void testEviction() {
+        final TextLayoutCache cache = new TextLayoutCache(2);
+        final TextLayoutCache.CachedLayout a =
+                cache.get("a", attributes, 0, frc);
+        cache.get("b", attributes, 0, frc);
+        assertSame(a, cache.get("a", attributes, 0, frc));
+        cache.get("c", attributes, 0, frc); // evicts "b"
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertSame(a, cache.get("a", attributes, 0, frc));
+        cache.get("b", attributes, 0, frc);
+        assertEquals(4, cache.getMisses());
+        assertEquals(2, cache.getHits());
+    }
+}
@@ -27,6 +27,7 @@ import net.talvi.puffinplot.data.Correction;
 import net.talvi.puffinplot.data.MeasurementAxis;
 import net.talvi.puffinplot.data.Sample;
 import net.talvi.puffinplot.data.Suite;
+import net.talvi.puffinplot.window.PuffinRenderingHints;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -148,6 +149,54 @@ public class ZPlotTest {
         assertTrue(TestUtils.isImageCorrect(filename, actual));
     }
 
+    @Test
+    public void testProjectionReusedUntilDataChanges() {
+        final Sample sample = createContinuousSuite().getSampleByIndex(0);
+        final ZplotProjection projection = new ZplotProjection();
+        assertTrue(projection.update(sample, Correction.NONE,
+                MeasurementAxis.Y, MeasurementAxis.X, MeasurementAxis.X));
+        final int size = projection.size();
+        assertFalse(projection.update(sample, Correction.NONE,
+                MeasurementAxis.Y, MeasurementAxis.X, MeasurementAxis.X));
+        sample.getTreatmentSteps().get(0).setInPca(true);
+        assertFalse(projection.update(sample, Correction.NONE,
+                MeasurementAxis.Y, MeasurementAxis.X, MeasurementAxis.X));
+        assertTrue(projection.update(sample, Correction.NONE,
+                MeasurementAxis.X, MeasurementAxis.Y, MeasurementAxis.X));
+        sample.getTreatmentSteps().get(0).setHidden(true);
+        assertTrue(projection.update(sample, Correction.NONE,
+                MeasurementAxis.X, MeasurementAxis.Y, MeasurementAxis.X));
+        assertEquals(size - 1, projection.size());
+        assertSame(sample.getTreatmentSteps().get(1), projection.getStep(0));
+        assertEquals(sample.getTreatmentSteps().get(1).getMoment().x,
+                projection.getHx(0), 1e-10);
+    }
+
+    @Test
+    public void testDraftOmitsLabels() {
+        final Suite suite = TestUtils.createDiscreteSuiteArc();
+        params.setSample(suite.getSampleByIndex(0));
+        params.setCorrection(Correction.NONE);
+        params.setVprojXaxis(MeasurementAxis.Y);
+        params.setHprojXaxis(MeasurementAxis.X);
+        params.setHprojYaxis(MeasurementAxis.MINUSY);
+        final BufferedImage[] images = new BufferedImage[2];
+        for (int i = 0; i < 2; i++) {
+            params.getSettingsMapBoolean().put("plots.labelTreatmentSteps",
+                    i == 1);
+            images[i] =
+                    new BufferedImage(256, 256, BufferedImage.TYPE_INT_ARGB);
+            final Graphics2D graphics = images[i].createGraphics();
+            graphics.setRenderingHints(
+                    PuffinRenderingHints.getDraftInstance());
+            assertTrue(Plot.isDraft(graphics));
+            makePlot().draw(graphics);
+        }
+        assertArrayEquals(
+                images[0].getRGB(0, 0, 256, 256, null, 0, 256),
+                images[1].getRGB(0, 0, 256, 256, null, 0, 256));
+    }
+
     @Test
     public void testGetLegend() {
         assertNotNull(defaultPlot.getLegend());
@@ -0,0 +1,86 @@
+/* This file is part of PuffinPlot, a program for palaeomagnetic
+ * data plotting and analysis. Copyright 2012-2019 Pontus Lurcock.
+ *
+ * PuffinPlot is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PuffinPlot is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PuffinPlot.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.talvi.puffinplot.jfr;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.List;
+import java.util.stream.Collectors;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import net.talvi.puffinplot.TestUtils;
+import net.talvi.puffinplot.data.Correction;
+import net.talvi.puffinplot.data.Suite;
+import net.talvi.puffinplot.data.Vec3;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FlightEventsTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testAvailable() {
+        assertTrue(FlightEvents.isAvailable());
+    }
+
+    @Test
+    public void testConfiguration() throws IOException, ParseException {
+        try (Reader reader = new InputStreamReader(
+                JfrEventSink.class.getResourceAsStream(
+                        JfrEventSink.CONFIGURATION_RESOURCE),
+                StandardCharsets.UTF_8)) {
+            final Configuration configuration = Configuration.create(reader);
+            assertEquals("true", configuration.getSettings().
+                    get("net.talvi.puffinplot.Calculation#enabled"));
+        }
+    }
+
+    @Test
+    public void testCalculationEvent() throws IOException {
+        final Suite suite = TestUtils.createContinuousSuite(3, 1,
+                (depth, level) -> new Vec3(1, 2, 3));
+        final File file = temporaryFolder.newFile("test.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("net.talvi.puffinplot.Calculation");
+            recording.start();
+            suite.doSampleCalculations(Correction.NONE);
+            recording.stop();
+            recording.dump(file.toPath());
+        }
+        final List<RecordedEvent> events =
+                RecordingFile.readAllEvents(file.toPath()).stream().
+                filter(event -> event.getEventType().getName().
+                        equals("net.talvi.puffinplot.Calculation")).
+                collect(Collectors.toList());
+        assertEquals(1, events.size());
+        assertEquals("sampleCalculations",
+                events.get(0).getString("calculation"));
+        assertEquals(3, events.get(0).getInt("samples"));
+    }
+}